@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.benchmark;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import javax.usb3.utility.BufferUtility;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The buffer copy paths of the blocking UsbIrpQueue read and write.
+ * <p>
+ * Each operation follows the UsbIrpQueue readUsbIrp / writeUsbIrp sequence for
+ * one IRP: acquire a pooled direct buffer, slice it per transfer, copy the IRP
+ * data in (write) or out (read) and release the buffer. The libusb transfer is
+ * replaced by {@link FakeUsb#transfer(ByteBuffer, boolean)}. The direct
+ * variants use a caller-supplied direct buffer, which is sliced but never
+ * copied.
+ *
+ * @author Jesse Caulfield
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BufferCopyBenchmark {
+
+  /**
+   * 64 KiB. The default maximum transfer size.
+   */
+  private static final int TRANSFER_SIZE = 64 * 1024;
+
+  @Param({"64", "4096", "262144"})
+  public int length;
+
+  private byte[] data;
+  private ByteBuffer direct;
+
+  @Setup
+  public void setup() {
+    data = new byte[length];
+    direct = ByteBuffer.allocateDirect(length);
+  }
+
+  @Benchmark
+  public int readHeap() {
+    final ByteBuffer pooled = BufferUtility.acquireByteBuffer(Math.min(length, TRANSFER_SIZE));
+    int read = 0;
+    try {
+      while (read < length) {
+        final int size = Math.min(length - read, TRANSFER_SIZE);
+        final ByteBuffer buffer = BufferUtility.slice(pooled, 0, size);
+        final int result = FakeUsb.transfer(buffer, true);
+        buffer.rewind();
+        buffer.get(data, read, result);
+        read += result;
+      }
+    } finally {
+      BufferUtility.releaseByteBuffer(pooled);
+    }
+    return read;
+  }
+
+  @Benchmark
+  public int writeHeap() {
+    final ByteBuffer pooled = BufferUtility.acquireByteBuffer(Math.min(length, TRANSFER_SIZE));
+    int written = 0;
+    try {
+      while (written < length) {
+        final int size = Math.min(length - written, TRANSFER_SIZE);
+        final ByteBuffer buffer = BufferUtility.slice(pooled, 0, size);
+        buffer.put(data, written, size);
+        buffer.rewind();
+        written += FakeUsb.transfer(buffer, false);
+      }
+    } finally {
+      BufferUtility.releaseByteBuffer(pooled);
+    }
+    return written;
+  }
+
+  @Benchmark
+  public int readDirect() {
+    int read = 0;
+    while (read < length) {
+      final int size = Math.min(length - read, TRANSFER_SIZE);
+      read += FakeUsb.transfer(BufferUtility.slice(direct, read, size), true);
+    }
+    return read;
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.benchmark;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.usb3.IUsbEndpointDescriptor;
+import javax.usb3.IUsbInterfaceDescriptor;
+import javax.usb3.descriptor.UsbConfigurationDescriptor;
+import javax.usb3.descriptor.UsbConfigurationDescriptorView;
+import javax.usb3.descriptor.UsbDeviceDescriptor;
+import javax.usb3.descriptor.UsbEndpointDescriptor;
+import javax.usb3.descriptor.UsbInterfaceDescriptor;
+import javax.usb3.enumerated.EUSBClassCode;
+import javax.usb3.request.BEndpointAddress;
+import javax.usb3.request.BMConfigurationAttributes;
+import javax.usb3.spi.IUsbBackendDevice;
+import javax.usb3.spi.LibUsbBackend;
+import javax.usb3.spi.UsbBackendConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Descriptor construction.
+ * <p>
+ * The configuration benchmark builds a descriptor graph (one configuration,
+ * one interface, two endpoints) from the Java descriptor classes that the
+ * libusb backend creates. This is the Java part of the JNI path. The view
+ * benchmarks parse the same descriptor graph from its raw configuration
+ * descriptor as returned by GET_DESCRIPTOR(CONFIGURATION), and then read
+ * every field as the copy path does.
+ * <p>
+ * The libusb benchmark measures the complete JNI path: it reads all
+ * configurations of the first USB device of the host through
+ * libusb_get_config_descriptor and copies them into the Java descriptor
+ * classes. It needs libusb and at least one USB device, and fails in its
+ * setup otherwise.
+ *
+ * @author Jesse Caulfield
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DescriptorBenchmark {
+
+  /**
+   * One configuration, one interface, two endpoints: 32 bytes.
+   */
+  private final ByteBuffer configuration = ByteBuffer.wrap(new byte[]{
+    9, 0x02, 32, 0, 1, 1, 0, (byte) 0x80, 50,
+    9, 0x04, 0, 0, 2, (byte) 0xff, 0, 0, 0,
+    7, 0x05, (byte) 0x81, 0x02, 0, 2, 0,
+    7, 0x05, 0x02, 0x02, 0, 2, 0
+  });
+
+  /**
+   * A libusb session and the first USB device of the host.
+   */
+  @State(Scope.Benchmark)
+  public static class LibUsbDevice {
+
+    /**
+     * The libusb backend.
+     */
+    private LibUsbBackend backend;
+    /**
+     * The devices of the host.
+     */
+    private List<IUsbBackendDevice> devices;
+    /**
+     * The first device having a configuration.
+     */
+    private IUsbBackendDevice device;
+
+    @Setup
+    public void setup() throws Exception {
+      backend = new LibUsbBackend();
+      backend.init();
+      devices = backend.getDeviceList();
+      for (IUsbBackendDevice candidate : devices) {
+        if (candidate.getDeviceDescriptor().bNumConfigurations() > 0) {
+          device = candidate;
+          break;
+        }
+      }
+      if (device == null) {
+        tearDown();
+        throw new IllegalStateException("No USB device with a configuration found");
+      }
+    }
+
+    @TearDown
+    public void tearDown() {
+      backend.freeDeviceList(devices);
+      backend.exit();
+    }
+  }
+
+  @Benchmark
+  public List<UsbBackendConfiguration> libusbConfigurations(final LibUsbDevice libusb) throws Exception {
+    return libusb.device.getConfigurations();
+  }
+
+  @Benchmark
+  public UsbDeviceDescriptor deviceDescriptor() {
+    return new UsbDeviceDescriptor((short) 0x0200, EUSBClassCode.OTHER, (byte) 0, (byte) 0, (byte) 64,
+                                   (short) 0x03eb, (short) 0x0902, (short) 0x0100, (byte) 1, (byte) 2, (byte) 3, (byte) 1);
+  }
+
+  @Benchmark
+  public Object configurationDescriptor() {
+    final IUsbEndpointDescriptor[] endpoints = {
+      new UsbEndpointDescriptor(BEndpointAddress.getInstance((byte) 0x81), (byte) 0x02, (short) 512, (byte) 0),
+      new UsbEndpointDescriptor(BEndpointAddress.getInstance((byte) 0x02), (byte) 0x02, (short) 512, (byte) 0)
+    };
+    final IUsbInterfaceDescriptor iface = new UsbInterfaceDescriptor((byte) 0, (byte) 0, (byte) endpoints.length,
+                                                                     EUSBClassCode.VENDOR_SPECIFIC, (byte) 0, (byte) 0, (byte) 0,
+                                                                     endpoints);
+    return new Object[]{
+      new UsbConfigurationDescriptor((short) 32, (byte) 1, (byte) 1, (byte) 0, BMConfigurationAttributes.getInstance((byte) 0x80), (byte) 50),
+      iface
+    };
+  }
+
+  @Benchmark
+  public Object configurationDescriptorView() {
+    return new UsbConfigurationDescriptorView(this.configuration);
+  }
+
+  @Benchmark
+  public void configurationDescriptorViewFields(final Blackhole blackhole) {
+    final UsbConfigurationDescriptorView view = new UsbConfigurationDescriptorView(this.configuration);
+    blackhole.consume(view.wTotalLength());
+    blackhole.consume(view.bNumInterfaces());
+    blackhole.consume(view.bConfigurationValue());
+    blackhole.consume(view.iConfiguration());
+    blackhole.consume(view.bmAttributes());
+    blackhole.consume(view.bMaxPower());
+    for (IUsbInterfaceDescriptor iface : view.getInterfaceDescriptors()) {
+      blackhole.consume(iface.bInterfaceNumber());
+      blackhole.consume(iface.bAlternateSetting());
+      blackhole.consume(iface.interfaceClass());
+      blackhole.consume(iface.bInterfaceSubClass());
+      blackhole.consume(iface.bInterfaceProtocol());
+      blackhole.consume(iface.iInterface());
+      for (IUsbEndpointDescriptor endpoint : iface.endpoint()) {
+        blackhole.consume(endpoint.endpointAddress());
+        blackhole.consume(endpoint.bmAttributes());
+        blackhole.consume(endpoint.wMaxPacketSize());
+        blackhole.consume(endpoint.bInterval());
+      }
+    }
+  }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.benchmark;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import javax.usb3.IUsbControlIrp;
+import javax.usb3.IUsbDevice;
+import javax.usb3.IUsbIrp;
+import javax.usb3.IUsbPipe;
+import javax.usb3.ri.AUsbIrpQueue;
+import javax.usb3.ri.UsbControlIrp;
+import javax.usb3.ri.UsbDevice;
+import sun.misc.Unsafe;
+
+/**
+ * In-process fakes of the native (libusb) side of the reference
+ * implementation.
+ * <p>
+ * The fakes complete every transfer immediately and in full, so the benchmarks
+ * measure only the library overhead and run on any machine without USB
+ * hardware or a working libusb context.
+ *
+ * @author Jesse Caulfield
+ */
+final class FakeUsb {
+
+  /**
+   * A canned 18 byte device descriptor returned by the fake device for every
+   * control IN request.
+   */
+  private static final byte[] DEVICE_DESCRIPTOR = {
+    0x12, 0x01, 0x00, 0x02, 0x00, 0x00, 0x00, 0x40,
+    (byte) 0xeb, 0x03, 0x02, 0x09, 0x00, 0x01, 0x01, 0x02, 0x03, 0x01
+  };
+
+  /**
+   * Private constructor to prevent instantiation.
+   */
+  private FakeUsb() {
+  }
+
+  /**
+   * Fake the native transfer of an IRP: IN data is produced, OUT data is
+   * consumed, and the full length is reported as transferred.
+   *
+   * @param irp The IRP.
+   */
+  static void transfer(final IUsbIrp irp) {
+    irp.setActualLength(irp.getLength());
+  }
+
+  /**
+   * Fake the native transfer of one libusb buffer.
+   *
+   * @param buffer The transfer buffer, positioned at zero.
+   * @param in     TRUE for an IN (device to host) transfer, which fills the
+   *               buffer; FALSE for an OUT transfer, which reads it.
+   * @return The number of bytes transferred.
+   */
+  static int transfer(final ByteBuffer buffer, final boolean in) {
+    final int length = buffer.remaining();
+    if (in) {
+      buffer.put(length - 1, (byte) length);
+    } else {
+      buffer.get(length - 1);
+    }
+    return length;
+  }
+
+  /**
+   * Create a fake device answering control IRPs in-process. Control IN
+   * requests return (a prefix of) a canned device descriptor. All other
+   * device methods are unsupported.
+   *
+   * @return A fake device.
+   */
+  static IUsbDevice newControlDevice() {
+    return (IUsbDevice) Proxy.newProxyInstance(IUsbDevice.class.getClassLoader(), new Class<?>[]{IUsbDevice.class}, new InvocationHandler() {
+      @Override
+      public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+        switch (method.getName()) {
+          case "createUsbControlIrp":
+            return new UsbControlIrp((Byte) args[0], (Byte) args[1], (Short) args[2], (Short) args[3]);
+          case "syncSubmit":
+            if (args[0] instanceof IUsbControlIrp) {
+              final IUsbControlIrp irp = (IUsbControlIrp) args[0];
+              final int length = Math.min(irp.getLength(), DEVICE_DESCRIPTOR.length);
+              System.arraycopy(DEVICE_DESCRIPTOR, 0, irp.getData(), irp.getOffset(), length);
+              irp.setActualLength(length);
+              irp.complete();
+              return null;
+            }
+            break;
+          case "hashCode":
+            return System.identityHashCode(proxy);
+          case "equals":
+            return proxy == args[0];
+          case "toString":
+            return "FakeUsbDevice";
+          default:
+            break;
+        }
+        throw new UnsupportedOperationException(method.getName());
+      }
+    });
+  }
+
+  /**
+   * Create a fake pipe. The pipe is only an event source: all pipe methods are
+   * unsupported.
+   *
+   * @return A fake pipe.
+   */
+  static IUsbPipe newPipe() {
+    return (IUsbPipe) Proxy.newProxyInstance(IUsbPipe.class.getClassLoader(), new Class<?>[]{IUsbPipe.class}, new InvocationHandler() {
+      @Override
+      public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+        switch (method.getName()) {
+          case "hashCode":
+            return System.identityHashCode(proxy);
+          case "equals":
+            return proxy == args[0];
+          case "toString":
+            return "FakeUsbPipe";
+          default:
+            throw new UnsupportedOperationException(method.getName());
+        }
+      }
+    });
+  }
+
+  /**
+   * Create a device instance to own a {@link Queue fake IRP queue}. The device
+   * is allocated without running its constructor, which reads the device
+   * configurations from libusb. The fake queue never uses its device.
+   *
+   * @return A device placeholder.
+   */
+  static UsbDevice newQueueDevice() {
+    try {
+      final Field field = Unsafe.class.getDeclaredField("theUnsafe");
+      field.setAccessible(true);
+      return (UsbDevice) ((Unsafe) field.get(null)).allocateInstance(UsbDevice.class);
+    } catch (ReflectiveOperationException ex) {
+      throw new IllegalStateException("Unable to allocate a fake device", ex);
+    }
+  }
+
+  /**
+   * An IRP queue whose IRPs are transferred in-process by
+   * {@link FakeUsb#transfer(IUsbIrp)}. The IRPs are processed and finished by
+   * the real queue processor on the shared IRP executor.
+   */
+  static final class Queue extends AUsbIrpQueue<IUsbIrp> {
+
+    /**
+     * Construct a new fake IRP queue.
+     */
+    Queue() {
+      super(newQueueDevice());
+    }
+
+    @Override
+    protected void processIrp(final IUsbIrp irp) {
+      transfer(irp);
+    }
+
+    @Override
+    protected void finishIrp(final IUsbIrp irp) {
+    }
+  }
+}
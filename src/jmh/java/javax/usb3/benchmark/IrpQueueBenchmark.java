@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.usb3.IUsbIrp;
+import javax.usb3.exception.UsbException;
+import javax.usb3.ri.UsbIrp;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * IRP enqueue and dispatch through AUsbIrpQueue.
+ * <p>
+ * Each operation submits IRPs to a fake queue and waits until they are
+ * finished, so the score covers enqueueing, the hand-off to the queue
+ * executor, processing and the finish notification.
+ *
+ * @author Jesse Caulfield
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class IrpQueueBenchmark {
+
+  /**
+   * The number of IRPs submitted per batch.
+   */
+  private static final int BATCH = 64;
+
+  private FakeUsb.Queue queue;
+  private UsbIrp irp;
+  private List<IUsbIrp> batch;
+
+  @Setup
+  public void setup() {
+    queue = new FakeUsb.Queue();
+    irp = new UsbIrp(new byte[64]);
+    batch = new ArrayList<>(BATCH);
+    for (int i = 0; i < BATCH; i++) {
+      batch.add(new UsbIrp(new byte[64]));
+    }
+  }
+
+  /**
+   * One IRP at a time: the round trip latency of an idle queue.
+   */
+  @Benchmark
+  public IUsbIrp submitSingle() throws UsbException {
+    irp.setComplete(false);
+    return queue.submit(irp).join();
+  }
+
+  /**
+   * Back-to-back IRPs added individually and drained by one processor run.
+   */
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public void addPipelined() throws UsbException {
+    for (IUsbIrp usbIrp : batch) {
+      usbIrp.setComplete(false);
+      queue.add(usbIrp);
+    }
+    batch.get(BATCH - 1).waitUntilComplete();
+  }
+
+  /**
+   * IRPs submitted as one batch.
+   */
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public void submitAll() throws UsbException {
+    for (IUsbIrp usbIrp : batch) {
+      usbIrp.setComplete(false);
+    }
+    queue.submitAll(batch).join();
+  }
+}
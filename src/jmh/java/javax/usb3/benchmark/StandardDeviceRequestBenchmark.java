@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import javax.usb3.IUsbDevice;
+import javax.usb3.enumerated.EDescriptorType;
+import javax.usb3.exception.UsbException;
+import javax.usb3.utility.StandardDeviceRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Control IRP construction and submission through StandardDeviceRequest. The
+ * control transfer itself is answered in-process by a
+ * {@link FakeUsb#newControlDevice() fake device}.
+ *
+ * @author Jesse Caulfield
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StandardDeviceRequestBenchmark {
+
+  private IUsbDevice device;
+  private byte[] descriptor;
+
+  @Setup
+  public void setup() {
+    device = FakeUsb.newControlDevice();
+    descriptor = new byte[18];
+  }
+
+  @Benchmark
+  public byte getConfiguration() throws UsbException {
+    return StandardDeviceRequest.getConfiguration(device);
+  }
+
+  @Benchmark
+  public int getDeviceDescriptor() throws UsbException {
+    return StandardDeviceRequest.getDescriptor(device, EDescriptorType.DEVICE, (byte) 0, (short) 0, descriptor);
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import javax.usb3.IUsbIrp;
+import javax.usb3.IUsbPipe;
+import javax.usb3.event.IUsbPipeIrpListener;
+import javax.usb3.event.IUsbPipeListener;
+import javax.usb3.event.UsbPipeDataEvent;
+import javax.usb3.event.UsbPipeErrorEvent;
+import javax.usb3.ri.UsbIrp;
+import javax.usb3.ri.UsbPipeIrpListener;
+import javax.usb3.ri.UsbPipeListener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Data event fan-out through UsbPipeListener, including the construction of
+ * the event as done by UsbPipe for every finished IRP, compared with IRP
+ * listeners, which receive the IRP without an event. Run with
+ * {@code -prof gc} to compare allocation rates.
+ *
+ * @author Jesse Caulfield
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class UsbPipeListenerBenchmark {
+
+  @Param({"1", "4", "16"})
+  public int listenerCount;
+
+  private UsbPipeListener listeners;
+  private UsbPipeIrpListener irpListeners;
+  private IUsbPipe pipe;
+  private UsbIrp irp;
+
+  @Setup
+  public void setup(final Blackhole blackhole) {
+    listeners = new UsbPipeListener();
+    for (int i = 0; i < listenerCount; i++) {
+      listeners.add(new IUsbPipeListener() {
+        @Override
+        public void dataEventOccurred(UsbPipeDataEvent event) {
+          blackhole.consume(event.getActualLength());
+        }
+
+        @Override
+        public void errorEventOccurred(UsbPipeErrorEvent event) {
+          blackhole.consume(event);
+        }
+      });
+    }
+    irpListeners = new UsbPipeIrpListener();
+    for (int i = 0; i < listenerCount; i++) {
+      irpListeners.add(new IUsbPipeIrpListener() {
+        @Override
+        public void irpCompleted(IUsbPipe pipe, IUsbIrp irp) {
+          blackhole.consume(irp.getActualLength());
+        }
+      });
+    }
+    pipe = FakeUsb.newPipe();
+    irp = new UsbIrp(new byte[64]);
+    irp.setActualLength(64);
+  }
+
+  @Benchmark
+  public void dataEvent() {
+    listeners.dataEventOccurred(new UsbPipeDataEvent(pipe, irp));
+  }
+
+  @Benchmark
+  public void irpListener() {
+    irpListeners.irpCompleted(pipe, irp);
+  }
+}
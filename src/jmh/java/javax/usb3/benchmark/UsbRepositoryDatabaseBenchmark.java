@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import javax.usb3.database.UsbDeviceDescription;
+import javax.usb3.database.UsbRepositoryDatabase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+/**
+ * USB ID database lookups near the start and the end of the usb.ids file.
+ *
+ * @author Jesse Caulfield
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UsbRepositoryDatabaseBenchmark {
+
+  @Benchmark
+  public UsbDeviceDescription lookupEarly() throws Exception {
+    return UsbRepositoryDatabase.lookup("03eb", "0902");
+  }
+
+  @Benchmark
+  public UsbDeviceDescription lookupLate() throws Exception {
+    return UsbRepositoryDatabase.lookup("1d6b", "0002");
+  }
+}
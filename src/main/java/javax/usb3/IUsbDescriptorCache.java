@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3;
+
+/**
+ * A cache of the raw descriptors read from a USB device with a standard
+ * GET_DESCRIPTOR request, keyed by descriptor type, descriptor index and
+ * language ID.
+ * <p>
+ * A device which caches its descriptors returns its cache from
+ * {@link IUsbDevice#getDescriptorCache()}.
+ *
+ * @author Jesse Caulfield
+ */
+public interface IUsbDescriptorCache {
+
+  /**
+   * Copy a cached raw descriptor into the indicated buffer.
+   *
+   * @param type   The descriptor type.
+   * @param index  The descriptor index.
+   * @param langId The language ID. Zero for descriptors other than strings.
+   * @param data   The buffer to fill.
+   * @return The number of bytes copied, or -1 if the descriptor is not cached
+   *         or a longer part of it was requested than is cached.
+   */
+  public int getDescriptor(byte type, byte index, short langId, byte[] data);
+
+  /**
+   * Cache a raw descriptor read from the device.
+   *
+   * @param type      The descriptor type.
+   * @param index     The descriptor index.
+   * @param langId    The language ID. Zero for descriptors other than strings.
+   * @param data      The buffer the descriptor was read into.
+   * @param requested The number of bytes requested.
+   * @param length    The number of bytes read.
+   */
+  public void putDescriptor(byte type, byte index, short langId, byte[] data, int requested, int length);
+
+}
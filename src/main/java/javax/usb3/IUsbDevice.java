@@ -21,8 +21,11 @@ package javax.usb3;
 import java.io.UnsupportedEncodingException;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import javax.usb3.enumerated.EDevicePortSpeed;
 import javax.usb3.event.IUsbDeviceListener;
+import javax.usb3.event.UsbDeviceDataEvent;
+import javax.usb3.event.UsbDeviceErrorEvent;
 import javax.usb3.event.UsbDeviceEvent;
 import javax.usb3.exception.UsbDisconnectedException;
 import javax.usb3.exception.UsbException;
@@ -315,6 +318,75 @@ public interface IUsbDevice extends Comparable<IUsbDevice> {
    */
   public void asyncSubmit(IUsbControlIrp irp) throws UsbException, IllegalArgumentException, UsbDisconnectedException;
 
+  /**
+   * Submit a IUsbControlIrp to the Default Control Pipe and return a future
+   * representing the submission. No thread is blocked while the submission is
+   * outstanding.
+   * <p>
+   * The future completes normally with the IUsbControlIrp if the submission is
+   * successful, or exceptionally with the IUsbControlIrp's UsbException.
+   * <p>
+   * The default implementation submits the IUsbControlIrp with
+   * {@link #asyncSubmit(IUsbControlIrp)} and completes the future from the
+   * device event that carries the IUsbControlIrp, or exceptionally with a
+   * UsbDisconnectedException if the device is detached first.
+   *
+   * @param irp The IUsbControlIrp.
+   * @return A CompletableFuture completed when the IUsbControlIrp is complete.
+   * @exception UsbException             If an error occurs.
+   * @throws IllegalArgumentException If the IUsbControlIrp is not valid.
+   * @exception UsbDisconnectedException If this device has been disconnected.
+   */
+  public default CompletableFuture<IUsbIrp> submit(final IUsbControlIrp irp) throws UsbException, IllegalArgumentException, UsbDisconnectedException {
+    if (irp == null) {
+      throw new IllegalArgumentException("USB I/O Request Packet (IRP) must not be null");
+    }
+    final CompletableFuture<IUsbIrp> future = new CompletableFuture<>();
+    final IUsbDeviceListener listener = new IUsbDeviceListener() {
+      @Override
+      public void usbDeviceDetached(UsbDeviceEvent event) {
+        removeUsbDeviceListener(this);
+        future.completeExceptionally(new UsbDisconnectedException());
+      }
+
+      @Override
+      public void errorEventOccurred(UsbDeviceErrorEvent event) {
+        completed(event.getUsbControlIrp());
+      }
+
+      @Override
+      public void dataEventOccurred(UsbDeviceDataEvent event) {
+        completed(event.getUsbControlIrp());
+      }
+
+      /**
+       * Completes the future if the event belongs to the submitted
+       * IUsbControlIrp.
+       *
+       * @param completed The IUsbControlIrp of the event.
+       */
+      private void completed(IUsbControlIrp completed) {
+        if (completed != irp) {
+          return;
+        }
+        removeUsbDeviceListener(this);
+        if (irp.isUsbException()) {
+          future.completeExceptionally(irp.getUsbException());
+        } else {
+          future.complete(irp);
+        }
+      }
+    };
+    addUsbDeviceListener(listener);
+    try {
+      asyncSubmit(irp);
+    } catch (UsbException | RuntimeException ex) {
+      removeUsbDeviceListener(listener);
+      throw ex;
+    }
+    return future;
+  }
+
   /**
    * Submit a List of IUsbControlIrps synchronously to the Default Control Pipe.
    * <p>
@@ -411,4 +483,17 @@ public interface IUsbDevice extends Comparable<IUsbDevice> {
    */
   public void removeUsbDeviceListener(IUsbDeviceListener listener);
 
+  /**
+   * Get the cache of the raw descriptors read from this IUsbDevice.
+   * <p>
+   * The default implementation returns null: descriptors are always read from
+   * the device.
+   *
+   * @return The descriptor cache, or null if this IUsbDevice does not cache
+   *         its descriptors.
+   */
+  public default IUsbDescriptorCache getDescriptorCache() {
+    return null;
+  }
+
 }
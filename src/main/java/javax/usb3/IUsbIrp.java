@@ -18,6 +18,8 @@
  */
 package javax.usb3;
 
+import java.nio.ByteBuffer;
+import javax.usb3.enumerated.EIrpPriority;
 import javax.usb3.exception.UsbException;
 
 /**
@@ -115,6 +117,48 @@ public interface IUsbIrp {
    */
   public void setData(byte[] data, int offset, int length);
 
+  /**
+   * Get the direct data buffer.
+   * <p>
+   * If the data was {@link #setData(ByteBuffer) set} as a direct ByteBuffer
+   * this returns that buffer and the implementation transfers data directly
+   * to or from it (without copying). The {@link #getOffset() offset} and
+   * {@link #getLength() length} then refer to absolute positions within the
+   * buffer.
+   * <p>
+   * This defaults to null. This returns null if the data was set as a byte[]
+   * array. The default implementation always returns null.
+   *
+   * @return The direct data buffer, or null if the data is a byte[] array.
+   */
+  public default ByteBuffer getDataBuffer() {
+    return null;
+  }
+
+  /**
+   * Set the data as a direct ByteBuffer.
+   * <p>
+   * This {@link #setOffset(int) sets the offset} to the buffer position and
+   * {@link #setLength(int) sets the length} to the number of bytes remaining
+   * in the buffer. The buffer position and limit are not modified by the
+   * implementation; the number of bytes transferred is indicated by the
+   * {@link #getActualLength() actual length}.
+   * <p>
+   * While a direct buffer is set {@link #getData() getData} returns an empty
+   * byte[]. Setting a byte[] array clears the direct buffer.
+   * <p>
+   * The default implementation does not support direct buffers.
+   *
+   * @param buffer The direct data buffer.
+   * @exception IllegalArgumentException      If the buffer is null or not
+   *                                          direct.
+   * @exception UnsupportedOperationException If this IUsbIrp does not support
+   *                                          direct buffers.
+   */
+  public default void setData(ByteBuffer buffer) {
+    throw new UnsupportedOperationException("Direct buffers are not supported by " + getClass().getName());
+  }
+
   /**
    * Get the starting offset of the data.
    * <p>
@@ -232,6 +276,76 @@ public interface IUsbIrp {
    */
   public void setAcceptShortPacket(boolean accept);
 
+  /**
+   * Get the deadline of this IUsbIrp.
+   * <p>
+   * The deadline is an absolute {@link System#nanoTime() System.nanoTime()}
+   * value. An IUsbIrp whose deadline has passed while it was queued is not
+   * submitted to the device and an IUsbIrp whose deadline passes while it is
+   * transferred is cancelled. In either case the IUsbIrp completes with a
+   * {@link javax.usb3.exception.UsbTimeoutException UsbTimeoutException}.
+   * <p>
+   * The default implementation always returns 0.
+   *
+   * @return The deadline in nanoseconds, or 0 if this IUsbIrp has no deadline.
+   */
+  public default long getDeadline() {
+    return 0;
+  }
+
+  /**
+   * Set the deadline of this IUsbIrp. The default is 0 (no deadline).
+   * <p>
+   * For example, to complete an IUsbIrp within 5 ms:
+   * {@code irp.setDeadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(5))}.
+   * <p>
+   * The default implementation does not support deadlines and only accepts 0.
+   *
+   * @param deadline The absolute deadline as a
+   *                 {@link System#nanoTime() System.nanoTime()} value, or 0
+   *                 for no deadline.
+   * @exception UnsupportedOperationException If a deadline is set and this
+   *                                          IUsbIrp does not support
+   *                                          deadlines.
+   */
+  public default void setDeadline(long deadline) {
+    if (deadline != 0) {
+      throw new UnsupportedOperationException("Deadlines are not supported by " + getClass().getName());
+    }
+  }
+
+  /**
+   * Get the priority class of this IUsbIrp.
+   *
+   * @return The priority. The default is {@link EIrpPriority#NORMAL NORMAL}.
+   */
+  public default EIrpPriority getPriority() {
+    return EIrpPriority.NORMAL;
+  }
+
+  /**
+   * Set the priority class of this IUsbIrp. The priority selects the lane in
+   * which the IUsbIrp is queued. It must be set before the IUsbIrp is
+   * submitted.
+   * <p>
+   * The default implementation does not support priorities and only accepts
+   * {@link EIrpPriority#NORMAL NORMAL}.
+   *
+   * @param priority The priority. Must not be null.
+   * @exception IllegalArgumentException      If the priority is null.
+   * @exception UnsupportedOperationException If the priority is not NORMAL and
+   *                                          this IUsbIrp does not support
+   *                                          priorities.
+   */
+  public default void setPriority(EIrpPriority priority) {
+    if (priority == null) {
+      throw new IllegalArgumentException("Priority must not be null");
+    }
+    if (priority != EIrpPriority.NORMAL) {
+      throw new UnsupportedOperationException("Priorities are not supported by " + getClass().getName());
+    }
+  }
+
   /**
    * If this has completed.
    * <p>
@@ -281,4 +395,26 @@ public interface IUsbIrp {
    * @param timeout The maximum number of milliseconds to wait.
    */
   public void waitUntilComplete(long timeout);
+
+  /**
+   * Cancel this submission.
+   * <p>
+   * A queued IUsbIrp is removed from its queue. An IUsbIrp in progress is
+   * cancelled on the native level. In either case the IUsbIrp completes with a
+   * {@link javax.usb3.exception.UsbAbortException UsbAbortException}; any
+   * data transferred before the cancellation is reflected by the
+   * {@link #getActualLength() actual length}.
+   * <p>
+   * Cancellation is asynchronous. Use {@link #waitUntilComplete()} to wait
+   * until the IUsbIrp is complete.
+   * <p>
+   * The default implementation does not support cancellation and returns
+   * FALSE.
+   *
+   * @return TRUE if the cancellation was requested, FALSE if this IUsbIrp is
+   *         not submitted or already complete.
+   */
+  public default boolean cancel() {
+    return false;
+  }
 }
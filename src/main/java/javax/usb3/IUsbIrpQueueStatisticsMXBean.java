@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3;
+
+/**
+ * Management interface of the statistics of an IRP queue.
+ * <p>
+ * The statistics of every pipe (keyed by device location and endpoint address)
+ * and of the default control pipe of every device are published as MXBeans
+ * with the platform MBean server. The lifecycle of an IRP is split into three
+ * measured phases:
+ * <ul>
+ * <li><em>queue wait</em>: from the IRP being queued until it is taken by the
+ * queue processor;</li>
+ * <li><em>transfer</em>: from the IRP being submitted to the device until the
+ * transfer completed;</li>
+ * <li><em>dispatch</em>: the time spent notifying the listeners of the
+ * completed IRP.</li>
+ * </ul>
+ * All durations are in nanoseconds. Percentiles are exact to within a factor of
+ * two.
+ *
+ * @author Jesse Caulfield
+ */
+public interface IUsbIrpQueueStatisticsMXBean {
+
+  /**
+   * Get the number of IRPs finished.
+   *
+   * @return The number of finished IRPs, successful or not.
+   */
+  public long getIrpCount();
+
+  /**
+   * Get the number of bytes transferred.
+   *
+   * @return The sum of the actual length of all finished IRPs.
+   */
+  public long getByteCount();
+
+  /**
+   * Get the number of IRPs which transferred less data than requested.
+   *
+   * @return The number of short packets.
+   */
+  public long getShortPacketCount();
+
+  /**
+   * Get the number of IRPs which failed with a timeout.
+   *
+   * @return The number of timed out IRPs.
+   */
+  public long getTimeoutCount();
+
+  /**
+   * Get the number of IRPs which failed, including timeouts.
+   *
+   * @return The number of failed IRPs.
+   */
+  public long getErrorCount();
+
+  /**
+   * Get the IRP rate over the last sampling interval (about one second).
+   *
+   * @return The number of IRPs finished per second.
+   */
+  public double getIrpsPerSecond();
+
+  /**
+   * Get the data rate over the last sampling interval (about one second).
+   *
+   * @return The number of bytes transferred per second.
+   */
+  public double getBytesPerSecond();
+
+  /**
+   * Get the number of IRPs currently queued.
+   *
+   * @return The queue depth.
+   */
+  public int getQueueDepth();
+
+  /**
+   * Get the largest number of IRPs queued at any time.
+   *
+   * @return The queue high water mark.
+   */
+  public int getHighWaterMark();
+
+  /**
+   * Get the number of IRPs rejected or dropped because the queue was full.
+   *
+   * @return The overflow count.
+   */
+  public long getOverflowCount();
+
+  /**
+   * @return The median queue wait time.
+   */
+  public long getQueueWaitP50();
+
+  /**
+   * @return The 99th percentile queue wait time.
+   */
+  public long getQueueWaitP99();
+
+  /**
+   * @return The 99.9th percentile queue wait time.
+   */
+  public long getQueueWaitP999();
+
+  /**
+   * @return The maximum queue wait time.
+   */
+  public long getQueueWaitMax();
+
+  /**
+   * @return The median transfer time.
+   */
+  public long getTransferTimeP50();
+
+  /**
+   * @return The 99th percentile transfer time.
+   */
+  public long getTransferTimeP99();
+
+  /**
+   * @return The 99.9th percentile transfer time.
+   */
+  public long getTransferTimeP999();
+
+  /**
+   * @return The maximum transfer time.
+   */
+  public long getTransferTimeMax();
+
+  /**
+   * @return The median listener dispatch time.
+   */
+  public long getDispatchTimeP50();
+
+  /**
+   * @return The 99th percentile listener dispatch time.
+   */
+  public long getDispatchTimeP99();
+
+  /**
+   * @return The 99.9th percentile listener dispatch time.
+   */
+  public long getDispatchTimeP999();
+
+  /**
+   * @return The maximum listener dispatch time.
+   */
+  public long getDispatchTimeMax();
+
+  /**
+   * Clear all counters and histograms.
+   */
+  public void reset();
+
+}
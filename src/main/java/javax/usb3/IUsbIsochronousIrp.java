@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3;
+
+import javax.usb3.exception.UsbException;
+
+/**
+ * Interface for an isochronous USB IRP (I/O Request Packet).
+ * <p>
+ * This is identical to a IUsbIrp, except the data is divided into a number of
+ * isochronous packets, one per (micro)frame service interval. Each packet is
+ * transferred independently: a packet may complete with less data than
+ * requested or fail without affecting the other packets. Isochronous data is
+ * never retried.
+ * <p>
+ * The packets are stored consecutively in the IRP data starting at the
+ * {@link #getOffset() offset}, each packet occupying exactly its
+ * {@link #getPacketLength(int) packet length}. The IRP
+ * {@link #getLength() length} is the sum of all packet lengths. Received
+ * packets are not compacted: a short packet leaves a gap before the next
+ * packet.
+ * <p>
+ * The IRP {@link #getActualLength() actual length} is the total number of bytes
+ * transferred by all packets. The IRP {@link #getUsbException() exception} is
+ * only set if the transfer as a whole failed. Errors of individual packets are
+ * reported by {@link #getPacketException(int)}.
+ *
+ * @author Jesse Caulfield
+ */
+public interface IUsbIsochronousIrp extends IUsbIrp {
+
+  /**
+   * Get the number of isochronous packets.
+   *
+   * @return The number of packets.
+   */
+  public int getNumberOfPackets();
+
+  /**
+   * Get the number of bytes to transfer in the indicated packet.
+   *
+   * @param packet The packet index.
+   * @return The packet length.
+   */
+  public int getPacketLength(int packet);
+
+  /**
+   * Set the number of bytes to transfer in the indicated packet. This also
+   * updates the IRP {@link #getLength() length}.
+   * <p>
+   * For an OUT endpoint the packet length may vary from packet to packet (for
+   * example for an adaptive or asynchronous audio endpoint). The packet length
+   * should never exceed the endpoint packet size.
+   *
+   * @param packet The packet index.
+   * @param length The packet length.
+   * @exception IllegalArgumentException If the length is negative.
+   */
+  public void setPacketLength(int packet, int length);
+
+  /**
+   * Get the number of bytes actually transferred in the indicated packet.
+   *
+   * @param packet The packet index.
+   * @return The actual packet length.
+   */
+  public int getPacketActualLength(int packet);
+
+  /**
+   * Set the number of bytes actually transferred in the indicated packet.
+   * <p>
+   * The implementation will set this for every packet before calling
+   * {@link #complete() complete}.
+   *
+   * @param packet The packet index.
+   * @param length The actual packet length.
+   * @exception IllegalArgumentException If the length is negative.
+   */
+  public void setPacketActualLength(int packet, int length);
+
+  /**
+   * Get the UsbException of the indicated packet.
+   *
+   * @param packet The packet index.
+   * @return The UsbException, or null if the packet was transferred
+   *         successfully.
+   */
+  public UsbException getPacketException(int packet);
+
+  /**
+   * Set the UsbException of the indicated packet.
+   *
+   * @param packet       The packet index.
+   * @param usbException The UsbException. Null if the packet was transferred
+   *                     successfully.
+   */
+  public void setPacketException(int packet, UsbException usbException);
+}
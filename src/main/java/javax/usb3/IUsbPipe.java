@@ -23,8 +23,15 @@ import javax.usb3.exception.UsbNotClaimedException;
 import javax.usb3.exception.UsbNotActiveException;
 import javax.usb3.exception.UsbException;
 import javax.usb3.exception.UsbDisconnectedException;
+import java.nio.ByteBuffer;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import javax.usb3.adapter.UsbPipeIrpListenerAdapter;
+import javax.usb3.event.IUsbPipeIrpListener;
 import javax.usb3.event.IUsbPipeListener;
+import javax.usb3.event.UsbPipeDataEvent;
+import javax.usb3.event.UsbPipeErrorEvent;
+import javax.usb3.event.UsbPipeEvent;
 
 /**
  * Interface for a USB pipe.
@@ -233,6 +240,76 @@ public interface IUsbPipe {
    */
   public IUsbIrp asyncSubmit(byte[] data) throws UsbException, UsbNotActiveException, UsbNotOpenException, IllegalArgumentException, UsbDisconnectedException;
 
+  /**
+   * Synchronously submit a direct ByteBuffer to the IUsbPipe.
+   * <p>
+   * This is identical to {@link #syncSubmit(byte[]) syncSubmit(byte[])} except
+   * that the data is transferred directly to or from the remaining bytes of
+   * the buffer, without an intermediate copy. The buffer position and limit
+   * are not modified.
+   * <p>
+   * The default implementation submits an IUsbIrp created by
+   * {@link #createUsbIrp()} with {@link #syncSubmit(IUsbIrp)}. It requires an
+   * IUsbIrp that supports direct buffers.
+   *
+   * @param data The direct buffer to use.
+   * @return The number of bytes actually transferred.
+   * @exception UsbException             If an error occurs.
+   * @exception UsbNotActiveException    If the pipe is not
+   *                                     {@link #isActive() active}.
+   * @exception UsbNotOpenException      If the pipe is not
+   *                                     {@link #isOpen() open}.
+   * @exception IllegalArgumentException If the data is null or not a direct
+   *                                     buffer.
+   * @exception UsbDisconnectedException If this pipe (device) has been
+   *                                     disconnected.
+   */
+  public default int syncSubmit(ByteBuffer data) throws UsbException, UsbNotActiveException, UsbNotOpenException, IllegalArgumentException, UsbDisconnectedException {
+    if (data == null) {
+      throw new IllegalArgumentException("USB I/O Request Packet (IRP) data must not be null");
+    }
+    final IUsbIrp irp = createUsbIrp();
+    irp.setAcceptShortPacket(true);
+    irp.setData(data);
+    syncSubmit(irp);
+    return irp.getActualLength();
+  }
+
+  /**
+   * Asynchronously submit a direct ByteBuffer to the IUsbPipe.
+   * <p>
+   * This is identical to {@link #asyncSubmit(byte[]) asyncSubmit(byte[])}
+   * except that the data is transferred directly to or from the remaining
+   * bytes of the buffer, without an intermediate copy. The buffer must not be
+   * accessed until the returned IUsbIrp is complete.
+   * <p>
+   * The default implementation submits an IUsbIrp created by
+   * {@link #createUsbIrp()} with {@link #asyncSubmit(IUsbIrp)}. It requires an
+   * IUsbIrp that supports direct buffers.
+   *
+   * @param data The direct buffer to use.
+   * @return A IUsbIrp representing the submission.
+   * @exception UsbException             If an error occurs.
+   * @exception UsbNotActiveException    If the pipe is not
+   *                                     {@link #isActive() active}.
+   * @exception UsbNotOpenException      If the pipe is not
+   *                                     {@link #isOpen() open}.
+   * @exception IllegalArgumentException If the data is null or not a direct
+   *                                     buffer.
+   * @exception UsbDisconnectedException If this pipe (device) has been
+   *                                     disconnected.
+   */
+  public default IUsbIrp asyncSubmit(ByteBuffer data) throws UsbException, UsbNotActiveException, UsbNotOpenException, IllegalArgumentException, UsbDisconnectedException {
+    if (data == null) {
+      throw new IllegalArgumentException("USB I/O Request Packet (IRP) data must not be null");
+    }
+    final IUsbIrp irp = createUsbIrp();
+    irp.setAcceptShortPacket(true);
+    irp.setData(data);
+    asyncSubmit(irp);
+    return irp;
+  }
+
   /**
    * Synchronously submit a IUsbIrp to the IUsbPipe.
    * <p>
@@ -290,6 +367,139 @@ public interface IUsbPipe {
    */
   public void asyncSubmit(IUsbIrp irp) throws UsbException, UsbNotActiveException, UsbNotOpenException, IllegalArgumentException, UsbDisconnectedException;
 
+  /**
+   * Submit a IUsbIrp to the IUsbPipe and return a future representing the
+   * submission.
+   * <p>
+   * This is identical to {@link #asyncSubmit(IUsbIrp) asyncSubmit} except that
+   * completion is signaled through the returned CompletableFuture instead of
+   * (or in addition to) the IUsbIrp and the pipe listeners. No thread is
+   * blocked while the submission is outstanding.
+   * <p>
+   * The future completes normally with the IUsbIrp if the submission is
+   * successful, or exceptionally with the IUsbIrp's UsbException. Dependent
+   * stages must not block for long; use an asynchronous stage with a
+   * dedicated executor for lengthy processing.
+   * <p>
+   * The default implementation submits the IUsbIrp with
+   * {@link #asyncSubmit(IUsbIrp)} and completes the future from the pipe
+   * event that carries the IUsbIrp.
+   *
+   * @param irp The IUsbIrp to use.
+   * @return A CompletableFuture completed when the IUsbIrp is complete.
+   * @exception UsbException             If an error occurs.
+   * @exception UsbNotActiveException    If the pipe is not
+   *                                     {@link #isActive() active}.
+   * @exception UsbNotOpenException      If the pipe is not
+   *                                     {@link #isOpen() open}.
+   * @throws IllegalArgumentException If the IUsbIrp is not valid.
+   * @exception UsbDisconnectedException If this pipe (device) has been
+   *                                     disconnected.
+   */
+  public default CompletableFuture<IUsbIrp> submit(IUsbIrp irp) throws UsbException, UsbNotActiveException, UsbNotOpenException, IllegalArgumentException, UsbDisconnectedException {
+    if (irp == null) {
+      throw new IllegalArgumentException("USB I/O Request Packet (IRP) must not be null");
+    }
+    final CompletableFuture<IUsbIrp> future = new CompletableFuture<>();
+    final IUsbPipeListener listener = new IUsbPipeListener() {
+      @Override
+      public void errorEventOccurred(UsbPipeErrorEvent event) {
+        completed(event);
+      }
+
+      @Override
+      public void dataEventOccurred(UsbPipeDataEvent event) {
+        completed(event);
+      }
+
+      /**
+       * Completes the future if the event belongs to the submitted IUsbIrp.
+       *
+       * @param event The UsbPipeEvent.
+       */
+      private void completed(UsbPipeEvent event) {
+        if (event.getUsbIrp() != irp) {
+          return;
+        }
+        removeUsbPipeListener(this);
+        if (irp.isUsbException()) {
+          future.completeExceptionally(irp.getUsbException());
+        } else {
+          future.complete(irp);
+        }
+      }
+    };
+    addUsbPipeListener(listener);
+    try {
+      asyncSubmit(irp);
+    } catch (UsbException | RuntimeException ex) {
+      removeUsbPipeListener(listener);
+      throw ex;
+    }
+    return future;
+  }
+
+  /**
+   * Submit a byte[] to the IUsbPipe and return a future representing the
+   * submission. Short packets are accepted.
+   * <p>
+   * The default implementation submits an IUsbIrp created by
+   * {@link #createUsbIrp()} with {@link #submit(IUsbIrp)}.
+   *
+   * @param data The buffer to use.
+   * @return A CompletableFuture completed when the submission is complete.
+   * @exception UsbException             If an error occurs.
+   * @exception UsbNotActiveException    If the pipe is not
+   *                                     {@link #isActive() active}.
+   * @exception UsbNotOpenException      If the pipe is not
+   *                                     {@link #isOpen() open}.
+   * @exception IllegalArgumentException If the data is null.
+   * @exception UsbDisconnectedException If this pipe (device) has been
+   *                                     disconnected.
+   * @see #submit(IUsbIrp)
+   */
+  public default CompletableFuture<IUsbIrp> submit(byte[] data) throws UsbException, UsbNotActiveException, UsbNotOpenException, IllegalArgumentException, UsbDisconnectedException {
+    if (data == null) {
+      throw new IllegalArgumentException("USB I/O Request Packet (IRP) data must not be null");
+    }
+    final IUsbIrp irp = createUsbIrp();
+    irp.setAcceptShortPacket(true);
+    irp.setData(data);
+    return submit(irp);
+  }
+
+  /**
+   * Submit a direct ByteBuffer to the IUsbPipe and return a future
+   * representing the submission. The data is transferred directly to or from
+   * the remaining bytes of the buffer. Short packets are accepted.
+   * <p>
+   * The default implementation submits an IUsbIrp created by
+   * {@link #createUsbIrp()} with {@link #submit(IUsbIrp)}. It requires an
+   * IUsbIrp that supports direct buffers.
+   *
+   * @param data The direct buffer to use.
+   * @return A CompletableFuture completed when the submission is complete.
+   * @exception UsbException             If an error occurs.
+   * @exception UsbNotActiveException    If the pipe is not
+   *                                     {@link #isActive() active}.
+   * @exception UsbNotOpenException      If the pipe is not
+   *                                     {@link #isOpen() open}.
+   * @exception IllegalArgumentException If the data is null or not a direct
+   *                                     buffer.
+   * @exception UsbDisconnectedException If this pipe (device) has been
+   *                                     disconnected.
+   * @see #submit(IUsbIrp)
+   */
+  public default CompletableFuture<IUsbIrp> submit(ByteBuffer data) throws UsbException, UsbNotActiveException, UsbNotOpenException, IllegalArgumentException, UsbDisconnectedException {
+    if (data == null) {
+      throw new IllegalArgumentException("USB I/O Request Packet (IRP) data must not be null");
+    }
+    final IUsbIrp irp = createUsbIrp();
+    irp.setAcceptShortPacket(true);
+    irp.setData(data);
+    return submit(irp);
+  }
+
   /**
    * Synchronously submit a List of IUsbIrps to the IUsbPipe.
    * <p>
@@ -408,6 +618,30 @@ public interface IUsbPipe {
    */
   public IUsbControlIrp createUsbControlIrp(byte bmRequestType, byte bRequest, short wValue, short wIndex);
 
+  /**
+   * Create a IUsbIsochronousIrp.
+   * <p>
+   * This creates a IUsbIsochronousIrp with the indicated number of packets,
+   * each sized to the maximum number of bytes the isochronous endpoint
+   * transfers per service interval. The data array is allocated to hold all
+   * packets.
+   * <p>
+   * Isochronous pipes accept any IUsbIrp. A plain IUsbIrp is divided into
+   * packets of the maximum packet size.
+   * <p>
+   * The default implementation does not support isochronous IRPs.
+   *
+   * @param numberOfPackets The number of isochronous packets.
+   * @return A IUsbIsochronousIrp ready for use.
+   * @exception IllegalArgumentException      If the number of packets is not
+   *                                          positive.
+   * @exception UnsupportedOperationException If this IUsbPipe does not
+   *                                          support isochronous IRPs.
+   */
+  public default IUsbIsochronousIrp createUsbIsochronousIrp(int numberOfPackets) {
+    throw new UnsupportedOperationException("Isochronous IRPs are not supported by " + getClass().getName());
+  }
+
   /**
    * Adds the listener.
    *
@@ -422,4 +656,29 @@ public interface IUsbPipe {
    */
   public void removeUsbPipeListener(IUsbPipeListener listener);
 
+  /**
+   * Adds the IUsbIrp listener. IUsbIrp listeners receive every completed
+   * IUsbIrp directly, without an event object.
+   * <p>
+   * The default implementation adds a {@link UsbPipeIrpListenerAdapter} as
+   * pipe listener, which receives the IUsbIrps of the pipe events.
+   *
+   * @param listener The IUsbPipeIrpListener.
+   */
+  public default void addUsbPipeIrpListener(IUsbPipeIrpListener listener) {
+    addUsbPipeListener(new UsbPipeIrpListenerAdapter(listener));
+  }
+
+  /**
+   * Removes the IUsbIrp listener.
+   * <p>
+   * The default implementation removes the {@link UsbPipeIrpListenerAdapter}
+   * of the listener.
+   *
+   * @param listener The IUsbPipeIrpListener.
+   */
+  public default void removeUsbPipeIrpListener(IUsbPipeIrpListener listener) {
+    removeUsbPipeListener(new UsbPipeIrpListenerAdapter(listener));
+  }
+
 }
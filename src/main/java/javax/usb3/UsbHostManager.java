@@ -22,6 +22,7 @@ import java.util.ArrayList;
 import java.util.List;
 import javax.usb3.exception.UsbException;
 import javax.usb3.ri.UsbServices;
+import javax.usb3.spi.IUsbBackend;
 
 /**
  * Default programmer entry point for the {@code javax.usb} class library.
@@ -72,6 +73,35 @@ public final class UsbHostManager {
     return usbServices;
   }
 
+  /**
+   * Get the system IUsbServices implementation running on the indicated USB
+   * backend. The services are created on the backend if they do not exist yet.
+   * <p>
+   * This is typically used to run an application on the
+   * {@link javax.usb3.spi.SimulatedUsbBackend simulated backend} without USB
+   * hardware.
+   *
+   * @param backend The USB backend. Must not be null.
+   * @return The IUsbServices implementation instance.
+   * @exception UsbException          If there is an error creating the
+   *                                  UsbSerivces implementation.
+   * @exception IllegalStateException If the services already run on another
+   *                                  backend.
+   */
+  public static IUsbServices getUsbServices(final IUsbBackend backend) throws UsbException {
+    if (backend == null) {
+      throw new IllegalArgumentException("Backend must be set");
+    }
+    synchronized (USB_SERVICES_LOCK) {
+      if (null == usbServices) {
+        usbServices = new UsbServices(backend);
+      } else if (!(usbServices instanceof UsbServices) || ((UsbServices) usbServices).getBackend() != backend) {
+        throw new IllegalStateException("USB services already run on another backend");
+      }
+    }
+    return usbServices;
+  }
+
   /**
    * Get the virtual IUsbHub to which all physical Host Controller IUsbHubs are
    * attached.
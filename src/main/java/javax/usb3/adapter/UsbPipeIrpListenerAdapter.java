@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.adapter;
+
+import javax.usb3.event.IUsbPipeIrpListener;
+import javax.usb3.event.IUsbPipeListener;
+import javax.usb3.event.UsbPipeDataEvent;
+import javax.usb3.event.UsbPipeErrorEvent;
+import javax.usb3.event.UsbPipeEvent;
+
+/**
+ * Adapts an IUsbPipeIrpListener to the IUsbPipeListener events.
+ * <p>
+ * This is used by the default IUsbIrp listener methods of
+ * {@link javax.usb3.IUsbPipe IUsbPipe} for pipes that only send pipe events.
+ * The IUsbIrp listener is called for every event that carries an IUsbIrp.
+ * Two adapters are equal if they adapt the same listener, so that an adapter
+ * can be removed with a new adapter of the same listener.
+ *
+ * @author Jesse Caulfield
+ */
+public final class UsbPipeIrpListenerAdapter implements IUsbPipeListener {
+
+  /**
+   * The adapted IUsbIrp listener.
+   */
+  private final IUsbPipeIrpListener listener;
+
+  /**
+   * Construct a new adapter.
+   *
+   * @param listener The IUsbIrp listener to adapt. Must not be null.
+   */
+  public UsbPipeIrpListenerAdapter(final IUsbPipeIrpListener listener) {
+    if (listener == null) {
+      throw new IllegalArgumentException("listener must not be null");
+    }
+    this.listener = listener;
+  }
+
+  @Override
+  public void errorEventOccurred(final UsbPipeErrorEvent event) {
+    irpCompleted(event);
+  }
+
+  @Override
+  public void dataEventOccurred(final UsbPipeDataEvent event) {
+    irpCompleted(event);
+  }
+
+  /**
+   * Forwards the IUsbIrp of the event to the adapted listener.
+   *
+   * @param event The UsbPipeEvent.
+   */
+  private void irpCompleted(final UsbPipeEvent event) {
+    if (event.hasUsbIrp()) {
+      this.listener.irpCompleted(event.getUsbPipe(), event.getUsbIrp());
+    }
+  }
+
+  @Override
+  public int hashCode() {
+    return this.listener.hashCode();
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (obj == null || getClass() != obj.getClass()) {
+      return false;
+    }
+    return this.listener.equals(((UsbPipeIrpListenerAdapter) obj).listener);
+  }
+}
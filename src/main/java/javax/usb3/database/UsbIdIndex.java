@@ -0,0 +1,501 @@
+/*
+ * Copyright (C) 2016 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.database;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.usb3.enumerated.EUsbIdSection;
+
+/**
+ * A compact, read-only index of all sections of the USB ID Repository
+ * database: vendors and products, device classes, audio and video terminal
+ * types, HID descriptor, item, usage and country code names, physical
+ * descriptor names and languages.
+ * <p>
+ * Each entry is keyed by a long combining its {@link EUsbIdSection section},
+ * its nesting depth and up to three 16 bit IDs, e.g. vendor, product and
+ * interface. The index is a single read-only byte buffer holding the sorted
+ * keys, the name offsets and the packed UTF-8 names:
+ * <pre>
+ * int    magic
+ * int    version
+ * int    entry count (n)
+ * int    name storage length
+ * long[] keys, sorted ascending (n)
+ * int[]  name offsets (n + 1); entry i spans offset i to offset i + 1
+ * byte[] names
+ * </pre> Lookups binary search the keys directly in the buffer. A binary index
+ * file, including the bundled index extracted from the class path, is memory
+ * mapped, so its pages are shared and loaded on demand. The
+ * buffer is never modified, so an index is safe for use by concurrent threads
+ * without locking.
+ * <p>
+ * The index is precompiled from the {@code usb.ids} text file at build time
+ * (see {@link #main(java.lang.String[])}) so that it is loaded without
+ * parsing.
+ *
+ * @author Jesse Caulfield
+ */
+public final class UsbIdIndex {
+
+  /**
+   * "USBI". The magic number at the start of a binary index.
+   */
+  private static final int MAGIC = 0x55534249;
+
+  /**
+   * 2. The binary index format version.
+   */
+  private static final int VERSION = 2;
+
+  /**
+   * 16. The size of the binary index header in bytes.
+   */
+  private static final int HEADER_SIZE = 16;
+
+  /**
+   * The index buffer.
+   */
+  private final ByteBuffer buffer;
+
+  /**
+   * The number of entries.
+   */
+  private final int count;
+
+  /**
+   * The position of the name offsets in the buffer.
+   */
+  private final int offsetsPosition;
+
+  /**
+   * The position of the name storage in the buffer.
+   */
+  private final int namesPosition;
+
+  /**
+   * Construct a new index on a binary index buffer.
+   *
+   * @param buffer The binary index buffer, positioned at the index start.
+   * @throws IOException if the buffer does not hold a valid index
+   */
+  private UsbIdIndex(final ByteBuffer buffer) throws IOException {
+    this.buffer = buffer.slice().asReadOnlyBuffer();
+    if (this.buffer.capacity() < HEADER_SIZE
+      || this.buffer.getInt(0) != MAGIC
+      || this.buffer.getInt(4) != VERSION) {
+      throw new IOException("Not a USB ID index");
+    }
+    this.count = this.buffer.getInt(8);
+    final int namesLength = this.buffer.getInt(12);
+    this.offsetsPosition = HEADER_SIZE + 8 * this.count;
+    this.namesPosition = this.offsetsPosition + 4 * (this.count + 1);
+    if (this.count < 0 || namesLength < 0 || this.namesPosition + namesLength != this.buffer.capacity()) {
+      throw new IOException("Corrupt USB ID index");
+    }
+  }
+
+  /**
+   * Get an empty index.
+   *
+   * @return An index without entries.
+   */
+  static UsbIdIndex empty() {
+    try {
+      return pack(new TreeMap<Long, String>());
+    } catch (IOException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  /**
+   * Build the key of an entry.
+   *
+   * @param section The section.
+   * @param ids     The nested IDs. One to three IDs.
+   * @return The key.
+   */
+  private static long key(final EUsbIdSection section, final int... ids) {
+    if (ids.length < 1 || ids.length > 3) {
+      throw new IllegalArgumentException("One to three IDs are required");
+    }
+    long key = (long) section.ordinal() << 56 | (long) ids.length << 48;
+    for (int i = 0; i < ids.length; i++) {
+      key |= (long) (ids[i] & 0xffff) << (32 - 16 * i);
+    }
+    return key;
+  }
+
+  /**
+   * Parse the {@code usb.ids} text database.
+   * <p>
+   * Top level lines start either with a four digit hexadecimal vendor ID or
+   * with a section prefix and an ID, e.g. "C 00". Each tab before an ID nests
+   * the entry below the last entry of the enclosing level. Entries of an
+   * unknown section are skipped.
+   *
+   * @param stream The usb.ids text stream. The stream is not closed.
+   * @return The index.
+   * @throws IOException if the stream cannot be read
+   */
+  public static UsbIdIndex parse(final InputStream stream) throws IOException {
+    final Map<Long, String> entries = new TreeMap<>();
+    final BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
+    final int[] ids = new int[3];
+    EUsbIdSection section = null;
+    String line;
+    while ((line = reader.readLine()) != null) {
+      if (line.isEmpty() || line.charAt(0) == '#') {
+        continue;
+      }
+      int depth = 0;
+      while (depth < line.length() && line.charAt(depth) == '\t') {
+        depth++;
+      }
+      int start = depth;
+      if (depth == 0) {
+        /**
+         * A new top level entry: a vendor or a section entry.
+         */
+        section = EUsbIdSection.VENDOR;
+        final int space = line.indexOf(' ');
+        if (space > 0 && (space != 4 || parseId(line, 0) < 0)) {
+          section = EUsbIdSection.fromPrefix(line.substring(0, space));
+          start = space + 1;
+        }
+      } else if (depth > 2) {
+        continue;
+      }
+      final int end = idEnd(line, start);
+      final int id = parseId(line, start);
+      if (section == null || id < 0) {
+        /**
+         * An unknown section, or a line without ID. Skip its nested lines.
+         */
+        if (depth == 0) {
+          section = null;
+        }
+        continue;
+      }
+      ids[depth] = id;
+      final int[] path = new int[depth + 1];
+      System.arraycopy(ids, 0, path, 0, depth + 1);
+      final Long key = key(section, path);
+      if (!entries.containsKey(key)) {
+        entries.put(key, line.substring(end).trim());
+      }
+    }
+    return pack(entries);
+  }
+
+  /**
+   * Find the end of a hexadecimal ID.
+   *
+   * @param line  The line.
+   * @param start The start of the ID in the line.
+   * @return The index of the first white space after the ID, or the line
+   *         length.
+   */
+  private static int idEnd(final String line, final int start) {
+    int end = start;
+    while (end < line.length() && !Character.isWhitespace(line.charAt(end))) {
+      end++;
+    }
+    return end;
+  }
+
+  /**
+   * Parse a hexadecimal ID of one to four digits followed by white space.
+   *
+   * @param line  The line.
+   * @param start The start of the ID in the line.
+   * @return The ID, or -1 if the line has no ID at the start.
+   */
+  private static int parseId(final String line, final int start) {
+    final int end = idEnd(line, start);
+    if (end == start || end - start > 4 || end == line.length()) {
+      return -1;
+    }
+    int id = 0;
+    for (int i = start; i < end; i++) {
+      final int digit = Character.digit(line.charAt(i), 16);
+      if (digit < 0) {
+        return -1;
+      }
+      id = id << 4 | digit;
+    }
+    return id;
+  }
+
+  /**
+   * Pack sorted entries into a binary index.
+   *
+   * @param entries The entries, in key order.
+   * @return The index.
+   * @throws IOException if the index cannot be built
+   */
+  private static UsbIdIndex pack(final Map<Long, String> entries) throws IOException {
+    final ByteArrayOutputStream names = new ByteArrayOutputStream();
+    final int[] offsets = new int[entries.size() + 1];
+    int i = 0;
+    for (String name : entries.values()) {
+      offsets[i++] = names.size();
+      final byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+      names.write(bytes, 0, bytes.length);
+    }
+    offsets[i] = names.size();
+
+    final ByteArrayOutputStream stream = new ByteArrayOutputStream(HEADER_SIZE + 12 * entries.size() + 4 + names.size());
+    final DataOutputStream output = new DataOutputStream(stream);
+    output.writeInt(MAGIC);
+    output.writeInt(VERSION);
+    output.writeInt(entries.size());
+    output.writeInt(names.size());
+    for (Long key : entries.keySet()) {
+      output.writeLong(key);
+    }
+    for (int offset : offsets) {
+      output.writeInt(offset);
+    }
+    names.writeTo(output);
+    output.flush();
+    return new UsbIdIndex(ByteBuffer.wrap(stream.toByteArray()));
+  }
+
+  /**
+   * Read a binary index written by {@link #write(java.io.OutputStream)}. The
+   * index is copied to the heap; use {@link #extract(java.io.InputStream)} or
+   * {@link #load(java.io.File)} to map an index.
+   *
+   * @param stream The binary index stream. The stream is not closed.
+   * @return The index.
+   * @throws IOException if the stream cannot be read or is not a valid index
+   */
+  public static UsbIdIndex read(final InputStream stream) throws IOException {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final byte[] chunk = new byte[8192];
+    int length;
+    while ((length = stream.read(chunk)) != -1) {
+      bytes.write(chunk, 0, length);
+    }
+    return new UsbIdIndex(ByteBuffer.wrap(bytes.toByteArray()));
+  }
+
+  /**
+   * Extract a binary index written by {@link #write(java.io.OutputStream)},
+   * e.g. a class path resource, to a temporary file and memory map it. The
+   * pages of the index are then loaded on demand and shared instead of being
+   * copied to the heap.
+   * <p>
+   * The temporary file is deleted once mapped where the platform allows it,
+   * otherwise on exit. If no temporary file can be created the index is read
+   * to the heap as by {@link #read(java.io.InputStream)}.
+   *
+   * @param stream The binary index stream. The stream is not closed.
+   * @return The index.
+   * @throws IOException if the stream cannot be read or is not a valid index
+   */
+  public static UsbIdIndex extract(final InputStream stream) throws IOException {
+    final Path file;
+    try {
+      file = Files.createTempFile("usb.ids", ".idx");
+    } catch (IOException | SecurityException ex) {
+      Logger.getLogger(UsbIdIndex.class.getName()).log(Level.FINE, "Unable to extract the USB ID index, reading it to the heap: {0}", ex.getMessage());
+      return read(stream);
+    }
+    try {
+      Files.copy(stream, file, StandardCopyOption.REPLACE_EXISTING);
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        return new UsbIdIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+      }
+    } finally {
+      try {
+        Files.delete(file);
+      } catch (IOException ex) {
+        /**
+         * The platform does not delete a mapped file.
+         */
+        file.toFile().deleteOnExit();
+      }
+    }
+  }
+
+  /**
+   * Load an index file. A binary index file is memory mapped read-only. Any
+   * other file is parsed as a {@code usb.ids} text database.
+   *
+   * @param file The binary index or usb.ids file.
+   * @return The index.
+   * @throws IOException if the file cannot be read or parsed
+   */
+  public static UsbIdIndex load(final File file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      final ByteBuffer magic = ByteBuffer.allocate(4);
+      channel.read(magic, 0);
+      if (magic.position() == 4 && magic.getInt(0) == MAGIC) {
+        /**
+         * The mapping remains valid after the channel is closed.
+         */
+        return new UsbIdIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+      }
+    }
+    try (InputStream stream = new FileInputStream(file)) {
+      return parse(stream);
+    }
+  }
+
+  /**
+   * Write this index in binary form.
+   *
+   * @param stream The output stream. The stream is flushed, not closed.
+   * @throws IOException if the stream cannot be written
+   */
+  public void write(final OutputStream stream) throws IOException {
+    final byte[] chunk = new byte[8192];
+    final ByteBuffer source = this.buffer.duplicate();
+    source.clear();
+    while (source.hasRemaining()) {
+      final int length = Math.min(chunk.length, source.remaining());
+      source.get(chunk, 0, length);
+      stream.write(chunk, 0, length);
+    }
+    stream.flush();
+  }
+
+  /**
+   * Get the name of an entry.
+   * <p>
+   * For example {@code getName(EUsbIdSection.CLASS, 0x03, 0x01, 0x02)} gets
+   * the name of the HID boot interface mouse protocol.
+   *
+   * @param section The section.
+   * @param ids     The nested IDs of the entry. One to three IDs.
+   * @return The name, or null if the entry is not in the index.
+   */
+  public String getName(final EUsbIdSection section, final int... ids) {
+    return getName(key(section, ids));
+  }
+
+  /**
+   * Get the name of a vendor.
+   *
+   * @param vendorId The USB vendor ID.
+   * @return The vendor name, or null if the vendor is not in the index.
+   */
+  public String getVendorName(final int vendorId) {
+    return getName(key(EUsbIdSection.VENDOR, vendorId));
+  }
+
+  /**
+   * Get the name of a product.
+   *
+   * @param vendorId  The USB vendor ID.
+   * @param productId The USB product ID.
+   * @return The product name, or null if the product is not in the index.
+   */
+  public String getProductName(final int vendorId, final int productId) {
+    return getName(key(EUsbIdSection.VENDOR, vendorId, productId));
+  }
+
+  /**
+   * Look up a name.
+   *
+   * @param key The entry key.
+   * @return The name, or null if the key is not found.
+   */
+  private String getName(final long key) {
+    int low = 0;
+    int high = this.count - 1;
+    while (low <= high) {
+      final int middle = (low + high) >>> 1;
+      final long value = this.buffer.getLong(HEADER_SIZE + 8 * middle);
+      if (value < key) {
+        low = middle + 1;
+      } else if (value > key) {
+        high = middle - 1;
+      } else {
+        final int start = this.buffer.getInt(this.offsetsPosition + 4 * middle);
+        final int end = this.buffer.getInt(this.offsetsPosition + 4 * middle + 4);
+        final byte[] name = new byte[end - start];
+        for (int i = 0; i < name.length; i++) {
+          name[i] = this.buffer.get(this.namesPosition + start + i);
+        }
+        return new String(name, StandardCharsets.UTF_8);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return The number of entries in the index.
+   */
+  public int getEntryCount() {
+    return this.count;
+  }
+
+  /**
+   * @return TRUE if the index is a memory mapped file, FALSE if it is held on
+   *         the heap.
+   */
+  public boolean isMapped() {
+    return this.buffer.isDirect();
+  }
+
+  /**
+   * Get the memory footprint of the index data: the keys, the name offsets
+   * and the packed names. For a mapped index this is the size of the mapping.
+   *
+   * @return The memory footprint in bytes.
+   */
+  public long getMemoryFootprint() {
+    return this.buffer.capacity();
+  }
+
+  /**
+   * Precompile the {@code usb.ids} text database into a binary index. This is
+   * run by the build to generate the index packaged with the library.
+   *
+   * @param args The usb.ids text file and the binary index file to write.
+   * @throws IOException if a file cannot be read or written
+   */
+  public static void main(final String[] args) throws IOException {
+    if (args.length != 2) {
+      throw new IllegalArgumentException("Usage: UsbIdIndex <usb.ids> <index>");
+    }
+    final UsbIdIndex index;
+    try (InputStream input = new FileInputStream(args[0])) {
+      index = parse(input);
+    }
+    final File output = new File(args[1]);
+    if (output.getParentFile() != null) {
+      output.getParentFile().mkdirs();
+    }
+    try (OutputStream stream = new BufferedOutputStream(new FileOutputStream(output))) {
+      index.write(stream);
+    }
+  }
+}
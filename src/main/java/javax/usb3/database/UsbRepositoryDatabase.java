@@ -16,15 +16,31 @@
  */
 package javax.usb3.database;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
-import java.util.Scanner;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.usb3.enumerated.EUsbIdSection;
+import javax.usb3.ri.UsbServiceInstanceConfiguration;
 
 /**
  * A utility class to read and parse the USB ID Repository database and identify
  * a USB Vendor and Product ID.
  * <p>
- * This class scans the {@code usb.ids} database file to identify the provided
- * vendor and product IDs. The {@code usb.ids} file is a publicly available
+ * This class looks up the provided vendor and product IDs, and the names in
+ * all other {@link EUsbIdSection sections}, in a {@link UsbIdIndex compact
+ * index} of the {@code usb.ids} database file. The index is loaded once, on
+ * first use, from the file named by the
+ * {@link UsbServiceInstanceConfiguration#DATABASE} system property or else
+ * from the binary index precompiled at build time, which is extracted to a
+ * temporary file and memory mapped. If the binary index is not available the
+ * bundled {@code usb.ids} file is parsed instead.
+ * <p>
+ * A newer database can be loaded at runtime with
+ * {@link #reload(java.io.File)}. The index is replaced atomically: lookups in
+ * progress complete on the previous index and lookups are never blocked.
+ * The {@code usb.ids} file is a publicly available
  * repository containing all known ID's used in USB devices: ID's of vendors,
  * devices, subsystems and device classes.
  * <p>
@@ -39,6 +55,126 @@ import java.util.Scanner;
  */
 public class UsbRepositoryDatabase {
 
+  /**
+   * The usb.ids text database resource.
+   */
+  private static final String DATABASE = "META-INF/database/usb.ids";
+
+  /**
+   * The binary index resource precompiled from the usb.ids database at build
+   * time.
+   */
+  private static final String DATABASE_INDEX = "META-INF/database/usb.ids.idx";
+
+  /**
+   * The database index. Null until first used. Replaced as a whole on reload.
+   */
+  private static volatile UsbIdIndex index;
+
+  /**
+   * Get the database index, loading it on first use.
+   *
+   * @return the database index. Never null.
+   */
+  private static UsbIdIndex getIndex() {
+    UsbIdIndex current = index;
+    if (current == null) {
+      synchronized (UsbRepositoryDatabase.class) {
+        current = index;
+        if (current == null) {
+          current = loadIndex();
+          index = current;
+        }
+      }
+    }
+    return current;
+  }
+
+  /**
+   * Load the database index: the file named by the database system property
+   * if set, otherwise the precompiled binary index if available, extracted
+   * and memory mapped, otherwise the parsed usb.ids database.
+   *
+   * @return the database index. Never null. If no database can be read the
+   *         index is empty.
+   */
+  private static UsbIdIndex loadIndex() {
+    UsbIdIndex loaded = null;
+    final String path = System.getProperty(UsbServiceInstanceConfiguration.DATABASE);
+    if (path != null) {
+      try {
+        loaded = UsbIdIndex.load(new File(path));
+      } catch (IOException ex) {
+        Logger.getLogger(UsbRepositoryDatabase.class.getName()).log(Level.WARNING, "Unable to load the USB ID database {0}: {1}", new Object[]{path, ex.getMessage()});
+      }
+    }
+    final ClassLoader classLoader = UsbRepositoryDatabase.class.getClassLoader();
+    if (loaded == null) {
+      try (InputStream stream = classLoader.getResourceAsStream(DATABASE_INDEX)) {
+        if (stream != null) {
+          loaded = UsbIdIndex.extract(stream);
+        }
+      } catch (IOException ex) {
+        Logger.getLogger(UsbRepositoryDatabase.class.getName()).log(Level.WARNING, "Unable to read the USB ID index: {0}", ex.getMessage());
+      }
+    }
+    if (loaded == null) {
+      try (InputStream stream = classLoader.getResourceAsStream(DATABASE)) {
+        loaded = stream == null ? UsbIdIndex.empty() : UsbIdIndex.parse(stream);
+      } catch (IOException ex) {
+        Logger.getLogger(UsbRepositoryDatabase.class.getName()).log(Level.WARNING, "Unable to parse the USB ID database: {0}", ex.getMessage());
+        loaded = UsbIdIndex.empty();
+      }
+    }
+    Logger.getLogger(UsbRepositoryDatabase.class.getName()).log(Level.FINE, "USB ID index loaded: {0} entries, {1} bytes",
+                                                                new Object[]{loaded.getEntryCount(), loaded.getMemoryFootprint()});
+    return loaded;
+  }
+
+  /**
+   * Load a newer database and replace the current index. The file is either
+   * a {@code usb.ids} text database or a binary index precompiled by
+   * {@link UsbIdIndex#main(java.lang.String[])}, which is memory mapped.
+   * <p>
+   * The new index is built before it replaces the current one. Concurrent
+   * lookups are not blocked and see either the previous or the new index.
+   *
+   * @param file the usb.ids or binary index file
+   * @throws IOException if the file cannot be read or parsed. The current
+   *                     index is kept.
+   */
+  public static void reload(final File file) throws IOException {
+    final UsbIdIndex loaded = UsbIdIndex.load(file);
+    index = loaded;
+    Logger.getLogger(UsbRepositoryDatabase.class.getName()).log(Level.INFO, "USB ID index reloaded from {0}: {1} entries, {2} bytes",
+                                                                new Object[]{file, loaded.getEntryCount(), loaded.getMemoryFootprint()});
+  }
+
+  /**
+   * Get the memory footprint of the loaded database index. This loads the
+   * index if not already loaded.
+   *
+   * @return The memory footprint in bytes.
+   */
+  public static long getMemoryFootprint() {
+    return getIndex().getMemoryFootprint();
+  }
+
+  /**
+   * Get the name of an entry in any section of the database.
+   * <p>
+   * For example {@code getName(EUsbIdSection.LANGUAGE, 0x0009, 0x01)} gets
+   * "US" (English, United States).
+   *
+   * @param section the database section
+   * @param ids     the nested IDs of the entry, e.g. class, subclass and
+   *                protocol. One to three IDs.
+   * @return the name, or null if the entry is not in the database
+   */
+  public static String getName(final EUsbIdSection section, final int... ids) {
+    return getIndex().getName(section, ids);
+  }
+
   /**
    *
    * Lookup a USB vendor + product id in the database.
@@ -53,32 +189,54 @@ public class UsbRepositoryDatabase {
    *                   database.
    */
   public static UsbDeviceDescription lookup(String vendorId, String productId) throws Exception {
-    InputStream stream = UsbRepositoryDatabase.class.getClassLoader().getResourceAsStream("META-INF/database/usb.ids");
-    try (Scanner scanner = new Scanner(stream)) {
-      UsbDeviceDescription usbId = new UsbDeviceDescription();
-      while (scanner.hasNextLine()) {
-        String line = scanner.nextLine();
-        /**
-         * Skip comments
-         */
-        if (line.startsWith("#")) {
-          continue;
-        }
-        /**
-         * First match the vendor. Only after (and if) the vendor matches, then
-         * try to match the device. Return as soon as the device ID is found.
-         */
-        if (line.startsWith(vendorId)) {
-          usbId.setVendorId(line.substring(0, 4));
-          usbId.setVendorName(line.substring(5, line.trim().length()).trim());
-        } else if (usbId.hasVendorId() && line.trim().startsWith(productId)) {
-          usbId.setDeviceId(line.trim().substring(0, 4));
-          usbId.setDeviceName(line.trim().substring(5, line.trim().length()).trim());
-          return usbId;
-        }
-      }
+    final int vendor;
+    final int product;
+    try {
+      vendor = Integer.parseInt(vendorId.trim(), 16);
+      product = Integer.parseInt(productId.trim(), 16);
+    } catch (NumberFormatException ex) {
+      throw new Exception(vendorId + ":" + productId + " not found in the USB database.");
+    }
+    return lookup(vendor, product);
+  }
+
+  /**
+   * Lookup a USB vendor + product id in the index.
+   *
+   * @param vendorId  The USB vendor ID.
+   * @param productId The USB device ID.
+   * @return the USB ID database entry corresponding to the vendor and device
+   *         ID.
+   * @throws Exception if the vendor and device ID are not found in the
+   *                   database.
+   */
+  private static UsbDeviceDescription lookup(final int vendorId, final int productId) throws Exception {
+    final UsbIdIndex current = getIndex();
+    final String vendorName = current.getVendorName(vendorId);
+    final String deviceName = vendorName == null ? null : current.getProductName(vendorId, productId);
+    if (deviceName == null) {
+      throw new Exception(String.format("%04x:%04x not found in the USB database.", vendorId & 0xffff, productId & 0xffff));
+    }
+    final UsbDeviceDescription usbId = new UsbDeviceDescription();
+    usbId.setVendorId(toHexString(vendorId));
+    usbId.setVendorName(vendorName);
+    usbId.setDeviceId(toHexString(productId));
+    usbId.setDeviceName(deviceName);
+    return usbId;
+  }
+
+  /**
+   * Format a USB ID as four lower case hexadecimal digits, e.g. "03eb".
+   *
+   * @param id The USB ID.
+   * @return The formatted ID.
+   */
+  private static String toHexString(final int id) {
+    final char[] chars = new char[4];
+    for (int i = 0; i < 4; i++) {
+      chars[i] = Character.forDigit(id >> (12 - 4 * i) & 0xf, 16);
     }
-    throw new Exception(vendorId + ":" + productId + " not found in the USB database.");
+    return new String(chars);
   }
 
   /**
@@ -93,7 +251,7 @@ public class UsbRepositoryDatabase {
    *                   database.
    */
   public static UsbDeviceDescription lookup(short vendorId, short productId) throws Exception {
-    return lookup(String.format("%04x", vendorId), String.format("%04x", productId));
+    return lookup(vendorId & 0xffff, productId & 0xffff);
   }
 
   /**
@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.descriptor;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.usb3.IUsbConfigurationDescriptor;
+import javax.usb3.enumerated.EDescriptorType;
+
+/**
+ * 9.6.3 Configuration Descriptor flyweight view.
+ * <p>
+ * A read-only view over a complete configuration descriptor as returned by a
+ * GET_DESCRIPTOR(CONFIGURATION) request: the configuration descriptor followed
+ * by all interface, endpoint and class-specific descriptors, wTotalLength
+ * bytes in all. No fields are copied; every accessor reads the underlying
+ * buffer. The interface and endpoint descriptors are likewise exposed as
+ * {@link UsbInterfaceDescriptorView} and {@link UsbEndpointDescriptorView}
+ * views over the same buffer.
+ * <p>
+ * Class-specific and other non-standard descriptors are not interpreted. They
+ * are available unparsed from the {@code extra()} method of the standard
+ * descriptor they follow.
+ * <p>
+ * The buffer content must not be modified while the view is in use.
+ *
+ * @author Jesse Caulfield
+ */
+public final class UsbConfigurationDescriptorView implements IUsbConfigurationDescriptor {
+
+  /**
+   * The complete configuration descriptor, little-endian.
+   */
+  private final ByteBuffer buffer;
+
+  /**
+   * The interface descriptors, in descriptor order.
+   */
+  private final List<UsbInterfaceDescriptorView> interfaces;
+
+  /**
+   * Construct a view over a complete configuration descriptor.
+   *
+   * @param data The descriptor data, from its position to its limit. Must
+   *             hold at least wTotalLength bytes.
+   * @throws IllegalArgumentException if the data does not hold a complete
+   *                                  configuration descriptor
+   */
+  public UsbConfigurationDescriptorView(final ByteBuffer data) {
+    final int totalLength = getTotalLength(data);
+    if (totalLength < 0 || (data.get(data.position()) & 0xff) < EDescriptorType.CONFIGURATION.getLength()) {
+      throw new IllegalArgumentException("Not a configuration descriptor");
+    }
+    if (totalLength > data.remaining()) {
+      throw new IllegalArgumentException("Truncated configuration descriptor: " + data.remaining() + " of " + totalLength + " bytes");
+    }
+    final ByteBuffer slice = data.slice();
+    slice.limit(totalLength);
+    this.buffer = slice.asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+    /**
+     * Locate the interface descriptors.
+     */
+    final List<UsbInterfaceDescriptorView> interfaceViews = new ArrayList<>();
+    for (int offset = next(this.buffer, 0); offset >= 0; offset = next(this.buffer, offset)) {
+      if (this.buffer.get(offset + 1) == EDescriptorType.INTERFACE.getByteCode()) {
+        interfaceViews.add(new UsbInterfaceDescriptorView(this.buffer, offset));
+      }
+    }
+    this.interfaces = Collections.unmodifiableList(interfaceViews);
+  }
+
+  /**
+   * Get the total length of a configuration descriptor from its header. This
+   * needs only the first four bytes, so it can be used to size the buffer for
+   * the complete descriptor.
+   *
+   * @param data The descriptor data, from its position.
+   * @return The wTotalLength, or -1 if the data does not start with a
+   *         configuration descriptor header.
+   */
+  public static int getTotalLength(final ByteBuffer data) {
+    final int position = data.position();
+    if (data.remaining() < 4 || data.get(position + 1) != EDescriptorType.CONFIGURATION.getByteCode()) {
+      return -1;
+    }
+    return (data.get(position + 2) & 0xff) | (data.get(position + 3) & 0xff) << 8;
+  }
+
+  /**
+   * Find the next descriptor in a descriptor buffer.
+   *
+   * @param buffer The descriptor buffer.
+   * @param offset The offset of the current descriptor.
+   * @return The offset of the next descriptor, or -1 if there is none or the
+   *         remaining data is malformed.
+   */
+  static int next(final ByteBuffer buffer, final int offset) {
+    final int next = offset + (buffer.get(offset) & 0xff);
+    if (next == offset || next + 2 > buffer.limit()) {
+      return -1;
+    }
+    final int length = buffer.get(next) & 0xff;
+    return length < 2 || next + length > buffer.limit() ? -1 : next;
+  }
+
+  /**
+   * Get the extra descriptors following a standard descriptor: all
+   * descriptors up to the next interface or endpoint descriptor.
+   *
+   * @param buffer The descriptor buffer.
+   * @param offset The offset of the standard descriptor.
+   * @return A read-only little-endian view of the extra descriptors. Empty if
+   *         there are none.
+   */
+  static ByteBuffer extra(final ByteBuffer buffer, final int offset) {
+    final int start = Math.min(offset + (buffer.get(offset) & 0xff), buffer.limit());
+    int end = start;
+    for (int next = next(buffer, offset); next >= 0; next = next(buffer, next)) {
+      final byte type = buffer.get(next + 1);
+      if (type == EDescriptorType.INTERFACE.getByteCode() || type == EDescriptorType.ENDPOINT.getByteCode()) {
+        break;
+      }
+      end = next + (buffer.get(next) & 0xff);
+    }
+    final ByteBuffer extra = buffer.duplicate();
+    extra.limit(end).position(start);
+    return extra.slice().order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  /**
+   * Get the interface descriptors of all interface alternate settings, in
+   * descriptor order.
+   *
+   * @return The interface descriptor views. Never null.
+   */
+  public List<UsbInterfaceDescriptorView> getInterfaceDescriptors() {
+    return this.interfaces;
+  }
+
+  /**
+   * Get the extra descriptors following the configuration descriptor, e.g.
+   * interface association descriptors.
+   *
+   * @return A read-only view of the extra descriptors. Empty if there are
+   *         none.
+   */
+  public ByteBuffer extra() {
+    return extra(this.buffer, 0);
+  }
+
+  /**
+   * Get the complete configuration descriptor.
+   *
+   * @return A read-only view of the wTotalLength descriptor bytes.
+   */
+  public ByteBuffer getData() {
+    return this.buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  @Override
+  public byte bLength() {
+    return this.buffer.get(0);
+  }
+
+  @Override
+  public EDescriptorType descriptorType() {
+    return EDescriptorType.CONFIGURATION;
+  }
+
+  @Override
+  public byte bDescriptorType() {
+    return this.buffer.get(1);
+  }
+
+  @Override
+  public short wTotalLength() {
+    return this.buffer.getShort(2);
+  }
+
+  @Override
+  public byte bNumInterfaces() {
+    return this.buffer.get(4);
+  }
+
+  @Override
+  public byte bConfigurationValue() {
+    return this.buffer.get(5);
+  }
+
+  @Override
+  public byte iConfiguration() {
+    return this.buffer.get(6);
+  }
+
+  @Override
+  public byte bmAttributes() {
+    return this.buffer.get(7);
+  }
+
+  @Override
+  public byte bMaxPower() {
+    return this.buffer.get(8);
+  }
+
+  @Override
+  public String toString() {
+    return "Configuration Descriptor view: bConfigurationValue " + (bConfigurationValue() & 0xff)
+      + ", " + this.interfaces.size() + " interface settings, " + this.buffer.limit() + " bytes";
+  }
+}
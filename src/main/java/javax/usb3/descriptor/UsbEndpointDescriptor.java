@@ -40,6 +40,21 @@ import org.usb4java.EndpointDescriptor;
  */
 public final class UsbEndpointDescriptor extends AUsbEndpointDescriptor {
 
+  /**
+   * Construct a new UsbEndpointDescriptor instance.
+   *
+   * @param bEndpointAddress The address of the endpoint.
+   * @param bmAttributes     The endpoint attributes.
+   * @param wMaxPacketSize   The maximum packet size.
+   * @param bInterval        The poll interval.
+   */
+  public UsbEndpointDescriptor(final BEndpointAddress bEndpointAddress,
+                               final byte bmAttributes,
+                               final short wMaxPacketSize,
+                               final byte bInterval) {
+    super(bEndpointAddress, bmAttributes, wMaxPacketSize, bInterval);
+  }
+
   /**
    * Construct a new UsbEndpointDescriptor instance from a endpoint descriptor.
    *
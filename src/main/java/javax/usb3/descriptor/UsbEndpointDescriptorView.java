@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.descriptor;
+
+import java.nio.ByteBuffer;
+import javax.usb3.IUsbEndpointDescriptor;
+import javax.usb3.enumerated.EDescriptorType;
+import javax.usb3.request.BEndpointAddress;
+
+/**
+ * 9.6.6 Endpoint Descriptor flyweight view.
+ * <p>
+ * A read-only view over an endpoint descriptor within a complete
+ * configuration descriptor. Created by {@link UsbInterfaceDescriptorView}.
+ *
+ * @author Jesse Caulfield
+ */
+public final class UsbEndpointDescriptorView implements IUsbEndpointDescriptor {
+
+  /**
+   * The complete configuration descriptor, little-endian.
+   */
+  private final ByteBuffer buffer;
+
+  /**
+   * The offset of this endpoint descriptor in the buffer.
+   */
+  private final int offset;
+
+  /**
+   * Construct a view over an endpoint descriptor.
+   *
+   * @param buffer The complete configuration descriptor, little-endian.
+   * @param offset The offset of the endpoint descriptor.
+   */
+  UsbEndpointDescriptorView(final ByteBuffer buffer, final int offset) {
+    this.buffer = buffer;
+    this.offset = offset;
+  }
+
+  /**
+   * Get the class-specific and other extra descriptors following this
+   * endpoint descriptor, e.g. a SuperSpeed endpoint companion descriptor.
+   *
+   * @return A read-only view of the extra descriptors. Empty if there are
+   *         none.
+   */
+  public ByteBuffer extra() {
+    return UsbConfigurationDescriptorView.extra(this.buffer, this.offset);
+  }
+
+  @Override
+  public byte bLength() {
+    return this.buffer.get(this.offset);
+  }
+
+  @Override
+  public EDescriptorType descriptorType() {
+    return EDescriptorType.ENDPOINT;
+  }
+
+  @Override
+  public byte bDescriptorType() {
+    return this.buffer.get(this.offset + 1);
+  }
+
+  @Override
+  public BEndpointAddress endpointAddress() {
+    return BEndpointAddress.getInstance(bEndpointAddress());
+  }
+
+  @Override
+  public byte bEndpointAddress() {
+    return this.buffer.get(this.offset + 2);
+  }
+
+  @Override
+  public byte bmAttributes() {
+    return this.buffer.get(this.offset + 3);
+  }
+
+  @Override
+  public short wMaxPacketSize() {
+    return this.buffer.getShort(this.offset + 4);
+  }
+
+  @Override
+  public byte bInterval() {
+    return this.buffer.get(this.offset + 6);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("Endpoint Descriptor view: bEndpointAddress 0x%02x, wMaxPacketSize %d",
+                         bEndpointAddress() & 0xff, wMaxPacketSize() & 0xffff);
+  }
+}
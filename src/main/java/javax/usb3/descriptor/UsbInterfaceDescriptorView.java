@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.descriptor;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import javax.usb3.IUsbEndpointDescriptor;
+import javax.usb3.IUsbInterfaceDescriptor;
+import javax.usb3.enumerated.EDescriptorType;
+import javax.usb3.enumerated.EUSBClassCode;
+
+/**
+ * 9.6.5 Interface Descriptor flyweight view.
+ * <p>
+ * A read-only view over an interface descriptor within a complete
+ * configuration descriptor. Created by {@link UsbConfigurationDescriptorView}.
+ *
+ * @author Jesse Caulfield
+ */
+public final class UsbInterfaceDescriptorView implements IUsbInterfaceDescriptor {
+
+  /**
+   * The complete configuration descriptor, little-endian.
+   */
+  private final ByteBuffer buffer;
+
+  /**
+   * The offset of this interface descriptor in the buffer.
+   */
+  private final int offset;
+
+  /**
+   * The endpoint descriptors of this interface setting.
+   */
+  private final UsbEndpointDescriptorView[] endpoints;
+
+  /**
+   * Construct a view over an interface descriptor.
+   *
+   * @param buffer The complete configuration descriptor, little-endian.
+   * @param offset The offset of the interface descriptor.
+   */
+  UsbInterfaceDescriptorView(final ByteBuffer buffer, final int offset) {
+    this.buffer = buffer;
+    this.offset = offset;
+    final List<UsbEndpointDescriptorView> endpointViews = new ArrayList<>();
+    for (int next = UsbConfigurationDescriptorView.next(buffer, offset); next >= 0; next = UsbConfigurationDescriptorView.next(buffer, next)) {
+      final byte type = buffer.get(next + 1);
+      if (type == EDescriptorType.INTERFACE.getByteCode()) {
+        break;
+      }
+      if (type == EDescriptorType.ENDPOINT.getByteCode()) {
+        endpointViews.add(new UsbEndpointDescriptorView(buffer, next));
+      }
+    }
+    this.endpoints = endpointViews.toArray(new UsbEndpointDescriptorView[endpointViews.size()]);
+  }
+
+  /**
+   * Get the class-specific and other extra descriptors following this
+   * interface descriptor, up to its first endpoint descriptor.
+   *
+   * @return A read-only view of the extra descriptors. Empty if there are
+   *         none.
+   */
+  public ByteBuffer extra() {
+    return UsbConfigurationDescriptorView.extra(this.buffer, this.offset);
+  }
+
+  @Override
+  public byte bLength() {
+    return this.buffer.get(this.offset);
+  }
+
+  @Override
+  public EDescriptorType descriptorType() {
+    return EDescriptorType.INTERFACE;
+  }
+
+  @Override
+  public byte bDescriptorType() {
+    return this.buffer.get(this.offset + 1);
+  }
+
+  @Override
+  public byte bInterfaceNumber() {
+    return this.buffer.get(this.offset + 2);
+  }
+
+  @Override
+  public byte bAlternateSetting() {
+    return this.buffer.get(this.offset + 3);
+  }
+
+  @Override
+  public byte bNumEndpoints() {
+    return this.buffer.get(this.offset + 4);
+  }
+
+  @Override
+  public EUSBClassCode interfaceClass() {
+    return EUSBClassCode.fromByteCode(bInterfaceClass());
+  }
+
+  @Override
+  public byte bInterfaceClass() {
+    return this.buffer.get(this.offset + 5);
+  }
+
+  @Override
+  public byte bInterfaceSubClass() {
+    return this.buffer.get(this.offset + 6);
+  }
+
+  @Override
+  public byte bInterfaceProtocol() {
+    return this.buffer.get(this.offset + 7);
+  }
+
+  @Override
+  public byte iInterface() {
+    return this.buffer.get(this.offset + 8);
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The endpoints are the endpoint descriptors actually present in the
+   * configuration descriptor.
+   */
+  @Override
+  public IUsbEndpointDescriptor[] endpoint() {
+    return this.endpoints.clone();
+  }
+
+  @Override
+  public String toString() {
+    return "Interface Descriptor view: bInterfaceNumber " + (bInterfaceNumber() & 0xff)
+      + ", bAlternateSetting " + (bAlternateSetting() & 0xff) + ", " + this.endpoints.length + " endpoints";
+  }
+}
@@ -305,7 +305,7 @@ public enum EDescriptorType {
   }
 
   /**
-   * Get the {@code wValue} encoded byte for a GET_DESCRIPTOR query.
+   * Get the {@code wValue} encoded word for a GET_DESCRIPTOR query.
    * <p>
    * The wValue field specifies the descriptor type in the high byte (refer to
    * Table 9-5) and the descriptor index in the low byte. The descriptor index
@@ -315,10 +315,10 @@ public enum EDescriptorType {
    *
    * @param index The descriptor index. The range is 0 to one less than the
    *              number of descriptors of the indicated type.
-   * @return the coded byte for a bRequest field
+   * @return the coded word for a wValue field
    */
-  public byte getWValue(byte index) {
-    return (byte) ((byteCode & 0xff) << 8 | (index & 0xff));
+  public short getWValue(byte index) {
+    return (short) ((byteCode & 0xff) << 8 | (index & 0xff));
   }
 
   /**
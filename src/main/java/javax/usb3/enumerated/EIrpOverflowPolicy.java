@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.enumerated;
+
+/**
+ * An enumerated list of policies applied when an IRP is submitted to a
+ * bounded IRP queue which is full.
+ *
+ * @author Jesse Caulfield
+ */
+public enum EIrpOverflowPolicy {
+
+  /**
+   * The submitting thread blocks until the queue has room for the IRP.
+   */
+  BLOCK,
+  /**
+   * The submission fails immediately with a
+   * {@link javax.usb3.exception.UsbQueueFullException UsbQueueFullException}.
+   * The IRP is not queued.
+   */
+  FAIL,
+  /**
+   * The oldest queued IRP is removed from the queue to make room. It completes
+   * with a {@link javax.usb3.exception.UsbQueueFullException UsbQueueFullException}.
+   */
+  DROP_OLDEST,
+  /**
+   * The submitted IRP is not queued. It completes with a
+   * {@link javax.usb3.exception.UsbQueueFullException UsbQueueFullException}.
+   */
+  DROP_NEWEST;
+
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.enumerated;
+
+/**
+ * An enumerated list of IRP priority classes.
+ * <p>
+ * Each IRP queue holds one FIFO lane per priority class. The lanes are served
+ * according to the queue {@link EIrpScheduling scheduling} policy. Within a
+ * lane IRPs are always processed in submission order.
+ *
+ * @author Jesse Caulfield
+ */
+public enum EIrpPriority {
+
+  /**
+   * Urgent IRPs such as status polls or stop commands.
+   */
+  HIGH(16),
+  /**
+   * The default priority.
+   */
+  NORMAL(4),
+  /**
+   * Background IRPs such as EEPROM or firmware transfers.
+   */
+  LOW(1);
+
+  /**
+   * The number of IRPs served from this lane per weighted scheduling round.
+   */
+  private final int weight;
+
+  private EIrpPriority(int weight) {
+    this.weight = weight;
+  }
+
+  /**
+   * Get the scheduling weight of this priority class. This is the number of
+   * IRPs served from the lane per {@link EIrpScheduling#WEIGHTED weighted}
+   * scheduling round.
+   *
+   * @return the scheduling weight
+   */
+  public int getWeight() {
+    return weight;
+  }
+
+}
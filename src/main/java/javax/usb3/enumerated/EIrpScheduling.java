@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.enumerated;
+
+/**
+ * An enumerated list of policies for serving the {@link EIrpPriority priority}
+ * lanes of an IRP queue.
+ * <p>
+ * With either policy an IRP which has waited longer than the queue aging
+ * timeout is served next regardless of its priority, so that lower priority
+ * lanes are never starved.
+ *
+ * @author Jesse Caulfield
+ */
+public enum EIrpScheduling {
+
+  /**
+   * A lane is only served while all higher priority lanes are empty.
+   */
+  STRICT,
+  /**
+   * The lanes are served in rounds. In each round a lane is served up to its
+   * priority {@link EIrpPriority#getWeight() weight}, higher priorities
+   * first.
+   */
+  WEIGHTED;
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.enumerated;
+
+/**
+ * An enumerated list of the sections of the USB ID Repository database
+ * ({@code usb.ids}). Each section lists names keyed by up to three nested
+ * numeric IDs.
+ * <p>
+ * Developer note: The ordinal is stored in the binary database index. Add new
+ * sections at the end and do not reorder.
+ *
+ * @author Jesse Caulfield
+ */
+public enum EUsbIdSection {
+
+  /**
+   * Vendors, with their products and product interfaces. IDs: vendor,
+   * product, interface.
+   */
+  VENDOR(""),
+  /**
+   * Device classes, with their subclasses and protocols. IDs: class,
+   * subclass, protocol.
+   */
+  CLASS("C"),
+  /**
+   * Audio class terminal types. ID: terminal type.
+   */
+  AUDIO_TERMINAL("AT"),
+  /**
+   * HID descriptor types. ID: descriptor type.
+   */
+  HID_DESCRIPTOR("HID"),
+  /**
+   * HID descriptor item types. ID: item type.
+   */
+  HID_ITEM("R"),
+  /**
+   * Physical descriptor bias types. ID: bias type.
+   */
+  PHYSICAL_BIAS("BIAS"),
+  /**
+   * Physical descriptor item types. ID: item type.
+   */
+  PHYSICAL_ITEM("PHY"),
+  /**
+   * HID usage pages, with their usages. IDs: usage page, usage.
+   */
+  HID_USAGE("HUT"),
+  /**
+   * Languages, with their dialects. IDs: primary language, dialect.
+   */
+  LANGUAGE("L"),
+  /**
+   * HID descriptor country codes. ID: country code.
+   */
+  HID_COUNTRY_CODE("HCC"),
+  /**
+   * Video class terminal types. ID: terminal type.
+   */
+  VIDEO_TERMINAL("VT");
+
+  /**
+   * The line prefix of the section entries in the usb.ids file. Empty for
+   * the vendor section, whose entries start with the vendor ID.
+   */
+  private final String prefix;
+
+  private EUsbIdSection(String prefix) {
+    this.prefix = prefix;
+  }
+
+  /**
+   * Get the line prefix of the section entries in the usb.ids file.
+   *
+   * @return the line prefix, e.g. "C". Empty for the vendor section.
+   */
+  public String getPrefix() {
+    return prefix;
+  }
+
+  /**
+   * Get the section with the specified usb.ids line prefix.
+   *
+   * @param prefix the line prefix, e.g. "C"
+   * @return the section, or null if no section has the prefix
+   */
+  public static EUsbIdSection fromPrefix(String prefix) {
+    for (EUsbIdSection section : values()) {
+      if (section.prefix.equals(prefix)) {
+        return section;
+      }
+    }
+    return null;
+  }
+
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.event;
+
+import java.util.EventListener;
+import javax.usb3.IUsbIrp;
+import javax.usb3.IUsbPipe;
+
+/**
+ * Interface for receiving completed IUsbIrps directly, without a
+ * {@link UsbPipeEvent} wrapper.
+ * <p>
+ * This is the allocation-free alternative to {@link IUsbPipeListener} for
+ * high transfer rates: no event object is created per IUsbIrp, and a pipe
+ * with only IUsbIrp listeners creates no events at all. The listener is
+ * called on the thread that finished the IUsbIrp, before any
+ * IUsbPipeListener, and must return quickly.
+ *
+ * @author Jesse Caulfield
+ */
+public interface IUsbPipeIrpListener extends EventListener {
+
+  /**
+   * An IUsbIrp has completed, successfully or with an error. Errors are
+   * indicated by {@link IUsbIrp#isUsbException()}.
+   * <p>
+   * The IUsbIrp belongs to its submitter, who may reuse it as soon as it is
+   * complete: its data must be copied if it is needed after this call.
+   *
+   * @param pipe The IUsbPipe.
+   * @param irp  The completed IUsbIrp.
+   */
+  public void irpCompleted(IUsbPipe pipe, IUsbIrp irp);
+
+}
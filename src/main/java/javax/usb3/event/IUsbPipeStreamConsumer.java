@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.event;
+
+import java.nio.ByteBuffer;
+import java.util.EventListener;
+import javax.usb3.IUsbPipe;
+import javax.usb3.exception.UsbException;
+
+/**
+ * Interface for consuming the data of a continuously streaming IN pipe.
+ * <p>
+ * Consumer methods are called serially, in the order the transfers completed,
+ * and never on the libusb event thread. A consumer may therefore block briefly
+ * but every moment spent in the consumer holds one stream buffer away from the
+ * device.
+ *
+ * @author Jesse Caulfield
+ */
+public interface IUsbPipeStreamConsumer extends EventListener {
+
+  /**
+   * Data was received.
+   * <p>
+   * The buffer holds the received bytes between its position (zero) and its
+   * limit. The buffer is recycled and resubmitted to the device as soon as
+   * this method returns: the data must be copied if it is needed afterwards.
+   *
+   * @param pipe   The streaming pipe.
+   * @param buffer The received data. Only valid during this call.
+   */
+  public void dataReceived(IUsbPipe pipe, ByteBuffer buffer);
+
+  /**
+   * A stream transfer failed. The stream keeps running unless the device has
+   * been disconnected.
+   *
+   * @param pipe      The streaming pipe.
+   * @param exception The transfer error.
+   */
+  public void errorOccurred(IUsbPipe pipe, UsbException exception);
+
+}
@@ -18,6 +18,7 @@
  */
 package javax.usb3.event;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import javax.usb3.IUsbIrp;
 import javax.usb3.IUsbPipe;
@@ -73,7 +74,16 @@ public class UsbPipeDataEvent extends UsbPipeEvent {
   public byte[] getData() {
     if (hasUsbIrp()) {
       byte[] newData = new byte[getUsbIrp().getActualLength()];
-      System.arraycopy(getUsbIrp().getData(), getUsbIrp().getOffset(), newData, 0, newData.length);
+      if (getUsbIrp().getDataBuffer() != null) {
+        /**
+         * Copy from a duplicate so the IRP buffer position is not modified.
+         */
+        ByteBuffer buffer = getUsbIrp().getDataBuffer().duplicate();
+        buffer.position(getUsbIrp().getOffset());
+        buffer.get(newData);
+      } else {
+        System.arraycopy(getUsbIrp().getData(), getUsbIrp().getOffset(), newData, 0, newData.length);
+      }
       return newData;
     } else {
       return data != null ? Arrays.copyOf(data, data.length) : null;
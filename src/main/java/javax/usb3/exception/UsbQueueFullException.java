@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.exception;
+
+/**
+ * Exception indicating an IRP was rejected or dropped because its IRP queue
+ * was full.
+ *
+ * @author Jesse Caulfield
+ * @see javax.usb3.enumerated.EIrpOverflowPolicy
+ */
+public class UsbQueueFullException extends UsbException {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Constructor.
+   */
+  public UsbQueueFullException() {
+    super();
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param s The detail message.
+   */
+  public UsbQueueFullException(String s) {
+    super(s);
+  }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.exception;
+
+/**
+ * Exception indicating a submission timed out.
+ * <p>
+ * This is thrown when a transfer exceeds the timeout of its pipe or control
+ * queue, or when the {@link javax.usb3.IUsbIrp#getDeadline() deadline} of an
+ * IRP expires before or while the IRP is transferred.
+ *
+ * @author Jesse Caulfield
+ */
+public class UsbTimeoutException extends UsbException {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Constructor.
+   */
+  public UsbTimeoutException() {
+    super();
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param s The detail message.
+   */
+  public UsbTimeoutException(String s) {
+    super(s);
+  }
+}
@@ -21,11 +21,14 @@ import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.usb3.*;
 import javax.usb3.descriptor.UsbStringDescriptor;
 import javax.usb3.enumerated.EDescriptorType;
+import javax.usb3.enumerated.EDeviceRequest;
 import javax.usb3.enumerated.EDevicePortSpeed;
 import javax.usb3.event.IUsbDeviceListener;
 import javax.usb3.event.UsbDeviceEvent;
@@ -33,10 +36,15 @@ import javax.usb3.exception.UsbClaimException;
 import javax.usb3.exception.UsbDisconnectedException;
 import javax.usb3.exception.UsbException;
 import javax.usb3.exception.UsbPlatformException;
+import javax.usb3.exception.UsbScanException;
+import javax.usb3.request.BMRequestType;
+import javax.usb3.spi.IUsbBackendDevice;
+import javax.usb3.spi.IUsbDeviceHandle;
+import javax.usb3.spi.LibUsbBackend;
+import javax.usb3.spi.UsbBackendConfiguration;
+import javax.usb3.utility.BufferUtility;
 import javax.usb3.utility.UsbExceptionFactory;
-import org.usb4java.ConfigDescriptor;
 import org.usb4java.Device;
-import org.usb4java.DeviceHandle;
 import org.usb4java.LibUsb;
 
 /**
@@ -100,11 +108,12 @@ public abstract class AUsbDevice implements IUsbDevice {
    */
   protected final int speed;
   /**
-   * The device configurations.
+   * The device configurations. Null until first accessed.
    */
-  protected Collection<IUsbConfiguration> configurations;
+  protected volatile Collection<IUsbConfiguration> configurations;
   /**
-   * Mapping from configuration value to configuration.
+   * Mapping from configuration value to configuration. Filled when the
+   * configurations are first accessed.
    */
   protected final Map<Byte, IUsbConfiguration> configMapping = new HashMap<>();
   /**
@@ -114,7 +123,7 @@ public abstract class AUsbDevice implements IUsbDevice {
   /**
    * The device handle. Null if not open.
    */
-  protected DeviceHandle handle;
+  protected IUsbDeviceHandle handle;
   /**
    * The number of the currently active configuration.
    */
@@ -135,6 +144,10 @@ public abstract class AUsbDevice implements IUsbDevice {
    * If kernel driver was detached when interface was claimed.
    */
   protected boolean detachedKernelDriver;
+  /**
+   * The cache of the descriptors read from this device.
+   */
+  private final UsbDescriptorCache descriptorCache = new UsbDescriptorCache();
 
   /**
    * Construct a new device.
@@ -146,18 +159,18 @@ public abstract class AUsbDevice implements IUsbDevice {
    *                      has no parent (Because it is a root device).
    * @param speed         The device speed code. This is the native (OS)
    *                      negotiated connection speed for the device.
-   * @param device        The libusb native device reference. This reference is
-   *                      only valdeviceId during the constructor execution, so
-   *                      don't store it in a property or something like that.
-   * @throws UsbPlatformException     When device configuration could not be
-   *                                  read.
+   * @param device        The backend device reference. This reference is only
+   *                      valid during the constructor execution, so don't
+   *                      store it in a property or something like that.
+   * @throws UsbPlatformException     When the active device configuration
+   *                                  could not be read.
    * @throws IllegalArgumentException if the DeviceManager or DeviceId are null
    */
   public AUsbDevice(final UsbDeviceManager deviceManager,
                     final UsbDeviceId deviceId,
                     final UsbDeviceId parentId,
                     final int speed,
-                    final Device device) throws UsbPlatformException {
+                    final IUsbBackendDevice device) throws UsbPlatformException {
     if (deviceManager == null) {
       throw new IllegalArgumentException("DeviceManager is required.");
     }
@@ -169,42 +182,38 @@ public abstract class AUsbDevice implements IUsbDevice {
     this.parentId = parentId;
     this.speed = speed;
     /**
-     * Read the device configurations
-     */
-    final int numConfigurations = deviceId.getDeviceDescriptor().bNumConfigurations() & 0xff;
-    final Collection<IUsbConfiguration> usbConfigurationTemp = new ArrayList<>(numConfigurations);
-    for (int i = 0; i < numConfigurations; i += 1) {
-      final ConfigDescriptor configDescriptor = new ConfigDescriptor();
-      final int result = LibUsb.getConfigDescriptor(device, (byte) i, configDescriptor);
-      if (result < 0) {
-        throw UsbExceptionFactory.createPlatformException("Unable to get configuation " + i + " for device " + deviceId, result);
-      }
-      try {
-        final UsbConfiguration usbConfiguration = new UsbConfiguration(this, configDescriptor);
-        usbConfigurationTemp.add(usbConfiguration);
-        this.configMapping.put(configDescriptor.bConfigurationValue(), usbConfiguration);
-      } finally {
-        LibUsb.freeConfigDescriptor(configDescriptor);
-      }
-    }
-    this.configurations = Collections.unmodifiableCollection(usbConfigurationTemp);
-    /**
-     * Determine the active configuration number
-     */
-    final ConfigDescriptor configDescriptor = new ConfigDescriptor();
-    final int result = LibUsb.getActiveConfigDescriptor(device, configDescriptor);
-    /**
-     * ERROR_NOT_FOUND is returned when device is in unconfigured state. On OSX
-     * it may return INVALID_PARAM in this case because of a bug in libusb.
+     * The configurations are read on first access. Determine the active
+     * configuration number.
      */
-    if (result == LibUsb.ERROR_NOT_FOUND || result == LibUsb.ERROR_INVALID_PARAM) {
-      this.activeConfigurationNumber = 0;
-    } else if (result < 0) {
-      throw UsbExceptionFactory.createPlatformException("Unable to read active config descriptor from device " + deviceId, result);
-    } else {
-      this.activeConfigurationNumber = configDescriptor.bConfigurationValue();
-      LibUsb.freeConfigDescriptor(configDescriptor);
-    }
+    this.activeConfigurationNumber = device.getActiveConfigurationNumber();
+  }
+
+  /**
+   * Construct a new device from a libusb native device.
+   *
+   * @param deviceManager The USB device deviceManager which is responsible for
+   *                      this device.
+   * @param deviceId      The device deviceId. Must not be null.
+   * @param parentId      The parent device deviceId. May be null if this device
+   *                      has no parent (Because it is a root device).
+   * @param speed         The device speed code. This is the native (OS)
+   *                      negotiated connection speed for the device.
+   * @param device        The libusb native device reference. This reference is
+   *                      only valid during the constructor execution, so don't
+   *                      store it in a property or something like that.
+   * @throws UsbPlatformException     When the active device configuration
+   *                                  could not be read.
+   * @throws IllegalArgumentException if the DeviceManager or DeviceId are null
+   * @deprecated Devices are created from backend devices. Use
+   * {@link #AUsbDevice(UsbDeviceManager, UsbDeviceId, UsbDeviceId, int, IUsbBackendDevice)}.
+   */
+  @Deprecated
+  public AUsbDevice(final UsbDeviceManager deviceManager,
+                    final UsbDeviceId deviceId,
+                    final UsbDeviceId parentId,
+                    final int speed,
+                    final Device device) throws UsbPlatformException {
+    this(deviceManager, deviceId, parentId, speed, LibUsbBackend.wrap(device));
   }
 
   /**
@@ -238,6 +247,16 @@ public abstract class AUsbDevice implements IUsbDevice {
     return true;
   }
 
+  /**
+   * Indicates whether the device is attached to a port. Unlike
+   * {@link #isConnected()} this does not throw if the device is detached.
+   *
+   * @return TRUE if the device is attached to a parent port.
+   */
+  final boolean isAttached() {
+    return this.port != null;
+  }
+
   /**
    * Opens the USB device and returns the USB device handle. If device was
    * already open then the old handle is returned.
@@ -245,19 +264,9 @@ public abstract class AUsbDevice implements IUsbDevice {
    * @return The USB device handle.
    * @throws UsbException When USB device could not be opened.
    */
-  public final DeviceHandle open() throws UsbException {
+  public final synchronized IUsbDeviceHandle open() throws UsbException {
     if (this.handle == null) {
-      final Device device = this.deviceManager.getLibUsbDevice(this.deviceId);
-      try {
-        final DeviceHandle deviceHandle = DeviceHandle.getInstance();
-        final int result = LibUsb.open(device, deviceHandle);
-        if (result < 0) {
-          throw UsbExceptionFactory.createPlatformException("Can't open device " + this.deviceId, result);
-        }
-        this.handle = deviceHandle;
-      } finally {
-        this.deviceManager.releaseDevice(device);
-      }
+      this.handle = this.deviceManager.openDevice(this.deviceId);
     }
     return this.handle;
   }
@@ -265,9 +274,9 @@ public abstract class AUsbDevice implements IUsbDevice {
   /**
    * Closes the device. If device is not open then nothing is done.
    */
-  public final void close() {
+  public final synchronized void close() {
     if (this.handle != null) {
-      LibUsb.close(this.handle);
+      this.handle.close();
       this.handle = null;
     }
   }
@@ -303,20 +312,83 @@ public abstract class AUsbDevice implements IUsbDevice {
 
     this.port = port;
 
-    try {
-      final IUsbServices services = UsbHostManager.getUsbServices();
-      if (port == null) {
-        this.listeners.usbDeviceDetached(new UsbDeviceEvent(this));
+    /**
+     * Notify the services owning the device manager that discovered this
+     * device. A device manager used without services has none.
+     */
+    final IUsbServices services = this.deviceManager.getUsbServices();
+    if (port == null) {
+      this.descriptorCache.clear();
+      this.listeners.usbDeviceDetached(new UsbDeviceEvent(this));
+      if (services != null) {
         services.usbDeviceDetached(this);
-      } else {
+      }
+      UsbIrpQueueStatistics.unregister(this.deviceId, null);
+    } else {
+      this.controlIrpQueue.getStatistics().register(this.deviceId, null);
+      if (services != null) {
         services.usbDeviceAttached(this);
       }
-    } catch (UsbException | SecurityException usbException) {
-      Logger.getLogger(AUsbDevice.class.getName()).log(Level.SEVERE, "USB Services error. {0}", usbException.getMessage());
-      throw new RuntimeException("Unable to attach USB services: " + usbException);
+      if (this.deviceManager.isPrefetchStrings()) {
+        prefetchStrings();
+      }
     }
   }
 
+  /**
+   * Read the manufacturer, product and serial number strings into the
+   * descriptor cache in the background, so that later queries are answered
+   * without a transfer. Failures are logged and otherwise ignored; the strings
+   * are then read on demand.
+   * <p>
+   * If the device was not open the handle opened for the prefetch is closed
+   * again afterwards, unless the device is in use by then.
+   */
+  private void prefetchStrings() {
+    UsbIrpExecutors.getSharedExecutor().execute(new Runnable() {
+      @Override
+      public void run() {
+        final boolean wasOpen;
+        synchronized (AUsbDevice.this) {
+          wasOpen = handle != null;
+        }
+        try {
+          getManufacturerString();
+          getProductString();
+          getSerialNumberString();
+        } catch (UsbException | UnsupportedEncodingException | UsbDisconnectedException ex) {
+          Logger.getLogger(AUsbDevice.class.getName()).log(Level.FINE, "Unable to prefetch strings of {0}: {1}", new Object[]{deviceId, ex.getMessage()});
+        } finally {
+          if (!wasOpen) {
+            closeIfIdle();
+          }
+        }
+      }
+    });
+  }
+
+  /**
+   * Closes the device if no interface is claimed and no control IRP is
+   * queued or in progress. The handle is opened again on demand.
+   */
+  private synchronized void closeIfIdle() {
+    if (this.claimedInterfaceNumbers.isEmpty() && !this.controlIrpQueue.isBusy()) {
+      close();
+    }
+  }
+
+  /**
+   * Get the cache of the descriptors read from this device. The cache is
+   * cleared when the device is detached. Clear it explicitly if the device
+   * descriptors may have changed, e.g. after a device reset.
+   *
+   * @return the descriptor cache
+   */
+  @Override
+  public final UsbDescriptorCache getDescriptorCache() {
+    return this.descriptorCache;
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -366,9 +438,41 @@ public abstract class AUsbDevice implements IUsbDevice {
 
   /**
    * {@inheritDoc}
+   *
+   * @throws UsbScanException if the configurations cannot be read. Reading
+   *                          is retried on the next access.
    */
   @Override
   public final Collection<IUsbConfiguration> getUsbConfigurations() {
+    final Collection<IUsbConfiguration> current = this.configurations;
+    return current != null ? current : loadConfigurations();
+  }
+
+  /**
+   * Read the device configurations and build the configuration, interface and
+   * endpoint model. This is done on first access, so that devices which are
+   * never inspected are never parsed.
+   *
+   * @return The configurations.
+   * @throws UsbScanException if the configurations cannot be read
+   */
+  private synchronized Collection<IUsbConfiguration> loadConfigurations() {
+    if (this.configurations != null) {
+      return this.configurations;
+    }
+    final List<UsbBackendConfiguration> backendConfigurations;
+    try {
+      backendConfigurations = this.deviceManager.getConfigurations(this.deviceId);
+    } catch (UsbPlatformException ex) {
+      throw new UsbScanException("Unable to read the configurations of " + this.deviceId, ex);
+    }
+    final Collection<IUsbConfiguration> usbConfigurationTemp = new ArrayList<>(backendConfigurations.size());
+    for (UsbBackendConfiguration backendConfiguration : backendConfigurations) {
+      final UsbConfiguration usbConfiguration = new UsbConfiguration(this, backendConfiguration);
+      usbConfigurationTemp.add(usbConfiguration);
+      this.configMapping.put(backendConfiguration.getConfigurationDescriptor().bConfigurationValue(), usbConfiguration);
+    }
+    this.configurations = Collections.unmodifiableCollection(usbConfigurationTemp);
     return this.configurations;
   }
 
@@ -377,6 +481,7 @@ public abstract class AUsbDevice implements IUsbDevice {
    */
   @Override
   public final IUsbConfiguration getUsbConfiguration(final byte number) {
+    getUsbConfigurations();
     return this.configMapping.get(number);
   }
 
@@ -385,6 +490,7 @@ public abstract class AUsbDevice implements IUsbDevice {
    */
   @Override
   public final boolean containsUsbConfiguration(final byte number) {
+    getUsbConfigurations();
     return this.configMapping.containsKey(number);
   }
 
@@ -408,7 +514,7 @@ public abstract class AUsbDevice implements IUsbDevice {
         throw new UsbException("Cannot change configuration while an interface is still claimed");
       }
 
-      final int result = LibUsb.setConfiguration(open(), number & 0xff);
+      final int result = open().setConfiguration(number & 0xff);
       if (result < 0) {
         throw UsbExceptionFactory.createPlatformException("Unable to set configuration", result);
       }
@@ -423,22 +529,22 @@ public abstract class AUsbDevice implements IUsbDevice {
    * @param force  If possible, try to force the claim.
    * @throws UsbException When the interface cannot not be claimed.
    */
-  public final void claimInterface(final byte number, final boolean force) throws UsbException {
+  public final synchronized void claimInterface(final byte number, final boolean force) throws UsbException {
     if (this.claimedInterfaceNumbers.contains(number)) {
       throw new UsbClaimException("An interface is already claimed");
     }
-    final DeviceHandle deviceHandle = open();
+    final IUsbDeviceHandle deviceHandle = open();
     /**
      * Detach existing driver from the device if requested and libusb supports
      * it.
      */
     if (force) {
-      int result = LibUsb.kernelDriverActive(deviceHandle, number);
+      int result = deviceHandle.kernelDriverActive(number & 0xff);
       if (result == LibUsb.ERROR_NO_DEVICE) {
         throw new UsbDisconnectedException();
       }
       if (result == 1) {
-        result = LibUsb.detachKernelDriver(deviceHandle, number);
+        result = deviceHandle.detachKernelDriver(number & 0xff);
         if (result < 0) {
           throw UsbExceptionFactory.createPlatformException("Unable to detach kernel driver", result);
         }
@@ -446,7 +552,7 @@ public abstract class AUsbDevice implements IUsbDevice {
       }
     }
 
-    final int result = LibUsb.claimInterface(deviceHandle, number & 0xff);
+    final int result = deviceHandle.claimInterface(number & 0xff);
     if (result < 0) {
       throw UsbExceptionFactory.createPlatformException("Unable to claim interface", result);
     }
@@ -460,7 +566,7 @@ public abstract class AUsbDevice implements IUsbDevice {
    * @throws UsbException When the interface claim cannot be released or the
    *                      interface is not claimed.
    */
-  public final void releaseInterface(final byte number) throws UsbException {
+  public final synchronized void releaseInterface(final byte number) throws UsbException {
     if (this.claimedInterfaceNumbers.isEmpty()) {
       throw new UsbClaimException("No interface is claimed");
     }
@@ -468,14 +574,14 @@ public abstract class AUsbDevice implements IUsbDevice {
       throw new UsbClaimException("Interface not claimed");
     }
 
-    final DeviceHandle deviceHandle = open();
-    int result = LibUsb.releaseInterface(deviceHandle, number & 0xff);
+    final IUsbDeviceHandle deviceHandle = open();
+    int result = deviceHandle.releaseInterface(number & 0xff);
     if (result < 0) {
       throw UsbExceptionFactory.createPlatformException("Unable to release interface", result);
     }
 
     if (this.detachedKernelDriver) {
-      result = LibUsb.attachKernelDriver(deviceHandle, number & 0xff);
+      result = deviceHandle.attachKernelDriver(number & 0xff);
       if (result < 0) {
         throw UsbExceptionFactory.createPlatformException("Uanble to re-attach kernel driver", result);
       }
@@ -498,6 +604,7 @@ public abstract class AUsbDevice implements IUsbDevice {
    * If this device is Not Configured, this returns null.
    *
    * @return The active IUsbConfiguration, or null.
+   * @throws UsbScanException if the configurations cannot be read
    */
   @Override
   public final IUsbConfiguration getActiveUsbConfiguration() {
@@ -532,14 +639,30 @@ public abstract class AUsbDevice implements IUsbDevice {
   public final IUsbStringDescriptor getUsbStringDescriptor(final byte index) throws UsbException {
     isConnected();
     final short[] languages = getLanguages();
-    final DeviceHandle deviceHandle = open();
     final short langId = languages.length == 0 ? 0 : languages[0];
-    final ByteBuffer data = ByteBuffer.allocateDirect(256);
-    final int result = LibUsb.getStringDescriptor(deviceHandle, index, langId, data);
-    if (result < 0) {
-      throw UsbExceptionFactory.createPlatformException("Unable to get string descriptor " + index + " from device " + this, result);
+    final IUsbStringDescriptor cached = this.descriptorCache.getString(index, langId);
+    if (cached != null) {
+      return cached;
+    }
+    final IUsbDeviceHandle deviceHandle = open();
+    final ByteBuffer pooled = BufferUtility.acquireByteBuffer(256);
+    try {
+      final ByteBuffer data = BufferUtility.slice(pooled, 0, 256);
+      final int result = deviceHandle.controlTransfer(BMRequestType.getInstanceStandardRead(),
+                                                      EDeviceRequest.GET_DESCRIPTOR.getByteCode(),
+                                                      EDescriptorType.STRING.getWValue(index),
+                                                      langId,
+                                                      data,
+                                                      UsbServiceInstanceConfiguration.TIMEOUT);
+      if (result < 0) {
+        throw UsbExceptionFactory.createPlatformException("Unable to get string descriptor " + index + " from device " + this, result);
+      }
+      final IUsbStringDescriptor descriptor = new UsbStringDescriptor(data);
+      this.descriptorCache.putString(index, langId, descriptor);
+      return descriptor;
+    } finally {
+      BufferUtility.releaseByteBuffer(pooled);
     }
-    return new UsbStringDescriptor(data);
   }
 
   /**
@@ -551,28 +674,44 @@ public abstract class AUsbDevice implements IUsbDevice {
   }
 
   /**
-   * Returns the languages the specified device supports.
+   * Returns the languages the specified device supports. The languages are
+   * read from the device once and then cached.
    *
    * @return Array with supported language codes. Never null. May be empty.
+   *         The array must not be modified.
    * @throws UsbException When string descriptor languages could not be read.
    */
   protected short[] getLanguages() throws UsbException {
-    final DeviceHandle deviceHandle = open();
-    final ByteBuffer buffer = ByteBuffer.allocateDirect(256);
-    final int result = LibUsb.getDescriptor(deviceHandle, EDescriptorType.STRING, (byte) 0, buffer);
-    if (result < 0) {
-      throw UsbExceptionFactory.createPlatformException("Unable to get string descriptor languages", result);
-    }
-    if (result < 2) {
-      throw new UsbException("Received illegal descriptor length: " + result);
+    final short[] cached = this.descriptorCache.getLanguages();
+    if (cached != null) {
+      return cached;
     }
-    final short[] languages = new short[(result - 2) / 2];
-    if (languages.length == 0) {
+    final IUsbDeviceHandle deviceHandle = open();
+    final ByteBuffer pooled = BufferUtility.acquireByteBuffer(256);
+    try {
+      final ByteBuffer buffer = BufferUtility.slice(pooled, 0, 256);
+      final int result = deviceHandle.controlTransfer(BMRequestType.getInstanceStandardRead(),
+                                                      EDeviceRequest.GET_DESCRIPTOR.getByteCode(),
+                                                      EDescriptorType.STRING.getWValue((byte) 0),
+                                                      (short) 0,
+                                                      buffer,
+                                                      UsbServiceInstanceConfiguration.TIMEOUT);
+      if (result < 0) {
+        throw UsbExceptionFactory.createPlatformException("Unable to get string descriptor languages", result);
+      }
+      if (result < 2) {
+        throw new UsbException("Received illegal descriptor length: " + result);
+      }
+      final short[] languages = new short[(result - 2) / 2];
+      if (languages.length > 0) {
+        buffer.position(2);
+        buffer.order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().get(languages);
+      }
+      this.descriptorCache.putLanguages(languages);
       return languages;
+    } finally {
+      BufferUtility.releaseByteBuffer(pooled);
     }
-    buffer.position(2);
-    buffer.order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().get(languages);
-    return languages;
   }
 
   /**
@@ -595,7 +734,7 @@ public abstract class AUsbDevice implements IUsbDevice {
    * {@inheritDoc}
    */
   @Override
-  public final void asyncSubmit(final IUsbControlIrp irp) {
+  public final void asyncSubmit(final IUsbControlIrp irp) throws UsbException {
     if (irp == null) {
       throw new IllegalArgumentException("irp must not be null");
     }
@@ -603,6 +742,18 @@ public abstract class AUsbDevice implements IUsbDevice {
     this.controlIrpQueue.add(irp);
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public final CompletableFuture<IUsbIrp> submit(final IUsbControlIrp irp) throws UsbException {
+    if (irp == null) {
+      throw new IllegalArgumentException("irp must not be null");
+    }
+    isConnected();
+    return this.controlIrpQueue.submit(irp);
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -612,23 +763,19 @@ public abstract class AUsbDevice implements IUsbDevice {
       throw new IllegalArgumentException("list must not be null");
     }
     isConnected();
-    for (final IUsbControlIrp item : list) {
-      syncSubmit(item);
-    }
+    UsbIrpBatch.await(this.controlIrpQueue.submitAll(list));
   }
 
   /**
    * {@inheritDoc}
    */
   @Override
-  public final void asyncSubmit(final List<IUsbControlIrp> list) {
+  public final void asyncSubmit(final List<IUsbControlIrp> list) throws UsbException {
     if (list == null) {
       throw new IllegalArgumentException("list must not be null");
     }
     isConnected();
-    for (final IUsbControlIrp item : list) {
-      asyncSubmit(item);
-    }
+    this.controlIrpQueue.submitAll(list);
   }
 
   /**
@@ -651,6 +798,52 @@ public abstract class AUsbDevice implements IUsbDevice {
     return new UsbControlIrp(bmRequestType, bRequest, wValue, wIndex, data);
   }
 
+  /**
+   * Set the executor that processes the control I/O Request Packets submitted
+   * to the Default Control Pipe of this device. By default all devices share
+   * the {@link UsbIrpExecutors#getSharedExecutor() shared} IRP executor.
+   *
+   * @param executor The IRP executor. Must not be null.
+   * @see UsbIrpExecutors
+   */
+  public final void setControlIrpExecutor(final Executor executor) {
+    this.controlIrpQueue.setExecutor(executor);
+  }
+
+  /**
+   * Get the queue of the control I/O Request Packets submitted to the Default
+   * Control Pipe of this device. This provides the priority scheduling
+   * configuration and the queue statistics.
+   *
+   * @return The control IRP queue.
+   */
+  public final UsbControlIrpQueue getControlIrpQueue() {
+    return this.controlIrpQueue;
+  }
+
+  /**
+   * Set the timeout of each control transfer submitted to the Default Control
+   * Pipe of this device. The default is
+   * {@link UsbServiceInstanceConfiguration#TIMEOUT}. A control transfer which
+   * does not complete in time fails with a UsbTimeoutException.
+   *
+   * @param timeout The transfer timeout in milliseconds. Zero for no timeout.
+   * @see IUsbIrp#setDeadline(long)
+   */
+  public final void setControlTimeout(final long timeout) {
+    this.controlIrpQueue.setTimeout(timeout);
+  }
+
+  /**
+   * Get the timeout of each control transfer submitted to the Default Control
+   * Pipe of this device.
+   *
+   * @return The transfer timeout in milliseconds. Zero for no timeout.
+   */
+  public final long getControlTimeout() {
+    return this.controlIrpQueue.getTimeout();
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -18,7 +18,15 @@
  */
 package javax.usb3.ri;
 
+import java.nio.ByteBuffer;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import javax.usb3.IUsbIrp;
+import javax.usb3.enumerated.EIrpPriority;
 import javax.usb3.exception.UsbException;
 import javax.usb3.exception.UsbShortPacketException;
 import javax.usb3.utility.ByteUtility;
@@ -42,10 +50,15 @@ public class AUsbIrp implements IUsbIrp {
    * The I/O Request Packet data buffer.
    */
   protected byte[] data = new byte[0];
+  /**
+   * The direct I/O Request Packet data buffer. If set the data is transferred
+   * directly to or from this buffer and the byte[] data array is not used.
+   */
+  protected ByteBuffer dataBuffer = null;
   /**
    * Indicator that the UsbIrp data read/write transaction is complete or not.
    */
-  protected boolean complete = false;
+  protected volatile boolean complete = false;
   /**
    * The policy can be set to either accept or reject short packets.
    * <p>
@@ -100,9 +113,23 @@ public class AUsbIrp implements IUsbIrp {
    */
   protected UsbException usbException = null;
   /**
-   * Internal lock object used for a synchronized read/write transaction.
+   * The absolute deadline ({@link System#nanoTime()}) of this IRP. Zero if the
+   * IRP has no deadline.
+   */
+  protected volatile long deadline = 0;
+  /**
+   * The priority class of this IRP.
+   */
+  protected EIrpPriority priority = EIrpPriority.NORMAL;
+  /**
+   * The future completed by {@link #complete()}. A new future is created when
+   * this IRP is {@link #setComplete(boolean) reset} for reuse.
+   */
+  private volatile CompletableFuture<IUsbIrp> future = new CompletableFuture<>();
+  /**
+   * The queue this IRP was last submitted to. Used to cancel the IRP.
    */
-  private final Object waitLock = new Object();
+  private volatile AUsbIrpQueue<?> queue;
 
   /**
    * Empty constructor. The data array must be set before use.
@@ -121,6 +148,17 @@ public class AUsbIrp implements IUsbIrp {
     setData(data);
   }
 
+  /**
+   * Generic USB IRP Constructor providing a direct data buffer to read from or
+   * write in to.
+   *
+   * @param buffer The direct data buffer.
+   * @exception IllegalArgumentException If the buffer is null or not direct.
+   */
+  public AUsbIrp(ByteBuffer buffer) {
+    setData(buffer);
+  }
+
   /**
    * Generic USB IRP Constructor. This is overwritten from the UsbIrp and
    * ControlUspIrp implementations.
@@ -177,10 +215,45 @@ public class AUsbIrp implements IUsbIrp {
       throw new IllegalArgumentException("Data cannot be null.");
     }
     this.data = d;
+    this.dataBuffer = null;
     setOffset(o);
     setLength(l);
   }
 
+  /**
+   * Get the direct data buffer.
+   *
+   * @return The direct data buffer, or null if the data is a byte[] array.
+   */
+  @Override
+  public ByteBuffer getDataBuffer() {
+    return dataBuffer;
+  }
+
+  /**
+   * Set the data as a direct buffer. The offset and length are set to the
+   * buffer position and remaining bytes.
+   *
+   * @param buffer The direct data buffer.
+   * @exception IllegalArgumentException If the buffer is null or not direct.
+   */
+  @Override
+  public final void setData(ByteBuffer buffer) throws IllegalArgumentException {
+    if (null == buffer) {
+      throw new IllegalArgumentException("Data buffer cannot be null.");
+    }
+    if (!buffer.isDirect()) {
+      throw new IllegalArgumentException("Data buffer must be a direct buffer.");
+    }
+    if (buffer.isReadOnly()) {
+      throw new IllegalArgumentException("Data buffer cannot be read-only.");
+    }
+    this.data = new byte[0];
+    this.dataBuffer = buffer;
+    setOffset(buffer.position());
+    setLength(buffer.remaining());
+  }
+
   /**
    * Get the offset.
    *
@@ -283,6 +356,50 @@ public class AUsbIrp implements IUsbIrp {
     usbException = exception;
   }
 
+  /**
+   * Get the deadline. Default is 0 (no deadline).
+   *
+   * @return The absolute deadline in nanoseconds, or 0.
+   */
+  @Override
+  public long getDeadline() {
+    return deadline;
+  }
+
+  /**
+   * Set the deadline.
+   *
+   * @param deadline The absolute deadline ({@link System#nanoTime()}), or 0
+   *                 for no deadline.
+   */
+  @Override
+  public void setDeadline(long deadline) {
+    this.deadline = deadline;
+  }
+
+  /**
+   * Get the priority class. Default is NORMAL.
+   *
+   * @return The priority.
+   */
+  @Override
+  public EIrpPriority getPriority() {
+    return priority;
+  }
+
+  /**
+   * Set the priority class.
+   *
+   * @param priority The priority. Must not be null.
+   */
+  @Override
+  public void setPriority(EIrpPriority priority) {
+    if (priority == null) {
+      throw new IllegalArgumentException("Priority must not be null");
+    }
+    this.priority = priority;
+  }
+
   /**
    * Get the Short Packet policy. Default is TRUE (Accept short packets).
    *
@@ -324,9 +441,27 @@ public class AUsbIrp implements IUsbIrp {
    */
   @Override
   public void setComplete(boolean b) {
+    if (!b && future.isDone()) {
+      future = new CompletableFuture<>();
+    }
     complete = b;
   }
 
+  /**
+   * Get a future that is completed when this IRP is {@link #complete()
+   * complete}. The future completes normally with this IRP if successful, or
+   * exceptionally with the {@link #getUsbException() UsbException}.
+   * <p>
+   * Dependent stages should not block: they run on the thread that completes
+   * the IRP (typically an IRP queue executor thread) unless an asynchronous
+   * stage is used.
+   *
+   * @return the completion future of this IRP submission
+   */
+  public CompletableFuture<IUsbIrp> toCompletableFuture() {
+    return future;
+  }
+
   /**
    * Complete this submission.
    * <p>
@@ -334,23 +469,44 @@ public class AUsbIrp implements IUsbIrp {
    * <ul>
    * <li>{@link #setComplete(boolean) Set} {@link #isComplete() complete} to
    * TRUE.</li>
-   * <li>Notify all {@link #waitUntilComplete() waiting Threads}.</li>
+   * <li>Complete the {@link #toCompletableFuture() future}, which releases
+   * all {@link #waitUntilComplete() waiting Threads}.</li>
    * </ul>
    */
   @Override
   public void complete() {
-    setComplete(true);
     /**
      * Check for a Short Packet error condition.
      */
-    if (!acceptShortPacket && getLength() > getActualLength()) {
+    if (!acceptShortPacket && getLength() > getActualLength() && !isUsbException()) {
       setUsbException(new UsbShortPacketException("Short packet: actual [" + getActualLength() + "] length [" + getLength() + "]"));
     }
-    synchronized (waitLock) {
-      waitLock.notifyAll();
+    setComplete(true);
+    if (isUsbException()) {
+      future.completeExceptionally(getUsbException());
+    } else {
+      future.complete(this);
     }
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean cancel() {
+    final AUsbIrpQueue<?> irpQueue = queue;
+    return irpQueue != null && !complete && irpQueue.cancel(this);
+  }
+
+  /**
+   * Record the queue this IRP is submitted to.
+   *
+   * @param queue The IRP queue.
+   */
+  void setQueue(final AUsbIrpQueue<?> queue) {
+    this.queue = queue;
+  }
+
   /**
    * Wait until {@link #isComplete() complete}.
    * <p>
@@ -358,13 +514,16 @@ public class AUsbIrp implements IUsbIrp {
    */
   @Override
   public void waitUntilComplete() {
-    synchronized (waitLock) {
-      while (!isComplete()) {
-        try {
-          waitLock.wait();
-        } catch (InterruptedException iE) {
-        }
-      }
+    if (isComplete()) {
+      return;
+    }
+    try {
+      future.join();
+    } catch (CompletionException | CancellationException ex) {
+      /**
+       * The IRP completed with an exception. This is reported by
+       * getUsbException.
+       */
     }
   }
 
@@ -384,15 +543,18 @@ public class AUsbIrp implements IUsbIrp {
       return;
     }
 
-    long startTime = System.currentTimeMillis();
-
-    synchronized (waitLock) {
-      if (!isComplete() && ((System.currentTimeMillis() - startTime) < timeout)) {
-        try {
-          waitLock.wait(timeout);
-        } catch (InterruptedException iE) {
-        }
-      }
+    if (isComplete()) {
+      return;
+    }
+    try {
+      future.get(timeout, TimeUnit.MILLISECONDS);
+    } catch (ExecutionException | CancellationException | TimeoutException ex) {
+      /**
+       * Completed with an exception or timed out. The caller checks
+       * isComplete and getUsbException.
+       */
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
     }
   }
 
@@ -18,22 +18,55 @@
 package javax.usb3.ri;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 import javax.usb3.IUsbControlIrp;
 import javax.usb3.IUsbDevice;
 import javax.usb3.IUsbIrp;
+import javax.usb3.enumerated.EDataFlowtype;
+import javax.usb3.enumerated.EIrpOverflowPolicy;
+import javax.usb3.enumerated.EIrpPriority;
+import javax.usb3.enumerated.EIrpScheduling;
+import javax.usb3.exception.UsbAbortException;
 import javax.usb3.exception.UsbException;
+import javax.usb3.exception.UsbQueueFullException;
 import javax.usb3.exception.UsbShortPacketException;
+import javax.usb3.exception.UsbTimeoutException;
+import javax.usb3.spi.IUsbTransfer;
+import javax.usb3.spi.IUsbTransferCallback;
+import javax.usb3.utility.BufferUtility;
+import javax.usb3.utility.ControlSetup;
 import javax.usb3.utility.UsbExceptionFactory;
-import org.usb4java.DeviceHandle;
 import org.usb4java.LibUsb;
 
 /**
  * Abstract base class for a concurrent queue of USB I/O Request packets.
  * <p>
  * An IrpQueue contains a thread safe FIFO queue and a threaded
- * processUsbIrpQueueor to handle each IRP that is placed into the queue.
+ * processUsbIrpQueueor to handle each IRP that is placed into the queue. The
+ * processor runs on a configurable {@link Executor}; see
+ * {@link UsbIrpExecutors}.
+ * <p>
+ * The queue holds one FIFO lane per IRP {@link EIrpPriority priority}. The
+ * lanes are served according to the {@link EIrpScheduling scheduling} policy;
+ * an IRP queued for longer than the aging timeout is served next regardless
+ * of its priority.
  * <p>
  * Developer note: The default operation of an IrpQueue is to support
  * Asynchronous operation (e.g. processUsbIrpQueue in a separate thread.) To
@@ -47,134 +80,1056 @@ import org.usb4java.LibUsb;
 public abstract class AUsbIrpQueue<T extends IUsbIrp> {
 
   /**
-   * The queued USB IRP packets. These are placed in a ConcurrentLinkedQueue: an
-   * unbounded thread-safe {@link java.util.Queue queue} based on linked nodes.
-   * This queue orders elements FIFO (first-in-first-out). The <em>head</em> of
-   * the queue is that element that has been on the queue the longest time. The
-   * <em>tail</em> of the queue is that element that has been on the queue the
-   * shortest time. New elements are inserted at the tail of the queue, and the
-   * queue retrieval operations obtain elements at the head of the queue.
+   * The queued USB IRP packets, one lane per {@link EIrpPriority priority}
+   * class indexed by the priority ordinal. Each lane is a
+   * ConcurrentLinkedQueue: an unbounded thread-safe {@link java.util.Queue
+   * queue} based on linked nodes. A lane orders elements FIFO
+   * (first-in-first-out). The <em>head</em> of the lane is that element that
+   * has been on the lane the longest time. The <em>tail</em> of the lane is
+   * that element that has been on the lane the shortest time. New elements are
+   * inserted at the tail of the lane, and the lane retrieval operations obtain
+   * elements at the head of the lane.
+   */
+  private final Queue<QueuedIrp<T>>[] lanes;
+
+  /**
+   * Lock object used to wait until the queue is idle.
+   */
+  private final Object idleLock = new Object();
+
+  /**
+   * The maximum number of queued IRPs. Zero for an unbounded queue.
+   */
+  private volatile int capacity;
+
+  /**
+   * The policy applied when an IRP is added to a full queue.
+   */
+  private volatile EIrpOverflowPolicy overflowPolicy = EIrpOverflowPolicy.BLOCK;
+
+  /**
+   * The number of queued IRPs (in all lanes), including slots reserved by
+   * producers about to add an IRP.
+   */
+  private final AtomicInteger depth = new AtomicInteger();
+
+  /**
+   * The highest queue depth observed.
+   */
+  private final AtomicInteger highWaterMark = new AtomicInteger();
+
+  /**
+   * The number of IRPs dropped or rejected because the queue was full.
+   */
+  private final AtomicLong overflowCount = new AtomicLong();
+
+  /**
+   * The sequence number of the last queued IRP. Used to restore the
+   * submission order across the priority lanes.
+   */
+  private final AtomicLong queuedSequence = new AtomicLong();
+
+  /**
+   * Lock object used by producers waiting for queue capacity.
+   */
+  private final Object capacityLock = new Object();
+
+  /**
+   * The number of producers waiting for queue capacity.
+   */
+  private volatile int blockedProducers;
+
+  /**
+   * The policy for serving the priority lanes.
+   */
+  private volatile EIrpScheduling scheduling = EIrpScheduling.WEIGHTED;
+
+  /**
+   * The remaining number of IRPs each lane may be served in the current
+   * weighted scheduling round. Only accessed by the queue processor.
+   */
+  private final int[] credits;
+
+  /**
+   * The aging timeout in nanoseconds. An IRP queued for longer is served next
+   * regardless of its priority. Zero disables aging.
+   */
+  private volatile long agingNanos = TimeUnit.MILLISECONDS.toNanos(UsbServiceInstanceConfiguration.PRIORITY_AGING_TIMEOUT);
+
+  /**
+   * The number of IRPs taken from each lane.
+   */
+  private final AtomicLongArray queueWaitCount;
+
+  /**
+   * The accumulated queue wait time (nanoseconds) of each lane.
+   */
+  private final AtomicLongArray queueWaitNanos;
+
+  /**
+   * The maximum queue wait time (nanoseconds) of each lane.
+   */
+  private final AtomicLongArray queueWaitMaxNanos;
+
+  /**
+   * The latency and throughput statistics of this queue.
+   */
+  private final UsbIrpQueueStatistics statistics = new UsbIrpQueueStatistics(this);
+
+  /**
+   * The executor running the queue processor. Defaults to the
+   * {@link UsbIrpExecutors#getSharedExecutor() shared} IRP executor.
+   */
+  private volatile Executor executor = UsbIrpExecutors.getSharedExecutor();
+
+  /**
+   * Indicator that a queue processor task has been submitted to the executor
+   * and has not yet finished. At most one processor task runs at any time,
+   * which preserves the FIFO ordering of the queue.
+   */
+  private final AtomicBoolean scheduled = new AtomicBoolean();
+
+  /**
+   * Indicator that the queue processor is currently processing an IRP.
+   */
+  private volatile boolean processing;
+
+  /**
+   * The thread running the queue processor. Null if no processor runs.
+   */
+  private volatile Thread processorThread;
+
+  /**
+   * The time (nanoseconds) when the current queue processor task was
+   * scheduled.
+   */
+  private volatile long scheduledNanos;
+
+  /**
+   * The number of queue processor tasks dispatched to the executor.
+   */
+  private final AtomicLong dispatchCount = new AtomicLong();
+
+  /**
+   * The accumulated dispatch latency (nanoseconds). This is the time between
+   * scheduling a queue processor task and the task starting to run.
+   */
+  private final AtomicLong dispatchLatencyNanos = new AtomicLong();
+
+  /**
+   * The maximum number of IRPs processed by one queue processor task before
+   * the task yields its thread to other queues sharing the same executor.
+   */
+  private static final int PROCESSOR_BATCH_SIZE = 64;
+
+  /**
+   * The queue processor task.
+   */
+  private final Runnable processor = new Runnable() {
+    @Override
+    public void run() {
+      processUsbIrpQueue();
+    }
+  };
+
+  /**
+   * The number of IRPs taken from the queue, cancelled or dropped which have
+   * not yet been finished (completed and notified).
+   */
+  private final AtomicInteger pending = new AtomicInteger();
+
+  /**
+   * The number of pending IRPs which are complete but whose finish
+   * notification is still running.
+   */
+  private final AtomicInteger notified = new AtomicInteger();
+
+  /**
+   * Asynchronously completed IRPs waiting for their
+   * {@link #finishIrp(IUsbIrp) finish} notification.
+   */
+  private final Queue<T> completedQueue = new ConcurrentLinkedQueue<>();
+
+  /**
+   * Indicator that a completion notifier task has been submitted to the
+   * executor and has not yet finished.
+   */
+  private final AtomicBoolean notifying = new AtomicBoolean();
+
+  /**
+   * The completion notifier task.
+   */
+  private final Runnable notifier = new Runnable() {
+    @Override
+    public void run() {
+      notifyCompletedIrps();
+    }
+  };
+
+  /**
+   * Futures of submitted IRPs which are not {@link AUsbIrp} instances (and
+   * therefore do not carry their own future), keyed by IRP identity.
+   */
+  private final Map<IUsbIrp, CompletableFuture<IUsbIrp>> futures = Collections.synchronizedMap(new IdentityHashMap<IUsbIrp, CompletableFuture<IUsbIrp>>());
+
+  /**
+   * The batches of IRPs submitted with {@link #submitAll(List)} and not yet
+   * finished, keyed by IRP identity.
+   */
+  private final Map<IUsbIrp, UsbIrpBatch> batches = Collections.synchronizedMap(new IdentityHashMap<IUsbIrp, UsbIrpBatch>());
+
+  /**
+   * The transfers of this queue currently submitted, mapped to the IRP
+   * they transfer. Transfers are only cancelled while holding the lock on this
+   * map and are removed from the map before they are freed, so a cancelled
+   * transfer is always valid.
+   */
+  private final Map<IUsbTransfer, IUsbIrp> transfers = new HashMap<>();
+
+  /**
+   * The transfer callback of {@link #transferAndWait transfers waited
+   * upon}. The user data is the latch released on completion. This is invoked
+   * on the transfer engine event thread.
+   */
+  private static final IUsbTransferCallback WAIT_CALLBACK = new IUsbTransferCallback() {
+    @Override
+    public void processTransfer(final IUsbTransfer transfer) {
+      ((CountDownLatch) transfer.userData()).countDown();
+    }
+  };
+
+  /**
+   * The configured transfer timeout in milliseconds. Zero for no timeout.
+   * Negative (the default) selects the
+   * {@link UsbServiceInstanceConfiguration#TIMEOUT default} timeout, after
+   * which IN transfers are resubmitted.
+   */
+  private volatile long timeout = -1;
+
+  /**
+   * If queue is currently aborting.
+   */
+  private volatile boolean aborting;
+
+  /**
+   * The USB device instance upon which the QUEUE is to be processed. This is
+   * either a UsbHub or UsbDevice implementation.
+   */
+  protected final AUsbDevice usbDevice;
+
+  /**
+   * Constructor.
+   *
+   * @param usbDevice The USB usbDevice. Must not be null.
+   */
+  public AUsbIrpQueue(final IUsbDevice usbDevice) {
+    if (usbDevice == null) {
+      throw new IllegalArgumentException("USB device must be set");
+    }
+    this.usbDevice = (AUsbDevice) usbDevice;
+    final EIrpPriority[] priorities = EIrpPriority.values();
+    this.lanes = newLanes(priorities.length);
+    this.credits = new int[priorities.length];
+    this.queueWaitCount = new AtomicLongArray(priorities.length);
+    this.queueWaitNanos = new AtomicLongArray(priorities.length);
+    this.queueWaitMaxNanos = new AtomicLongArray(priorities.length);
+  }
+
+  /**
+   * Create the priority lanes.
+   *
+   * @param count The number of lanes.
+   * @return The empty lanes.
+   */
+  @SuppressWarnings("unchecked")
+  private static <T> Queue<QueuedIrp<T>>[] newLanes(final int count) {
+    final Queue<QueuedIrp<T>>[] lanes = new Queue[count];
+    for (int i = 0; i < count; i++) {
+      lanes[i] = new ConcurrentLinkedQueue<>();
+    }
+    return lanes;
+  }
+
+  /**
+   * Set the executor that processes the IRPs in this queue. The executor
+   * receives at most one queue processor task at a time so IRPs are always
+   * processed in FIFO order.
+   *
+   * @param executor The IRP executor. Must not be null.
+   * @see UsbIrpExecutors
+   */
+  public final void setExecutor(final Executor executor) {
+    if (executor == null) {
+      throw new IllegalArgumentException("IRP executor must be set");
+    }
+    this.executor = executor;
+  }
+
+  /**
+   * Get the executor that processes the IRPs in this queue.
+   *
+   * @return The IRP executor.
+   */
+  public final Executor getExecutor() {
+    return this.executor;
+  }
+
+  /**
+   * Set the policy for serving the priority lanes of this queue. The default
+   * is {@link EIrpScheduling#WEIGHTED WEIGHTED}.
+   *
+   * @param scheduling The scheduling policy. Must not be null.
+   */
+  public final void setScheduling(final EIrpScheduling scheduling) {
+    if (scheduling == null) {
+      throw new IllegalArgumentException("IRP scheduling policy must be set");
+    }
+    this.scheduling = scheduling;
+  }
+
+  /**
+   * Get the policy for serving the priority lanes of this queue.
+   *
+   * @return The scheduling policy.
+   */
+  public final EIrpScheduling getScheduling() {
+    return this.scheduling;
+  }
+
+  /**
+   * Set the aging timeout. An IRP which has been queued for longer than this
+   * is processed next regardless of its priority, which protects the lower
+   * priority lanes from starvation. The default is
+   * {@link UsbServiceInstanceConfiguration#PRIORITY_AGING_TIMEOUT}.
+   *
+   * @param timeout The aging timeout in milliseconds. Zero disables aging.
+   */
+  public final void setAgingTimeout(final long timeout) {
+    if (timeout < 0) {
+      throw new IllegalArgumentException("Aging timeout must not be negative");
+    }
+    this.agingNanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+  }
+
+  /**
+   * Get the aging timeout.
+   *
+   * @return The aging timeout in milliseconds. Zero if aging is disabled.
+   */
+  public final long getAgingTimeout() {
+    return TimeUnit.NANOSECONDS.toMillis(this.agingNanos);
+  }
+
+  /**
+   * Set the maximum number of queued IRPs and the policy applied when an IRP
+   * is added to the full queue. IRPs in progress (submitted to the device) do
+   * not count against the capacity. By default the queue is unbounded.
+   *
+   * @param capacity       The queue capacity. Zero for an unbounded queue.
+   * @param overflowPolicy The overflow policy. Must not be null.
+   */
+  public final void setCapacity(final int capacity, final EIrpOverflowPolicy overflowPolicy) {
+    if (capacity < 0) {
+      throw new IllegalArgumentException("Queue capacity must not be negative");
+    }
+    if (overflowPolicy == null) {
+      throw new IllegalArgumentException("Queue overflow policy must be set");
+    }
+    this.overflowPolicy = overflowPolicy;
+    this.capacity = capacity;
+    releaseCapacity(0);
+  }
+
+  /**
+   * Get the maximum number of queued IRPs.
+   *
+   * @return The queue capacity. Zero if the queue is unbounded.
+   */
+  public final int getCapacity() {
+    return this.capacity;
+  }
+
+  /**
+   * Get the policy applied when an IRP is added to the full queue.
+   *
+   * @return The overflow policy.
+   */
+  public final EIrpOverflowPolicy getOverflowPolicy() {
+    return this.overflowPolicy;
+  }
+
+  /**
+   * Get the current number of queued IRPs.
+   *
+   * @return The queue depth.
+   */
+  public final int getQueueDepth() {
+    return this.depth.get();
+  }
+
+  /**
+   * Get the highest number of queued IRPs observed.
+   *
+   * @return The queue high-water mark.
+   */
+  public final int getHighWaterMark() {
+    return this.highWaterMark.get();
+  }
+
+  /**
+   * Get the number of IRPs dropped or rejected because the queue was full.
+   *
+   * @return The overflow count.
+   */
+  public final long getOverflowCount() {
+    return this.overflowCount.get();
+  }
+
+  /**
+   * Reserve queue slots for the indicated number of IRPs, applying the
+   * overflow policy if the queue is full.
+   *
+   * @param count The number of IRPs to add.
+   * @return The number of slots reserved. Less than requested only with the
+   *         DROP_NEWEST policy, in which case the excess IRPs must be
+   *         {@link #drop(IUsbIrp) dropped}.
+   * @throws UsbException if the queue is full (FAIL policy) or the thread is
+   *                      interrupted while waiting (BLOCK policy)
+   */
+  private int reserve(final int count) throws UsbException {
+    while (true) {
+      final int limit = this.capacity;
+      final int current = this.depth.get();
+      if (limit == 0 || current + count <= limit) {
+        if (this.depth.compareAndSet(current, current + count)) {
+          final int reached = current + count;
+          int mark;
+          while (reached > (mark = this.highWaterMark.get()) && !this.highWaterMark.compareAndSet(mark, reached)) {
+            /**
+             * Retry until the high-water mark is updated.
+             */
+          }
+          return count;
+        }
+        continue;
+      }
+      switch (this.overflowPolicy) {
+        case FAIL:
+          this.overflowCount.incrementAndGet();
+          throw new UsbQueueFullException("IRP queue is full: capacity " + limit);
+        case DROP_NEWEST:
+          final int free = Math.max(0, limit - current);
+          if (free == 0 || this.depth.compareAndSet(current, current + free)) {
+            return free;
+          }
+          break;
+        case DROP_OLDEST:
+          if (!dropOldest()) {
+            /**
+             * Slots are reserved by other producers but their IRPs are not yet
+             * queued.
+             */
+            Thread.yield();
+          }
+          break;
+        case BLOCK:
+        default:
+          synchronized (this.capacityLock) {
+            this.blockedProducers++;
+            try {
+              if (this.depth.get() + count > this.capacity && this.capacity > 0) {
+                this.capacityLock.wait();
+              }
+            } catch (InterruptedException ex) {
+              Thread.currentThread().interrupt();
+              throw new UsbAbortException("Interrupted while waiting for IRP queue capacity");
+            } finally {
+              this.blockedProducers--;
+            }
+          }
+      }
+    }
+  }
+
+  /**
+   * Release queue slots and wake up producers waiting for capacity.
+   *
+   * @param count The number of IRPs taken from the queue.
+   */
+  private void releaseCapacity(final int count) {
+    if (count > 0) {
+      this.depth.addAndGet(-count);
+    }
+    if (this.blockedProducers > 0) {
+      synchronized (this.capacityLock) {
+        this.capacityLock.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Remove the oldest queued IRP (of any lane) to make room for a new one.
+   *
+   * @return TRUE if an IRP was dropped, FALSE if all lanes are empty.
+   */
+  private boolean dropOldest() {
+    Queue<QueuedIrp<T>> oldestLane = null;
+    long oldest = 0;
+    for (Queue<QueuedIrp<T>> lane : this.lanes) {
+      final QueuedIrp<T> head = lane.peek();
+      if (head != null && (oldestLane == null || head.queuedNanos - oldest < 0)) {
+        oldestLane = lane;
+        oldest = head.queuedNanos;
+      }
+    }
+    final QueuedIrp<T> queued = oldestLane == null ? null : oldestLane.poll();
+    if (queued == null) {
+      return false;
+    }
+    releaseCapacity(1);
+    drop(queued.irp);
+    return true;
+  }
+
+  /**
+   * Complete an IRP which was dropped because the queue was full. The IRP is
+   * completed on the executor like an asynchronous completion.
+   *
+   * @param irp The dropped IRP.
+   */
+  private void drop(final T irp) {
+    this.overflowCount.incrementAndGet();
+    irp.setUsbException(new UsbQueueFullException("IRP dropped: queue full"));
+    this.pending.incrementAndGet();
+    completeIrp(irp);
+  }
+
+  /**
+   * Set the timeout of each libusb transfer of this queue.
+   * <p>
+   * By default transfers time out after
+   * {@link UsbServiceInstanceConfiguration#TIMEOUT} milliseconds and IN
+   * transfers are then resubmitted, so a read waits indefinitely for data.
+   * Once a timeout is set it applies to every transfer in either direction: a
+   * transfer which does not complete in time fails with a UsbTimeoutException.
+   * <p>
+   * A large IRP may be transferred in several parts, each of which is subject
+   * to the timeout. Use an IRP {@link IUsbIrp#setDeadline(long) deadline} to
+   * bound the total time of an IRP.
+   *
+   * @param timeout The transfer timeout in milliseconds. Zero for no timeout.
+   */
+  public final void setTimeout(final long timeout) {
+    if (timeout < 0) {
+      throw new IllegalArgumentException("Timeout must not be negative");
+    }
+    this.timeout = timeout;
+  }
+
+  /**
+   * Get the timeout of each libusb transfer of this queue.
+   *
+   * @return The transfer timeout in milliseconds. Zero for no timeout.
+   */
+  public final long getTimeout() {
+    final long configured = this.timeout;
+    return configured < 0 ? UsbServiceInstanceConfiguration.TIMEOUT : configured;
+  }
+
+  /**
+   * Get the timeout for the next libusb transfer of the indicated IRP. This is
+   * the queue timeout, shortened to the time remaining until the IRP
+   * {@link IUsbIrp#getDeadline() deadline}, if any.
+   *
+   * @param irp The IRP to transfer.
+   * @return The transfer timeout in milliseconds. Zero for no timeout.
+   * @throws UsbTimeoutException if the IRP deadline has passed
+   */
+  protected final long getTransferTimeout(final IUsbIrp irp) throws UsbTimeoutException {
+    return getTransferTimeout(irp, getTimeout());
+  }
+
+  /**
+   * Get the timeout for the next libusb transfer of the indicated IRP,
+   * shortened to the time remaining until the IRP
+   * {@link IUsbIrp#getDeadline() deadline}, if any.
+   *
+   * @param irp     The IRP to transfer.
+   * @param timeout The transfer timeout in milliseconds. Zero for no timeout.
+   * @return The transfer timeout in milliseconds. Zero for no timeout.
+   * @throws UsbTimeoutException if the IRP deadline has passed
+   */
+  protected final long getTransferTimeout(final IUsbIrp irp, final long timeout) throws UsbTimeoutException {
+    long transferTimeout = timeout;
+    final long deadline = irp.getDeadline();
+    if (deadline != 0) {
+      final long remaining = deadline - System.nanoTime();
+      if (remaining <= 0) {
+        throw new UsbTimeoutException("IRP deadline expired");
+      }
+      /**
+       * Round up: a libusb timeout of zero means no timeout.
+       */
+      final long remainingMillis = (remaining + 999999) / 1000000;
+      transferTimeout = transferTimeout == 0 ? remainingMillis : Math.min(transferTimeout, remainingMillis);
+    }
+    return transferTimeout;
+  }
+
+  /**
+   * Indicates whether an IN transfer of the indicated IRP which timed out
+   * should be resubmitted. This is the case while the default timeout is in
+   * effect, the IRP deadline (if any) has not passed and the queue is not
+   * aborting.
+   *
+   * @param irp The IRP transferred.
+   * @return TRUE if the transfer should be resubmitted.
+   */
+  protected final boolean isResubmitOnTimeout(final IUsbIrp irp) {
+    final long deadline = irp.getDeadline();
+    return this.timeout < 0 && !this.aborting && (deadline == 0 || deadline - System.nanoTime() > 0);
+  }
+
+  /**
+   * Queues the specified IRP for processing and returns a future that is
+   * completed when the IRP is finished.
+   * <p>
+   * The future completes normally with the IRP if the IRP is successful, or
+   * exceptionally with the IRP {@link IUsbIrp#getUsbException() UsbException}.
+   * It is completed on the queue executor (never on the libusb event thread);
+   * no thread is blocked while the IRP is outstanding.
+   *
+   * @param irp The IRP to queue.
+   * @return a future completed when the IRP is finished
+   * @throws UsbException if the queue is full (FAIL policy) or the thread is
+   *                      interrupted while waiting for capacity (BLOCK
+   *                      policy)
+   */
+  public final CompletableFuture<IUsbIrp> submit(final T irp) throws UsbException {
+    final CompletableFuture<IUsbIrp> future;
+    if (irp instanceof AUsbIrp) {
+      future = ((AUsbIrp) irp).toCompletableFuture();
+    } else {
+      /**
+       * Foreign IRP implementations are tracked by the queue.
+       */
+      future = new CompletableFuture<>();
+      this.futures.put(irp, future);
+    }
+    try {
+      add(irp);
+    } catch (UsbException | RuntimeException e) {
+      this.futures.remove(irp);
+      throw e;
+    }
+    return future;
+  }
+
+  /**
+   * Queues a list of IRPs for processing as one batch and returns a future
+   * that is completed when all IRPs of the batch are finished.
+   * <p>
+   * The IRPs are appended to their priority lanes in one atomic operation per
+   * lane: no IRP added concurrently by another thread is interleaved with the
+   * batch IRPs of the same priority, and the
+   * queue processor is scheduled once for the whole batch. The IRPs are then
+   * submitted back-to-back without waiting for the previous IRP to complete,
+   * so the batch is kept in flight up to the transfer window of the queue.
+   * <p>
+   * The future completes normally if all IRPs are successful, or exceptionally
+   * with the UsbException of the first failed IRP. After a failure the IRPs of
+   * the batch not yet submitted are completed with a UsbAbortException. The
+   * status of each IRP is available from the IRP itself.
+   *
+   * <p>
+   * On a bounded queue the batch must fit the queue capacity. The
+   * {@link #setCapacity(int, EIrpOverflowPolicy) overflow policy} applies to
+   * the batch as a whole, except that with DROP_NEWEST the batch IRPs which do
+   * not fit are dropped.
+   *
+   * @param irps The IRPs to queue. An empty list is completed immediately.
+   * @return a future completed when all IRPs of the batch are finished
+   * @throws UsbException if the queue is full (FAIL policy) or the thread is
+   *                      interrupted while waiting for capacity (BLOCK
+   *                      policy)
+   */
+  public final CompletableFuture<Void> submitAll(final List<? extends T> irps) throws UsbException {
+    if (irps == null) {
+      throw new IllegalArgumentException("IRP list must not be null");
+    }
+    if (irps.isEmpty()) {
+      return CompletableFuture.completedFuture(null);
+    }
+    final int limit = this.capacity;
+    if (limit > 0 && irps.size() > limit) {
+      throw new IllegalArgumentException("IRP list exceeds the queue capacity " + limit);
+    }
+    final Map<T, Boolean> distinct = new IdentityHashMap<>(irps.size());
+    for (final T irp : irps) {
+      if (irp == null) {
+        throw new IllegalArgumentException("IRP list must not contain null");
+      }
+      if (distinct.put(irp, Boolean.TRUE) != null || this.batches.containsKey(irp)) {
+        throw new IllegalArgumentException("IRP is already submitted");
+      }
+    }
+    final int reserved = reserve(irps.size());
+    final UsbIrpBatch batch = new UsbIrpBatch(irps.size());
+    /**
+     * Register the batch before any IRP is visible to the queue processor.
+     */
+    for (final T irp : irps) {
+      this.batches.put(irp, batch);
+      if (irp instanceof AUsbIrp) {
+        ((AUsbIrp) irp).setQueue(this);
+      }
+    }
+    final long now = System.nanoTime();
+    final List<List<QueuedIrp<T>>> byLane = new ArrayList<>(this.lanes.length);
+    for (int i = 0; i < this.lanes.length; i++) {
+      byLane.add(new ArrayList<QueuedIrp<T>>());
+    }
+    for (int i = 0; i < irps.size(); i++) {
+      final T irp = irps.get(i);
+      if (i < reserved) {
+        byLane.get(lane(irp)).add(new QueuedIrp<>(irp, now, this.queuedSequence.incrementAndGet()));
+      } else {
+        drop(irp);
+      }
+    }
+    for (int i = 0; i < this.lanes.length; i++) {
+      if (!byLane.get(i).isEmpty()) {
+        this.lanes[i].addAll(byLane.get(i));
+      }
+    }
+    if (this.scheduled.compareAndSet(false, true)) {
+      dispatch();
+    }
+    return batch.getFuture();
+  }
+
+  /**
+   * Queues the specified control IRP for processUsbIrpQueueing.
+   * <p>
+   * If the queue is {@link #setCapacity(int, EIrpOverflowPolicy) bounded} and
+   * full the overflow policy is applied.
+   *
+   * @param irp The control IRP to queue.
+   * @throws UsbException if the queue is full (FAIL policy) or the thread is
+   *                      interrupted while waiting for capacity (BLOCK
+   *                      policy)
+   */
+  public final void add(final T irp) throws UsbException {
+    if (irp instanceof AUsbIrp) {
+      ((AUsbIrp) irp).setQueue(this);
+    }
+    if (reserve(1) == 0) {
+      drop(irp);
+      return;
+    }
+    /**
+     * Add the USB IRP to the lane of its priority.
+     */
+    this.lanes[lane(irp)].add(new QueuedIrp<>(irp, System.nanoTime(), this.queuedSequence.incrementAndGet()));
+    /**
+     * Schedule a queue processor if one is not already running. If a processor
+     * is already running then it will handle the just-added IRP as it iterates
+     * through the FIFO queue.
+     */
+    if (this.scheduled.compareAndSet(false, true)) {
+      dispatch();
+    }
+  }
+
+  /**
+   * Submit the queue processor task to the executor. This must only be called
+   * by the thread that set the {@code scheduled} flag.
+   * <p>
+   * If the executor rejects the task (e.g. because it has been shut down) then
+   * the queue is processed in a new daemon thread.
+   */
+  private void dispatch() {
+    this.scheduledNanos = System.nanoTime();
+    try {
+      this.executor.execute(this.processor);
+    } catch (RejectedExecutionException ex) {
+      final Thread thread = new Thread(this.processor, "usb4java IRP Queue Processor");
+      thread.setDaemon(true);
+      thread.start();
+    }
+  }
+
+  /**
+   * Get the lane index of the indicated IRP.
+   *
+   * @param irp The IRP.
+   * @return The index of the lane of the IRP priority.
    */
-  private final Queue<T> usbIrpQueue = new ConcurrentLinkedQueue<>();
+  private static int lane(final IUsbIrp irp) {
+    final EIrpPriority priority = irp.getPriority();
+    return (priority == null ? EIrpPriority.NORMAL : priority).ordinal();
+  }
 
   /**
-   * The queue processUsbIrpQueueor thread.
+   * Indicates that no IRP is queued in any lane.
+   *
+   * @return TRUE if all lanes are empty.
    */
-  private volatile Thread usbIrpQueueProcessorThread;
+  private boolean isQueueEmpty() {
+    for (Queue<QueuedIrp<T>> lane : this.lanes) {
+      if (!lane.isEmpty()) {
+        return false;
+      }
+    }
+    return true;
+  }
 
   /**
-   * If queue is currently aborting.
+   * Take the next IRP to process from the priority lanes and record its queue
+   * wait time. This must only be called by the queue processor.
+   * <p>
+   * An IRP whose wait exceeds the aging timeout is taken first (the oldest
+   * such IRP of the lower priority lanes). Otherwise the lanes are served
+   * according to the scheduling policy.
+   *
+   * @return The next IRP, null if all lanes are empty.
    */
-  private volatile boolean aborting;
+  private T pollIrp() {
+    final long now = System.nanoTime();
+    QueuedIrp<T> queued = null;
+    final long aging = this.agingNanos;
+    if (aging > 0) {
+      Queue<QueuedIrp<T>> starved = null;
+      long oldest = 0;
+      for (int i = 1; i < this.lanes.length; i++) {
+        final QueuedIrp<T> head = this.lanes[i].peek();
+        if (head != null && now - head.queuedNanos >= aging && (starved == null || head.queuedNanos - oldest < 0)) {
+          starved = this.lanes[i];
+          oldest = head.queuedNanos;
+        }
+      }
+      if (starved != null) {
+        queued = starved.poll();
+      }
+    }
+    if (queued == null) {
+      queued = EIrpScheduling.STRICT.equals(this.scheduling) ? pollStrict() : pollWeighted();
+    }
+    if (queued == null) {
+      return null;
+    }
+    releaseCapacity(1);
+    final int lane = lane(queued.irp);
+    final long wait = now - queued.queuedNanos;
+    this.queueWaitCount.incrementAndGet(lane);
+    this.queueWaitNanos.addAndGet(lane, wait);
+    long max;
+    while (wait > (max = this.queueWaitMaxNanos.get(lane)) && !this.queueWaitMaxNanos.compareAndSet(lane, max, wait)) {
+      /**
+       * Retry until the maximum is updated.
+       */
+    }
+    this.statistics.recordQueueWait(wait);
+    return queued.irp;
+  }
 
   /**
-   * The USB device instance upon which the QUEUE is to be processed. This is
-   * either a UsbHub or UsbDevice implementation.
+   * Take the head of the highest priority lane which is not empty.
+   *
+   * @return The queued IRP, null if all lanes are empty.
    */
-  protected final AUsbDevice usbDevice;
+  private QueuedIrp<T> pollStrict() {
+    for (Queue<QueuedIrp<T>> lane : this.lanes) {
+      final QueuedIrp<T> queued = lane.poll();
+      if (queued != null) {
+        return queued;
+      }
+    }
+    return null;
+  }
 
   /**
-   * Constructor.
+   * Take the head of the highest priority lane which is not empty and has
+   * credit left in the current weighted round. A new round is started once no
+   * lane with queued IRPs has credit left.
    *
-   * @param usbDevice The USB usbDevice. Must not be null.
+   * @return The queued IRP, null if all lanes are empty.
    */
-  public AUsbIrpQueue(final IUsbDevice usbDevice) {
-    if (usbDevice == null) {
-      throw new IllegalArgumentException("USB device must be set");
+  private QueuedIrp<T> pollWeighted() {
+    for (int round = 0; round < 2; round++) {
+      for (int i = 0; i < this.lanes.length; i++) {
+        if (this.credits[i] > 0) {
+          final QueuedIrp<T> queued = this.lanes[i].poll();
+          if (queued != null) {
+            this.credits[i]--;
+            return queued;
+          }
+        }
+      }
+      final EIrpPriority[] priorities = EIrpPriority.values();
+      for (int i = 0; i < this.credits.length; i++) {
+        this.credits[i] = priorities[i].getWeight();
+      }
     }
-    this.usbDevice = (AUsbDevice) usbDevice;
+    return null;
   }
 
   /**
-   * Queues the specified control IRP for processUsbIrpQueueing.
+   * Remove the indicated IRP from its lane.
    *
-   * @param irp The control IRP to queue.
+   * @param irp The IRP.
+   * @return TRUE if the IRP was queued and has been removed.
    */
-  public final void add(final T irp) {
-    /**
-     * Add the USB IRP to the queue.
-     */
-    this.usbIrpQueue.add(irp);
-    /**
-     * Spawn a new UsbIrpQueueProcessorThread if one is not already running. If
-     * a thread is already running then it will handle the just-added IRP as
-     * that thread iterates through the FIFO queue.
-     */
-    if (this.usbIrpQueueProcessorThread == null) {
-      this.usbIrpQueueProcessorThread = new Thread(new Runnable() {
-        @Override
-        public void run() {
-          processUsbIrpQueue();
+  private boolean removeQueued(final IUsbIrp irp) {
+    final Queue<QueuedIrp<T>> lane = this.lanes[lane(irp)];
+    for (QueuedIrp<T> queued : lane) {
+      if (queued.irp == irp) {
+        /**
+         * Removal of the (identical) element is atomic with respect to the
+         * queue processor taking it.
+         */
+        if (lane.remove(queued)) {
+          releaseCapacity(1);
+          return true;
         }
-      }, "usb4java IRP Queue Processor");
-      /**
-       * Developer note: Mark this thread as a daemon thread. A daemon thread in
-       * Java is one that doesn't prevent the JVM from exiting. When the JVM
-       * halts any remaining daemon threads are abandoned: finally blocks are
-       * not executed, stacks are not unwound - JVM just exits.
-       */
-      this.usbIrpQueueProcessorThread.setDaemon(true);
-      /**
-       * Start the thread. This will begin processing all IRPs in the queue in a
-       * separate thread and immediately return (e.g. asynchronously).
-       */
-      this.usbIrpQueueProcessorThread.start();
+        return false;
+      }
     }
+    return false;
   }
 
   /**
    * Internal method to processUsbIrpQueue all IRPs in the FIFO queue. This
    * method returns after all IRP objects in the queue have been
-   * processUsbIrpQueueed.
+   * processUsbIrpQueueed, or after {@value #PROCESSOR_BATCH_SIZE} IRPs have
+   * been processed, in which case the processor is resubmitted to the executor
+   * to continue with the remaining IRPs.
    * <p>
-   * This method should be called from within a separate thread to enable
-   * asynchronous operation.
+   * This method is called from within the executor to enable asynchronous
+   * operation.
    */
   private void processUsbIrpQueue() {
+    this.processorThread = Thread.currentThread();
+    this.dispatchCount.incrementAndGet();
+    this.dispatchLatencyNanos.addAndGet(System.nanoTime() - this.scheduledNanos);
+    int processed = 0;
     /**
      * Get the first IRP from the queue ready for processing.
      */
-    T usbIrp = this.usbIrpQueue.poll();
-    /**
-     * If there are no IRPs to process then mark the thread as closing right
-     * away. Otherwise process the IRP (and more IRPs from the queue if
-     * present).
-     */
+    T usbIrp = pollIrp();
     if (usbIrp == null) {
-      this.usbIrpQueueProcessorThread = null;
-    } else {
-      while (usbIrp != null) {
-        // Process the IRP
+      /**
+       * The queue may have been cleared (aborted) while a resubmitted
+       * processor was waiting to run.
+       */
+      usbIrp = releaseOrPoll();
+    }
+    while (usbIrp != null) {
+      this.processing = true;
+      /**
+       * Process the IRP. Count the IRP as pending before it is submitted since
+       * an asynchronous completion may arrive before submitIrp returns. It
+       * stays pending until it is finished.
+       */
+      boolean completed = true;
+      this.pending.incrementAndGet();
+      final UsbIrpBatch batch = this.batches.isEmpty() ? null : this.batches.get(usbIrp);
+      final long deadline = usbIrp.getDeadline();
+      if (batch != null && batch.isFailed()) {
+        /**
+         * Fail fast: a previous IRP of the batch has failed.
+         */
+        usbIrp.setUsbException(new UsbAbortException("A previous IRP of the batch failed"));
+      } else if (deadline != 0 && deadline - System.nanoTime() <= 0) {
+        /**
+         * Drop IRPs which expired while queued before they reach the wire.
+         */
+        usbIrp.setUsbException(new UsbTimeoutException("IRP deadline expired while queued"));
+      } else {
+        final long submitted = System.nanoTime();
         try {
-          processIrp(usbIrp);
+          completed = submitIrp(usbIrp);
         } catch (final UsbException e) {
           usbIrp.setUsbException(e);
         }
-        /**
-         * Developer note: Get next IRP and (if necessary) mark the thread as
-         * closing before sending events for the previous IRP. This is important
-         * for asynchronous notification.
-         */
-        final T usbIrpNext = this.usbIrpQueue.poll();
-        if (usbIrpNext == null) {
-          this.usbIrpQueueProcessorThread = null;
+        if (completed) {
+          this.statistics.recordTransfer(System.nanoTime() - submitted);
         }
-        /**
-         * Finish the previous IRP.
-         */
-        usbIrp.complete();
-        finishIrp(usbIrp);
-        /**
-         * Set the usbIrp variable to the next IRP. This will continue the WHILE
-         * loop one more time (if not null)
-         */
-        usbIrp = usbIrpNext;
       }
+      /**
+       * Yield the executor thread to other queues after a full batch. The
+       * {@code scheduled} flag is kept so that no other processor is started
+       * while this one is resubmitted.
+       */
+      final boolean yield = ++processed >= PROCESSOR_BATCH_SIZE && !isQueueEmpty();
+      /**
+       * Developer note: Get next IRP and (if necessary) mark the processor as
+       * idle before sending events for the previous IRP. This is important for
+       * asynchronous notification.
+       */
+      final T usbIrpNext = yield ? null : pollIrp();
+      if (usbIrpNext == null) {
+        this.processing = false;
+      }
+      /**
+       * Finish the previous IRP (unless it will be completed asynchronously).
+       */
+      if (completed) {
+        finishPending(usbIrp);
+      }
+      if (yield) {
+        releaseProcessorThread();
+        dispatch();
+        return;
+      }
+      /**
+       * Set the usbIrp variable to the next IRP. This will continue the WHILE
+       * loop one more time (if not null)
+       */
+      usbIrp = usbIrpNext;
+      if (usbIrp == null) {
+        usbIrp = releaseOrPoll();
+      }
+    }
+
+    releaseProcessorThread();
+    // No more IRPs are present in the queue so release any waiting threads.
+    synchronized (this.idleLock) {
+      this.idleLock.notifyAll();
+    }
+  }
+
+  /**
+   * Clear the processor thread when the queue processor returns.
+   */
+  private void releaseProcessorThread() {
+    if (this.processorThread == Thread.currentThread()) {
+      this.processorThread = null;
     }
+  }
 
-    // No more IRPs are present in the queue so terminate the thread.
-    synchronized (this.usbIrpQueue) {
-      this.usbIrpQueue.notifyAll();
+  /**
+   * No more IRPs are present. Release the scheduled flag then check again for
+   * IRPs that were added after the last poll but before the flag was
+   * released. This must only be called by the queue processor.
+   * <p>
+   * If the flag is taken back but the IRP seen is removed (cancelled, aborted
+   * or dropped) before it is polled, the flag is released again: returning
+   * with the flag set would stop the queue for good.
+   *
+   * @return The next IRP to process with the scheduled flag set, or null with
+   *         the flag released.
+   */
+  private T releaseOrPoll() {
+    while (true) {
+      this.scheduled.set(false);
+      if (isQueueEmpty() || !this.scheduled.compareAndSet(false, true)) {
+        return null;
+      }
+      final T usbIrp = pollIrp();
+      if (usbIrp != null) {
+        return usbIrp;
+      }
     }
   }
 
@@ -186,6 +1141,122 @@ public abstract class AUsbIrpQueue<T extends IUsbIrp> {
    */
   protected abstract void processIrp(final T irp) throws UsbException;
 
+  /**
+   * Submits the IRP for processing. The default implementation
+   * {@link #processIrp(IUsbIrp) processes} the IRP synchronously.
+   * <p>
+   * Implementations supporting asynchronous transfers may instead hand the IRP
+   * to the native layer and return FALSE, in which case they must later call
+   * {@link #completeIrp(IUsbIrp, long)} exactly once for the IRP.
+   *
+   * @param irp The IRP to submit.
+   * @return TRUE if the IRP was processed synchronously, FALSE if it will be
+   *         completed asynchronously.
+   * @throws UsbException When submitting the IRP fails.
+   */
+  protected boolean submitIrp(final T irp) throws UsbException {
+    processIrp(irp);
+    return true;
+  }
+
+  /**
+   * Completes an IRP that was submitted for asynchronous completion. The IRP is
+   * {@link IUsbIrp#complete() completed} and the
+   * {@link #finishIrp(IUsbIrp) finish} notification is delivered in completion
+   * order on the queue executor, so that listeners and future completion
+   * stages never run on (and block) the libusb event thread.
+   *
+   * @param irp The IRP which has been completed.
+   */
+  protected final void completeIrp(final T irp) {
+    this.completedQueue.add(irp);
+    if (this.notifying.compareAndSet(false, true)) {
+      try {
+        this.executor.execute(this.notifier);
+      } catch (RejectedExecutionException ex) {
+        final Thread thread = new Thread(this.notifier, "usb4java IRP Completion Notifier");
+        thread.setDaemon(true);
+        thread.start();
+      }
+    }
+  }
+
+  /**
+   * Completes an IRP that was submitted to the device for asynchronous
+   * completion and records its transfer time.
+   *
+   * @param irp       The IRP which has been completed.
+   * @param submitted The time (nanoseconds) the IRP was submitted to the
+   *                  device.
+   */
+  protected final void completeIrp(final T irp, final long submitted) {
+    this.statistics.recordTransfer(System.nanoTime() - submitted);
+    completeIrp(irp);
+  }
+
+  /**
+   * Internal method to deliver the finish notification for all asynchronously
+   * completed IRPs.
+   */
+  private void notifyCompletedIrps() {
+    do {
+      T usbIrp;
+      while ((usbIrp = this.completedQueue.poll()) != null) {
+        finishPending(usbIrp);
+      }
+      this.notifying.set(false);
+    } while (!this.completedQueue.isEmpty() && this.notifying.compareAndSet(false, true));
+    synchronized (this.idleLock) {
+      this.idleLock.notifyAll();
+    }
+  }
+
+  /**
+   * Finishes a pending IRP. The IRP is no longer counted as pending once it
+   * is finished, so that {@link #abort()} waits for IRPs whose listeners are
+   * still running.
+   *
+   * @param irp The IRP which has been processed.
+   */
+  private void finishPending(final T irp) {
+    try {
+      finish(irp);
+    } finally {
+      this.pending.decrementAndGet();
+      this.notified.decrementAndGet();
+    }
+  }
+
+  /**
+   * Completes an IRP, sends the finish notification and completes the future
+   * returned by {@link #submit(IUsbIrp)}, if any. The IRP is also counted
+   * against its {@link #submitAll(List) batch}, if any.
+   *
+   * @param irp The IRP which has been processed.
+   */
+  private void finish(final T irp) {
+    /**
+     * The queue is not busy with an IRP whose waiters are released.
+     */
+    this.notified.incrementAndGet();
+    irp.complete();
+    final long start = System.nanoTime();
+    finishIrp(irp);
+    this.statistics.recordFinished(irp, System.nanoTime() - start);
+    final CompletableFuture<IUsbIrp> future = this.futures.isEmpty() ? null : this.futures.remove(irp);
+    if (future != null) {
+      if (irp.isUsbException()) {
+        future.completeExceptionally(irp.getUsbException());
+      } else {
+        future.complete(irp);
+      }
+    }
+    final UsbIrpBatch batch = this.batches.isEmpty() ? null : this.batches.remove(irp);
+    if (batch != null) {
+      batch.finished(irp);
+    }
+  }
+
   /**
    * Called after IRP has finished. This can be implemented to send events for
    * example.
@@ -195,35 +1266,301 @@ public abstract class AUsbIrpQueue<T extends IUsbIrp> {
   protected abstract void finishIrp(final IUsbIrp irp);
 
   /**
-   * Aborts all queued IRPs. The IRP which is currently processUsbIrpQueueed
-   * can't be aborted. This method returns as soon as no more IRPs are in the
-   * queue and no more are processUsbIrpQueueed.
+   * Aborts all queued and in-flight IRPs. Queued IRPs are removed from the
+   * queue and in-flight transfers are cancelled on the native level; all of
+   * them complete with a UsbAbortException. This method returns as soon as no
+   * more IRPs are in the queue and no more are processed, which is normally
+   * within milliseconds.
+   * <p>
+   * Completions are delivered in two groups and listeners are never called
+   * concurrently. The IRPs in flight complete first, in the order in which
+   * the native layer reports their cancellation; this is not guaranteed to be
+   * the submission order when more than one transfer is in flight. The IRPs
+   * removed from the queue complete afterwards in submission order,
+   * regardless of their priority.
    */
   public final void abort() {
     this.aborting = true;
-    this.usbIrpQueue.clear();
-    while (isBusy()) {
+    final List<QueuedIrp<T>> removed = new ArrayList<>();
+    for (Queue<QueuedIrp<T>> lane : this.lanes) {
+      QueuedIrp<T> queued;
+      while ((queued = lane.poll()) != null) {
+        releaseCapacity(1);
+        removed.add(queued);
+      }
+    }
+    Collections.sort(removed, new Comparator<QueuedIrp<T>>() {
+      @Override
+      public int compare(final QueuedIrp<T> a, final QueuedIrp<T> b) {
+        return Long.compare(a.sequence, b.sequence);
+      }
+    });
+    final List<T> aborted = new ArrayList<>(removed.size());
+    for (QueuedIrp<T> queued : removed) {
+      aborted.add(queued.irp);
+    }
+    synchronized (this.transfers) {
+      for (IUsbTransfer transfer : this.transfers.keySet()) {
+        transfer.cancel();
+      }
+    }
+    abortTransfers();
+    waitUntilFinished();
+    for (T irp : aborted) {
+      irp.setUsbException(new UsbAbortException("IRP queue aborted"));
+      this.pending.incrementAndGet();
+      completeIrp(irp);
+    }
+    waitUntilFinished();
+    this.aborting = false;
+  }
+
+  /**
+   * Indicates that IRPs are queued, processed or pending notification, or
+   * that the queue processor is still finishing an IRP. The queue processor
+   * itself is ignored if this is called by one of its listeners.
+   *
+   * @return TRUE if an IRP may still be finished.
+   */
+  private boolean isFinishing() {
+    if (!isQueueEmpty() || this.processing || this.pending.get() > 0) {
+      return true;
+    }
+    final Thread processor = this.processorThread;
+    return this.scheduled.get() && processor != null && processor != Thread.currentThread();
+  }
+
+  /**
+   * Wait until no IRP is queued, processed or pending notification and the
+   * queue processor has finished its last IRP.
+   */
+  private void waitUntilFinished() {
+    while (isFinishing()) {
       try {
-        synchronized (this.usbIrpQueue) {
-          if (isBusy()) {
-            this.usbIrpQueue.wait();
+        synchronized (this.idleLock) {
+          if (isFinishing()) {
+            this.idleLock.wait();
           }
         }
       } catch (final InterruptedException e) {
         Thread.currentThread().interrupt();
       }
     }
-    this.aborting = false;
+  }
+
+  /**
+   * Cancels the indicated IRP. A queued IRP is removed from the queue and
+   * completed with a UsbAbortException. The libusb transfer of an IRP in
+   * progress is cancelled, which completes the IRP with a UsbAbortException.
+   *
+   * @param irp The IRP to cancel.
+   * @return TRUE if the cancellation was requested, FALSE if the IRP is not
+   *         queued or in progress.
+   */
+  @SuppressWarnings("unchecked")
+  public final boolean cancel(final IUsbIrp irp) {
+    if (irp.isComplete()) {
+      return false;
+    }
+    if (removeQueued(irp)) {
+      /**
+       * The IRP is completed on the executor like an asynchronous completion.
+       */
+      irp.setUsbException(new UsbAbortException("IRP cancelled"));
+      this.pending.incrementAndGet();
+      completeIrp((T) irp);
+      return true;
+    }
+    boolean cancelled = false;
+    synchronized (this.transfers) {
+      for (Map.Entry<IUsbTransfer, IUsbIrp> entry : this.transfers.entrySet()) {
+        if (entry.getValue() == irp && entry.getKey().cancel() == LibUsb.SUCCESS) {
+          cancelled = true;
+        }
+      }
+    }
+    return cancelled;
+  }
+
+  /**
+   * Submit a populated transfer to the transfer engine and record it as
+   * in flight for the indicated IRP, so that it is cancelled if the IRP is
+   * cancelled or the queue is aborted.
+   * <p>
+   * The transfer callback must call {@link #removeTransfer(IUsbTransfer)} before
+   * the transfer is freed.
+   *
+   * @param transfer The transfer to submit.
+   * @param irp      The IRP transferred.
+   * @throws UsbException if the queue is aborting or the backend refuses the
+   *                      transfer
+   */
+  protected final void startTransfer(final IUsbTransfer transfer, final IUsbIrp irp) throws UsbException {
+    synchronized (this.transfers) {
+      if (this.aborting) {
+        throw new UsbAbortException();
+      }
+      this.transfers.put(transfer, irp);
+      try {
+        this.usbDevice.deviceManager.getTransferEngine().submit(transfer);
+      } catch (UsbException e) {
+        this.transfers.remove(transfer);
+        throw e;
+      }
+    }
+  }
+
+  /**
+   * Remove a finished transfer from the transfers in flight. This must be
+   * called before the transfer is freed.
+   *
+   * @param transfer The finished transfer.
+   */
+  protected final void removeTransfer(final IUsbTransfer transfer) {
+    synchronized (this.transfers) {
+      this.transfers.remove(transfer);
+    }
+  }
+
+  /**
+   * Submit a libusb transfer and wait until it is finished. This replaces the
+   * blocking libusb transfer functions: the transfer can be cancelled by
+   * {@link #cancel(IUsbIrp)} and {@link #abort()} while it is in progress.
+   * <p>
+   * The transfer must be populated except for its callback, user data and
+   * timeout: the {@link #getTransferTimeout(IUsbIrp) transfer timeout} is set
+   * on every submission. Transfers that time out are resubmitted if requested
+   * and {@link #isResubmitOnTimeout(IUsbIrp) permitted}. An interrupt of the
+   * waiting thread cancels the transfer.
+   *
+   * @param transfer     The populated transfer.
+   * @param irp          The IRP transferred.
+   * @param retryTimeout TRUE to resubmit the transfer when it times out.
+   * @return The number of transferred bytes.
+   * @throws UsbException if the transfer is cancelled (UsbAbortException),
+   *                      times out (UsbTimeoutException) or fails
+   */
+  protected final int transferAndWait(final IUsbTransfer transfer, final IUsbIrp irp, final boolean retryTimeout) throws UsbException {
+    transfer.setCallback(WAIT_CALLBACK);
+    int status;
+    do {
+      final CountDownLatch latch = new CountDownLatch(1);
+      transfer.setUserData(latch);
+      transfer.setTimeout(getTransferTimeout(irp));
+      startTransfer(transfer, irp);
+      boolean interrupted = false;
+      while (latch.getCount() > 0) {
+        try {
+          latch.await();
+        } catch (InterruptedException ex) {
+          interrupted = true;
+          synchronized (this.transfers) {
+            transfer.cancel();
+          }
+        }
+      }
+      removeTransfer(transfer);
+      this.usbDevice.deviceManager.getTransferEngine().transferCompleted(transfer);
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+      status = transfer.status();
+    } while (retryTimeout && status == LibUsb.TRANSFER_TIMED_OUT && isResubmitOnTimeout(irp) && !Thread.currentThread().isInterrupted());
+    if (status == LibUsb.TRANSFER_COMPLETED) {
+      return transfer.actualLength();
+    }
+    if (status == LibUsb.TRANSFER_CANCELLED || status == LibUsb.TRANSFER_TIMED_OUT && this.aborting) {
+      throw new UsbAbortException();
+    }
+    if (status == LibUsb.TRANSFER_TIMED_OUT) {
+      throw new UsbTimeoutException("Transfer timed out after " + transfer.timeout() + " ms");
+    }
+    throw UsbExceptionFactory.createPlatformException("Transfer error", UsbTransferEngine.toErrorCode(status));
+  }
+
+  /**
+   * Called by {@link #abort()} after the queue has been cleared. This can be
+   * implemented to release threads waiting on in-flight transfers for example.
+   */
+  protected void abortTransfers() {
   }
 
   /**
    * Checks if queue is busy. A busy queue is a queue which is currently
-   * processUsbIrpQueueing IRPs or which still has IRPs in the queue.
+   * processUsbIrpQueueing IRPs, which still has IRPs in the queue or which has
+   * IRPs awaiting asynchronous completion. IRPs which are complete but whose
+   * listeners are still running do not keep the queue busy.
    *
    * @return True if queue is busy, false if not.
    */
   public final boolean isBusy() {
-    return !this.usbIrpQueue.isEmpty() || this.usbIrpQueueProcessorThread != null;
+    return !isQueueEmpty() || this.processing || this.pending.get() - this.notified.get() > 0;
+  }
+
+  /**
+   * Get the latency and throughput statistics of this queue.
+   *
+   * @return The queue statistics.
+   */
+  public final UsbIrpQueueStatistics getStatistics() {
+    return this.statistics;
+  }
+
+  /**
+   * Get the number of queue processor tasks dispatched to the executor. This
+   * indicates how often the queue went from idle to busy (plus one for every
+   * full processing batch).
+   *
+   * @return The number of dispatched queue processor tasks.
+   */
+  public final long getDispatchCount() {
+    return this.dispatchCount.get();
+  }
+
+  /**
+   * Get the average dispatch latency. This is the time between an IRP being
+   * added to an idle queue and the queue processor starting to run.
+   *
+   * @return The average dispatch latency in nanoseconds. Zero if no queue
+   *         processor has been dispatched.
+   */
+  public final long getAverageDispatchLatency() {
+    final long count = this.dispatchCount.get();
+    return count == 0 ? 0 : this.dispatchLatencyNanos.get() / count;
+  }
+
+  /**
+   * Get the number of IRPs of the indicated priority taken from the queue for
+   * processing.
+   *
+   * @param priority The priority class.
+   * @return The number of IRPs.
+   */
+  public final long getQueueWaitCount(final EIrpPriority priority) {
+    return this.queueWaitCount.get(priority.ordinal());
+  }
+
+  /**
+   * Get the average queue wait time of IRPs of the indicated priority. This is
+   * the time between an IRP being queued and the queue processor taking it.
+   *
+   * @param priority The priority class.
+   * @return The average queue wait time in nanoseconds. Zero if no IRP of the
+   *         priority has been processed.
+   */
+  public final long getAverageQueueWait(final EIrpPriority priority) {
+    final long count = this.queueWaitCount.get(priority.ordinal());
+    return count == 0 ? 0 : this.queueWaitNanos.get(priority.ordinal()) / count;
+  }
+
+  /**
+   * Get the maximum queue wait time of IRPs of the indicated priority.
+   *
+   * @param priority The priority class.
+   * @return The maximum queue wait time in nanoseconds.
+   */
+  public final long getMaxQueueWait(final EIrpPriority priority) {
+    return this.queueWaitMaxNanos.get(priority.ordinal());
   }
 
   /**
@@ -241,18 +1578,52 @@ public abstract class AUsbIrpQueue<T extends IUsbIrp> {
    * @throws UsbException When processUsbIrpQueueing the IRP fails.
    */
   protected final void processControlIrp(final IUsbControlIrp irp) throws UsbException {
-    final ByteBuffer buffer = ByteBuffer.allocateDirect(irp.getLength());
-    buffer.put(irp.getData(), irp.getOffset(), irp.getLength());
-    buffer.rewind();
-    final DeviceHandle deviceHandle = usbDevice.open();
-    final int result = LibUsb.controlTransfer(deviceHandle, irp.bmRequestType(),
-                                              irp.bRequest(), irp.wValue(), irp.wIndex(), buffer,
-                                              UsbServiceInstanceConfiguration.TIMEOUT);
-    if (result < 0) {
-      throw UsbExceptionFactory.createPlatformException("Unable to submit control message", result);
-    }
-    buffer.rewind();
-    buffer.get(irp.getData(), irp.getOffset(), result);
+    /**
+     * The setup packet precedes the data in the transfer buffer, so the data is
+     * always staged in a pooled buffer.
+     */
+    final boolean deviceToHost = (irp.bmRequestType() & 0x80) != 0;
+    final ByteBuffer direct = irp.getDataBuffer();
+    final ByteBuffer pooled = BufferUtility.acquireByteBuffer(LibUsb.CONTROL_SETUP_SIZE + irp.getLength());
+    final IUsbTransfer transfer = this.usbDevice.deviceManager.getBackend().allocTransfer(0);
+    final int result;
+    try {
+      if (transfer == null) {
+        throw new UsbException("Unable to allocate a transfer");
+      }
+      final ControlSetup setup = new ControlSetup(pooled);
+      setup.setBmRequestType(irp.bmRequestType());
+      setup.setBRequest(irp.bRequest());
+      setup.setWValue(irp.wValue());
+      setup.setWIndex(irp.wIndex());
+      setup.setWLength((short) irp.getLength());
+      if (!deviceToHost) {
+        pooled.position(LibUsb.CONTROL_SETUP_SIZE);
+        if (direct != null) {
+          pooled.put(BufferUtility.slice(direct, irp.getOffset(), irp.getLength()));
+        } else {
+          pooled.put(irp.getData(), irp.getOffset(), irp.getLength());
+        }
+        pooled.rewind();
+      }
+      transfer.fill(this.usbDevice.open(), EDataFlowtype.CONTROL, (byte) 0, pooled, null, null, 0);
+      result = transferAndWait(transfer, irp, false);
+      if (deviceToHost) {
+        pooled.position(LibUsb.CONTROL_SETUP_SIZE);
+        if (direct != null) {
+          final ByteBuffer target = BufferUtility.slice(direct, irp.getOffset(), result);
+          pooled.limit(LibUsb.CONTROL_SETUP_SIZE + result);
+          target.put(pooled);
+        } else {
+          pooled.get(irp.getData(), irp.getOffset(), result);
+        }
+      }
+    } finally {
+      if (transfer != null) {
+        transfer.free();
+      }
+      BufferUtility.releaseByteBuffer(pooled);
+    }
     irp.setActualLength(result);
     if (irp.getActualLength() != irp.getLength() && !irp.getAcceptShortPacket()) {
       throw new UsbShortPacketException();
@@ -267,4 +1638,38 @@ public abstract class AUsbIrpQueue<T extends IUsbIrp> {
   protected final boolean isAborting() {
     return this.aborting;
   }
+
+  /**
+   * An IRP in a priority lane together with the time it was queued.
+   *
+   * @param <T> The type of IRP.
+   */
+  private static final class QueuedIrp<T> {
+
+    /**
+     * The queued IRP.
+     */
+    private final T irp;
+    /**
+     * The time (nanoseconds) when the IRP was queued.
+     */
+    private final long queuedNanos;
+    /**
+     * The sequence number of the IRP in submission order.
+     */
+    private final long sequence;
+
+    /**
+     * Construct a new queued IRP.
+     *
+     * @param irp         The IRP.
+     * @param queuedNanos The time (nanoseconds) when the IRP was queued.
+     * @param sequence    The sequence number of the IRP in submission order.
+     */
+    QueuedIrp(final T irp, final long queuedNanos, final long sequence) {
+      this.irp = irp;
+      this.queuedNanos = queuedNanos;
+      this.sequence = sequence;
+    }
+  }
 }
@@ -23,13 +23,10 @@ import javax.usb3.IUsbConfiguration;
 import javax.usb3.IUsbConfigurationDescriptor;
 import javax.usb3.IUsbDevice;
 import javax.usb3.IUsbInterface;
-import javax.usb3.descriptor.UsbConfigurationDescriptor;
-import javax.usb3.descriptor.UsbInterfaceDescriptor;
+import javax.usb3.IUsbInterfaceDescriptor;
 import javax.usb3.exception.UsbException;
+import javax.usb3.spi.UsbBackendConfiguration;
 import javax.usb3.utility.UsbExceptionFactory;
-import org.usb4java.ConfigDescriptor;
-import org.usb4java.InterfaceDescriptor;
-import org.usb4java.LibUsb;
 
 /**
  * Implementation of JSR-80 IUsbConfiguration.
@@ -65,36 +62,36 @@ public final class UsbConfiguration implements IUsbConfiguration {
   /**
    * Constructor.
    *
-   * @param device     The device this configuration belongs to.
-   * @param descriptor The libusb configuration descriptor.
+   * @param device        The device this configuration belongs to.
+   * @param configuration The backend configuration: the configuration
+   *                      descriptor and the descriptors of all interface
+   *                      alternate settings.
    */
-  public UsbConfiguration(final IUsbDevice device, final ConfigDescriptor descriptor) {
+  public UsbConfiguration(final IUsbDevice device, final UsbBackendConfiguration configuration) {
     this.device = device;
-    this.descriptor = new UsbConfigurationDescriptor(descriptor);
-    for (org.usb4java.Interface jniInterface : descriptor.iface()) {
-      for (InterfaceDescriptor ifDescriptor : jniInterface.altsetting()) {
-        final int interfaceNumber = ifDescriptor.bInterfaceNumber() & 0xff;
-        final int settingNumber = ifDescriptor.bAlternateSetting() & 0xff;
-
-        final UsbInterface usbInterface = new UsbInterface(this, new UsbInterfaceDescriptor(ifDescriptor));
-        /**
-         * If we have no active setting for current interface number yet or the
-         * alternate setting number is 0 (which marks the default alternate
-         * setting) then set current interface as the active setting.
-         */
-        if (!this.activeSettings.containsKey(interfaceNumber) || ifDescriptor.bAlternateSetting() == 0) {
-          this.activeSettings.put(interfaceNumber, usbInterface);
-        }
-        /**
-         * Add the interface to the settings list
-         */
-        Map<Integer, IUsbInterface> settings = this.interfaces.get(interfaceNumber);
-        if (settings == null) {
-          settings = new HashMap<>();
-          this.interfaces.put(interfaceNumber, settings);
-        }
-        settings.put(settingNumber, usbInterface);
+    this.descriptor = configuration.getConfigurationDescriptor();
+    for (IUsbInterfaceDescriptor ifDescriptor : configuration.getInterfaceDescriptors()) {
+      final int interfaceNumber = ifDescriptor.bInterfaceNumber() & 0xff;
+      final int settingNumber = ifDescriptor.bAlternateSetting() & 0xff;
+
+      final UsbInterface usbInterface = new UsbInterface(this, ifDescriptor);
+      /**
+       * If we have no active setting for current interface number yet or the
+       * alternate setting number is 0 (which marks the default alternate
+       * setting) then set current interface as the active setting.
+       */
+      if (!this.activeSettings.containsKey(interfaceNumber) || ifDescriptor.bAlternateSetting() == 0) {
+        this.activeSettings.put(interfaceNumber, usbInterface);
       }
+      /**
+       * Add the interface to the settings list
+       */
+      Map<Integer, IUsbInterface> settings = this.interfaces.get(interfaceNumber);
+      if (settings == null) {
+        settings = new HashMap<>();
+        this.interfaces.put(interfaceNumber, settings);
+      }
+      settings.put(settingNumber, usbInterface);
     }
   }
 
@@ -150,9 +147,8 @@ public final class UsbConfiguration implements IUsbConfiguration {
   @Override
   public void setUsbInterface(final byte number, final IUsbInterface usbInterface) throws UsbException {
     if (this.activeSettings.get(number & 0xff) != usbInterface) {
-      final int result = LibUsb.setInterfaceAltSetting(((AUsbDevice) this.device).open(),
-                                                       number,
-                                                       usbInterface.getUsbInterfaceDescriptor().bAlternateSetting());
+      final int result = ((AUsbDevice) this.device).open().setInterfaceAltSetting(number & 0xff,
+                                                                                  usbInterface.getUsbInterfaceDescriptor().bAlternateSetting() & 0xff);
       if (result < 0) {
         throw UsbExceptionFactory.createPlatformException("Unable to set alternate interface", result);
       }
@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.ri;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.usb3.IUsbDescriptorCache;
+import javax.usb3.IUsbStringDescriptor;
+
+/**
+ * A per-device cache of the descriptors read from a USB device: the string
+ * descriptor language IDs, the string descriptors and the raw descriptors
+ * read with a standard GET_DESCRIPTOR request.
+ * <p>
+ * Descriptors are keyed by descriptor type, descriptor index and language ID.
+ * A device's descriptors do not change while it is connected, so the cache is
+ * only cleared when the device is detached or by {@link #clear()}, e.g. after
+ * the device was reset or reprogrammed.
+ * <p>
+ * This class is safe for use by concurrent threads. Two threads missing the
+ * same entry at once both read it from the device; the last one wins.
+ *
+ * @author Jesse Caulfield
+ */
+public final class UsbDescriptorCache implements IUsbDescriptorCache {
+
+  /**
+   * The string descriptor language IDs. Null if not cached.
+   */
+  private volatile short[] languages;
+
+  /**
+   * The string descriptors, keyed by {@link #key(int, int, int) key}.
+   */
+  private final ConcurrentMap<Integer, IUsbStringDescriptor> strings = new ConcurrentHashMap<>();
+
+  /**
+   * The raw descriptors, keyed by {@link #key(int, int, int) key}.
+   */
+  private final ConcurrentMap<Integer, Descriptor> descriptors = new ConcurrentHashMap<>();
+
+  /**
+   * A raw descriptor read from the device.
+   */
+  private static final class Descriptor {
+
+    /**
+     * The descriptor data.
+     */
+    private final byte[] data;
+
+    /**
+     * Indicator that the data is the complete descriptor. If FALSE the data
+     * filled the requested length and the descriptor may be longer.
+     */
+    private final boolean complete;
+
+    private Descriptor(final byte[] data, final boolean complete) {
+      this.data = data;
+      this.complete = complete;
+    }
+  }
+
+  /**
+   * Build a cache key.
+   *
+   * @param type   The descriptor type.
+   * @param index  The descriptor index.
+   * @param langId The language ID. Zero for descriptors other than strings.
+   * @return The cache key.
+   */
+  private static Integer key(final int type, final int index, final int langId) {
+    return (type & 0xff) << 24 | (index & 0xff) << 16 | (langId & 0xffff);
+  }
+
+  /**
+   * Get the cached string descriptor language IDs.
+   *
+   * @return The language IDs, or null if not cached. The array must not be
+   *         modified.
+   */
+  public short[] getLanguages() {
+    return this.languages;
+  }
+
+  /**
+   * Cache the string descriptor language IDs.
+   *
+   * @param languages The language IDs. The array must not be modified
+   *                  afterwards.
+   */
+  public void putLanguages(final short[] languages) {
+    this.languages = languages;
+  }
+
+  /**
+   * Get a cached string descriptor.
+   *
+   * @param index  The string descriptor index.
+   * @param langId The language ID.
+   * @return The string descriptor, or null if not cached.
+   */
+  public IUsbStringDescriptor getString(final byte index, final short langId) {
+    return this.strings.get(key(0, index, langId));
+  }
+
+  /**
+   * Cache a string descriptor.
+   *
+   * @param index      The string descriptor index.
+   * @param langId     The language ID.
+   * @param descriptor The string descriptor.
+   */
+  public void putString(final byte index, final short langId, final IUsbStringDescriptor descriptor) {
+    this.strings.put(key(0, index, langId), descriptor);
+  }
+
+  /**
+   * Copy a cached raw descriptor into a buffer.
+   *
+   * @param type   The descriptor type.
+   * @param index  The descriptor index.
+   * @param langId The language ID. Zero for descriptors other than strings.
+   * @param data   The buffer to fill.
+   * @return The number of bytes copied, or -1 if the descriptor is not cached
+   *         or a longer part of it was requested than is cached.
+   */
+  @Override
+  public int getDescriptor(final byte type, final byte index, final short langId, final byte[] data) {
+    final Descriptor descriptor = this.descriptors.get(key(type, index, langId));
+    if (descriptor == null || (!descriptor.complete && data.length > descriptor.data.length)) {
+      return -1;
+    }
+    final int length = Math.min(data.length, descriptor.data.length);
+    System.arraycopy(descriptor.data, 0, data, 0, length);
+    return length;
+  }
+
+  /**
+   * Cache a raw descriptor read from the device.
+   *
+   * @param type      The descriptor type.
+   * @param index     The descriptor index.
+   * @param langId    The language ID. Zero for descriptors other than strings.
+   * @param data      The buffer the descriptor was read into.
+   * @param requested The number of bytes requested.
+   * @param length    The number of bytes read.
+   */
+  @Override
+  public void putDescriptor(final byte type, final byte index, final short langId, final byte[] data, final int requested, final int length) {
+    final Integer key = key(type, index, langId);
+    final Descriptor cached = this.descriptors.get(key);
+    final boolean complete = length < requested;
+    /**
+     * Never replace a complete or longer descriptor by a shorter read, but
+     * replace a truncated descriptor by a complete one of the same length.
+     */
+    if (cached != null && (cached.complete || cached.data.length > length || cached.data.length == length && !complete)) {
+      return;
+    }
+    this.descriptors.put(key, new Descriptor(Arrays.copyOf(data, length), complete));
+  }
+
+  /**
+   * Clear the cache.
+   */
+  public void clear() {
+    this.languages = null;
+    this.strings.clear();
+    this.descriptors.clear();
+  }
+}
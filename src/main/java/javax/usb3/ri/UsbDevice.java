@@ -18,6 +18,7 @@
 package javax.usb3.ri;
 
 import javax.usb3.exception.UsbPlatformException;
+import javax.usb3.spi.IUsbBackendDevice;
 import org.usb4java.Device;
 
 /**
@@ -38,11 +39,36 @@ public class UsbDevice extends AUsbDevice {
    * @param parentId      The parent device id. May be null if this device has
    *                      no parent (Because it is a root device).
    * @param speed         The device USB port speed.
+   * @param device        The backend device reference. This reference is only
+   *                      valid during the constructor execution, so don't
+   *                      store it in a property or something like that.
+   * @throws UsbPlatformException When device configuration could not be read.
+   */
+  public UsbDevice(final UsbDeviceManager deviceManager,
+                   final UsbDeviceId deviceId,
+                   final UsbDeviceId parentId,
+                   final int speed,
+                   final IUsbBackendDevice device) throws UsbPlatformException {
+    super(deviceManager, deviceId, parentId, speed, device);
+  }
+
+  /**
+   * Constructs a new (non-hub) USB device from a libusb native device.
+   *
+   * @param deviceManager The USB device manager which is responsible for this *
+   *                      device.
+   * @param deviceId      The device id. Must not be null.
+   * @param parentId      The parent device id. May be null if this device has
+   *                      no parent (Because it is a root device).
+   * @param speed         The device USB port speed.
    * @param device        The libusb native device reference. This reference is
    *                      only valid during the constructor execution, so don't
    *                      store it in a property or something like that.
    * @throws UsbPlatformException When device configuration could not be read.
+   * @deprecated Devices are created from backend devices. Use
+   * {@link #UsbDevice(UsbDeviceManager, UsbDeviceId, UsbDeviceId, int, IUsbBackendDevice)}.
    */
+  @Deprecated
   public UsbDevice(final UsbDeviceManager deviceManager,
                    final UsbDeviceId deviceId,
                    final UsbDeviceId parentId,
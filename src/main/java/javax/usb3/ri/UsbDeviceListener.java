@@ -34,31 +34,26 @@ public final class UsbDeviceListener extends UsbEventListener<IUsbDeviceListener
    * Constructs a new USB device listener list.
    */
   public UsbDeviceListener() {
-    super();
-  }
-
-  @Override
-  public IUsbDeviceListener[] toArray() {
-    return getListeners().toArray(new IUsbDeviceListener[getListeners().size()]);
+    super(new IUsbDeviceListener[0]);
   }
 
   @Override
   public void usbDeviceDetached(final UsbDeviceEvent event) {
-    for (final IUsbDeviceListener listener : toArray()) {
+    for (final IUsbDeviceListener listener : getListenerArray()) {
       listener.usbDeviceDetached(event);
     }
   }
 
   @Override
   public void errorEventOccurred(final UsbDeviceErrorEvent event) {
-    for (final IUsbDeviceListener listener : toArray()) {
+    for (final IUsbDeviceListener listener : getListenerArray()) {
       listener.errorEventOccurred(event);
     }
   }
 
   @Override
   public void dataEventOccurred(final UsbDeviceDataEvent event) {
-    for (final IUsbDeviceListener listener : toArray()) {
+    for (final IUsbDeviceListener listener : getListenerArray()) {
       listener.dataEventOccurred(event);
     }
   }
@@ -21,14 +21,21 @@ import java.util.*;
 import javax.usb3.IUsbDevice;
 import javax.usb3.IUsbHub;
 import javax.usb3.IUsbPorts;
+import javax.usb3.IUsbServices;
 import javax.usb3.descriptor.UsbDeviceDescriptor;
 import javax.usb3.enumerated.EUSBClassCode;
 import javax.usb3.exception.UsbDeviceNotFoundException;
 import javax.usb3.exception.UsbException;
 import javax.usb3.exception.UsbPlatformException;
 import javax.usb3.exception.UsbScanException;
-import javax.usb3.utility.UsbExceptionFactory;
-import org.usb4java.*;
+import javax.usb3.spi.IUsbBackend;
+import javax.usb3.spi.IUsbBackendDevice;
+import javax.usb3.spi.IUsbDeviceHandle;
+import javax.usb3.spi.IUsbHotplugListener;
+import javax.usb3.spi.UsbBackendConfiguration;
+import javax.usb3.spi.LibUsbBackend;
+import org.usb4java.Device;
+import org.usb4java.LibUsb;
 
 /**
  * Manages the USB devices.
@@ -44,13 +51,24 @@ public final class UsbDeviceManager {
   private final UsbRootHub usbRootHub;
 
   /**
-   * The libusb (JNI) context. This represents a libusb session to access the
-   * host computer USB subsystem.
+   * The USB backend. This represents a session with the host computer USB
+   * subsystem, typically a libusb context.
    * <p>
    * During normal operation a host computer will run multiple, parallel libusb
    * sessions, each independently accessing a USB device.
    */
-  private final Context jniContext;
+  private final IUsbBackend backend;
+
+  /**
+   * The asynchronous transfer engine servicing the backend.
+   */
+  private final UsbTransferEngine transferEngine;
+
+  /**
+   * The USB services notified when devices are attached or detached. Null if
+   * this device manager is used without services.
+   */
+  private volatile IUsbServices usbServices;
 
   /**
    * If scanner already scanned for devices.
@@ -60,207 +78,419 @@ public final class UsbDeviceManager {
   /**
    * The interval in milliseconds between the scans of the computer USB
    * subsystem for new or removed devices. Typical value is 500 milliseconds.
+   * Only used if the backend does not support hotplug notification.
    */
   private final int scanInterval;
 
   /**
-   * The currently connected devices.
+   * Indicator that the manufacturer, product and serial number strings of a
+   * device are read into its descriptor cache in the background when the
+   * device is attached.
    */
-  private final Map<UsbDeviceId, AUsbDevice> devices = Collections.synchronizedMap(new HashMap<UsbDeviceId, AUsbDevice>());
+  private volatile boolean prefetchStrings;
 
   /**
-   * Constructs a new device manager.
+   * The background scanner thread. Null if not started.
+   */
+  private Thread scanner;
+
+  /**
+   * Indicator that device attach and detach are signalled by backend hotplug
+   * events. If FALSE the scanner polls the backend every scan interval.
+   */
+  private volatile boolean hotplug;
+
+  /**
+   * Indicator that the backend device list has changed since the last scan.
+   * Guarded by the change lock.
+   */
+  private boolean deviceListChanged;
+
+  /**
+   * Lock object on which the scanner waits for a device list change.
+   */
+  private final Object changeLock = new Object();
+
+  /**
+   * The backend hotplug listener. This is invoked on the backend event thread,
+   * which must not block, so it only wakes up the scanner.
+   */
+  private final IUsbHotplugListener hotplugListener = new IUsbHotplugListener() {
+    @Override
+    public void deviceArrived(final IUsbBackendDevice device) {
+      signalDeviceListChanged();
+    }
+
+    @Override
+    public void deviceLeft(final IUsbBackendDevice device) {
+      signalDeviceListChanged();
+    }
+  };
+
+  /**
+   * The currently connected devices, keyed by their location on the host. The
+   * location (bus number, device address and parent port number) is read from
+   * the backend without any descriptor I/O, so a rescan only reads the
+   * descriptors of devices found at a location not seen before. Only accessed
+   * while holding the lock of this device manager.
+   */
+  private Map<Long, AUsbDevice> locations = new HashMap<>();
+
+  /**
+   * The currently connected devices, keyed by their device id. Used to resolve
+   * the parent of a new device. Only accessed while holding the lock of this
+   * device manager.
+   */
+  private final Map<UsbDeviceId, AUsbDevice> devices = new HashMap<>();
+
+  /**
+   * The backend devices of the currently connected devices, keyed by their
+   * device id. Each entry holds a backend reference taken when the device is
+   * enumerated and released when it is removed, so a device is opened without
+   * enumerating the bus. Guarded by the backend device lock.
+   */
+  private final Map<UsbDeviceId, IUsbBackendDevice> backendDevices = new HashMap<>();
+
+  /**
+   * Lock guarding the backend devices. A backend device is only used while
+   * holding this lock, so that the scanner cannot release it in use. No other
+   * lock is taken and no listener is called while holding it.
+   */
+  private final Object backendLock = new Object();
+
+  /**
+   * Constructs a new device manager on the libusb backend.
    *
    * @param usbRootHub   The root hub. Must not be null.
    * @param scanInterval The scan interval in milliseconds.
    * @throws UsbException When USB initialization fails.
    */
   public UsbDeviceManager(final UsbRootHub usbRootHub, final int scanInterval) throws UsbException {
+    this(usbRootHub, scanInterval, new LibUsbBackend());
+  }
+
+  /**
+   * Constructs a new device manager.
+   *
+   * @param usbRootHub   The root hub. Must not be null.
+   * @param scanInterval The scan interval in milliseconds.
+   * @param backend      The USB backend. Must not be null. The backend is
+   *                     initialized here and exited on dispose.
+   * @throws UsbException When USB initialization fails.
+   */
+  public UsbDeviceManager(final UsbRootHub usbRootHub, final int scanInterval, final IUsbBackend backend) throws UsbException {
     if (usbRootHub == null) {
       throw new IllegalArgumentException("Root Hub must be set");
     }
+    if (backend == null) {
+      throw new IllegalArgumentException("Backend must be set");
+    }
     this.scanInterval = scanInterval;
     this.usbRootHub = usbRootHub;
-    this.jniContext = new Context();
-    final int result = LibUsb.init(this.jniContext);
-    if (result != 0) {
-      throw UsbExceptionFactory.createPlatformException("Unable to initialize libusb", result);
-    }
+    this.backend = backend;
+    this.backend.init();
+    this.transferEngine = new UsbTransferEngine(this.backend);
   }
 
   /**
-   * Dispose the USB device manager. This exits the USB context opened by the
+   * Dispose the USB device manager. This stops the background scanner and the
+   * asynchronous transfer engine and exits the USB backend initialized by the
    * constructor.
    */
   public void dispose() {
-    LibUsb.exit(this.jniContext);
+    final Thread scannerTemp;
+    synchronized (this) {
+      scannerTemp = this.scanner;
+      this.scanner = null;
+    }
+    if (scannerTemp != null) {
+      this.backend.deregisterHotplugListener(this.hotplugListener);
+      scannerTemp.interrupt();
+      try {
+        scannerTemp.join();
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    this.transferEngine.stop();
+    synchronized (this.backendLock) {
+      for (IUsbBackendDevice backendDevice : this.backendDevices.values()) {
+        backendDevice.unref();
+      }
+      this.backendDevices.clear();
+    }
+    this.backend.exit();
+  }
+
+  /**
+   * Get the USB backend of this device manager.
+   *
+   * @return the USB backend
+   */
+  public IUsbBackend getBackend() {
+    return this.backend;
+  }
+
+  /**
+   * Get the USB services notified when devices are attached or detached.
+   *
+   * @return the USB services, or null if none are set
+   */
+  IUsbServices getUsbServices() {
+    return this.usbServices;
+  }
+
+  /**
+   * Set the USB services notified when devices are attached or detached.
+   *
+   * @param usbServices the USB services owning this device manager
+   */
+  void setUsbServices(final IUsbServices usbServices) {
+    this.usbServices = usbServices;
   }
 
   /**
-   * Creates a DeviceId from the specified (JNI) Device instance.
+   * Indicates whether the strings of a device are prefetched when the device
+   * is attached.
    *
-   * @param device The libusb device. Must not be null.
+   * @return TRUE if strings are prefetched.
+   */
+  public boolean isPrefetchStrings() {
+    return this.prefetchStrings;
+  }
+
+  /**
+   * Set whether the manufacturer, product and serial number strings of a
+   * device are read into its descriptor cache in the background when the
+   * device is attached. Default is FALSE.
+   *
+   * @param prefetchStrings TRUE to prefetch strings.
+   */
+  public void setPrefetchStrings(final boolean prefetchStrings) {
+    this.prefetchStrings = prefetchStrings;
+  }
+
+  /**
+   * Get the asynchronous transfer engine servicing the backend of this device
+   * manager.
+   *
+   * @return the transfer engine
+   */
+  UsbTransferEngine getTransferEngine() {
+    return this.transferEngine;
+  }
+
+  /**
+   * Creates a DeviceId from the specified backend device.
+   *
+   * @param device The backend device. Must not be null.
    * @return The device id.
    * @throws UsbPlatformException When device descriptor could not be read from
    *                              the specified device.
    */
-  private UsbDeviceId createDeviceId(final Device device) throws UsbPlatformException {
+  private UsbDeviceId createDeviceId(final IUsbBackendDevice device) throws UsbPlatformException {
     if (device == null) {
       throw new IllegalArgumentException("Device must be set");
     }
-    final int busNumber = LibUsb.getBusNumber(device);
-    final int addressNumber = LibUsb.getDeviceAddress(device);
-    final int portNumber = LibUsb.getPortNumber(device);
-    final DeviceDescriptor deviceDescriptor = new DeviceDescriptor();
-    final int result = LibUsb.getDeviceDescriptor(device, deviceDescriptor);
-    if (result < 0) {
-      throw UsbExceptionFactory.createPlatformException("Unable to get device descriptor for device " + addressNumber + " at bus " + busNumber, result);
-    }
-    return new UsbDeviceId(busNumber, addressNumber, portNumber, new UsbDeviceDescriptor(deviceDescriptor));
+    return new UsbDeviceId(device.getBusNumber(),
+                           device.getDeviceAddress(),
+                           device.getPortNumber(),
+                           device.getDeviceDescriptor());
   }
 
   /**
-   * Scans the specified ports for removed devices.
+   * Get the location key of the specified backend device. The key combines
+   * the bus number, the device address and the parent port number, all of
+   * which the backend reports without device I/O. A device address is unique
+   * on its bus while the device is connected, and is reassigned when a device
+   * is plugged in again.
    *
-   * @param ports The ports to scan for removals.
+   * @param device The backend device. Must not be null.
+   * @return The location key.
    */
-  private void scanRemovedDevices(final IUsbPorts ports) {
-    for (IUsbDevice device : ports.getAttachedUsbDevices()) {
-      /**
-       * Scan for removed child devices if current device is a hub.
-       */
-      if (device.isUsbHub()) {
-        scanRemovedDevices((IUsbPorts) device);
-      }
-      /**
-       * If device is no longer present then remove it.
-       */
-      if (!this.devices.containsKey(device.getDeviceId())) {
-        ports.disconnectUsbDevice(device);
-      }
-    }
+  private static long getLocation(final IUsbBackendDevice device) {
+    return ((long) (device.getBusNumber() & 0xff) << 16)
+      | ((device.getDeviceAddress() & 0xff) << 8)
+      | (device.getPortNumber() & 0xff);
   }
 
   /**
-   * Scans the specified ports for new devices.
+   * Scans the specified hub for changes.
+   * <p>
+   * The hub is ignored: the backend reports the devices of all buses at once,
+   * so every scan brings the complete device topology up to date. Scanning
+   * only part of it would leave the devices elsewhere connected or
+   * disconnected out of date.
    *
-   * @param ports The ports to scan for new devices.
-   * @param hubId The hub ID. Null if scanned hub is the root hub.
+   * @param usbHub The hub to scan. Ignored.
+   * @throws UsbScanException if unable to scan for USB devices
+   * @deprecated The complete topology is always scanned. Use {@link #scan()}.
    */
-  private void scanNewDevices(final IUsbPorts ports, final UsbDeviceId hubId) {
-    for (AUsbDevice device : this.devices.values()) {
-      /**
-       * Get parent ID from device and reset it to null if we don't know this
-       * parent device (This happens on Windows because some devices/hubs can't
-       * be fully enumerated.)
-       */
-      UsbDeviceId parentId = device.getParentDeviceId();
-      if (!this.devices.containsKey(parentId)) {
-        parentId = null;
-      }
-
-      if (UsbDeviceId.equals(parentId, hubId)) {
-        if (!ports.isUsbDeviceAttached(device)) {
-          /**
-           * Connect new devices to the ports of the current hub.
-           */
-          ports.connectUsbDevice(device);
-        }
-        /**
-         * Scan for removed child devices if current device is a hub
-         */
-        if (device.isUsbHub()) {
-          scanNewDevices((IUsbPorts) device, device.getDeviceId());
-        }
-      }
-    }
-
+  @Deprecated
+  public synchronized void scan(final IUsbHub usbHub) throws UsbScanException {
+    scan();
   }
 
   /**
-   * Scans the specified hub for changes.
+   * Brings the complete device topology up to date: each scan only reads the
+   * descriptors of new devices and disconnects removed devices, in time
+   * linear in the number of devices.
    *
-   * @param usbHub The hub to scan.
    * @throws UsbScanException if unable to scan for USB devices
    */
-  public void scan(final IUsbHub usbHub) throws UsbScanException {
+  private void updateTopology() throws UsbScanException {
+    final List<AUsbDevice> added = new ArrayList<>();
+    final List<AUsbDevice> removed = new ArrayList<>();
     try {
-      updateDeviceList();
+      updateDeviceList(added, removed);
     } catch (UsbException e) {
       throw new UsbScanException("Unable to scan for USB devices: " + e, e);
     }
-    if (usbHub.isRootUsbHub()) {
-      final UsbRootHub rootHubTemp = (UsbRootHub) usbHub;
-      scanRemovedDevices(rootHubTemp);
-      scanNewDevices(rootHubTemp, null);
-    } else {
-      final UsbHub nonRootHub = (UsbHub) usbHub;
-      scanRemovedDevices(nonRootHub);
-      scanNewDevices(nonRootHub, nonRootHub.getDeviceId());
+    /**
+     * Disconnect removed devices. Disconnecting a hub also disconnects its
+     * attached devices, which are then skipped.
+     */
+    for (AUsbDevice device : removed) {
+      if (device.isAttached()) {
+        ((IUsbPorts) device.getParentUsbPort().getUsbHub()).disconnectUsbDevice(device);
+      }
+    }
+    /**
+     * Connect new devices. The added list is ordered parents first, so the
+     * parent hub of a new device is always connected before the device.
+     */
+    for (AUsbDevice device : added) {
+      /**
+       * Devices with an unknown parent are connected to the root hub. (This
+       * happens on Windows because some devices/hubs can't be fully
+       * enumerated.)
+       */
+      final AUsbDevice parent = this.devices.get(device.getParentDeviceId());
+      if (parent == null) {
+        this.usbRootHub.connectUsbDevice(device);
+      } else if (parent.isUsbHub() && parent.isAttached()) {
+        ((IUsbPorts) parent).connectUsbDevice(device);
+      }
     }
   }
 
   /**
    * Updates the device list by adding newly connected devices to it and by
    * removing no longer connected devices.
+   * <p>
+   * Devices at a known location are carried over without reading their
+   * descriptors. Only devices at a new location are enumerated.
    *
+   * @param added   The list to which the new devices are added, parents
+   *                before their children.
+   * @param removed The list to which the no longer connected devices are
+   *                added.
    * @throws UsbPlatformException When libusb reported an error which we can't
    *                              ignore during scan.
    */
-  private void updateDeviceList() throws UsbPlatformException {
-    final List<UsbDeviceId> current = new ArrayList<>();
+  private void updateDeviceList(final List<AUsbDevice> added, final List<AUsbDevice> removed) throws UsbPlatformException {
+    final Map<Long, AUsbDevice> current = new HashMap<>();
+    final Map<Long, IUsbBackendDevice> unknown = new LinkedHashMap<>();
 
-    // Get device list from libusb and abort if it failed
-    final DeviceList deviceList = new DeviceList();
-    final int result = LibUsb.getDeviceList(this.jniContext, deviceList);
-    if (result < 0) {
-      throw UsbExceptionFactory.createPlatformException("Unable to get USB device list", result);
-    }
+    // Get device list from the backend and abort if it failed
+    final List<IUsbBackendDevice> deviceList = this.backend.getDeviceList();
 
     try {
-      // Iterate over all currently connected devices
-      for (final Device libUsbDevice : deviceList) {
-        try {
-          final UsbDeviceId deviceId = createDeviceId(libUsbDevice);
-
-          AUsbDevice device = this.devices.get(deviceId);
-          if (device == null) {
-            final Device parent = LibUsb.getParent(libUsbDevice);
-            final UsbDeviceId parentId = parent == null ? null : createDeviceId(parent);
-            final int speed = LibUsb.getDeviceSpeed(libUsbDevice);
-            /**
-             * Important: Assign the USB device as either a HUB or DEVICE based
-             * upon its device class.
-             */
-            if (EUSBClassCode.HUB.equals(deviceId.getDeviceDescriptor().deviceClass())) {
-              device = new UsbHub(this, deviceId, parentId, speed, libUsbDevice);
-            } else {
-              device = new UsbDevice(this, deviceId, parentId, speed, libUsbDevice);
-            }
-            /**
-             * Add new device to global device list.
-             */
-            this.devices.put(deviceId, device);
-          }
-          /**
-           * Remember current device as "current".
-           */
-          current.add(deviceId);
-        } catch (UsbPlatformException e) {
-          /**
-           * Devices which can't be enumerated are ignored.
-           */
+      /**
+       * Carry over the known devices and collect those at a new location.
+       */
+      for (final IUsbBackendDevice backendDevice : deviceList) {
+        final Long location = getLocation(backendDevice);
+        final AUsbDevice device = this.locations.get(location);
+        if (device == null) {
+          unknown.put(location, backendDevice);
+        } else {
+          current.put(location, device);
         }
       }
       /**
-       * Retain only the elements in this set that are contained in the
-       * specified collection (optional operation). In other words, removes from
-       * this set all of its elements that are not contained in the specified
-       * collection.
+       * Enumerate the new devices.
        */
-      this.devices.keySet().retainAll(current);
+      while (!unknown.isEmpty()) {
+        final Long location = unknown.keySet().iterator().next();
+        createDevice(location, unknown, current, added);
+      }
     } finally {
-      LibUsb.freeDeviceList(deviceList, true);
+      this.backend.freeDeviceList(deviceList);
+    }
+    /**
+     * Collect the no longer connected devices.
+     */
+    for (Map.Entry<Long, AUsbDevice> entry : this.locations.entrySet()) {
+      if (!current.containsKey(entry.getKey())) {
+        final UsbDeviceId deviceId = entry.getValue().getDeviceId();
+        removed.add(entry.getValue());
+        this.devices.remove(deviceId);
+        synchronized (this.backendLock) {
+          final IUsbBackendDevice backendDevice = this.backendDevices.remove(deviceId);
+          if (backendDevice != null) {
+            backendDevice.unref();
+          }
+        }
+      }
+    }
+    this.locations = current;
+  }
+
+  /**
+   * Creates the device at the specified new location. If the parent of the
+   * device is also new then the parent is created first.
+   *
+   * @param location The location of the new device.
+   * @param unknown  The backend devices at new locations not created yet. The
+   *                 created device is removed.
+   * @param current  The devices present in this scan. The created device is
+   *                 added.
+   * @param added    The devices created in this scan. The created device is
+   *                 added.
+   */
+  private void createDevice(final Long location,
+                            final Map<Long, IUsbBackendDevice> unknown,
+                            final Map<Long, AUsbDevice> current,
+                            final List<AUsbDevice> added) {
+    final IUsbBackendDevice backendDevice = unknown.remove(location);
+    try {
+      final IUsbBackendDevice parent = backendDevice.getParent();
+      UsbDeviceId parentId = null;
+      if (parent != null) {
+        final Long parentLocation = getLocation(parent);
+        if (unknown.containsKey(parentLocation)) {
+          createDevice(parentLocation, unknown, current, added);
+        }
+        final AUsbDevice parentDevice = current.get(parentLocation);
+        parentId = parentDevice == null ? createDeviceId(parent) : parentDevice.getDeviceId();
+      }
+      final UsbDeviceId deviceId = createDeviceId(backendDevice);
+      final int speed = backendDevice.getSpeed();
+      /**
+       * Important: Assign the USB device as either a HUB or DEVICE based upon
+       * its device class.
+       */
+      final AUsbDevice device;
+      if (EUSBClassCode.HUB.equals(deviceId.getDeviceDescriptor().deviceClass())) {
+        device = new UsbHub(this, deviceId, parentId, speed, backendDevice);
+      } else {
+        device = new UsbDevice(this, deviceId, parentId, speed, backendDevice);
+      }
+      /**
+       * Add new device to global device list.
+       */
+      this.devices.put(deviceId, device);
+      synchronized (this.backendLock) {
+        this.backendDevices.put(deviceId, backendDevice.ref());
+      }
+      current.put(location, device);
+      added.add(device);
+    } catch (UsbPlatformException e) {
+      /**
+       * Devices which can't be enumerated are ignored. They are retried on the
+       * next scan.
+       */
     }
   }
 
@@ -268,56 +498,72 @@ public final class UsbDeviceManager {
    * Scans the computer USB subsystem for new or removed devices.
    */
   public synchronized void scan() {
-    scan(this.usbRootHub);
+    updateTopology();
     this.scanned = true;
   }
 
   /**
-   * Returns the libusb device for the specified id. The device must be freed
+   * Opens the backend device with the specified id. The handle must be closed
    * after use.
+   * <p>
+   * The device is looked up among the backend devices referenced by the
+   * scanner, so only devices found by a scan can be opened.
    *
-   * @param id The id of the device to return. Must not be null.
-   * @return device The libusb device. Never null.
+   * @param id The id of the device to open. Must not be null.
+   * @return The device handle. Never null.
    * @throws UsbDeviceNotFoundException When the device was not found.
-   * @throws UsbPlatformException       When libusb reported an error while
-   *                                    enumerating USB devices.
+   * @throws UsbPlatformException       When the backend reported an error
+   *                                    while opening the USB device.
    * @throws IllegalArgumentException   if the ID is null
    */
-  public Device getLibUsbDevice(final UsbDeviceId id) throws UsbPlatformException, IllegalArgumentException {
+  public IUsbDeviceHandle openDevice(final UsbDeviceId id) throws UsbPlatformException, IllegalArgumentException {
     if (id == null) {
       throw new IllegalArgumentException("USB Device id must be set");
     }
+    synchronized (this.backendLock) {
+      return getBackendDevice(id).open();
+    }
+  }
 
-    final DeviceList deviceList = new DeviceList();
-    final int result = LibUsb.getDeviceList(this.jniContext, deviceList);
-    if (result < 0) {
-      throw UsbExceptionFactory.createPlatformException("Unable to get USB device list", result);
+  /**
+   * Returns the libusb device for the specified id. The device must be freed
+   * after use.
+   * <p>
+   * The device is looked up among the backend devices referenced by the
+   * scanner, so only devices found by a scan are returned.
+   *
+   * @param id The id of the device to return. Must not be null.
+   * @return device The libusb device. Never null.
+   * @throws UsbDeviceNotFoundException    When the device was not found.
+   * @throws UsbPlatformException          Never thrown; declared for
+   *                                       compatibility.
+   * @throws IllegalArgumentException      if the ID is null
+   * @throws UnsupportedOperationException if the backend is not libusb
+   * @deprecated Devices are managed by the backend. Use
+   * {@link #openDevice(UsbDeviceId)}.
+   */
+  @Deprecated
+  public Device getLibUsbDevice(final UsbDeviceId id) throws UsbPlatformException, IllegalArgumentException {
+    if (id == null) {
+      throw new IllegalArgumentException("USB Device id must be set");
     }
-    try {
-      for (Device device : deviceList) {
-        try {
-          if (id.equals(createDeviceId(device))) {
-            LibUsb.refDevice(device);
-            return device;
-          }
-        } catch (UsbPlatformException e) {
-          /**
-           * Devices for which no ID can be created are ignored.
-           */
-        }
+    synchronized (this.backendLock) {
+      final Device device = LibUsbBackend.unwrap(getBackendDevice(id));
+      if (device == null) {
+        throw new UnsupportedOperationException("The USB backend is not libusb");
       }
-    } finally {
-      LibUsb.freeDeviceList(deviceList, true);
+      return LibUsb.refDevice(device);
     }
-
-    throw new UsbDeviceNotFoundException(id);
   }
 
   /**
    * Releases the specified device.
    *
    * @param device The device to release. Must not be null.
+   * @deprecated Devices are managed by the backend. Use
+   * {@link #openDevice(UsbDeviceId)}.
    */
+  @Deprecated
   public void releaseDevice(final Device device) {
     if (device == null) {
       throw new IllegalArgumentException("Device must be set");
@@ -325,34 +571,106 @@ public final class UsbDeviceManager {
     LibUsb.unrefDevice(device);
   }
 
+  /**
+   * Reads the configurations of the backend device with the specified id.
+   *
+   * @param id The id of the device. Must not be null.
+   * @return The configurations, in descriptor index order. Never null.
+   * @throws UsbDeviceNotFoundException When the device was not found.
+   * @throws UsbPlatformException       When a configuration descriptor could
+   *                                    not be read.
+   */
+  List<UsbBackendConfiguration> getConfigurations(final UsbDeviceId id) throws UsbPlatformException {
+    synchronized (this.backendLock) {
+      return getBackendDevice(id).getConfigurations();
+    }
+  }
+
+  /**
+   * Get the referenced backend device with the specified id. Must be called
+   * while holding the backend device lock.
+   *
+   * @param id The id of the device.
+   * @return The backend device. Never null.
+   * @throws UsbDeviceNotFoundException When the device was not found.
+   */
+  private IUsbBackendDevice getBackendDevice(final UsbDeviceId id) {
+    final IUsbBackendDevice device = this.backendDevices.get(id);
+    if (device == null) {
+      throw new UsbDeviceNotFoundException(id);
+    }
+    return device;
+  }
+
   /**
    * Starts scanning in the background.
+   * <p>
+   * If the backend supports hotplug notification the scanner only runs when a
+   * device was attached or detached. The hotplug events are delivered by the
+   * transfer engine event thread, which is started here. Otherwise the
+   * scanner polls the backend every scan interval.
    */
-  public void start() {
-    /**
-     * Do not start the scan thread when interval is set to 0.
-     */
-    final int scanIntervalTemp = this.scanInterval;
-    if (scanIntervalTemp == 0) {
+  public synchronized void start() {
+    if (this.scanner != null) {
       return;
     }
-
-    final Thread thread = new Thread(new Runnable() {
+    this.hotplug = this.backend.registerHotplugListener(this.hotplugListener);
+    if (this.hotplug) {
+      this.transferEngine.start();
+    } else if (this.scanInterval == 0) {
+      /**
+       * Do not start the scan thread when interval is set to 0.
+       */
+      return;
+    }
+    this.scanner = new Thread(new Runnable() {
       @Override
       public void run() {
-        while (true) {
-          try {
-            Thread.sleep(scanIntervalTemp);
-          } catch (final InterruptedException e) {
-            Thread.currentThread().interrupt();
-          }
+        while (awaitDeviceListChange()) {
           scan();
         }
       }
     });
-    thread.setDaemon(true);
-    thread.setName("javax-usb Device Scanner");
-    thread.start();
+    this.scanner.setDaemon(true);
+    this.scanner.setName("javax-usb Device Scanner");
+    this.scanner.start();
+  }
+
+  /**
+   * Signal the scanner that the backend device list has changed. Several
+   * signals before the scanner wakes up result in a single scan.
+   */
+  void signalDeviceListChanged() {
+    synchronized (this.changeLock) {
+      this.deviceListChanged = true;
+      this.changeLock.notifyAll();
+    }
+  }
+
+  /**
+   * Wait until the next scan is due: until the device list has changed if
+   * hotplug events are available, otherwise until the scan interval has
+   * elapsed.
+   *
+   * @return TRUE if a scan is due, FALSE if the scanner was interrupted and
+   *         must terminate.
+   */
+  private boolean awaitDeviceListChange() {
+    synchronized (this.changeLock) {
+      try {
+        if (this.hotplug) {
+          while (!this.deviceListChanged) {
+            this.changeLock.wait();
+          }
+        } else if (!this.deviceListChanged) {
+          this.changeLock.wait(this.scanInterval);
+        }
+      } catch (InterruptedException ex) {
+        return false;
+      }
+      this.deviceListChanged = false;
+      return true;
+    }
   }
 
   /**
@@ -56,9 +56,9 @@ public final class UsbEndpoint implements IUsbEndpoint {
   private final IUsbEndpointDescriptor descriptor;
 
   /**
-   * The USB pipe for this endpoint.
+   * The USB pipe for this endpoint. Null until first requested.
    */
-  private final UsbPipe pipe;
+  private volatile UsbPipe pipe;
 
   /**
    * Constructor.
@@ -69,7 +69,6 @@ public final class UsbEndpoint implements IUsbEndpoint {
   public UsbEndpoint(final IUsbInterface usbInterface, final IUsbEndpointDescriptor descriptor) {
     this.usbInterface = usbInterface;
     this.descriptor = new UsbEndpointDescriptor(descriptor);
-    this.pipe = new UsbPipe(this);
   }
 
   /**
@@ -128,13 +127,24 @@ public final class UsbEndpoint implements IUsbEndpoint {
   /**
    * Get the IUsbPipe for this IUsbEndpoint.
    * <p>
-   * This is the only method of communication to this endpoint.
+   * This is the only method of communication to this endpoint. The pipe is
+   * created on first request.
    *
    * @return This IUsbEndpoint's IUsbPipe.
    */
   @Override
   public IUsbPipe getUsbPipe() {
-    return this.pipe;
+    UsbPipe current = this.pipe;
+    if (current == null) {
+      synchronized (this) {
+        current = this.pipe;
+        if (current == null) {
+          current = new UsbPipe(this);
+          this.pipe = current;
+        }
+      }
+    }
+    return current;
   }
 
   /**
@@ -17,13 +17,18 @@
  */
 package javax.usb3.ri;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.EventListener;
 import java.util.List;
 
 /**
  * Base class for event listener lists.
+ * <p>
+ * The listeners are held in a copy-on-write array. Adding or removing a
+ * listener replaces the array; firing an event reads the current array
+ * without locking or allocation. Listener lists are changed rarely and fired
+ * for every transfer.
  *
  * @param <T> The event listener type.
  * @author Klaus Reimer
@@ -32,20 +37,49 @@ import java.util.List;
 public abstract class UsbEventListener<T extends EventListener> {
 
   /**
-   * The list with registered listeners.
+   * The registered listeners. Never modified; replaced on every change.
    */
-  private final List<T> listeners = Collections.synchronizedList(new ArrayList<T>());
+  private volatile T[] listeners;
+
+  /**
+   * Constructs a new listener list without a listener array type.
+   * <p>
+   * The listeners are held in an untyped array: subclasses must override
+   * {@link #toArray()} and read the listeners with {@link #getListeners()}.
+   *
+   * @deprecated Use {@link #UsbEventListener(EventListener[])}, which allows
+   * to fire events from {@link #getListenerArray()} without allocation.
+   */
+  @Deprecated
+  @SuppressWarnings("unchecked")
+  protected UsbEventListener() {
+    this((T[]) new EventListener[0]);
+  }
+
+  /**
+   * Constructs a new listener list.
+   *
+   * @param empty An empty listener array, used to create the array type.
+   */
+  protected UsbEventListener(final T[] empty) {
+    this.listeners = empty;
+  }
 
   /**
    * Adds a listener.
    *
    * @param listener The listener to add.
    */
-  public final void add(final T listener) {
-    if (this.listeners.contains(listener)) {
-      return;
+  public final synchronized void add(final T listener) {
+    final T[] current = this.listeners;
+    for (T registered : current) {
+      if (registered.equals(listener)) {
+        return;
+      }
     }
-    this.listeners.add(listener);
+    final T[] updated = Arrays.copyOf(current, current.length + 1);
+    updated[current.length] = listener;
+    this.listeners = updated;
   }
 
   /**
@@ -53,31 +87,65 @@ public abstract class UsbEventListener<T extends EventListener> {
    *
    * @param listener The listener to remove.
    */
-  public final void remove(final T listener) {
-    this.listeners.remove(listener);
+  public final synchronized void remove(final T listener) {
+    final T[] current = this.listeners;
+    for (int i = 0; i < current.length; i++) {
+      if (current[i].equals(listener)) {
+        final T[] updated = Arrays.copyOf(current, current.length - 1);
+        System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+        this.listeners = updated;
+        return;
+      }
+    }
   }
 
   /**
    * Removes all registered listeners.
    */
-  public final void clear() {
-    this.listeners.clear();
+  public final synchronized void clear() {
+    this.listeners = Arrays.copyOf(this.listeners, 0);
+  }
+
+  /**
+   * Indicates whether no listener is registered.
+   *
+   * @return TRUE if there are no listeners.
+   */
+  public final boolean isEmpty() {
+    return this.listeners.length == 0;
   }
 
   /**
    * Returns an array with the currently registered listeners. The returned
    * array is detached from the internal list of registered listeners.
+   * <p>
+   * Subclasses constructed without a listener array type must override this
+   * method.
    *
    * @return Array with registered listeners.
    */
-  public abstract T[] toArray();
+  public T[] toArray() {
+    return this.listeners.clone();
+  }
 
   /**
-   * Returns the listeners list.
+   * Returns the current listener snapshot as an unmodifiable list. The list
+   * is not affected by later changes to the listener list.
    *
-   * @return The listeners list.
+   * @return The registered listeners.
    */
   protected final List<T> getListeners() {
+    return Collections.unmodifiableList(Arrays.asList(this.listeners));
+  }
+
+  /**
+   * Returns the current listener snapshot. The array is shared and must not
+   * be modified; it is not affected by later changes to the listener list.
+   * Unlike {@link #getListeners()} this does not allocate.
+   *
+   * @return The registered listeners.
+   */
+  protected final T[] getListenerArray() {
     return this.listeners;
   }
 }
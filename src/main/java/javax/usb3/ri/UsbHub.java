@@ -23,6 +23,7 @@ import javax.usb3.IUsbHub;
 import javax.usb3.IUsbPort;
 import javax.usb3.IUsbPorts;
 import javax.usb3.exception.UsbPlatformException;
+import javax.usb3.spi.IUsbBackendDevice;
 import org.usb4java.Device;
 
 /**
@@ -58,11 +59,32 @@ public final class UsbHub extends AUsbDevice implements IUsbHub, IUsbPorts {
    * @param parentId      The parent id. may be null if this device has no
    *                      parent.
    * @param speed         The device speed.
-   * @param device        The libusb device. This reference is only valid during
+   * @param device        The backend device. This reference is only valid during
    *                      the constructor execution, so don't store it in a
    *                      property or something like that.
    * @throws UsbPlatformException When device configuration could not be read.
    */
+  public UsbHub(final UsbDeviceManager deviceManager, final UsbDeviceId id, final UsbDeviceId parentId, final int speed, final IUsbBackendDevice device) throws UsbPlatformException {
+    super(deviceManager, id, parentId, speed, device);
+  }
+
+  /**
+   * Constructs a new USB hub device from a libusb native device.
+   *
+   * @param deviceManager The USB device manager which is responsible for this *
+   *                      device.
+   * @param id            THe device id. Must not be null.
+   * @param parentId      The parent id. may be null if this device has no
+   *                      parent.
+   * @param speed         The device speed.
+   * @param device        The libusb native device. This reference is only
+   *                      valid during the constructor execution, so don't
+   *                      store it in a property or something like that.
+   * @throws UsbPlatformException When device configuration could not be read.
+   * @deprecated Devices are created from backend devices. Use
+   * {@link #UsbHub(UsbDeviceManager, UsbDeviceId, UsbDeviceId, int, IUsbBackendDevice)}.
+   */
+  @Deprecated
   public UsbHub(final UsbDeviceManager deviceManager, final UsbDeviceId id, final UsbDeviceId parentId, final int speed, final Device device) throws UsbPlatformException {
     super(deviceManager, id, parentId, speed, device);
   }
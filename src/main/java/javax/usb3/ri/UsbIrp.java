@@ -18,6 +18,8 @@
  */
 package javax.usb3.ri;
 
+import java.nio.ByteBuffer;
+
 /**
  * A basic, abstract USB I/O Request Packet (IRP) implementation (IUsbIrp). This
  * class implements minimum required functionality for the IUsbIrp interface.
@@ -48,6 +50,17 @@ public class UsbIrp extends AUsbIrp {
     super(data);
   }
 
+  /**
+   * Constructor. The data is transferred directly to or from the remaining
+   * bytes of the buffer without copying.
+   *
+   * @param buffer The direct data buffer.
+   * @exception IllegalArgumentException If the buffer is null or not direct.
+   */
+  public UsbIrp(ByteBuffer buffer) {
+    super(buffer);
+  }
+
   /**
    * Constructor.
    *
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.ri;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.usb3.IUsbIrp;
+import javax.usb3.exception.UsbAbortException;
+import javax.usb3.exception.UsbException;
+
+/**
+ * A list of IRPs submitted together to an IRP queue.
+ * <p>
+ * A batch tracks the completion of its IRPs. The batch future completes when
+ * the last IRP of the batch is finished: normally if all IRPs were successful,
+ * or exceptionally with the UsbException of the first failed IRP. Once an IRP
+ * has failed the batch is failed fast: the remaining IRPs of the batch that
+ * have not yet been submitted to the device are completed with a
+ * {@link javax.usb3.exception.UsbAbortException} instead of being submitted.
+ * The status of each IRP is always available from the IRP itself.
+ *
+ * @author Jesse Caulfield
+ */
+final class UsbIrpBatch {
+
+  /**
+   * The number of IRPs in this batch not yet finished.
+   */
+  private final AtomicInteger remaining;
+
+  /**
+   * The exception of the first failed IRP. Null while all finished IRPs were
+   * successful.
+   */
+  private volatile UsbException failure;
+
+  /**
+   * The batch future.
+   */
+  private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+  /**
+   * Construct a new batch.
+   *
+   * @param size The number of IRPs in the batch. Must be positive.
+   */
+  UsbIrpBatch(final int size) {
+    this.remaining = new AtomicInteger(size);
+  }
+
+  /**
+   * Indicates that an IRP of this batch has failed and the remaining IRPs
+   * should not be submitted.
+   *
+   * @return TRUE if the batch has failed.
+   */
+  boolean isFailed() {
+    return this.failure != null;
+  }
+
+  /**
+   * Record a finished IRP of this batch. Completes the batch future if the IRP
+   * was the last one.
+   *
+   * @param irp The finished IRP.
+   */
+  void finished(final IUsbIrp irp) {
+    if (irp.isUsbException() && this.failure == null) {
+      synchronized (this) {
+        if (this.failure == null) {
+          this.failure = irp.getUsbException();
+        }
+      }
+    }
+    if (this.remaining.decrementAndGet() == 0) {
+      if (this.failure == null) {
+        this.future.complete(null);
+      } else {
+        this.future.completeExceptionally(this.failure);
+      }
+    }
+  }
+
+  /**
+   * Get the batch future.
+   *
+   * @return A future completed when all IRPs of the batch are finished.
+   */
+  CompletableFuture<Void> getFuture() {
+    return this.future;
+  }
+
+  /**
+   * Wait until the indicated batch future is complete.
+   *
+   * @param future A future returned by {@link AUsbIrpQueue#submitAll(java.util.List)}.
+   * @throws UsbException the exception of the first failed IRP of the batch
+   */
+  static void await(final CompletableFuture<Void> future) throws UsbException {
+    try {
+      future.join();
+    } catch (CompletionException ex) {
+      if (ex.getCause() instanceof UsbException) {
+        throw (UsbException) ex.getCause();
+      }
+      throw ex;
+    } catch (CancellationException ex) {
+      throw new UsbAbortException("IRP batch was cancelled");
+    }
+  }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.ri;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Factory and utility methods for the {@link Executor} instances used to
+ * process USB I/O Request Packet (IRP) queues.
+ * <p>
+ * Each IRP queue submits at most one processing task to its executor at any
+ * time. IRPs within a queue are therefore always processed in FIFO order
+ * regardless of how many threads the executor provides. The following
+ * execution models are supported:
+ * <ul>
+ * <li>{@link #getSharedExecutor() Shared}: The default. A single pool of
+ * long-lived daemon threads that is shared by all IRP queues. Idle threads
+ * park and are reused for the next queue burst instead of being created and
+ * destroyed for every burst.</li>
+ * <li>{@link #newBoundedExecutor(String, int) Bounded}: A shared pool with a
+ * fixed number of worker threads.</li>
+ * <li>{@link #newDedicatedExecutor(String) Dedicated}: A single pinned worker
+ * thread serving one pipe. The worker parks (rather than exits) when its queue
+ * is empty.</li>
+ * <li>Any caller-supplied {@link Executor}.</li>
+ * </ul>
+ * All threads created by this class are daemon threads and are counted by
+ * {@link #getThreadsCreated()}.
+ *
+ * @author Jesse Caulfield
+ */
+public final class UsbIrpExecutors {
+
+  /**
+   * The number of seconds an idle shared IRP processor thread is kept alive
+   * before it is retired.
+   */
+  private static final long KEEP_ALIVE_SECONDS = 60;
+
+  /**
+   * The total number of IRP processor threads created by this class.
+   */
+  private static final AtomicLong THREADS_CREATED = new AtomicLong();
+
+  /**
+   * The default shared executor. Lazily initialized.
+   */
+  private static volatile ExecutorService sharedExecutor;
+
+  /**
+   * Private constructor to prevent instantiation.
+   */
+  private UsbIrpExecutors() {
+  }
+
+  /**
+   * Get the default IRP executor shared by all IRP queues.
+   * <p>
+   * The shared executor keeps idle worker threads for
+   * {@value #KEEP_ALIVE_SECONDS} seconds so that successive queue bursts reuse
+   * the same threads. The pool is not bounded because a blocking transfer (for
+   * example an IN pipe waiting for data) occupies a worker thread for its
+   * duration. Use a {@link #newBoundedExecutor(String, int) bounded} executor
+   * where the number of concurrently blocking pipes is known.
+   *
+   * @return the shared IRP executor
+   */
+  public static Executor getSharedExecutor() {
+    if (sharedExecutor == null) {
+      synchronized (UsbIrpExecutors.class) {
+        if (sharedExecutor == null) {
+          sharedExecutor = new ThreadPoolExecutor(0, Integer.MAX_VALUE,
+                                                  KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                                                  new SynchronousQueue<Runnable>(),
+                                                  new IrpThreadFactory("usb4java IRP Queue Processor"));
+        }
+      }
+    }
+    return sharedExecutor;
+  }
+
+  /**
+   * Create a new bounded IRP executor having a fixed number of worker threads.
+   * The worker threads are started on demand and then park when idle.
+   * <p>
+   * Developer note: A blocking transfer occupies a worker thread until it
+   * completes. If more pipes are blocked waiting for data than there are
+   * worker threads then the IRPs of the remaining pipes will wait until a
+   * worker becomes available.
+   *
+   * @param name    the worker thread name prefix
+   * @param threads the number of worker threads. Must be positive.
+   * @return a new bounded IRP executor
+   */
+  public static ExecutorService newBoundedExecutor(final String name, final int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("The number of IRP processor threads must be positive");
+    }
+    return new ThreadPoolExecutor(threads, threads,
+                                  0L, TimeUnit.MILLISECONDS,
+                                  new LinkedBlockingQueue<Runnable>(),
+                                  new IrpThreadFactory(name));
+  }
+
+  /**
+   * Create a new dedicated IRP executor having exactly one pinned worker
+   * thread. The worker thread is never retired: it parks while the queue is
+   * empty and resumes as soon as a new IRP is added.
+   * <p>
+   * Shut down the returned executor when the pipe is no longer used.
+   *
+   * @param name the worker thread name
+   * @return a new single-threaded IRP executor
+   */
+  public static ExecutorService newDedicatedExecutor(final String name) {
+    return newBoundedExecutor(name, 1);
+  }
+
+  /**
+   * Get the total number of IRP processor threads created by the executors of
+   * this class since the JVM was started.
+   *
+   * @return the number of threads created
+   */
+  public static long getThreadsCreated() {
+    return THREADS_CREATED.get();
+  }
+
+  /**
+   * Thread factory producing named, counted daemon threads.
+   */
+  private static final class IrpThreadFactory implements ThreadFactory {
+
+    /**
+     * The thread name prefix.
+     */
+    private final String name;
+    /**
+     * The sequence number of the next thread.
+     */
+    private final AtomicInteger sequence = new AtomicInteger();
+
+    /**
+     * Construct a new thread factory.
+     *
+     * @param name The thread name prefix.
+     */
+    IrpThreadFactory(final String name) {
+      this.name = name;
+    }
+
+    @Override
+    public Thread newThread(final Runnable runnable) {
+      final Thread thread = new Thread(runnable, this.name + " " + this.sequence.incrementAndGet());
+      /**
+       * Developer note: Mark this thread as a daemon thread. A daemon thread in
+       * Java is one that doesn't prevent the JVM from exiting.
+       */
+      thread.setDaemon(true);
+      THREADS_CREATED.incrementAndGet();
+      return thread;
+    }
+  }
+}
@@ -18,16 +18,18 @@
 package javax.usb3.ri;
 
 import java.nio.ByteBuffer;
-import java.nio.IntBuffer;
 import javax.usb3.*;
 import javax.usb3.enumerated.EDataFlowtype;
 import javax.usb3.enumerated.EEndpointDirection;
 import javax.usb3.exception.UsbAbortException;
 import javax.usb3.exception.UsbException;
 import javax.usb3.exception.UsbShortPacketException;
-import javax.usb3.request.BEndpointAddress;
+import javax.usb3.exception.UsbTimeoutException;
+import javax.usb3.spi.IUsbDeviceHandle;
+import javax.usb3.spi.IUsbTransfer;
+import javax.usb3.spi.IUsbTransferCallback;
+import javax.usb3.utility.BufferUtility;
 import javax.usb3.utility.UsbExceptionFactory;
-import org.usb4java.DeviceHandle;
 import org.usb4java.LibUsb;
 
 /**
@@ -67,6 +69,57 @@ public final class UsbIrpQueue extends AUsbIrpQueue<IUsbIrp> {
    */
   private final IUsbEndpointDescriptor endpointDescriptor;
 
+  /**
+   * The maximum number of bytes submitted in a single libusb transfer.
+   */
+  private volatile int maxTransferSize = UsbServiceInstanceConfiguration.MAX_TRANSFER_SIZE;
+
+  /**
+   * The maximum number of asynchronous libusb transfers kept in flight for this
+   * pipe. Zero (the default) selects the blocking libusb API, in which case
+   * exactly one transfer is in progress at any time.
+   */
+  private volatile int transfersInFlight;
+
+  /**
+   * The number of asynchronous libusb transfers currently in flight. Guarded by
+   * the {@link #transferWindow} lock.
+   */
+  private int activeTransfers;
+
+  /**
+   * Indicator that the transfer in flight holds the complete transfer window.
+   * Guarded by the {@link #transferWindow} lock.
+   */
+  private boolean exclusiveTransfer;
+
+  /**
+   * Lock object used to limit the number of asynchronous transfers in flight.
+   */
+  private final Object transferWindow = new Object();
+
+  /**
+   * The transfer callback. This is invoked on the transfer engine event
+   * thread.
+   */
+  private final IUsbTransferCallback transferCallback = new IUsbTransferCallback() {
+    @Override
+    public void processTransfer(final IUsbTransfer transfer) {
+      transferComplete(transfer);
+    }
+  };
+
+  /**
+   * The isochronous transfer callback. This is invoked on the transfer engine
+   * event thread.
+   */
+  private final IUsbTransferCallback isochronousTransferCallback = new IUsbTransferCallback() {
+    @Override
+    public void processTransfer(final IUsbTransfer transfer) {
+      isochronousTransferComplete(transfer);
+    }
+  };
+
   /**
    * Constructor.
    *
@@ -80,6 +133,134 @@ public final class UsbIrpQueue extends AUsbIrpQueue<IUsbIrp> {
     this.endpointDescriptor = this.pipe.getUsbEndpoint().getUsbEndpointDescriptor();
   }
 
+  /**
+   * Set the maximum number of asynchronous libusb transfers kept in flight for
+   * this pipe. If set to zero (the default) bulk and interrupt IRPs are
+   * transferred using the blocking libusb API, one at a time.
+   * <p>
+   * If set to a positive number then bulk and interrupt IRPs are submitted as
+   * asynchronous libusb transfers and completed by the libusb event thread.
+   * Up to this number of IRPs are in flight at any time, which keeps the host
+   * controller busy between transfers and is required to saturate high-speed
+   * and SuperSpeed bulk endpoints.
+   * <p>
+   * IRPs complete in FIFO order. An IRP larger than the
+   * {@link #setMaxTransferSize(int) maximum transfer size} is transferred in
+   * several parts; it holds the complete window until its last part is
+   * finished, so that the data of consecutive IRPs is never interleaved. An IRP
+   * which is cancelled or whose deadline expires completes as soon as its
+   * transfer ends, possibly before IRPs submitted earlier.
+   * <p>
+   * Isochronous IRPs are always submitted asynchronously. If this is zero then
+   * {@link UsbServiceInstanceConfiguration#ISOCHRONOUS_TRANSFERS_IN_FLIGHT}
+   * isochronous transfers are kept in flight.
+   *
+   * @param transfersInFlight the number of transfers. Zero to use the blocking
+   *                          API.
+   */
+  public void setTransfersInFlight(final int transfersInFlight) {
+    if (transfersInFlight < 0) {
+      throw new IllegalArgumentException("The number of transfers in flight must not be negative");
+    }
+    this.transfersInFlight = transfersInFlight;
+    synchronized (this.transferWindow) {
+      this.transferWindow.notifyAll();
+    }
+  }
+
+  /**
+   * Get the maximum number of asynchronous libusb transfers kept in flight for
+   * this pipe.
+   *
+   * @return the number of transfers. Zero if the blocking API is used.
+   */
+  public int getTransfersInFlight() {
+    return this.transfersInFlight;
+  }
+
+  /**
+   * Set the maximum number of bytes submitted in a single libusb transfer.
+   * IRPs larger than this are split into several transfers. The default is
+   * {@link UsbServiceInstanceConfiguration#MAX_TRANSFER_SIZE}.
+   * <p>
+   * The effective transfer size is rounded down to a multiple of the endpoint
+   * maximum packet size (but never below one packet) so that a short packet
+   * always identifies the end of the data.
+   *
+   * @param maxTransferSize the maximum transfer size in bytes. Must be
+   *                        positive.
+   */
+  public void setMaxTransferSize(final int maxTransferSize) {
+    if (maxTransferSize < 1) {
+      throw new IllegalArgumentException("The maximum transfer size must be positive");
+    }
+    this.maxTransferSize = maxTransferSize;
+  }
+
+  /**
+   * Get the maximum number of bytes submitted in a single libusb transfer.
+   *
+   * @return the maximum transfer size in bytes.
+   */
+  public int getMaxTransferSize() {
+    return this.maxTransferSize;
+  }
+
+  /**
+   * Get the effective transfer size. This is the configured maximum transfer
+   * size rounded down to a multiple of the endpoint maximum packet size.
+   *
+   * @return the effective transfer size in bytes.
+   */
+  private int getTransferSize() {
+    /**
+     * Bits 10..0 of wMaxPacketSize hold the packet size. Bits 12..11 (the
+     * number of additional high-bandwidth transactions) are ignored.
+     */
+    final int packetSize = endpointDescriptor.wMaxPacketSize() & 0x7ff;
+    final int transferSize = this.maxTransferSize;
+    if (packetSize == 0 || transferSize <= packetSize) {
+      return Math.max(transferSize, packetSize);
+    }
+    return transferSize - transferSize % packetSize;
+  }
+
+  /**
+   * Submits the IRP. Bulk and interrupt IRPs are submitted as asynchronous
+   * libusb transfers if {@link #setTransfersInFlight(int) transfers in flight}
+   * is configured. All other IRPs are processed synchronously.
+   *
+   * @param irp The IRP to submit.
+   * @return TRUE if the IRP was processed synchronously, FALSE if it will be
+   *         completed asynchronously.
+   * @throws UsbException When submitting the IRP fails.
+   */
+  @Override
+  protected boolean submitIrp(final IUsbIrp irp) throws UsbException {
+    if (EDataFlowtype.ISOCHRONOUS.equals(endpointTransferType)) {
+      submitIsochronousTransfer(irp);
+      return false;
+    }
+    if (this.transfersInFlight == 0
+        || !(EDataFlowtype.BULK.equals(endpointTransferType) || EDataFlowtype.INTERRUPT.equals(endpointTransferType))) {
+      processIrp(irp);
+      return true;
+    }
+    submitTransfer(irp);
+    return false;
+  }
+
+  /**
+   * Called by abort to release the IRP processor if it is waiting for a free
+   * transfer slot. The transfers in flight have already been cancelled.
+   */
+  @Override
+  protected void abortTransfers() {
+    synchronized (this.transferWindow) {
+      this.transferWindow.notifyAll();
+    }
+  }
+
   /**
    * Processes the IRP.
    *
@@ -139,21 +320,38 @@ public final class UsbIrpQueue extends AUsbIrpQueue<IUsbIrp> {
      * Open the USB device and returns the USB device handle. If device was
      * already open then the old handle is returned.
      */
-    final DeviceHandle deviceHandle = this.usbDevice.open();
+    final IUsbDeviceHandle deviceHandle = this.usbDevice.open();
+    final int transferSize = getTransferSize();
+    /**
+     * Read directly into a caller-supplied direct buffer, otherwise into a
+     * pooled buffer and copy into the IRP data array.
+     */
+    final ByteBuffer direct = irp.getDataBuffer();
+    final ByteBuffer pooled = direct == null ? BufferUtility.acquireByteBuffer(Math.min(irp.getLength(), transferSize)) : null;
+    final IUsbTransfer transfer = allocTransfer(pooled);
     int read = 0;
-    while (read < irp.getLength()) {
-      final int size = Math.min(irp.getLength() - read, endpointDescriptor.wMaxPacketSize() & 0xffff);
-      final ByteBuffer buffer = ByteBuffer.allocateDirect(size);
-      final int result = transfer(deviceHandle, endpointDescriptor, buffer);
-      buffer.rewind();
-      buffer.get(irp.getData(), irp.getOffset() + read, result);
-      read += result;
-      /**
-       * Short packet detected, abort the WHILE loop.
-       */
-      if (result < size) {
-        break;
+    try {
+      while (read < irp.getLength()) {
+        final int size = Math.min(irp.getLength() - read, transferSize);
+        final ByteBuffer buffer = direct != null
+                                  ? BufferUtility.slice(direct, irp.getOffset() + read, size)
+                                  : BufferUtility.slice(pooled, 0, size);
+        final int result = transfer(transfer, deviceHandle, irp, buffer);
+        if (direct == null) {
+          buffer.rewind();
+          buffer.get(irp.getData(), irp.getOffset() + read, result);
+        }
+        read += result;
+        /**
+         * Short packet detected, abort the WHILE loop.
+         */
+        if (result < size) {
+          break;
+        }
       }
+    } finally {
+      transfer.free();
+      BufferUtility.releaseByteBuffer(pooled);
     }
     irp.setActualLength(read);
   }
@@ -165,99 +363,497 @@ public final class UsbIrpQueue extends AUsbIrpQueue<IUsbIrp> {
    * @throws UsbException if the Device cannot be opened or cannot be written to
    */
   private void writeUsbIrp(final IUsbIrp irp) throws UsbException {
-    final DeviceHandle handle = this.usbDevice.open();
+    final IUsbDeviceHandle handle = this.usbDevice.open();
+    final int transferSize = getTransferSize();
+    /**
+     * Write directly from a caller-supplied direct buffer, otherwise copy the
+     * IRP data array into a pooled buffer.
+     */
+    final ByteBuffer direct = irp.getDataBuffer();
+    final ByteBuffer pooled = direct == null ? BufferUtility.acquireByteBuffer(Math.min(irp.getLength(), transferSize)) : null;
+    final IUsbTransfer transfer = allocTransfer(pooled);
     int written = 0;
-    while (written < irp.getLength()) {
-      final int size = Math.min(irp.getLength() - written, endpointDescriptor.wMaxPacketSize() & 0xffff);
-      final ByteBuffer buffer = ByteBuffer.allocateDirect(size);
-      buffer.put(irp.getData(), irp.getOffset() + written, size);
-      buffer.rewind();
-      final int result = transfer(handle, endpointDescriptor, buffer);
-      written += result;
-      // Short packet detected, aborting
-      if (result < size) {
-        break;
+    try {
+      while (written < irp.getLength()) {
+        final int size = Math.min(irp.getLength() - written, transferSize);
+        final ByteBuffer buffer;
+        if (direct != null) {
+          buffer = BufferUtility.slice(direct, irp.getOffset() + written, size);
+        } else {
+          buffer = BufferUtility.slice(pooled, 0, size);
+          buffer.put(irp.getData(), irp.getOffset() + written, size);
+          buffer.rewind();
+        }
+        final int result = transfer(transfer, handle, irp, buffer);
+        written += result;
+        // Short packet detected, aborting
+        if (result < size) {
+          break;
+        }
       }
+    } finally {
+      transfer.free();
+      BufferUtility.releaseByteBuffer(pooled);
     }
     irp.setActualLength(written);
   }
 
   /**
-   * Transfers data from or to the device.
+   * Submit an I/O Request Packet as an asynchronous libusb transfer. This
+   * blocks while the configured number of transfers is already in flight.
+   * <p>
+   * IRPs larger than the {@link #getTransferSize() transfer size} are
+   * transferred in several consecutive parts by resubmitting the same libusb
+   * transfer from its callback. Such an IRP waits until no other transfer is
+   * in flight and holds the complete transfer window, so that no transfer of a
+   * later IRP is queued on the endpoint between its parts.
+   *
+   * @param irp A USB I/O Request Packet (IRP) instance
+   * @throws UsbException if the Device cannot be opened or the transfer cannot
+   *                      be submitted
+   */
+  private void submitTransfer(final IUsbIrp irp) throws UsbException {
+    final IUsbDeviceHandle handle = this.usbDevice.open();
+    acquireTransferSlot(irp.getLength() > getTransferSize());
+    final IUsbTransfer transfer = getTransferEngine().getBackend().allocTransfer(0);
+    final TransferState state = new TransferState(irp, Math.min(irp.getLength(), getTransferSize()));
+    try {
+      if (transfer == null) {
+        throw new UsbException("Unable to allocate a transfer");
+      }
+      final ByteBuffer buffer;
+      if (irp.getDataBuffer() != null) {
+        buffer = BufferUtility.slice(irp.getDataBuffer(), irp.getOffset(), state.transferSize);
+      } else {
+        buffer = state.pooled = BufferUtility.acquireByteBuffer(state.transferSize);
+        if (!isDeviceToHost()) {
+          buffer.put(irp.getData(), irp.getOffset(), state.transferSize);
+          buffer.rewind();
+        }
+      }
+      final byte address = endpointDescriptor.endpointAddress().getByteCode();
+      final long timeout = getAsynchronousTimeout(irp);
+      transfer.fill(handle, endpointTransferType, address, buffer, transferCallback, state, timeout);
+      /**
+       * A pooled buffer may be larger than requested.
+       */
+      transfer.setLength(state.transferSize);
+      startTransfer(transfer, irp);
+    } catch (UsbException | RuntimeException e) {
+      if (transfer != null) {
+        transfer.free();
+      }
+      BufferUtility.releaseByteBuffer(state.pooled);
+      releaseTransferSlot(transfer);
+      throw e;
+    }
+  }
+
+  /**
+   * Called on the libusb event thread when an asynchronous transfer is
+   * finished. Copies the received data into the IRP and completes it, or
+   * resubmits the transfer for the next part of a large IRP.
+   *
+   * @param transfer The finished libusb transfer.
+   */
+  private void transferComplete(final IUsbTransfer transfer) {
+    final TransferState state = (TransferState) transfer.userData();
+    final IUsbIrp irp = state.irp;
+    final int status = transfer.status();
+    if (status == LibUsb.TRANSFER_COMPLETED) {
+      final int actualLength = transfer.actualLength();
+      if (isDeviceToHost() && state.pooled != null) {
+        state.pooled.rewind();
+        state.pooled.get(irp.getData(), irp.getOffset() + state.transferred, actualLength);
+      }
+      state.transferred += actualLength;
+      /**
+       * Continue with the next part unless a short packet ended the data.
+       */
+      final int remaining = irp.getLength() - state.transferred;
+      if (actualLength == transfer.length() && remaining > 0 && !isAborting()) {
+        final int size = Math.min(remaining, state.transferSize);
+        if (state.pooled == null) {
+          transfer.setBuffer(BufferUtility.slice(irp.getDataBuffer(), irp.getOffset() + state.transferred, size));
+        } else {
+          state.pooled.clear();
+          if (!isDeviceToHost()) {
+            state.pooled.put(irp.getData(), irp.getOffset() + state.transferred, size);
+            state.pooled.rewind();
+          }
+          transfer.setLength(size);
+        }
+        try {
+          transfer.setTimeout(getAsynchronousTimeout(irp));
+          getTransferEngine().resubmit(transfer);
+          return;
+        } catch (UsbException e) {
+          irp.setUsbException(e);
+        }
+      }
+      irp.setActualLength(state.transferred);
+      if (state.transferred < irp.getLength() && !irp.getAcceptShortPacket() && !irp.isUsbException()) {
+        irp.setUsbException(isAborting() ? new UsbAbortException() : new UsbShortPacketException());
+      }
+    } else if (status == LibUsb.TRANSFER_CANCELLED || status == LibUsb.TRANSFER_TIMED_OUT && isAborting()) {
+      irp.setActualLength(state.transferred + transfer.actualLength());
+      irp.setUsbException(new UsbAbortException());
+    } else if (status == LibUsb.TRANSFER_TIMED_OUT) {
+      irp.setActualLength(state.transferred + transfer.actualLength());
+      irp.setUsbException(new UsbTimeoutException("Transfer timed out after " + transfer.timeout() + " ms"));
+    } else {
+      irp.setActualLength(state.transferred + transfer.actualLength());
+      irp.setUsbException(UsbExceptionFactory.createPlatformException("Transfer error on " + endpointTransferType + " endpoint",
+                                                                      UsbTransferEngine.toErrorCode(status)));
+    }
+    releaseTransferSlot(transfer);
+    getTransferEngine().transferCompleted(transfer);
+    transfer.free();
+    BufferUtility.releaseByteBuffer(state.pooled);
+    completeIrp(irp, state.submitted);
+  }
+
+  /**
+   * Submit an I/O Request Packet as an asynchronous isochronous libusb
+   * transfer. This blocks while the configured number of transfers is already
+   * in flight.
+   * <p>
+   * If the IRP is a {@link IUsbIsochronousIrp} its packet layout is used.
+   * Otherwise the IRP data is divided into packets of the
+   * {@link #getIsochronousPacketSize() endpoint packet size}.
+   *
+   * @param irp A USB I/O Request Packet (IRP) instance
+   * @throws UsbException if the Device cannot be opened or the transfer cannot
+   *                      be submitted
+   */
+  private void submitIsochronousTransfer(final IUsbIrp irp) throws UsbException {
+    final int packetSize = getIsochronousPacketSize();
+    final int[] packetLengths;
+    if (irp instanceof IUsbIsochronousIrp) {
+      final IUsbIsochronousIrp isoIrp = (IUsbIsochronousIrp) irp;
+      packetLengths = new int[isoIrp.getNumberOfPackets()];
+      for (int i = 0; i < packetLengths.length; i++) {
+        packetLengths[i] = isoIrp.getPacketLength(i);
+        if (packetLengths[i] > packetSize) {
+          throw new UsbException("Isochronous packet length " + packetLengths[i] + " exceeds the endpoint packet size " + packetSize);
+        }
+      }
+    } else {
+      packetLengths = new int[Math.max(1, (irp.getLength() + packetSize - 1) / packetSize)];
+      for (int i = 0; i < packetLengths.length; i++) {
+        packetLengths[i] = Math.min(packetSize, irp.getLength() - i * packetSize);
+      }
+    }
+    final IUsbDeviceHandle handle = this.usbDevice.open();
+    acquireTransferSlot(false);
+    final IUsbTransfer transfer = getTransferEngine().getBackend().allocTransfer(packetLengths.length);
+    final TransferState state = new TransferState(irp, irp.getLength());
+    try {
+      if (transfer == null) {
+        throw new UsbException("Unable to allocate a transfer");
+      }
+      final ByteBuffer buffer;
+      if (irp.getDataBuffer() != null) {
+        buffer = BufferUtility.slice(irp.getDataBuffer(), irp.getOffset(), irp.getLength());
+      } else {
+        buffer = state.pooled = BufferUtility.acquireByteBuffer(irp.getLength());
+        if (!isDeviceToHost()) {
+          buffer.put(irp.getData(), irp.getOffset(), irp.getLength());
+          buffer.rewind();
+        }
+      }
+      /**
+       * Allow the transfer timeout to cover the full packet schedule, but not
+       * to outlast the IRP deadline.
+       */
+      final long schedule = getTimeout() == 0 ? 0 : getTimeout() + (long) packetLengths.length * getIsochronousInterval();
+      final long timeout = getTransferTimeout(irp, schedule);
+      transfer.fill(handle, EDataFlowtype.ISOCHRONOUS, endpointDescriptor.endpointAddress().getByteCode(), buffer,
+                    isochronousTransferCallback, state, timeout);
+      transfer.setLength(irp.getLength());
+      for (int i = 0; i < packetLengths.length; i++) {
+        transfer.setIsoPacketLength(i, packetLengths[i]);
+      }
+      startTransfer(transfer, irp);
+    } catch (UsbException | RuntimeException e) {
+      if (transfer != null) {
+        transfer.free();
+      }
+      BufferUtility.releaseByteBuffer(state.pooled);
+      releaseTransferSlot(transfer);
+      throw e;
+    }
+  }
+
+  /**
+   * Called on the libusb event thread when an isochronous transfer is
+   * finished. Copies the received packets into the IRP, records the
+   * per-packet results and completes the IRP.
+   * <p>
+   * A plain (non-isochronous) IRP fails with the exception of its first failed
+   * packet.
+   *
+   * @param transfer The finished libusb transfer.
+   */
+  private void isochronousTransferComplete(final IUsbTransfer transfer) {
+    final TransferState state = (TransferState) transfer.userData();
+    final IUsbIrp irp = state.irp;
+    final IUsbIsochronousIrp isoIrp = irp instanceof IUsbIsochronousIrp ? (IUsbIsochronousIrp) irp : null;
+    final int status = transfer.status();
+    if (status == LibUsb.TRANSFER_COMPLETED) {
+      int actualLength = 0;
+      int packetOffset = 0;
+      for (int i = 0; i < transfer.numIsoPackets(); i++) {
+        final int packetActualLength = transfer.isoPacketActualLength(i);
+        final int packetStatus = transfer.isoPacketStatus(i);
+        final UsbException packetException = packetStatus == LibUsb.TRANSFER_COMPLETED
+                                             ? null
+                                             : UsbExceptionFactory.createPlatformException("Isochronous packet " + i + " failed",
+                                                                                          UsbTransferEngine.toErrorCode(packetStatus));
+        if (isDeviceToHost() && state.pooled != null && packetActualLength > 0) {
+          state.pooled.position(packetOffset);
+          state.pooled.get(irp.getData(), irp.getOffset() + packetOffset, packetActualLength);
+        }
+        if (isoIrp != null) {
+          isoIrp.setPacketActualLength(i, packetActualLength);
+          isoIrp.setPacketException(i, packetException);
+        } else if (packetException != null && !irp.isUsbException()) {
+          irp.setUsbException(packetException);
+        }
+        actualLength += packetActualLength;
+        packetOffset += transfer.isoPacketLength(i);
+      }
+      irp.setActualLength(actualLength);
+    } else if (status == LibUsb.TRANSFER_CANCELLED) {
+      irp.setActualLength(0);
+      irp.setUsbException(new UsbAbortException());
+    } else if (status == LibUsb.TRANSFER_TIMED_OUT) {
+      irp.setActualLength(0);
+      irp.setUsbException(new UsbTimeoutException("Isochronous transfer timed out after " + transfer.timeout() + " ms"));
+    } else {
+      irp.setActualLength(0);
+      irp.setUsbException(UsbExceptionFactory.createPlatformException("Transfer error on " + endpointTransferType + " endpoint",
+                                                                      UsbTransferEngine.toErrorCode(status)));
+    }
+    releaseTransferSlot(transfer);
+    getTransferEngine().transferCompleted(transfer);
+    transfer.free();
+    BufferUtility.releaseByteBuffer(state.pooled);
+    completeIrp(irp, state.submitted);
+  }
+
+  /**
+   * Get the isochronous packet size. This is the maximum number of bytes the
+   * endpoint transfers per service interval: the packet size (bits 10..0 of
+   * wMaxPacketSize) multiplied by the number of transactions per microframe
+   * (one plus bits 12..11) of a high-bandwidth endpoint.
+   *
+   * @return the isochronous packet size in bytes
+   */
+  int getIsochronousPacketSize() {
+    final int wMaxPacketSize = endpointDescriptor.wMaxPacketSize() & 0xffff;
+    return (wMaxPacketSize & 0x7ff) * (1 + ((wMaxPacketSize >> 11) & 0x3));
+  }
+
+  /**
+   * Get the isochronous service interval. This is 2^(bInterval-1)
+   * (micro)frames. The value is returned in (full-speed) frames of one
+   * millisecond, which is the upper bound of the actual interval.
+   *
+   * @return the service interval in milliseconds
+   */
+  private int getIsochronousInterval() {
+    final int bInterval = Math.max(1, Math.min(16, endpointDescriptor.bInterval() & 0xff));
+    return 1 << (bInterval - 1);
+  }
+
+  /**
+   * Wait for a free transfer slot. The number of slots is the configured
+   * number of {@link #setTransfersInFlight(int) transfers in flight}, or
+   * {@link UsbServiceInstanceConfiguration#ISOCHRONOUS_TRANSFERS_IN_FLIGHT} on
+   * an isochronous pipe if none is configured.
+   * <p>
+   * An exclusive transfer waits until no other transfer is in flight and then
+   * holds the complete window until it is released.
    *
-   * @param handle     The device handle.
-   * @param descriptor The endpoint descriptor.
-   * @param type       The endpoint type.
-   * @param buffer     The data buffer.
+   * @param exclusive TRUE to hold the complete transfer window.
+   * @throws UsbAbortException if the queue is aborted while waiting
+   */
+  private void acquireTransferSlot(final boolean exclusive) throws UsbAbortException {
+    synchronized (this.transferWindow) {
+      while (this.exclusiveTransfer
+             || (exclusive ? this.activeTransfers > 0 : this.activeTransfers >= getTransferWindow() && getTransferWindow() > 0)) {
+        if (isAborting()) {
+          throw new UsbAbortException();
+        }
+        try {
+          this.transferWindow.wait();
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+          throw new UsbAbortException("Interrupted while waiting for a free transfer");
+        }
+      }
+      this.activeTransfers++;
+      this.exclusiveTransfer = exclusive;
+    }
+  }
+
+  /**
+   * Get the number of transfer slots.
+   *
+   * @return the maximum number of transfers in flight
+   */
+  private int getTransferWindow() {
+    final int window = this.transfersInFlight;
+    if (window == 0 && EDataFlowtype.ISOCHRONOUS.equals(endpointTransferType)) {
+      return UsbServiceInstanceConfiguration.ISOCHRONOUS_TRANSFERS_IN_FLIGHT;
+    }
+    return window;
+  }
+
+  /**
+   * Release a transfer slot and wake up the IRP processor if it is waiting for
+   * one.
+   *
+   * @param transfer The finished transfer. May be null.
+   */
+  private void releaseTransferSlot(final IUsbTransfer transfer) {
+    if (transfer != null) {
+      removeTransfer(transfer);
+    }
+    synchronized (this.transferWindow) {
+      this.activeTransfers--;
+      /**
+       * An exclusive transfer is the only one in flight.
+       */
+      this.exclusiveTransfer = false;
+      this.transferWindow.notifyAll();
+    }
+  }
+
+  /**
+   * Get the timeout of an asynchronous bulk or interrupt transfer of the
+   * indicated IRP.
+   * <p>
+   * While the {@link #isResubmitOnTimeout(IUsbIrp) default timeout} is in
+   * effect an IN transfer has no timeout (other than the IRP deadline), so
+   * that a read waits indefinitely for data like the blocking API. A transfer
+   * which timed out could only be resubmitted behind the transfers of later
+   * IRPs, which would then receive its data.
+   *
+   * @param irp The IRP to transfer.
+   * @return The transfer timeout in milliseconds. Zero for no timeout.
+   * @throws UsbTimeoutException if the IRP deadline has passed
+   */
+  private long getAsynchronousTimeout(final IUsbIrp irp) throws UsbTimeoutException {
+    return getTransferTimeout(irp, isDeviceToHost() && isResubmitOnTimeout(irp) ? 0 : getTimeout());
+  }
+
+  /**
+   * Get the asynchronous transfer engine of the device manager.
+   *
+   * @return the transfer engine
+   */
+  private UsbTransferEngine getTransferEngine() {
+    return this.usbDevice.deviceManager.getTransferEngine();
+  }
+
+  /**
+   * Indicator that this pipe transfers data from the device to the host.
+   *
+   * @return TRUE if this is an IN pipe.
+   */
+  private boolean isDeviceToHost() {
+    return EEndpointDirection.DEVICE_TO_HOST.equals(endPointDirection)
+           || EEndpointDirection.IN.equals(endPointDirection);
+  }
+
+  /**
+   * Allocate the transfer used by a blocking read or write.
+   *
+   * @param pooled The pooled buffer acquired for the transfer. Released if the
+   *               transfer cannot be allocated. May be null.
+   * @return The transfer.
+   * @throws UsbException if the transfer cannot be allocated
+   */
+  private IUsbTransfer allocTransfer(final ByteBuffer pooled) throws UsbException {
+    final IUsbTransfer transfer = getTransferEngine().getBackend().allocTransfer(0);
+    if (transfer == null) {
+      BufferUtility.releaseByteBuffer(pooled);
+      throw new UsbException("Unable to allocate a transfer");
+    }
+    return transfer;
+  }
+
+  /**
+   * Transfers data from or to the device and waits until the transfer is
+   * finished. The transfer is cancelled if the IRP is cancelled or the queue
+   * is aborted. IN transfers which time out are resubmitted.
+   *
+   * @param transfer The transfer to use.
+   * @param handle   The device handle.
+   * @param irp      The IRP transferred.
+   * @param buffer   The data buffer.
    * @return The number of transferred bytes.
    * @throws UsbException When data transfer fails.
    */
-  private int transfer(final DeviceHandle handle,
-                       final IUsbEndpointDescriptor descriptor,
+  private int transfer(final IUsbTransfer transfer,
+                       final IUsbDeviceHandle handle,
+                       final IUsbIrp irp,
                        final ByteBuffer buffer) throws UsbException {
+    final byte address = endpointDescriptor.endpointAddress().getByteCode();
     switch (endpointTransferType) {
       case BULK:
-        return transferBulk(handle, descriptor.endpointAddress(), buffer);
       case INTERRUPT:
-        return transferInterrupt(handle, descriptor.endpointAddress(), buffer);
+        transfer.fill(handle, endpointTransferType, address, buffer, null, null, 0);
+        break;
       case CONTROL:
         throw new UsbException("Unsupported endpoint type: " + endpointTransferType + ": Control transfers require a Control-Type IRP.");
       case ISOCHRONOUS:
-        throw new UsbException("Unsupported endpoint type: " + endpointTransferType + ". libusb asynchronous (non-blocking) API for USB device I/O not yet implemented.");
+        throw new UsbException("Unsupported endpoint type: " + endpointTransferType + ": Isochronous transfers are always submitted asynchronously.");
       default:
         throw new AssertionError(endpointTransferType.name());
     }
+    return transferAndWait(transfer, irp, isDeviceToHost());
   }
 
   /**
-   * Transfers bulk data from or to the device.
-   *
-   * @param handle  The device handle.
-   * @param address The endpoint address.
-   * @param buffer  The data buffer.
-   * @return The number of transferred bytes.
-   * @throws UsbException When data transfer fails.
+   * The progress of an IRP transferred asynchronously. Attached to the libusb
+   * transfer as user data.
    */
-  private int transferBulk(final DeviceHandle handle,
-                           final BEndpointAddress address,
-                           final ByteBuffer buffer) throws UsbException {
-    final IntBuffer transferred = IntBuffer.allocate(1);
-    int result;
-    do {
-      result = LibUsb.bulkTransfer(handle, address.getByteCode(), buffer, transferred, UsbServiceInstanceConfiguration.TIMEOUT);
-      if (result == LibUsb.ERROR_TIMEOUT && isAborting()) {
-        throw new UsbAbortException();
-      }
-    } while (EEndpointDirection.DEVICE_TO_HOST.equals(endPointDirection) && result == LibUsb.ERROR_TIMEOUT);
-    if (result < 0) {
-      throw UsbExceptionFactory.createPlatformException("Transfer error on bulk endpoint", result);
-    }
-    return transferred.get(0);
-  }
+  private static final class TransferState {
 
-  /**
-   * Transfers interrupt data from or to the device.
-   *
-   * @param handle  The device handle.
-   * @param address The endpoint address.
-   * @param buffer  The data buffer.
-   * @return The number of transferred bytes.
-   * @throws UsbException When data transfer fails.
-   */
-  private int transferInterrupt(final DeviceHandle handle,
-                                final BEndpointAddress address,
-                                final ByteBuffer buffer) throws UsbException {
-    final IntBuffer transferred = IntBuffer.allocate(1);
-    int result;
-    do {
-      result = LibUsb.interruptTransfer(handle, address.getByteCode(), buffer, transferred, UsbServiceInstanceConfiguration.TIMEOUT);
-      if (result == LibUsb.ERROR_TIMEOUT && isAborting()) {
-        throw new UsbAbortException();
-      }
-    } while (EEndpointDirection.DEVICE_TO_HOST.equals(endPointDirection) && result == LibUsb.ERROR_TIMEOUT);
-    if (result < 0) {
-      throw UsbExceptionFactory.createPlatformException("Transfer error on interrupt endpoint", result);
+    /**
+     * The IRP being transferred.
+     */
+    private final IUsbIrp irp;
+    /**
+     * The maximum number of bytes transferred in each part.
+     */
+    private final int transferSize;
+    /**
+     * The number of bytes transferred by the completed parts.
+     */
+    private int transferred;
+    /**
+     * The pooled transfer buffer. Null if data is transferred directly to or
+     * from the IRP data buffer.
+     */
+    private ByteBuffer pooled;
+    /**
+     * The time (nanoseconds) the IRP was submitted to the device.
+     */
+    private final long submitted = System.nanoTime();
+
+    /**
+     * Construct a new transfer state.
+     *
+     * @param irp          The IRP being transferred.
+     * @param transferSize The maximum number of bytes transferred in each part.
+     */
+    TransferState(final IUsbIrp irp, final int transferSize) {
+      this.irp = irp;
+      this.transferSize = transferSize;
     }
-    return transferred.get(0);
   }
 }
@@ -0,0 +1,370 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.ri;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.usb3.IUsbIrp;
+import javax.usb3.IUsbIrpQueueStatisticsMXBean;
+import javax.usb3.exception.UsbShortPacketException;
+import javax.usb3.exception.UsbTimeoutException;
+import javax.usb3.utility.LatencyHistogram;
+
+/**
+ * The statistics of an IRP queue.
+ * <p>
+ * The queue records the queue wait, transfer and dispatch time of every IRP
+ * and counts the finished IRPs, bytes, short packets, timeouts and errors.
+ * Recording uses only atomic counters and never allocates. The statistics of
+ * each pipe and of each device control queue are published as MXBeans under
+ * the {@link UsbServiceInstanceConfiguration#JMX_DOMAIN JMX domain}.
+ *
+ * @author Jesse Caulfield
+ */
+public final class UsbIrpQueueStatistics implements IUsbIrpQueueStatisticsMXBean {
+
+  /**
+   * The minimum interval (nanoseconds) between two rate samples.
+   */
+  private static final long SAMPLE_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+  /**
+   * The queue whose statistics are recorded.
+   */
+  private final AUsbIrpQueue<?> queue;
+
+  /**
+   * The queue wait histogram.
+   */
+  private final LatencyHistogram queueWait = new LatencyHistogram();
+  /**
+   * The transfer time histogram.
+   */
+  private final LatencyHistogram transferTime = new LatencyHistogram();
+  /**
+   * The listener dispatch time histogram.
+   */
+  private final LatencyHistogram dispatchTime = new LatencyHistogram();
+
+  /**
+   * The number of finished IRPs.
+   */
+  private final LongAdder irps = new LongAdder();
+  /**
+   * The number of transferred bytes.
+   */
+  private final LongAdder bytes = new LongAdder();
+  /**
+   * The number of short packets.
+   */
+  private final LongAdder shortPackets = new LongAdder();
+  /**
+   * The number of timed out IRPs.
+   */
+  private final LongAdder timeouts = new LongAdder();
+  /**
+   * The number of failed IRPs.
+   */
+  private final LongAdder errors = new LongAdder();
+
+  /**
+   * The time (nanoseconds) of the last rate sample.
+   */
+  private long sampleNanos = System.nanoTime();
+  /**
+   * The IRP count at the last rate sample.
+   */
+  private long sampleIrps;
+  /**
+   * The byte count at the last rate sample.
+   */
+  private long sampleBytes;
+  /**
+   * The IRP rate computed at the last rate sample.
+   */
+  private double irpRate;
+  /**
+   * The byte rate computed at the last rate sample.
+   */
+  private double byteRate;
+
+  /**
+   * Construct new statistics for the indicated queue.
+   *
+   * @param queue The queue whose statistics are recorded.
+   */
+  UsbIrpQueueStatistics(final AUsbIrpQueue<?> queue) {
+    this.queue = queue;
+  }
+
+  /**
+   * Record the time an IRP spent in the queue.
+   *
+   * @param nanos The queue wait in nanoseconds.
+   */
+  void recordQueueWait(final long nanos) {
+    this.queueWait.record(nanos);
+  }
+
+  /**
+   * Record the time an IRP spent on the wire.
+   *
+   * @param nanos The transfer time in nanoseconds.
+   */
+  void recordTransfer(final long nanos) {
+    this.transferTime.record(nanos);
+  }
+
+  /**
+   * Record a finished IRP and the time spent notifying its listeners.
+   *
+   * @param irp   The finished IRP.
+   * @param nanos The dispatch time in nanoseconds.
+   */
+  void recordFinished(final IUsbIrp irp, final long nanos) {
+    this.dispatchTime.record(nanos);
+    this.irps.increment();
+    this.bytes.add(irp.getActualLength());
+    if (irp.getActualLength() < irp.getLength()
+        && (!irp.isUsbException() || irp.getUsbException() instanceof UsbShortPacketException)) {
+      this.shortPackets.increment();
+    }
+    if (irp.isUsbException()) {
+      this.errors.increment();
+      if (irp.getUsbException() instanceof UsbTimeoutException) {
+        this.timeouts.increment();
+      }
+    }
+  }
+
+  /**
+   * Update the IRP and byte rates if the sampling interval has elapsed.
+   */
+  private synchronized void sample() {
+    final long now = System.nanoTime();
+    final long elapsed = now - this.sampleNanos;
+    if (elapsed >= SAMPLE_INTERVAL) {
+      final long irpCount = this.irps.sum();
+      final long byteCount = this.bytes.sum();
+      this.irpRate = (irpCount - this.sampleIrps) * 1e9 / elapsed;
+      this.byteRate = (byteCount - this.sampleBytes) * 1e9 / elapsed;
+      this.sampleNanos = now;
+      this.sampleIrps = irpCount;
+      this.sampleBytes = byteCount;
+    }
+  }
+
+  @Override
+  public long getIrpCount() {
+    return this.irps.sum();
+  }
+
+  @Override
+  public long getByteCount() {
+    return this.bytes.sum();
+  }
+
+  @Override
+  public long getShortPacketCount() {
+    return this.shortPackets.sum();
+  }
+
+  @Override
+  public long getTimeoutCount() {
+    return this.timeouts.sum();
+  }
+
+  @Override
+  public long getErrorCount() {
+    return this.errors.sum();
+  }
+
+  @Override
+  public synchronized double getIrpsPerSecond() {
+    sample();
+    return this.irpRate;
+  }
+
+  @Override
+  public synchronized double getBytesPerSecond() {
+    sample();
+    return this.byteRate;
+  }
+
+  @Override
+  public int getQueueDepth() {
+    return this.queue.getQueueDepth();
+  }
+
+  @Override
+  public int getHighWaterMark() {
+    return this.queue.getHighWaterMark();
+  }
+
+  @Override
+  public long getOverflowCount() {
+    return this.queue.getOverflowCount();
+  }
+
+  @Override
+  public long getQueueWaitP50() {
+    return this.queueWait.getPercentile(50);
+  }
+
+  @Override
+  public long getQueueWaitP99() {
+    return this.queueWait.getPercentile(99);
+  }
+
+  @Override
+  public long getQueueWaitP999() {
+    return this.queueWait.getPercentile(99.9);
+  }
+
+  @Override
+  public long getQueueWaitMax() {
+    return this.queueWait.getMax();
+  }
+
+  @Override
+  public long getTransferTimeP50() {
+    return this.transferTime.getPercentile(50);
+  }
+
+  @Override
+  public long getTransferTimeP99() {
+    return this.transferTime.getPercentile(99);
+  }
+
+  @Override
+  public long getTransferTimeP999() {
+    return this.transferTime.getPercentile(99.9);
+  }
+
+  @Override
+  public long getTransferTimeMax() {
+    return this.transferTime.getMax();
+  }
+
+  @Override
+  public long getDispatchTimeP50() {
+    return this.dispatchTime.getPercentile(50);
+  }
+
+  @Override
+  public long getDispatchTimeP99() {
+    return this.dispatchTime.getPercentile(99);
+  }
+
+  @Override
+  public long getDispatchTimeP999() {
+    return this.dispatchTime.getPercentile(99.9);
+  }
+
+  @Override
+  public long getDispatchTimeMax() {
+    return this.dispatchTime.getMax();
+  }
+
+  @Override
+  public synchronized void reset() {
+    this.queueWait.reset();
+    this.transferTime.reset();
+    this.dispatchTime.reset();
+    this.irps.reset();
+    this.bytes.reset();
+    this.shortPackets.reset();
+    this.timeouts.reset();
+    this.errors.reset();
+    this.sampleNanos = System.nanoTime();
+    this.sampleIrps = 0;
+    this.sampleBytes = 0;
+    this.irpRate = 0;
+    this.byteRate = 0;
+  }
+
+  /**
+   * Build the JMX object name of the indicated device or pipe.
+   *
+   * @param deviceId The device location.
+   * @param endpoint The endpoint address of the pipe, or null for the device
+   *                 (default control pipe) statistics.
+   * @return The object name.
+   * @throws JMException if the name is malformed
+   */
+  static ObjectName getObjectName(final UsbDeviceId deviceId, final Byte endpoint) throws JMException {
+    final StringBuilder name = new StringBuilder(UsbServiceInstanceConfiguration.JMX_DOMAIN)
+      .append(":type=").append(endpoint == null ? "UsbDevice" : "UsbPipe")
+      .append(",bus=").append(deviceId.getBusNumber())
+      .append(",address=").append(deviceId.getDeviceAddress());
+    if (endpoint != null) {
+      name.append(",endpoint=0x").append(String.format("%02x", endpoint & 0xff));
+    }
+    return new ObjectName(name.toString());
+  }
+
+  /**
+   * Register these statistics with the platform MBean server, replacing a
+   * stale registration under the same name (e.g. of a detached device whose
+   * address has been reused). Failures are logged and otherwise ignored:
+   * statistics must never prevent a device from being used.
+   *
+   * @param deviceId The device location.
+   * @param endpoint The endpoint address of the pipe, or null for the device.
+   */
+  void register(final UsbDeviceId deviceId, final Byte endpoint) {
+    try {
+      final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      final ObjectName name = getObjectName(deviceId, endpoint);
+      if (server.isRegistered(name)) {
+        server.unregisterMBean(name);
+      }
+      server.registerMBean(this, name);
+    } catch (JMException | SecurityException ex) {
+      Logger.getLogger(UsbIrpQueueStatistics.class.getName()).log(Level.FINE, "Unable to register IRP queue statistics. {0}", ex.getMessage());
+    }
+  }
+
+  /**
+   * Unregister the statistics of the indicated device or pipe from the
+   * platform MBean server.
+   *
+   * @param deviceId The device location.
+   * @param endpoint The endpoint address of the pipe, or null to unregister
+   *                 the statistics of the device and all of its pipes.
+   */
+  static void unregister(final UsbDeviceId deviceId, final Byte endpoint) {
+    try {
+      final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      final ObjectName name = endpoint == null
+                              ? new ObjectName(UsbServiceInstanceConfiguration.JMX_DOMAIN + ":bus=" + deviceId.getBusNumber()
+                                               + ",address=" + deviceId.getDeviceAddress() + ",*")
+                              : getObjectName(deviceId, endpoint);
+      for (ObjectName registered : server.queryNames(name, null)) {
+        server.unregisterMBean(registered);
+      }
+    } catch (JMException | SecurityException ex) {
+      Logger.getLogger(UsbIrpQueueStatistics.class.getName()).log(Level.FINE, "Unable to unregister IRP queue statistics. {0}", ex.getMessage());
+    }
+  }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.ri;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import javax.usb3.IUsbIsochronousIrp;
+import javax.usb3.exception.UsbException;
+
+/**
+ * IUsbIsochronousIrp default implementation.
+ * <p>
+ * This extends UsbIrp with the isochronous packet layout and the per-packet
+ * transfer results. All packets are initially the same length.
+ *
+ * @author Jesse Caulfield
+ */
+public class UsbIsochronousIrp extends UsbIrp implements IUsbIsochronousIrp {
+
+  /**
+   * The number of bytes to transfer in each packet.
+   */
+  private final int[] packetLength;
+  /**
+   * The number of bytes actually transferred in each packet.
+   */
+  private final int[] packetActualLength;
+  /**
+   * The exception of each packet. Null entries indicate success.
+   */
+  private final UsbException[] packetException;
+
+  /**
+   * Construct a new isochronous IRP with a new data array sized to hold all
+   * packets.
+   *
+   * @param numberOfPackets The number of packets. Must be positive.
+   * @param packetLength    The length of each packet. Must not be negative.
+   * @exception IllegalArgumentException If a parameter is invalid.
+   */
+  public UsbIsochronousIrp(int numberOfPackets, int packetLength) {
+    this(new byte[checkSize(numberOfPackets, packetLength)], numberOfPackets, packetLength);
+  }
+
+  /**
+   * Construct a new isochronous IRP over the indicated data array. The data
+   * array must hold all packets.
+   *
+   * @param data            The data.
+   * @param numberOfPackets The number of packets. Must be positive.
+   * @param packetLength    The length of each packet. Must not be negative.
+   * @exception IllegalArgumentException If a parameter is invalid.
+   */
+  public UsbIsochronousIrp(byte[] data, int numberOfPackets, int packetLength) {
+    super(data, 0, checkSize(numberOfPackets, packetLength), true);
+    if (data.length < getLength()) {
+      throw new IllegalArgumentException("Data array too small for " + numberOfPackets + " packets.");
+    }
+    this.packetLength = new int[numberOfPackets];
+    this.packetActualLength = new int[numberOfPackets];
+    this.packetException = new UsbException[numberOfPackets];
+    Arrays.fill(this.packetLength, packetLength);
+  }
+
+  /**
+   * Construct a new isochronous IRP over the remaining bytes of the indicated
+   * direct buffer. The data is transferred without copying.
+   *
+   * @param buffer          The direct data buffer.
+   * @param numberOfPackets The number of packets. Must be positive.
+   * @param packetLength    The length of each packet. Must not be negative.
+   * @exception IllegalArgumentException If a parameter is invalid.
+   */
+  public UsbIsochronousIrp(ByteBuffer buffer, int numberOfPackets, int packetLength) {
+    super(buffer);
+    if (buffer.remaining() < checkSize(numberOfPackets, packetLength)) {
+      throw new IllegalArgumentException("Data buffer too small for " + numberOfPackets + " packets.");
+    }
+    setLength(numberOfPackets * packetLength);
+    this.packetLength = new int[numberOfPackets];
+    this.packetActualLength = new int[numberOfPackets];
+    this.packetException = new UsbException[numberOfPackets];
+    Arrays.fill(this.packetLength, packetLength);
+  }
+
+  /**
+   * Validate the packet layout and return the total IRP length.
+   *
+   * @param numberOfPackets The number of packets.
+   * @param packetLength    The length of each packet.
+   * @return The total length.
+   */
+  private static int checkSize(int numberOfPackets, int packetLength) {
+    if (numberOfPackets < 1) {
+      throw new IllegalArgumentException("Number of packets must be positive.");
+    }
+    if (packetLength < 0) {
+      throw new IllegalArgumentException("Packet length cannot be negative.");
+    }
+    return numberOfPackets * packetLength;
+  }
+
+  @Override
+  public int getNumberOfPackets() {
+    return packetLength.length;
+  }
+
+  @Override
+  public int getPacketLength(int packet) {
+    return packetLength[packet];
+  }
+
+  @Override
+  public void setPacketLength(int packet, int length) {
+    if (0 > length) {
+      throw new IllegalArgumentException("Packet length cannot be negative.");
+    }
+    setLength(getLength() - packetLength[packet] + length);
+    packetLength[packet] = length;
+  }
+
+  @Override
+  public int getPacketActualLength(int packet) {
+    return packetActualLength[packet];
+  }
+
+  @Override
+  public void setPacketActualLength(int packet, int length) {
+    if (0 > length) {
+      throw new IllegalArgumentException("Actual packet length cannot be negative.");
+    }
+    packetActualLength[packet] = length;
+  }
+
+  @Override
+  public UsbException getPacketException(int packet) {
+    return packetException[packet];
+  }
+
+  @Override
+  public void setPacketException(int packet, UsbException usbException) {
+    packetException[packet] = usbException;
+  }
+
+  /**
+   * Get a pretty-print string output for this UsbIsochronousIrp
+   * implementation.
+   *
+   * @return the bean configuration
+   */
+  @Override
+  public String toString() {
+    return "UsbIsochronousIrp packets [" + packetLength.length + "] " + super.toString();
+  }
+}
@@ -17,9 +17,17 @@
  */
 package javax.usb3.ri;
 
+import java.nio.ByteBuffer;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import javax.usb3.*;
+import javax.usb3.enumerated.EDataFlowtype;
+import javax.usb3.enumerated.EEndpointDirection;
+import javax.usb3.enumerated.EEndpointSynchronizationType;
+import javax.usb3.event.IUsbPipeIrpListener;
 import javax.usb3.event.IUsbPipeListener;
+import javax.usb3.event.IUsbPipeStreamConsumer;
 import javax.usb3.event.UsbPipeDataEvent;
 import javax.usb3.event.UsbPipeErrorEvent;
 import javax.usb3.exception.UsbException;
@@ -44,6 +52,10 @@ public final class UsbPipe implements IUsbPipe {
    * The USB pipe listeners.
    */
   private final UsbPipeListener listeners = new UsbPipeListener();
+  /**
+   * The USB pipe IRP listeners.
+   */
+  private final UsbPipeIrpListener irpListeners = new UsbPipeIrpListener();
 
   /**
    * If pipe is open or not.
@@ -51,9 +63,15 @@ public final class UsbPipe implements IUsbPipe {
   private boolean opened;
 
   /**
-   * The USB I/O Request Packet (IRP) queue manager.
+   * The USB I/O Request Packet (IRP) queue manager. Null until the pipe is
+   * opened or configured.
+   */
+  private volatile UsbIrpQueue iprQueue;
+
+  /**
+   * The active read stream. Null if the pipe is not streaming.
    */
-  private final UsbIrpQueue iprQueue;
+  private volatile UsbPipeStream stream;
 
   /**
    * Construct a new USB Pipe attached to the indicated UsbEndpoint.
@@ -62,7 +80,6 @@ public final class UsbPipe implements IUsbPipe {
    */
   public UsbPipe(final UsbEndpoint endpoint) {
     this.endpoint = endpoint;
-    this.iprQueue = new UsbIrpQueue(this);
   }
 
   /**
@@ -127,6 +144,7 @@ public final class UsbPipe implements IUsbPipe {
       throw new UsbException("Pipe is already open");
     }
     this.opened = true;
+    getIrpQueue().getStatistics().register(getDevice().getDeviceId(), this.endpoint.getUsbEndpointDescriptor().endpointAddress().getByteCode());
   }
 
   /**
@@ -143,10 +161,11 @@ public final class UsbPipe implements IUsbPipe {
     if (!this.opened) {
       throw new UsbException("Pipe is already closed");
     }
-    if (this.iprQueue.isBusy()) {
+    if (getIrpQueue().isBusy() || this.stream != null) {
       throw new UsbException("Pipe is still busy");
     }
     this.opened = false;
+    UsbIrpQueueStatistics.unregister(getDevice().getDeviceId(), this.endpoint.getUsbEndpointDescriptor().endpointAddress().getByteCode());
   }
 
   /**
@@ -194,7 +213,39 @@ public final class UsbPipe implements IUsbPipe {
    * @throws IllegalArgumentException if data is null
    */
   @Override
-  public IUsbIrp asyncSubmit(final byte[] data) {
+  public IUsbIrp asyncSubmit(final byte[] data) throws UsbException {
+    if (data == null) {
+      throw new IllegalArgumentException("USB I/O Request Packet (IRP) data must not be null");
+    }
+    final IUsbIrp irp = createUsbIrp();
+    irp.setAcceptShortPacket(true);
+    irp.setData(data);
+    asyncSubmit(irp);
+    return irp;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws IllegalArgumentException if data is null or not direct
+   */
+  @Override
+  public int syncSubmit(final ByteBuffer data) throws UsbException {
+    final IUsbIrp irp = asyncSubmit(data);
+    irp.waitUntilComplete();
+    if (irp.isUsbException()) {
+      throw irp.getUsbException();
+    }
+    return irp.getActualLength();
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws IllegalArgumentException if data is null or not direct
+   */
+  @Override
+  public IUsbIrp asyncSubmit(final ByteBuffer data) throws UsbException {
     if (data == null) {
       throw new IllegalArgumentException("USB I/O Request Packet (IRP) data must not be null");
     }
@@ -228,14 +279,14 @@ public final class UsbPipe implements IUsbPipe {
    * @throws IllegalArgumentException if IRP is null
    */
   @Override
-  public void asyncSubmit(final IUsbIrp irp) {
+  public void asyncSubmit(final IUsbIrp irp) throws UsbException {
     if (irp == null) {
       throw new IllegalArgumentException("USB I/O Request Packet (IRP) must not be null");
     }
     checkActive();
 //    checkConnected();
     checkOpen();
-    this.iprQueue.add(irp);
+    getIrpQueue().add(irp);
   }
 
   /**
@@ -244,20 +295,95 @@ public final class UsbPipe implements IUsbPipe {
    * @throws IllegalArgumentException if IRP is null
    */
   @Override
-  public void syncSubmit(final List<IUsbIrp> list) throws UsbException {
-    for (final IUsbIrp irp : list) {
-      syncSubmit(irp);
+  public CompletableFuture<IUsbIrp> submit(final IUsbIrp irp) throws UsbException {
+    if (irp == null) {
+      throw new IllegalArgumentException("USB I/O Request Packet (IRP) must not be null");
     }
+    checkActive();
+    checkOpen();
+    return getIrpQueue().submit(irp);
   }
 
   /**
    * {@inheritDoc}
+   *
+   * @throws IllegalArgumentException if data is null
    */
   @Override
-  public void asyncSubmit(final List<IUsbIrp> list) {
-    for (final IUsbIrp irp : list) {
-      asyncSubmit(irp);
+  public CompletableFuture<IUsbIrp> submit(final byte[] data) throws UsbException {
+    if (data == null) {
+      throw new IllegalArgumentException("USB I/O Request Packet (IRP) data must not be null");
     }
+    final IUsbIrp irp = createUsbIrp();
+    irp.setAcceptShortPacket(true);
+    irp.setData(data);
+    return submit(irp);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws IllegalArgumentException if data is null or not direct
+   */
+  @Override
+  public CompletableFuture<IUsbIrp> submit(final ByteBuffer data) throws UsbException {
+    if (data == null) {
+      throw new IllegalArgumentException("USB I/O Request Packet (IRP) data must not be null");
+    }
+    final IUsbIrp irp = createUsbIrp();
+    irp.setAcceptShortPacket(true);
+    irp.setData(data);
+    return submit(irp);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws IllegalArgumentException if IRP is null
+   */
+  @Override
+  public void syncSubmit(final List<IUsbIrp> list) throws UsbException {
+    UsbIrpBatch.await(submit(list));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void asyncSubmit(final List<IUsbIrp> list) throws UsbException {
+    submit(list);
+  }
+
+  /**
+   * Submit a List of IUsbIrps to this pipe as one batch.
+   * <p>
+   * The IRPs are queued in one atomic operation and submitted back-to-back, so
+   * the whole batch is kept in flight (up to the
+   * {@link #setTransfersInFlight(int) transfers in flight}) rather than each
+   * IRP waiting for the previous one. If an IRP fails the IRPs of the batch not
+   * yet submitted are completed with a UsbAbortException.
+   *
+   * @param list The List of IUsbIrps. Nothing is submitted if the list is
+   *             empty.
+   * @return A future completed when all IRPs are finished: normally if all
+   *         IRPs were successful, or exceptionally with the UsbException of
+   *         the first failed IRP. The status of each IRP is available from the
+   *         IRP.
+   * @throws UsbException             if the queue is full (FAIL overflow
+   *                                  policy)
+   * @throws IllegalArgumentException if the list is null or contains a null
+   *                                  IRP
+   */
+  public CompletableFuture<Void> submit(final List<IUsbIrp> list) throws UsbException {
+    if (list == null) {
+      throw new IllegalArgumentException("USB I/O Request Packet (IRP) list must not be null");
+    }
+    if (list.isEmpty()) {
+      return CompletableFuture.completedFuture(null);
+    }
+    checkActive();
+    checkOpen();
+    return getIrpQueue().submitAll(list);
   }
 
   /**
@@ -268,7 +394,7 @@ public final class UsbPipe implements IUsbPipe {
     checkActive();
 //    checkConnected();
     checkOpen();
-    this.iprQueue.abort();
+    getIrpQueue().abort();
   }
 
   /**
@@ -290,6 +416,208 @@ public final class UsbPipe implements IUsbPipe {
     return new UsbControlIrp(bmRequestType, bRequest, wValue, wIndex);
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public IUsbIsochronousIrp createUsbIsochronousIrp(final int numberOfPackets) {
+    return new UsbIsochronousIrp(numberOfPackets, getIrpQueue().getIsochronousPacketSize());
+  }
+
+  /**
+   * Start streaming data from this IN pipe.
+   * <p>
+   * The indicated number of read transfers are queued on the endpoint and kept
+   * queued at all times: every completed buffer is handed to the consumer and
+   * resubmitted as soon as the consumer returns. This eliminates the gap
+   * between consecutive reads in which the device would otherwise NAK or
+   * overflow its FIFO.
+   * <p>
+   * Streaming is supported on bulk and interrupt IN pipes. IRPs should not be
+   * submitted to the pipe while it is streaming. The pipe cannot be closed
+   * until streaming is {@link #stopStreaming(boolean) stopped}.
+   *
+   * @param bufferCount The number of buffers (transfers) kept queued. Must be
+   *                    positive.
+   * @param bufferSize  The size of each buffer in bytes. Should be a multiple
+   *                    of the endpoint maximum packet size.
+   * @param consumer    The data consumer.
+   * @return The stream, providing the stream statistics.
+   * @throws UsbException if the pipe is not an open bulk or interrupt IN pipe,
+   *                      is already streaming or the transfers cannot be
+   *                      submitted
+   */
+  public synchronized UsbPipeStream startStreaming(final int bufferCount, final int bufferSize, final IUsbPipeStreamConsumer consumer) throws UsbException {
+    if (bufferCount < 1 || bufferSize < 1) {
+      throw new IllegalArgumentException("Buffer count and size must be positive");
+    }
+    if (consumer == null) {
+      throw new IllegalArgumentException("Stream consumer must not be null");
+    }
+    checkActive();
+    checkOpen();
+    if (this.stream != null) {
+      throw new UsbException("Pipe is already streaming");
+    }
+    final EDataFlowtype type = this.endpoint.getType();
+    if (!EDataFlowtype.BULK.equals(type) && !EDataFlowtype.INTERRUPT.equals(type)) {
+      throw new UsbException("Streaming is not supported on " + type + " pipes");
+    }
+    if (!EEndpointDirection.DEVICE_TO_HOST.equals(this.endpoint.getDirection())
+        && !EEndpointDirection.IN.equals(this.endpoint.getDirection())) {
+      throw new UsbException("Streaming is only supported on IN pipes");
+    }
+    final AUsbDevice device = (AUsbDevice) this.endpoint.getUsbInterface().getUsbConfiguration().getUsbDevice();
+    final UsbPipeStream newStream = new UsbPipeStream(this, consumer, getIrpQueue().getExecutor(), device.deviceManager.getTransferEngine());
+    newStream.start(device.open(), bufferCount, bufferSize);
+    this.stream = newStream;
+    return newStream;
+  }
+
+  /**
+   * Stop streaming data from this pipe. This blocks until all stream transfers
+   * are finished and the consumer has returned for the last time. It must not
+   * be called from within the consumer.
+   *
+   * @param drain TRUE to let the queued reads complete (data received in the
+   *              meantime is still delivered to the consumer); FALSE to cancel
+   *              the queued reads immediately.
+   */
+  public synchronized void stopStreaming(final boolean drain) {
+    if (this.stream != null) {
+      this.stream.stop(drain);
+      this.stream = null;
+    }
+  }
+
+  /**
+   * Get the active stream of this pipe.
+   *
+   * @return the stream, null if the pipe is not streaming
+   */
+  public UsbPipeStream getStream() {
+    return this.stream;
+  }
+
+  /**
+   * Get the synchronization type of this pipe's isochronous endpoint. An
+   * asynchronous or adaptive OUT endpoint may use a different
+   * {@link IUsbIsochronousIrp#setPacketLength(int, int) packet length} in
+   * every service interval to match the device data rate.
+   *
+   * @return the endpoint synchronization type
+   */
+  public EEndpointSynchronizationType getSynchronizationType() {
+    return EEndpointSynchronizationType.fromByte(this.endpoint.getUsbEndpointDescriptor().bmAttributes());
+  }
+
+  /**
+   * Set the executor that processes the I/O Request Packets submitted to this
+   * pipe. By default all pipes share the
+   * {@link UsbIrpExecutors#getSharedExecutor() shared} IRP executor.
+   * <p>
+   * IRPs are always processed in submission (FIFO) order regardless of the
+   * executor.
+   *
+   * @param executor The IRP executor. Must not be null.
+   * @see UsbIrpExecutors
+   */
+  public void setIrpExecutor(final Executor executor) {
+    getIrpQueue().setExecutor(executor);
+  }
+
+  /**
+   * Set the maximum number of asynchronous libusb transfers kept in flight for
+   * this pipe. Zero (the default) uses the blocking libusb API.
+   * <p>
+   * Keeping several transfers in flight is recommended for high-speed and
+   * SuperSpeed bulk or interrupt endpoints. It has no effect on control or
+   * isochronous pipes.
+   *
+   * @param transfersInFlight the number of transfers. Zero to use the blocking
+   *                          API.
+   */
+  public void setTransfersInFlight(final int transfersInFlight) {
+    getIrpQueue().setTransfersInFlight(transfersInFlight);
+  }
+
+  /**
+   * Get the maximum number of asynchronous libusb transfers kept in flight for
+   * this pipe.
+   *
+   * @return the number of transfers. Zero if the blocking API is used.
+   */
+  public int getTransfersInFlight() {
+    return getIrpQueue().getTransfersInFlight();
+  }
+
+  /**
+   * Set the maximum number of bytes submitted in a single libusb transfer.
+   * Larger bulk and interrupt IRPs are split into several transfers. The
+   * default is {@link UsbServiceInstanceConfiguration#MAX_TRANSFER_SIZE}.
+   *
+   * @param maxTransferSize the maximum transfer size in bytes. Must be
+   *                        positive.
+   */
+  public void setMaxTransferSize(final int maxTransferSize) {
+    getIrpQueue().setMaxTransferSize(maxTransferSize);
+  }
+
+  /**
+   * Get the maximum number of bytes submitted in a single libusb transfer.
+   *
+   * @return the maximum transfer size in bytes.
+   */
+  public int getMaxTransferSize() {
+    return getIrpQueue().getMaxTransferSize();
+  }
+
+  /**
+   * Get the I/O Request Packet queue of this pipe. This provides the queue
+   * capacity and scheduling configuration and the queue statistics.
+   * <p>
+   * The queue is created on first use, normally when the pipe is opened, so
+   * that the pipes of unused endpoints hold no queue.
+   *
+   * @return the IRP queue.
+   */
+  public UsbIrpQueue getIrpQueue() {
+    UsbIrpQueue queue = this.iprQueue;
+    if (queue == null) {
+      synchronized (this) {
+        queue = this.iprQueue;
+        if (queue == null) {
+          queue = new UsbIrpQueue(this);
+          this.iprQueue = queue;
+        }
+      }
+    }
+    return queue;
+  }
+
+  /**
+   * Set the timeout of each transfer on this pipe. By default transfers time
+   * out after {@link UsbServiceInstanceConfiguration#TIMEOUT} milliseconds and
+   * IN transfers are then resubmitted, so a read waits indefinitely. Once set,
+   * a transfer in either direction which does not complete in time fails with
+   * a UsbTimeoutException.
+   *
+   * @param timeout the transfer timeout in milliseconds. Zero for no timeout.
+   * @see IUsbIrp#setDeadline(long)
+   */
+  public void setTimeout(final long timeout) {
+    getIrpQueue().setTimeout(timeout);
+  }
+
+  /**
+   * Get the timeout of each transfer on this pipe.
+   *
+   * @return the transfer timeout in milliseconds. Zero for no timeout.
+   */
+  public long getTimeout() {
+    return getIrpQueue().getTimeout();
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -306,12 +634,35 @@ public final class UsbPipe implements IUsbPipe {
     this.listeners.remove(listener);
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void addUsbPipeIrpListener(final IUsbPipeIrpListener listener) {
+    this.irpListeners.add(listener);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void removeUsbPipeIrpListener(final IUsbPipeIrpListener listener) {
+    this.irpListeners.remove(listener);
+  }
+
   /**
    * Sends event to all event listeners.
+   * <p>
+   * IRP listeners receive the IRP directly. An event is only created if
+   * there are pipe listeners.
    *
    * @param irp Then request package
    */
   public void sendEvent(final IUsbIrp irp) {
+    this.irpListeners.irpCompleted(this, irp);
+    if (this.listeners.isEmpty()) {
+      return;
+    }
     if (irp.isUsbException()) {
       this.listeners.errorEventOccurred(new UsbPipeErrorEvent(this, irp));
     } else {
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.ri;
+
+import javax.usb3.IUsbIrp;
+import javax.usb3.IUsbPipe;
+import javax.usb3.event.IUsbPipeIrpListener;
+
+/**
+ * USB pipe IRP listener list.
+ *
+ * @author Jesse Caulfield
+ */
+public final class UsbPipeIrpListener extends UsbEventListener<IUsbPipeIrpListener> implements IUsbPipeIrpListener {
+
+  /**
+   * Constructs a new USB pipe IRP listener list.
+   */
+  public UsbPipeIrpListener() {
+    super(new IUsbPipeIrpListener[0]);
+  }
+
+  @Override
+  public void irpCompleted(final IUsbPipe pipe, final IUsbIrp irp) {
+    for (final IUsbPipeIrpListener listener : getListenerArray()) {
+      listener.irpCompleted(pipe, irp);
+    }
+  }
+}
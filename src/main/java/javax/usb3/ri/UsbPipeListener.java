@@ -33,24 +33,19 @@ public final class UsbPipeListener extends UsbEventListener<IUsbPipeListener> im
    * Constructs a new USB pipe listener list.
    */
   public UsbPipeListener() {
-    super();
-  }
-
-  @Override
-  public IUsbPipeListener[] toArray() {
-    return getListeners().toArray(new IUsbPipeListener[getListeners().size()]);
+    super(new IUsbPipeListener[0]);
   }
 
   @Override
   public void errorEventOccurred(final UsbPipeErrorEvent event) {
-    for (final IUsbPipeListener listener : toArray()) {
+    for (final IUsbPipeListener listener : getListenerArray()) {
       listener.errorEventOccurred(event);
     }
   }
 
   @Override
   public void dataEventOccurred(final UsbPipeDataEvent event) {
-    for (final IUsbPipeListener listener : toArray()) {
+    for (final IUsbPipeListener listener : getListenerArray()) {
       listener.dataEventOccurred(event);
     }
   }
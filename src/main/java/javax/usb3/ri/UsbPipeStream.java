@@ -0,0 +1,403 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.ri;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.usb3.enumerated.EDataFlowtype;
+import javax.usb3.event.IUsbPipeStreamConsumer;
+import javax.usb3.exception.UsbException;
+import javax.usb3.spi.IUsbDeviceHandle;
+import javax.usb3.spi.IUsbTransfer;
+import javax.usb3.spi.IUsbTransferCallback;
+import javax.usb3.utility.BufferUtility;
+import javax.usb3.utility.UsbExceptionFactory;
+import org.usb4java.LibUsb;
+
+/**
+ * A continuous, auto-resubmitting read stream on a bulk or interrupt IN pipe.
+ * <p>
+ * The stream keeps a ring of libusb transfers queued on the endpoint at all
+ * times so that the host controller always has a read pending and the device
+ * never waits (NAKs) for the host. Each completed buffer is handed to the
+ * {@link IUsbPipeStreamConsumer consumer} and then recycled: it is resubmitted
+ * as soon as the consumer returns.
+ * <p>
+ * Consumer calls are made serially, in completion order, on the pipe's IRP
+ * executor (never on the libusb event thread).
+ * <p>
+ * A stream is created with {@link UsbPipe#startStreaming(int, int,
+ * IUsbPipeStreamConsumer)} and ended with
+ * {@link UsbPipe#stopStreaming(boolean)}.
+ *
+ * @author Jesse Caulfield
+ */
+public final class UsbPipeStream {
+
+  /**
+   * The streaming pipe.
+   */
+  private final UsbPipe pipe;
+  /**
+   * The data consumer.
+   */
+  private final IUsbPipeStreamConsumer consumer;
+  /**
+   * The executor on which the consumer is called.
+   */
+  private final Executor executor;
+  /**
+   * The transfer engine.
+   */
+  private final UsbTransferEngine engine;
+  /**
+   * The stream transfers. Each owns one pooled buffer.
+   */
+  private final List<IUsbTransfer> transfers = new ArrayList<>();
+  /**
+   * Completed transfers waiting to be handed to the consumer.
+   */
+  private final Queue<IUsbTransfer> completed = new ConcurrentLinkedQueue<>();
+  /**
+   * Indicator that a delivery task has been submitted to the executor.
+   */
+  private final AtomicBoolean delivering = new AtomicBoolean();
+  /**
+   * The number of transfers currently queued on the endpoint.
+   */
+  private final AtomicInteger queued = new AtomicInteger();
+  /**
+   * The size of each read in bytes, as requested. The pooled buffers may be
+   * larger.
+   */
+  private volatile int bufferSize;
+  /**
+   * The number of transfers not yet freed. Guarded by the stream lock.
+   */
+  private int outstanding;
+  /**
+   * Indicator that completed transfers should be resubmitted.
+   */
+  private volatile boolean running;
+  /**
+   * The number of buffers received.
+   */
+  private final AtomicLong bufferCount = new AtomicLong();
+  /**
+   * The number of bytes received.
+   */
+  private final AtomicLong byteCount = new AtomicLong();
+  /**
+   * The number of times the transfer ring ran empty.
+   */
+  private final AtomicLong underrunCount = new AtomicLong();
+  /**
+   * The number of transfers in which the device sent more data than fit the
+   * buffer.
+   */
+  private final AtomicLong overflowCount = new AtomicLong();
+
+  /**
+   * The consumer delivery task.
+   */
+  private final Runnable delivery = new Runnable() {
+    @Override
+    public void run() {
+      deliver();
+    }
+  };
+
+  /**
+   * The transfer callback. This is invoked on the transfer engine event
+   * thread.
+   */
+  private final IUsbTransferCallback callback = new IUsbTransferCallback() {
+    @Override
+    public void processTransfer(final IUsbTransfer transfer) {
+      transferComplete(transfer);
+    }
+  };
+
+  /**
+   * Construct a new stream. The stream is not started.
+   *
+   * @param pipe     The IN pipe.
+   * @param consumer The data consumer.
+   * @param executor The executor on which the consumer is called.
+   * @param engine   The transfer engine.
+   */
+  UsbPipeStream(final UsbPipe pipe, final IUsbPipeStreamConsumer consumer, final Executor executor, final UsbTransferEngine engine) {
+    this.pipe = pipe;
+    this.consumer = consumer;
+    this.executor = executor;
+    this.engine = engine;
+  }
+
+  /**
+   * Allocate the stream transfers and queue them all on the endpoint.
+   *
+   * @param handle      The device handle.
+   * @param bufferCount The number of transfers (buffers) to keep queued.
+   * @param bufferSize  The size of each buffer in bytes.
+   * @throws UsbException if a transfer cannot be submitted
+   */
+  void start(final IUsbDeviceHandle handle, final int bufferCount, final int bufferSize) throws UsbException {
+    final byte address = this.pipe.getUsbEndpoint().getUsbEndpointDescriptor().bEndpointAddress();
+    final EDataFlowtype type = this.pipe.getUsbEndpoint().getType();
+    this.bufferSize = bufferSize;
+    this.running = true;
+    try {
+      for (int i = 0; i < bufferCount; i++) {
+        final IUsbTransfer transfer = this.engine.getBackend().allocTransfer(0);
+        if (transfer == null) {
+          throw new UsbException("Unable to allocate a transfer");
+        }
+        final ByteBuffer buffer = BufferUtility.acquireByteBuffer(bufferSize);
+        transfer.fill(handle, type, address, buffer, this.callback, null, UsbServiceInstanceConfiguration.TIMEOUT);
+        transfer.setLength(bufferSize);
+        this.transfers.add(transfer);
+      }
+      for (IUsbTransfer transfer : this.transfers) {
+        synchronized (this) {
+          this.outstanding++;
+        }
+        this.queued.incrementAndGet();
+        try {
+          this.engine.submit(transfer);
+        } catch (UsbException e) {
+          this.queued.decrementAndGet();
+          synchronized (this) {
+            this.outstanding--;
+          }
+          throw e;
+        }
+      }
+    } catch (UsbException | RuntimeException e) {
+      stop(false);
+      /**
+       * Free the transfers that were never submitted.
+       */
+      synchronized (this) {
+        for (IUsbTransfer transfer : this.transfers) {
+          if (transfer.buffer() != null) {
+            BufferUtility.releaseByteBuffer(transfer.buffer());
+            transfer.free();
+          }
+        }
+        this.transfers.clear();
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Stop the stream and wait until all transfers are finished and the
+   * consumer has returned. This must not be called from the consumer.
+   *
+   * @param drain TRUE to let the queued transfers complete normally (their data
+   *              is delivered); FALSE to cancel them.
+   */
+  void stop(final boolean drain) {
+    this.running = false;
+    synchronized (this) {
+      if (!drain) {
+        for (IUsbTransfer transfer : this.transfers) {
+          if (transfer.buffer() != null) {
+            transfer.cancel();
+          }
+        }
+      }
+      while (this.outstanding > 0) {
+        try {
+          wait();
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Called on the transfer engine event thread when a stream transfer is
+   * finished.
+   *
+   * @param transfer The finished transfer.
+   */
+  private void transferComplete(final IUsbTransfer transfer) {
+    if (this.queued.decrementAndGet() == 0 && this.running) {
+      /**
+       * No read is pending on the endpoint: data may be lost on the device.
+       */
+      this.underrunCount.incrementAndGet();
+    }
+    if (transfer.status() == LibUsb.TRANSFER_TIMED_OUT && this.running) {
+      /**
+       * No data within the timeout. Simply queue the transfer again.
+       */
+      resubmit(transfer);
+      return;
+    }
+    this.completed.add(transfer);
+    if (this.delivering.compareAndSet(false, true)) {
+      try {
+        this.executor.execute(this.delivery);
+      } catch (RejectedExecutionException ex) {
+        final Thread thread = new Thread(this.delivery, "usb4java Stream Consumer");
+        thread.setDaemon(true);
+        thread.start();
+      }
+    }
+  }
+
+  /**
+   * Hand all completed transfers to the consumer, then recycle them.
+   */
+  private void deliver() {
+    do {
+      IUsbTransfer transfer;
+      while ((transfer = this.completed.poll()) != null) {
+        deliver(transfer);
+      }
+      this.delivering.set(false);
+    } while (!this.completed.isEmpty() && this.delivering.compareAndSet(false, true));
+  }
+
+  /**
+   * Hand a completed transfer to the consumer, then resubmit or free it.
+   *
+   * @param transfer The completed transfer.
+   */
+  private void deliver(final IUsbTransfer transfer) {
+    final int status = transfer.status();
+    final int actualLength = transfer.actualLength();
+    try {
+      if (actualLength > 0) {
+        this.bufferCount.incrementAndGet();
+        this.byteCount.addAndGet(actualLength);
+        this.consumer.dataReceived(this.pipe, BufferUtility.slice(transfer.buffer(), 0, actualLength));
+      }
+      if (status == LibUsb.TRANSFER_OVERFLOW) {
+        this.overflowCount.incrementAndGet();
+      }
+      if (status != LibUsb.TRANSFER_COMPLETED && status != LibUsb.TRANSFER_CANCELLED && status != LibUsb.TRANSFER_TIMED_OUT) {
+        this.consumer.errorOccurred(this.pipe, UsbExceptionFactory.createPlatformException("Transfer error on streaming endpoint",
+                                                                                          UsbTransferEngine.toErrorCode(status)));
+      }
+    } catch (RuntimeException e) {
+      Logger.getLogger(UsbPipeStream.class.getName()).log(Level.WARNING, "Stream consumer failed", e);
+    }
+    if (this.running && status != LibUsb.TRANSFER_NO_DEVICE && status != LibUsb.TRANSFER_CANCELLED) {
+      resubmit(transfer);
+    } else {
+      free(transfer);
+    }
+  }
+
+  /**
+   * Resubmit a stream transfer. The transfer is freed if it cannot be
+   * resubmitted.
+   *
+   * @param transfer The transfer.
+   */
+  private void resubmit(final IUsbTransfer transfer) {
+    transfer.setLength(this.bufferSize);
+    this.queued.incrementAndGet();
+    try {
+      this.engine.resubmit(transfer);
+    } catch (UsbException e) {
+      this.queued.decrementAndGet();
+      Logger.getLogger(UsbPipeStream.class.getName()).log(Level.WARNING, "Unable to resubmit stream transfer", e);
+      free(transfer);
+    }
+  }
+
+  /**
+   * Free a finished stream transfer and its buffer and wake up
+   * {@link #stop(boolean)}.
+   *
+   * @param transfer The transfer.
+   */
+  private synchronized void free(final IUsbTransfer transfer) {
+    this.engine.transferCompleted(transfer);
+    final ByteBuffer buffer = transfer.buffer();
+    transfer.setBuffer(null);
+    transfer.free();
+    BufferUtility.releaseByteBuffer(buffer);
+    this.outstanding--;
+    notifyAll();
+  }
+
+  /**
+   * Indicator that the stream is running.
+   *
+   * @return TRUE if completed transfers are resubmitted.
+   */
+  public boolean isRunning() {
+    return this.running;
+  }
+
+  /**
+   * Get the number of (non-empty) buffers handed to the consumer.
+   *
+   * @return the number of received buffers
+   */
+  public long getBufferCount() {
+    return this.bufferCount.get();
+  }
+
+  /**
+   * Get the number of bytes handed to the consumer.
+   *
+   * @return the number of received bytes
+   */
+  public long getByteCount() {
+    return this.byteCount.get();
+  }
+
+  /**
+   * Get the number of times the transfer ring ran empty, i.e. every buffer was
+   * waiting for (or in) the consumer and no read was pending on the endpoint.
+   * The device may have dropped (overflowed) data during that time. Increase
+   * the buffer count or speed up the consumer if this is not zero.
+   *
+   * @return the number of ring underruns
+   */
+  public long getUnderrunCount() {
+    return this.underrunCount.get();
+  }
+
+  /**
+   * Get the number of transfers that failed because the device sent more data
+   * than fit in the buffer (babble).
+   *
+   * @return the number of buffer overflows
+   */
+  public long getOverflowCount() {
+    return this.overflowCount.get();
+  }
+}
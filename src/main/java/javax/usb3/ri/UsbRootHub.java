@@ -19,6 +19,7 @@ package javax.usb3.ri;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import javax.usb3.*;
 import javax.usb3.descriptor.UsbDeviceDescriptor;
 import javax.usb3.enumerated.EDevicePortSpeed;
@@ -308,6 +309,16 @@ public final class UsbRootHub implements IUsbHub, IUsbPorts {
     throw new UsbException("Can't asyncSubmit a virtual device");
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * @deprecated Can't submit a virtual device
+   */
+  @Override
+  public CompletableFuture<IUsbIrp> submit(final IUsbControlIrp irp) throws UsbException {
+    throw new UsbException("Can't submit a virtual device");
+  }
+
   /**
    * {@inheritDoc}
    *
@@ -37,8 +37,77 @@ public final class UsbServiceInstanceConfiguration {
   /**
    * 500 ms.
    * <p>
-   * The default scan interval in milliseconds.
+   * The default scan interval in milliseconds. The device list is only polled
+   * at this interval if the USB backend does not support hotplug
+   * notification; otherwise devices are scanned when attached or detached.
    */
   public static final int SCAN_INTERVAL = 500;
 
+  /**
+   * 65,536 bytes (64 KiB).
+   * <p>
+   * The default maximum number of bytes submitted in a single bulk or
+   * interrupt transfer. Larger IRPs are split into several transfers of (at
+   * most) this size, rounded down to a multiple of the endpoint maximum packet
+   * size.
+   */
+  public static final int MAX_TRANSFER_SIZE = 64 * 1024;
+
+  /**
+   * 4 transfers.
+   * <p>
+   * The default number of isochronous transfers kept in flight on an
+   * isochronous pipe. Isochronous data is lost if no transfer is pending when
+   * its (micro)frame is due, so the next transfer must always be queued before
+   * the current one completes.
+   */
+  public static final int ISOCHRONOUS_TRANSFERS_IN_FLIGHT = 4;
+
+  /**
+   * 100 ms.
+   * <p>
+   * The default IRP aging timeout in milliseconds. An IRP which has been
+   * queued for longer than this is processed next regardless of its priority,
+   * so that low priority IRPs are never starved.
+   */
+  public static final int PRIORITY_AGING_TIMEOUT = 100;
+
+  /**
+   * "javax.usb3".
+   * <p>
+   * The JMX domain under which the device and pipe statistics MBeans are
+   * registered with the platform MBean server.
+   */
+  public static final String JMX_DOMAIN = "javax.usb3";
+
+  /**
+   * "javax.usb3.backend".
+   * <p>
+   * The system property naming the {@link javax.usb3.spi.IUsbBackend} class
+   * instantiated by the default USB services. The class must have a public
+   * no-argument constructor. If the property is not set the libusb backend
+   * ({@link javax.usb3.spi.LibUsbBackend}) is used.
+   */
+  public static final String BACKEND = "javax.usb3.backend";
+
+  /**
+   * "javax.usb3.database".
+   * <p>
+   * The system property naming an external USB ID database file, either a
+   * newer {@code usb.ids} text file or a binary index precompiled from one. If
+   * the property is not set the database bundled with the library is used.
+   *
+   * @see javax.usb3.database.UsbRepositoryDatabase
+   */
+  public static final String DATABASE = "javax.usb3.database";
+
+  /**
+   * "javax.usb3.prefetchStrings".
+   * <p>
+   * The system property which, if set to "true", makes the default USB
+   * services read the manufacturer, product and serial number strings of each
+   * device in the background when it is attached. The strings are then served
+   * from the device descriptor cache without a transfer.
+   */
+  public static final String PREFETCH_STRINGS = "javax.usb3.prefetchStrings";
 }
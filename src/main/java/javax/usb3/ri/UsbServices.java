@@ -23,7 +23,8 @@ import javax.usb3.IUsbServices;
 import javax.usb3.event.IUsbServicesListener;
 import javax.usb3.event.UsbServicesEvent;
 import javax.usb3.exception.UsbException;
-import javax.usb3.utility.JNINativeLibraryLoader;
+import javax.usb3.spi.IUsbBackend;
+import javax.usb3.spi.LibUsbBackend;
 
 /**
  * Implementation of JSR-80 IUsbServices interface.
@@ -70,28 +71,74 @@ public final class UsbServices implements IUsbServices {
   private final UsbRootHub rootUsbHub;
 
   /**
-   * Constructor.
+   * Constructor. The USB backend is the class named by the
+   * {@value UsbServiceInstanceConfiguration#BACKEND} system property, or the
+   * libusb backend if the property is not set.
    *
-   * @throws UsbException     When properties could not be loaded.
+   * @throws UsbException     When properties could not be loaded or the
+   *                          backend could not be initialized.
    * @throws RuntimeException When the native library corresponding to the host
    *                          operating system fails to load
    */
   public UsbServices() throws UsbException {
+    this(createBackend());
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param backend The USB backend. Must not be null. The backend is
+   *                initialized by the device manager.
+   * @throws UsbException When properties could not be loaded or the backend
+   *                      could not be initialized.
+   */
+  public UsbServices(final IUsbBackend backend) throws UsbException {
     /**
-     * Load configurations from the "javax.usb.properties" file, then load the
-     * native libusb wrapper (usb4java JNI) library.
+     * Load configurations from the "javax.usb.properties" file.
      */
     this.config = new UsbServiceInstanceConfiguration();
-    JNINativeLibraryLoader.load();
     /**
      * Scan the USB tree to identify the system ROOT USB hub.
      */
     this.rootUsbHub = new UsbRootHub();
     this.deviceManager = new UsbDeviceManager(this.rootUsbHub,
-                                              UsbServiceInstanceConfiguration.SCAN_INTERVAL);
+                                              UsbServiceInstanceConfiguration.SCAN_INTERVAL,
+                                              backend);
+    this.deviceManager.setUsbServices(this);
+    this.deviceManager.setPrefetchStrings(Boolean.getBoolean(UsbServiceInstanceConfiguration.PREFETCH_STRINGS));
     this.deviceManager.start();
   }
 
+  /**
+   * Create the USB backend named by the
+   * {@value UsbServiceInstanceConfiguration#BACKEND} system property.
+   *
+   * @return the configured USB backend, or a libusb backend if none is
+   *         configured.
+   * @throws UsbException if the configured backend class cannot be
+   *                      instantiated
+   */
+  private static IUsbBackend createBackend() throws UsbException {
+    final String className = System.getProperty(UsbServiceInstanceConfiguration.BACKEND);
+    if (className == null || className.isEmpty()) {
+      return new LibUsbBackend();
+    }
+    try {
+      return (IUsbBackend) Class.forName(className).newInstance();
+    } catch (ClassNotFoundException | InstantiationException | IllegalAccessException | ClassCastException ex) {
+      throw new UsbException("Unable to instantiate USB backend " + className + ": " + ex.getMessage());
+    }
+  }
+
+  /**
+   * Get the USB backend these services run on.
+   *
+   * @return the USB backend
+   */
+  public IUsbBackend getBackend() {
+    return this.deviceManager.getBackend();
+  }
+
   @Override
   public IUsbHub getRootUsbHub() {
     this.deviceManager.firstScan();
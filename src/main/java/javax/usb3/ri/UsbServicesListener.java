@@ -32,24 +32,19 @@ public final class UsbServicesListener extends UsbEventListener<IUsbServicesList
    * Constructs a new USB services listener list.
    */
   public UsbServicesListener() {
-    super();
-  }
-
-  @Override
-  public IUsbServicesListener[] toArray() {
-    return getListeners().toArray(new IUsbServicesListener[getListeners().size()]);
+    super(new IUsbServicesListener[0]);
   }
 
   @Override
   public void usbDeviceAttached(final UsbServicesEvent event) {
-    for (final IUsbServicesListener listener : toArray()) {
+    for (final IUsbServicesListener listener : getListenerArray()) {
       listener.usbDeviceAttached(event);
     }
   }
 
   @Override
   public void usbDeviceDetached(final UsbServicesEvent event) {
-    for (final IUsbServicesListener listener : toArray()) {
+    for (final IUsbServicesListener listener : getListenerArray()) {
       listener.usbDeviceDetached(event);
     }
   }
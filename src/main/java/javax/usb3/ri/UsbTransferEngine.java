@@ -0,0 +1,356 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.ri;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.usb3.exception.UsbPlatformException;
+import javax.usb3.spi.IUsbBackend;
+import javax.usb3.spi.IUsbTransfer;
+import javax.usb3.utility.UsbExceptionFactory;
+import org.usb4java.LibUsb;
+
+/**
+ * Asynchronous libusb transfer engine.
+ * <p>
+ * The engine submits transfers without blocking the submitting thread and
+ * runs a dedicated event-handling thread that services the USB backend.
+ * Transfer callbacks (and therefore IRP completion) are invoked on this event
+ * thread.
+ * <p>
+ * The event thread does not poll while idle. A thread started on demand by a
+ * transfer exits once no transfer was active or submitted for one second and
+ * is started again by the next transfer. A thread {@link #start() started} to
+ * deliver hotplug events blocks in the backend until an event arrives and is
+ * woken by {@link IUsbBackend#interruptEvents()} when the engine stops.
+ * <p>
+ * Developer note: Code running in a transfer callback must never block or call
+ * the libusb synchronous API, since no other transfer on the context can
+ * complete until the callback returns.
+ *
+ * @author Jesse Caulfield
+ */
+public final class UsbTransferEngine {
+
+  /**
+   * 60,000,000 us (60 s), the libusb default.
+   * <p>
+   * The maximum time the event thread blocks in the backend waiting for
+   * events. The thread is woken by every event and when the engine stops, so
+   * this only bounds a missed wake-up.
+   */
+  private static final long EVENT_TIMEOUT_MICROSECONDS = 60000000;
+
+  /**
+   * 1,000,000 us (1 s).
+   * <p>
+   * The maximum time an event thread started on demand blocks in the backend.
+   * Transfers finished by the submitting thread, e.g. synchronous transfers,
+   * do not wake the event thread, so it checks at this interval whether it is
+   * idle. It exits once no transfer was active or submitted for one interval,
+   * so that consecutive transfers reuse the thread.
+   */
+  private static final long IDLE_TIMEOUT_MICROSECONDS = 1000000;
+
+  /**
+   * 5,000 ms.
+   * <p>
+   * The maximum time {@link #stop()} waits for cancelled transfers to finish.
+   */
+  private static final long STOP_TIMEOUT_MILLISECONDS = 5000;
+
+  /**
+   * The USB backend serviced by this engine.
+   */
+  private final IUsbBackend backend;
+
+  /**
+   * The transfers submitted and not yet completed. Guarded by itself, so that
+   * {@link #stop()} never cancels a transfer that has been freed. The event
+   * thread state is also guarded by this set, so that the thread never exits
+   * while a transfer is being submitted.
+   */
+  private final Set<IUsbTransfer> activeTransfers = Collections.newSetFromMap(new IdentityHashMap<IUsbTransfer, Boolean>());
+
+  /**
+   * The total number of transfers submitted.
+   */
+  private final AtomicLong submittedTransfers = new AtomicLong();
+
+  /**
+   * The libusb event handling thread. Started on demand.
+   */
+  private Thread eventThread;
+
+  /**
+   * Indicator that the event handling thread should keep running.
+   */
+  private volatile boolean running;
+
+  /**
+   * Indicator that the event handling thread should keep running while no
+   * transfer is active, e.g. to deliver hotplug events.
+   */
+  private boolean persistent;
+
+  /**
+   * The time (nanoseconds) after which a stopped event thread exits even if
+   * transfers are still active.
+   */
+  private volatile long stopDeadline;
+
+  /**
+   * Construct a new transfer engine for the indicated USB backend.
+   *
+   * @param backend The USB backend. Must be initialized.
+   */
+  public UsbTransferEngine(final IUsbBackend backend) {
+    this.backend = backend;
+  }
+
+  /**
+   * Get the USB backend serviced by this engine. Transfers submitted to the
+   * engine must be allocated from this backend.
+   *
+   * @return the USB backend
+   */
+  public IUsbBackend getBackend() {
+    return this.backend;
+  }
+
+  /**
+   * Submit a populated transfer. The event handling thread is started if
+   * it is not already running.
+   * <p>
+   * The transfer callback must call {@link #transferCompleted(IUsbTransfer)}
+   * once the transfer is finished (i.e. not resubmitted).
+   *
+   * @param transfer The transfer to submit.
+   * @throws UsbPlatformException if libusb refuses the transfer
+   */
+  void submit(final IUsbTransfer transfer) throws UsbPlatformException {
+    synchronized (this) {
+      synchronized (this.activeTransfers) {
+        this.activeTransfers.add(transfer);
+        startEventThread();
+      }
+    }
+    final int result = this.backend.submitTransfer(transfer);
+    if (result < 0) {
+      transferCompleted(transfer);
+      throw UsbExceptionFactory.createPlatformException("Unable to submit transfer", result);
+    }
+    this.submittedTransfers.incrementAndGet();
+  }
+
+  /**
+   * Resubmit a transfer from within its own callback. The transfer remains
+   * active and {@link #transferCompleted(IUsbTransfer)} must not be called.
+   * <p>
+   * Transfers are not resubmitted once the engine is {@link #stop() stopping};
+   * the callback must then finish the transfer.
+   *
+   * @param transfer The transfer to resubmit.
+   * @throws UsbPlatformException if the engine is stopping or libusb refuses
+   *                              the transfer
+   */
+  void resubmit(final IUsbTransfer transfer) throws UsbPlatformException {
+    if (!this.running) {
+      throw new UsbPlatformException("Unable to resubmit transfer: transfer engine stopped", LibUsb.ERROR_INTERRUPTED);
+    }
+    final int result = this.backend.submitTransfer(transfer);
+    if (result < 0) {
+      throw UsbExceptionFactory.createPlatformException("Unable to resubmit transfer", result);
+    }
+    this.submittedTransfers.incrementAndGet();
+  }
+
+  /**
+   * Record that a transfer submitted by this engine is finished. This must be
+   * called before the transfer is freed.
+   *
+   * @param transfer The finished transfer.
+   */
+  void transferCompleted(final IUsbTransfer transfer) {
+    synchronized (this.activeTransfers) {
+      this.activeTransfers.remove(transfer);
+    }
+  }
+
+  /**
+   * Get the number of transfers submitted and not yet completed.
+   *
+   * @return the number of active transfers
+   */
+  public int getActiveTransfers() {
+    synchronized (this.activeTransfers) {
+      return this.activeTransfers.size();
+    }
+  }
+
+  /**
+   * Get the total number of transfers submitted by this engine.
+   *
+   * @return the number of submitted transfers
+   */
+  public long getSubmittedTransfers() {
+    return this.submittedTransfers.get();
+  }
+
+  /**
+   * Start the libusb event handling thread if it is not already running. The
+   * thread then keeps running while no transfer is active, until the engine is
+   * {@link #stop() stopped}.
+   */
+  synchronized void start() {
+    synchronized (this.activeTransfers) {
+      this.persistent = true;
+      startEventThread();
+    }
+  }
+
+  /**
+   * Start the libusb event handling thread if it is not already running. The
+   * caller must hold the active transfers lock.
+   */
+  private void startEventThread() {
+    if (this.eventThread != null) {
+      return;
+    }
+    this.running = true;
+    this.eventThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        handleEvents();
+      }
+    }, "javax-usb Event Handler");
+    this.eventThread.setDaemon(true);
+    this.eventThread.start();
+  }
+
+  /**
+   * Stop the libusb event handling thread. All active transfers are cancelled
+   * and no transfer is resubmitted. This waits until the cancelled transfers
+   * are finished, but not longer than {@value #STOP_TIMEOUT_MILLISECONDS} ms:
+   * a transfer the backend fails to cancel must not block the shutdown.
+   */
+  synchronized void stop() {
+    final Thread thread;
+    synchronized (this.activeTransfers) {
+      this.persistent = false;
+      thread = this.eventThread;
+      if (thread == null) {
+        return;
+      }
+      this.stopDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(STOP_TIMEOUT_MILLISECONDS);
+      this.running = false;
+      for (IUsbTransfer transfer : this.activeTransfers) {
+        transfer.cancel();
+      }
+    }
+    /**
+     * Cancelled transfers wake the event thread when they finish. An idle
+     * thread must be woken explicitly.
+     */
+    this.backend.interruptEvents();
+    try {
+      thread.join(STOP_TIMEOUT_MILLISECONDS);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+    final int active = getActiveTransfers();
+    if (active > 0) {
+      Logger.getLogger(UsbTransferEngine.class.getName()).log(Level.WARNING, "{0} USB transfers still active after stop", active);
+    }
+    synchronized (this.activeTransfers) {
+      this.eventThread = null;
+    }
+  }
+
+  /**
+   * The event handling loop. While the engine is running this runs until no
+   * transfer was active or submitted for the idle timeout, unless the thread
+   * is persistent. Once the engine is stopped this runs until no transfer is
+   * active or the stop deadline has passed.
+   */
+  private void handleEvents() {
+    /**
+     * The submitted transfer count when the thread last became idle, or -1
+     * while busy.
+     */
+    long idleSubmitted = -1;
+    while (true) {
+      final long timeout;
+      synchronized (this.activeTransfers) {
+        if (this.running) {
+          if (this.persistent) {
+            timeout = EVENT_TIMEOUT_MICROSECONDS;
+          } else if (!this.activeTransfers.isEmpty()) {
+            idleSubmitted = -1;
+            timeout = IDLE_TIMEOUT_MICROSECONDS;
+          } else if (idleSubmitted != this.submittedTransfers.get()) {
+            idleSubmitted = this.submittedTransfers.get();
+            timeout = IDLE_TIMEOUT_MICROSECONDS;
+          } else {
+            this.eventThread = null;
+            return;
+          }
+        } else {
+          final long remaining = this.stopDeadline - System.nanoTime();
+          if (this.activeTransfers.isEmpty() || remaining <= 0) {
+            return;
+          }
+          timeout = Math.min(EVENT_TIMEOUT_MICROSECONDS, Math.max(1, TimeUnit.NANOSECONDS.toMicros(remaining)));
+        }
+      }
+      final int result = this.backend.handleEvents(timeout);
+      if (result < 0 && result != LibUsb.ERROR_INTERRUPTED) {
+        Logger.getLogger(UsbTransferEngine.class.getName()).log(Level.WARNING, "USB event handling failed: {0}", UsbExceptionFactory.getErrorMessage(result));
+      }
+    }
+  }
+
+  /**
+   * Translate a libusb transfer status into the equivalent libusb error code.
+   *
+   * @param status The transfer status. e.g. {@link LibUsb#TRANSFER_STALL}
+   * @return The libusb error code. e.g. {@link LibUsb#ERROR_PIPE}
+   */
+  static int toErrorCode(final int status) {
+    switch (status) {
+      case LibUsb.TRANSFER_COMPLETED:
+        return LibUsb.SUCCESS;
+      case LibUsb.TRANSFER_TIMED_OUT:
+        return LibUsb.ERROR_TIMEOUT;
+      case LibUsb.TRANSFER_CANCELLED:
+        return LibUsb.ERROR_INTERRUPTED;
+      case LibUsb.TRANSFER_STALL:
+        return LibUsb.ERROR_PIPE;
+      case LibUsb.TRANSFER_NO_DEVICE:
+        return LibUsb.ERROR_NO_DEVICE;
+      case LibUsb.TRANSFER_OVERFLOW:
+        return LibUsb.ERROR_OVERFLOW;
+      default:
+        return LibUsb.ERROR_IO;
+    }
+  }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.spi;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Handler of the class and vendor specific control requests of a
+ * {@link SimulatedUsbDevice simulated device}. Standard requests are answered
+ * by the simulated device itself.
+ *
+ * @author Jesse Caulfield
+ */
+public interface ISimulatedControlHandler {
+
+  /**
+   * Handle a class or vendor specific control request.
+   *
+   * @param device        The device receiving the request.
+   * @param bmRequestType The request type.
+   * @param bRequest      The request.
+   * @param wValue        The request value.
+   * @param wIndex        The request index.
+   * @param data          The data stage, positioned at zero. For an IN
+   *                      request the response is written into this buffer;
+   *                      for an OUT request it holds the data sent.
+   * @return The number of bytes transferred, or a libusb error code (e.g.
+   *         {@code LibUsb.ERROR_PIPE} to stall the request).
+   */
+  public int controlTransfer(SimulatedUsbDevice device, byte bmRequestType, byte bRequest, short wValue, short wIndex, ByteBuffer data);
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.spi;
+
+import java.util.List;
+import javax.usb3.exception.UsbException;
+import javax.usb3.exception.UsbPlatformException;
+
+/**
+ * Native USB backend service provider interface.
+ * <p>
+ * The backend is the only part of the reference implementation that talks to
+ * the host USB subsystem. It enumerates the attached devices, opens them and
+ * executes asynchronous transfers. The default backend is
+ * {@link LibUsbBackend}, which delegates to the native libusb library. The
+ * {@link SimulatedUsbBackend} provides an in-memory USB host for testing
+ * without hardware.
+ * <p>
+ * The backend mirrors the libusb API: all methods returning an {@code int}
+ * return a libusb error code (e.g. {@code LibUsb.ERROR_NO_DEVICE}) on failure
+ * and transfer status values are the libusb transfer status codes (e.g.
+ * {@code LibUsb.TRANSFER_COMPLETED}).
+ * <p>
+ * A backend is selected with the
+ * {@link javax.usb3.ri.UsbServiceInstanceConfiguration#BACKEND backend}
+ * system property or by creating the USB services with
+ * {@link javax.usb3.UsbHostManager#getUsbServices(IUsbBackend)}.
+ *
+ * @author Jesse Caulfield
+ */
+public interface IUsbBackend {
+
+  /**
+   * Initialize the backend. This is called once before any other method.
+   *
+   * @throws UsbException if the backend cannot be initialized
+   */
+  public void init() throws UsbException;
+
+  /**
+   * Release all resources held by the backend. No method may be called after
+   * the backend has exited.
+   */
+  public void exit();
+
+  /**
+   * Get the list of USB devices currently attached to the host. The devices
+   * are only valid until the list is
+   * {@link #freeDeviceList(List) released}.
+   *
+   * @return The attached devices. Never null.
+   * @throws UsbPlatformException if the devices cannot be enumerated
+   */
+  public List<IUsbBackendDevice> getDeviceList() throws UsbPlatformException;
+
+  /**
+   * Release a device list obtained from {@link #getDeviceList()}.
+   *
+   * @param devices The device list.
+   */
+  public void freeDeviceList(List<IUsbBackendDevice> devices);
+
+  /**
+   * Allocate a transfer.
+   *
+   * @param isoPackets The number of isochronous packet descriptors to
+   *                   allocate. Zero for a control, bulk or interrupt
+   *                   transfer.
+   * @return The transfer, or null if the transfer cannot be allocated.
+   */
+  public IUsbTransfer allocTransfer(int isoPackets);
+
+  /**
+   * Submit a populated transfer. The transfer callback is invoked from
+   * {@link #handleEvents(long)} once the transfer is finished.
+   *
+   * @param transfer The transfer.
+   * @return Zero on success or a libusb error code.
+   */
+  public int submitTransfer(IUsbTransfer transfer);
+
+  /**
+   * Handle pending transfer events, invoking the callbacks of all finished
+   * transfers. This blocks until at least one event was handled or the timeout
+   * expired.
+   *
+   * @param timeout The maximum time to wait in microseconds.
+   * @return Zero on success or a libusb error code.
+   */
+  public int handleEvents(long timeout);
+
+  /**
+   * Wake a thread blocked in {@link #handleEvents(long)}, which then returns
+   * before its timeout expires. Nothing is done if no thread is blocked.
+   *
+   * @return TRUE if the blocked thread is woken. FALSE if the backend cannot
+   *         wake it on this platform, in which case it returns on the next
+   *         event or at its timeout.
+   */
+  public boolean interruptEvents();
+
+  /**
+   * Register a listener notified when devices are attached or detached. The
+   * listener is invoked from {@link #handleEvents(long)}, which must therefore
+   * be called continuously while the listener is registered.
+   *
+   * @param listener The listener.
+   * @return TRUE if the listener is registered. FALSE if the backend does not
+   *         support hotplug notification on this platform, in which case the
+   *         device list must be polled.
+   */
+  public boolean registerHotplugListener(IUsbHotplugListener listener);
+
+  /**
+   * Deregister a hotplug listener. Nothing is done if the listener is not
+   * registered.
+   *
+   * @param listener The listener.
+   */
+  public void deregisterHotplugListener(IUsbHotplugListener listener);
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.spi;
+
+import java.util.List;
+import javax.usb3.IUsbDeviceDescriptor;
+import javax.usb3.exception.UsbPlatformException;
+
+/**
+ * A USB device enumerated by a {@link IUsbBackend backend}.
+ * <p>
+ * Backend devices are only valid until the device list they were obtained
+ * from is released, unless an additional reference is taken with
+ * {@link #ref()}. The reference implementation reads the device location,
+ * descriptors and configurations while the list is held and keeps a reference
+ * to every connected device to open it without enumerating the bus.
+ *
+ * @author Jesse Caulfield
+ */
+public interface IUsbBackendDevice {
+
+  /**
+   * @return The number of the bus the device is connected to.
+   */
+  public int getBusNumber();
+
+  /**
+   * @return The address of the device on its bus.
+   */
+  public int getDeviceAddress();
+
+  /**
+   * @return The number of the parent port the device is connected to. Zero if
+   *         not available.
+   */
+  public int getPortNumber();
+
+  /**
+   * @return The negotiated connection speed. A libusb speed code, e.g.
+   *         {@code LibUsb.SPEED_HIGH}.
+   */
+  public int getSpeed();
+
+  /**
+   * Get the parent (hub) device.
+   *
+   * @return The parent device, or null if the device is connected to a root
+   *         port (or the parent is unknown).
+   */
+  public IUsbBackendDevice getParent();
+
+  /**
+   * Get the device descriptor.
+   *
+   * @return The device descriptor.
+   * @throws UsbPlatformException if the descriptor cannot be read
+   */
+  public IUsbDeviceDescriptor getDeviceDescriptor() throws UsbPlatformException;
+
+  /**
+   * Get the device configurations, in descriptor index order.
+   *
+   * @return The configurations. Never null.
+   * @throws UsbPlatformException if a configuration descriptor cannot be read
+   */
+  public List<UsbBackendConfiguration> getConfigurations() throws UsbPlatformException;
+
+  /**
+   * Get the value of the active configuration.
+   *
+   * @return The bConfigurationValue of the active configuration. Zero if the
+   *         device is not configured.
+   * @throws UsbPlatformException if the active configuration cannot be read
+   */
+  public byte getActiveConfigurationNumber() throws UsbPlatformException;
+
+  /**
+   * Open the device.
+   *
+   * @return The device handle.
+   * @throws UsbPlatformException if the device cannot be opened
+   */
+  public IUsbDeviceHandle open() throws UsbPlatformException;
+
+  /**
+   * Take a reference to the device. The returned device remains valid after
+   * the device list it was obtained from is released, until it is
+   * {@link #unref() unreferenced}.
+   *
+   * @return The referenced device.
+   */
+  public IUsbBackendDevice ref();
+
+  /**
+   * Release a reference taken with {@link #ref()}. The device must not be
+   * used afterwards.
+   */
+  public void unref();
+}
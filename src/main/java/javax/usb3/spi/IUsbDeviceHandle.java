@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.spi;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A handle to an open USB device.
+ * <p>
+ * All methods mirror the equivalent libusb functions and return a libusb error
+ * code (e.g. {@code LibUsb.ERROR_NO_DEVICE}) on failure.
+ *
+ * @author Jesse Caulfield
+ */
+public interface IUsbDeviceHandle {
+
+  /**
+   * Close the handle. The handle must not be used afterwards.
+   */
+  public void close();
+
+  /**
+   * Claim an interface.
+   *
+   * @param number The interface number.
+   * @return Zero on success or a libusb error code.
+   */
+  public int claimInterface(int number);
+
+  /**
+   * Release a claimed interface.
+   *
+   * @param number The interface number.
+   * @return Zero on success or a libusb error code.
+   */
+  public int releaseInterface(int number);
+
+  /**
+   * Determine if a kernel driver is active on an interface.
+   *
+   * @param number The interface number.
+   * @return 1 if a kernel driver is active, zero if not, or a libusb error
+   *         code.
+   */
+  public int kernelDriverActive(int number);
+
+  /**
+   * Detach the kernel driver from an interface.
+   *
+   * @param number The interface number.
+   * @return Zero on success or a libusb error code.
+   */
+  public int detachKernelDriver(int number);
+
+  /**
+   * Re-attach the kernel driver of an interface.
+   *
+   * @param number The interface number.
+   * @return Zero on success or a libusb error code.
+   */
+  public int attachKernelDriver(int number);
+
+  /**
+   * Set the active configuration.
+   *
+   * @param configuration The bConfigurationValue of the configuration.
+   * @return Zero on success or a libusb error code.
+   */
+  public int setConfiguration(int configuration);
+
+  /**
+   * Activate an alternate setting of an interface.
+   *
+   * @param number           The interface number.
+   * @param alternateSetting The alternate setting number.
+   * @return Zero on success or a libusb error code.
+   */
+  public int setInterfaceAltSetting(int number, int alternateSetting);
+
+  /**
+   * Perform a synchronous control transfer on the Default Control Pipe.
+   *
+   * @param bmRequestType The request type.
+   * @param bRequest      The request.
+   * @param wValue        The request value.
+   * @param wIndex        The request index.
+   * @param data          The data buffer. The number of remaining bytes is
+   *                      the wLength of the request.
+   * @param timeout       The timeout in milliseconds. Zero for no timeout.
+   * @return The number of bytes transferred or a libusb error code.
+   */
+  public int controlTransfer(byte bmRequestType, byte bRequest, short wValue, short wIndex, ByteBuffer data, long timeout);
+}
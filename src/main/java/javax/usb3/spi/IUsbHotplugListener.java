@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.spi;
+
+/**
+ * Listener notified by a {@link IUsbBackend backend} when a device is
+ * attached to or detached from the host.
+ * <p>
+ * The listener is invoked on the backend event thread (i.e. from
+ * {@link IUsbBackend#handleEvents(long)}) or, by the simulated backend, on the
+ * thread attaching or removing the device. It should do minimal processing
+ * before returning and must not open the device or submit transfers.
+ *
+ * @author Jesse Caulfield
+ */
+public interface IUsbHotplugListener {
+
+  /**
+   * A device has been attached to the host.
+   *
+   * @param device The attached device. This reference is only valid during
+   *               the call.
+   */
+  public void deviceArrived(IUsbBackendDevice device);
+
+  /**
+   * A device has been detached from the host.
+   *
+   * @param device The detached device. This reference is only valid during
+   *               the call.
+   */
+  public void deviceLeft(IUsbBackendDevice device);
+}
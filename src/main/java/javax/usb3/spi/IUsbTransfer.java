@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.spi;
+
+import java.nio.ByteBuffer;
+import javax.usb3.enumerated.EDataFlowtype;
+
+/**
+ * An asynchronous USB transfer allocated by a {@link IUsbBackend backend}.
+ * <p>
+ * This mirrors the libusb transfer structure. A transfer is populated with
+ * {@link #fill fill}, submitted with {@link IUsbBackend#submitTransfer} and
+ * may be resubmitted from its callback. The transfer status is a libusb
+ * transfer status code (e.g. {@code LibUsb.TRANSFER_COMPLETED}).
+ *
+ * @author Jesse Caulfield
+ */
+public interface IUsbTransfer {
+
+  /**
+   * Populate the transfer.
+   * <p>
+   * The transfer length is set to the buffer capacity. A control transfer
+   * buffer starts with the 8 byte setup packet, and its length is the setup
+   * size plus the wLength of the setup packet.
+   *
+   * @param handle   The device handle.
+   * @param type     The transfer type.
+   * @param endpoint The endpoint address. Zero for a control transfer.
+   * @param buffer   The data buffer. Must be direct.
+   * @param callback The completion callback. May be null.
+   * @param userData The user data. May be null.
+   * @param timeout  The timeout in milliseconds. Zero for no timeout.
+   */
+  public void fill(IUsbDeviceHandle handle,
+                   EDataFlowtype type,
+                   byte endpoint,
+                   ByteBuffer buffer,
+                   IUsbTransferCallback callback,
+                   Object userData,
+                   long timeout);
+
+  /**
+   * @return The endpoint address.
+   */
+  public byte endpoint();
+
+  /**
+   * @return The transfer status.
+   */
+  public int status();
+
+  /**
+   * @return The number of bytes to transfer.
+   */
+  public int length();
+
+  /**
+   * @param length The number of bytes to transfer. Must not exceed the buffer
+   *               capacity.
+   */
+  public void setLength(int length);
+
+  /**
+   * @return The number of bytes actually transferred.
+   */
+  public int actualLength();
+
+  /**
+   * @return The data buffer.
+   */
+  public ByteBuffer buffer();
+
+  /**
+   * Set the data buffer. This also sets the length to the buffer capacity.
+   *
+   * @param buffer The data buffer. May be null.
+   */
+  public void setBuffer(ByteBuffer buffer);
+
+  /**
+   * @return The timeout in milliseconds.
+   */
+  public long timeout();
+
+  /**
+   * @param timeout The timeout in milliseconds. Zero for no timeout.
+   */
+  public void setTimeout(long timeout);
+
+  /**
+   * @return The completion callback.
+   */
+  public IUsbTransferCallback callback();
+
+  /**
+   * @param callback The completion callback.
+   */
+  public void setCallback(IUsbTransferCallback callback);
+
+  /**
+   * @return The user data.
+   */
+  public Object userData();
+
+  /**
+   * @param userData The user data.
+   */
+  public void setUserData(Object userData);
+
+  /**
+   * @return The number of isochronous packets.
+   */
+  public int numIsoPackets();
+
+  /**
+   * @param packet The packet index.
+   * @return The length of the isochronous packet.
+   */
+  public int isoPacketLength(int packet);
+
+  /**
+   * @param packet The packet index.
+   * @param length The length of the isochronous packet.
+   */
+  public void setIsoPacketLength(int packet, int length);
+
+  /**
+   * @param packet The packet index.
+   * @return The number of bytes actually transferred in the packet.
+   */
+  public int isoPacketActualLength(int packet);
+
+  /**
+   * @param packet The packet index.
+   * @return The status of the packet.
+   */
+  public int isoPacketStatus(int packet);
+
+  /**
+   * Cancel the transfer. The transfer callback is invoked with the status
+   * {@code TRANSFER_CANCELLED} once the cancellation is complete.
+   *
+   * @return Zero on success or a libusb error code, e.g.
+   *         {@code ERROR_NOT_FOUND} if the transfer is not in progress.
+   */
+  public int cancel();
+
+  /**
+   * Free the transfer. The transfer must not be in progress and must not be
+   * used afterwards. The data buffer is not freed.
+   */
+  public void free();
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.spi;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.usb3.exception.UsbException;
+import javax.usb3.exception.UsbPlatformException;
+import javax.usb3.utility.IHotplugCallback;
+import javax.usb3.utility.JNINativeLibraryLoader;
+import javax.usb3.utility.UsbExceptionFactory;
+import org.usb4java.Context;
+import org.usb4java.Device;
+import org.usb4java.DeviceList;
+import org.usb4java.HotplugCallbackHandle;
+import org.usb4java.LibUsb;
+import org.usb4java.Transfer;
+
+/**
+ * The native libusb backend. This is the default backend of the reference
+ * implementation.
+ * <p>
+ * Every backend instance owns a separate libusb context.
+ *
+ * @author Jesse Caulfield
+ */
+public final class LibUsbBackend implements IUsbBackend {
+
+  /**
+   * The libusb (JNI) context. This represents a libusb session to access the
+   * host computer USB subsystem.
+   * <p>
+   * During normal operation a host computer will run multiple, parallel libusb
+   * sessions, each independently accessing a USB device.
+   */
+  private Context context;
+
+  /**
+   * The libusb hotplug callback handles of the registered hotplug listeners.
+   */
+  private final Map<IUsbHotplugListener, HotplugCallbackHandle> hotplugHandles = new ConcurrentHashMap<>();
+
+  /**
+   * The libusb hotplug callback. The user data is the listener notified. This
+   * is invoked on the libusb event thread.
+   */
+  private static final IHotplugCallback HOTPLUG_CALLBACK = new IHotplugCallback() {
+    @Override
+    public int processEvent(final Context context, final Device device, final int event, final Object userData) {
+      final IUsbHotplugListener listener = (IUsbHotplugListener) userData;
+      if (event == LibUsb.HOTPLUG_EVENT_DEVICE_ARRIVED) {
+        listener.deviceArrived(new LibUsbBackendDevice(device));
+      } else if (event == LibUsb.HOTPLUG_EVENT_DEVICE_LEFT) {
+        listener.deviceLeft(new LibUsbBackendDevice(device));
+      }
+      return 0;
+    }
+  };
+
+  /**
+   * The hotplug callback registered only to wake the event handler. It
+   * ignores all events.
+   */
+  private static final IHotplugCallback WAKEUP_CALLBACK = new IHotplugCallback() {
+    @Override
+    public int processEvent(final Context context, final Device device, final int event, final Object userData) {
+      return 0;
+    }
+  };
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Loads the native library and initializes a new libusb context.
+   */
+  @Override
+  public void init() throws UsbException {
+    JNINativeLibraryLoader.load();
+    final Context newContext = new Context();
+    final int result = LibUsb.init(newContext);
+    if (result != 0) {
+      throw UsbExceptionFactory.createPlatformException("Unable to initialize libusb", result);
+    }
+    this.context = newContext;
+  }
+
+  @Override
+  public void exit() {
+    for (IUsbHotplugListener listener : this.hotplugHandles.keySet()) {
+      deregisterHotplugListener(listener);
+    }
+    LibUsb.exit(this.context);
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Every listed device holds a libusb reference, which is released when the
+   * list is freed.
+   */
+  @Override
+  public List<IUsbBackendDevice> getDeviceList() throws UsbPlatformException {
+    final DeviceList deviceList = new DeviceList();
+    final int result = LibUsb.getDeviceList(this.context, deviceList);
+    if (result < 0) {
+      throw UsbExceptionFactory.createPlatformException("Unable to get USB device list", result);
+    }
+    try {
+      final List<IUsbBackendDevice> devices = new ArrayList<>(result);
+      for (Device device : deviceList) {
+        devices.add(new LibUsbBackendDevice(LibUsb.refDevice(device)));
+      }
+      return devices;
+    } finally {
+      LibUsb.freeDeviceList(deviceList, true);
+    }
+  }
+
+  @Override
+  public void freeDeviceList(final List<IUsbBackendDevice> devices) {
+    for (IUsbBackendDevice device : devices) {
+      LibUsb.unrefDevice(((LibUsbBackendDevice) device).getDevice());
+    }
+  }
+
+  @Override
+  public IUsbTransfer allocTransfer(final int isoPackets) {
+    final Transfer transfer = LibUsb.allocTransfer(isoPackets);
+    return transfer == null ? null : new LibUsbTransfer(transfer);
+  }
+
+  @Override
+  public int submitTransfer(final IUsbTransfer transfer) {
+    return LibUsb.submitTransfer(((LibUsbTransfer) transfer).getTransfer());
+  }
+
+  @Override
+  public int handleEvents(final long timeout) {
+    return LibUsb.handleEventsTimeout(this.context, timeout);
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The libusb version bound by usb4java has no call to interrupt the event
+   * handler. Deregistering a hotplug callback signals the libusb event pipe,
+   * so a callback that is never invoked is registered and deregistered. This
+   * requires hotplug support; without it the event handler is not woken.
+   */
+  @Override
+  public boolean interruptEvents() {
+    if (!LibUsb.hasCapability(LibUsb.CAP_HAS_HOTPLUG)) {
+      return false;
+    }
+    final HotplugCallbackHandle handle = new HotplugCallbackHandle();
+    final int result = LibUsb.hotplugRegisterCallback(this.context,
+                                                      LibUsb.HOTPLUG_EVENT_DEVICE_ARRIVED,
+                                                      0,
+                                                      LibUsb.HOTPLUG_MATCH_ANY,
+                                                      LibUsb.HOTPLUG_MATCH_ANY,
+                                                      LibUsb.HOTPLUG_MATCH_ANY,
+                                                      WAKEUP_CALLBACK,
+                                                      null,
+                                                      handle);
+    if (result != LibUsb.SUCCESS) {
+      return false;
+    }
+    LibUsb.hotplugDeregisterCallback(this.context, handle);
+    return true;
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Hotplug notification requires libusb 1.0.16 or later and is not available
+   * on all platforms (e.g. Windows).
+   */
+  @Override
+  public boolean registerHotplugListener(final IUsbHotplugListener listener) {
+    if (!LibUsb.hasCapability(LibUsb.CAP_HAS_HOTPLUG)) {
+      return false;
+    }
+    final HotplugCallbackHandle handle = new HotplugCallbackHandle();
+    final int result = LibUsb.hotplugRegisterCallback(this.context,
+                                                      LibUsb.HOTPLUG_EVENT_DEVICE_ARRIVED | LibUsb.HOTPLUG_EVENT_DEVICE_LEFT,
+                                                      0,
+                                                      LibUsb.HOTPLUG_MATCH_ANY,
+                                                      LibUsb.HOTPLUG_MATCH_ANY,
+                                                      LibUsb.HOTPLUG_MATCH_ANY,
+                                                      HOTPLUG_CALLBACK,
+                                                      listener,
+                                                      handle);
+    if (result != LibUsb.SUCCESS) {
+      return false;
+    }
+    this.hotplugHandles.put(listener, handle);
+    return true;
+  }
+
+  @Override
+  public void deregisterHotplugListener(final IUsbHotplugListener listener) {
+    final HotplugCallbackHandle handle = this.hotplugHandles.remove(listener);
+    if (handle != null) {
+      LibUsb.hotplugDeregisterCallback(this.context, handle);
+    }
+  }
+
+  /**
+   * Wraps a libusb native device in a backend device. The wrapper shares the
+   * caller's libusb reference: it does not reference the native device.
+   *
+   * @param device The libusb native device. Must not be null.
+   * @return The backend device.
+   */
+  public static IUsbBackendDevice wrap(final Device device) {
+    if (device == null) {
+      throw new IllegalArgumentException("Device must be set");
+    }
+    return new LibUsbBackendDevice(device);
+  }
+
+  /**
+   * Get the libusb native device of a backend device.
+   *
+   * @param device The backend device.
+   * @return The libusb native device, or null if the backend device is not a
+   *         libusb device.
+   */
+  public static Device unwrap(final IUsbBackendDevice device) {
+    return device instanceof LibUsbBackendDevice ? ((LibUsbBackendDevice) device).getDevice() : null;
+  }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.spi;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.usb3.IUsbDeviceDescriptor;
+import javax.usb3.IUsbInterfaceDescriptor;
+import javax.usb3.descriptor.UsbConfigurationDescriptor;
+import javax.usb3.descriptor.UsbDeviceDescriptor;
+import javax.usb3.descriptor.UsbInterfaceDescriptor;
+import javax.usb3.exception.UsbPlatformException;
+import javax.usb3.utility.UsbExceptionFactory;
+import org.usb4java.ConfigDescriptor;
+import org.usb4java.Device;
+import org.usb4java.DeviceDescriptor;
+import org.usb4java.DeviceHandle;
+import org.usb4java.Interface;
+import org.usb4java.InterfaceDescriptor;
+import org.usb4java.LibUsb;
+
+/**
+ * A libusb device.
+ *
+ * @author Jesse Caulfield
+ */
+final class LibUsbBackendDevice implements IUsbBackendDevice {
+
+  /**
+   * The libusb native device reference.
+   */
+  private final Device device;
+
+  /**
+   * Construct a new libusb device.
+   *
+   * @param device The libusb native device reference.
+   */
+  LibUsbBackendDevice(final Device device) {
+    this.device = device;
+  }
+
+  /**
+   * @return The libusb native device reference.
+   */
+  Device getDevice() {
+    return this.device;
+  }
+
+  @Override
+  public int getBusNumber() {
+    return LibUsb.getBusNumber(this.device);
+  }
+
+  @Override
+  public int getDeviceAddress() {
+    return LibUsb.getDeviceAddress(this.device);
+  }
+
+  @Override
+  public int getPortNumber() {
+    return LibUsb.getPortNumber(this.device);
+  }
+
+  @Override
+  public int getSpeed() {
+    return LibUsb.getDeviceSpeed(this.device);
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The parent is referenced by its child and remains valid as long as the
+   * child.
+   */
+  @Override
+  public IUsbBackendDevice getParent() {
+    final Device parent = LibUsb.getParent(this.device);
+    return parent == null ? null : new LibUsbBackendDevice(parent);
+  }
+
+  @Override
+  public IUsbDeviceDescriptor getDeviceDescriptor() throws UsbPlatformException {
+    final DeviceDescriptor deviceDescriptor = new DeviceDescriptor();
+    final int result = LibUsb.getDeviceDescriptor(this.device, deviceDescriptor);
+    if (result < 0) {
+      throw UsbExceptionFactory.createPlatformException("Unable to get device descriptor for device " + getDeviceAddress() + " at bus " + getBusNumber(), result);
+    }
+    return new UsbDeviceDescriptor(deviceDescriptor);
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The configurations are copied from libusb_get_config_descriptor, which is
+   * answered from the descriptors cached by the operating system. They are
+   * not parsed with {@link UsbBackendConfiguration#parse(java.nio.ByteBuffer)}:
+   * usb4java does not expose the raw descriptor, and reading it with
+   * GET_DESCRIPTOR needs an open device and a bus transfer, which costs more
+   * than the native calls it would save.
+   */
+  @Override
+  public List<UsbBackendConfiguration> getConfigurations() throws UsbPlatformException {
+    final int numConfigurations = getDeviceDescriptor().bNumConfigurations() & 0xff;
+    final List<UsbBackendConfiguration> configurations = new ArrayList<>(numConfigurations);
+    for (int i = 0; i < numConfigurations; i += 1) {
+      final ConfigDescriptor configDescriptor = new ConfigDescriptor();
+      final int result = LibUsb.getConfigDescriptor(this.device, (byte) i, configDescriptor);
+      if (result < 0) {
+        throw UsbExceptionFactory.createPlatformException("Unable to get configuation " + i + " for device " + getDeviceAddress() + " at bus " + getBusNumber(), result);
+      }
+      try {
+        final List<IUsbInterfaceDescriptor> interfaceDescriptors = new ArrayList<>();
+        for (Interface jniInterface : configDescriptor.iface()) {
+          for (InterfaceDescriptor ifDescriptor : jniInterface.altsetting()) {
+            interfaceDescriptors.add(new UsbInterfaceDescriptor(ifDescriptor));
+          }
+        }
+        configurations.add(new UsbBackendConfiguration(new UsbConfigurationDescriptor(configDescriptor), interfaceDescriptors));
+      } finally {
+        LibUsb.freeConfigDescriptor(configDescriptor);
+      }
+    }
+    return configurations;
+  }
+
+  @Override
+  public byte getActiveConfigurationNumber() throws UsbPlatformException {
+    final ConfigDescriptor configDescriptor = new ConfigDescriptor();
+    final int result = LibUsb.getActiveConfigDescriptor(this.device, configDescriptor);
+    /**
+     * ERROR_NOT_FOUND is returned when device is in unconfigured state. On OSX
+     * it may return INVALID_PARAM in this case because of a bug in libusb.
+     */
+    if (result == LibUsb.ERROR_NOT_FOUND || result == LibUsb.ERROR_INVALID_PARAM) {
+      return 0;
+    } else if (result < 0) {
+      throw UsbExceptionFactory.createPlatformException("Unable to read active config descriptor from device " + getDeviceAddress() + " at bus " + getBusNumber(), result);
+    }
+    try {
+      return configDescriptor.bConfigurationValue();
+    } finally {
+      LibUsb.freeConfigDescriptor(configDescriptor);
+    }
+  }
+
+  @Override
+  public IUsbDeviceHandle open() throws UsbPlatformException {
+    final DeviceHandle deviceHandle = DeviceHandle.getInstance();
+    final int result = LibUsb.open(this.device, deviceHandle);
+    if (result < 0) {
+      throw UsbExceptionFactory.createPlatformException("Can't open device " + getDeviceAddress() + " at bus " + getBusNumber(), result);
+    }
+    return new LibUsbDeviceHandle(deviceHandle);
+  }
+
+  @Override
+  public IUsbBackendDevice ref() {
+    return new LibUsbBackendDevice(LibUsb.refDevice(this.device));
+  }
+
+  @Override
+  public void unref() {
+    LibUsb.unrefDevice(this.device);
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.spi;
+
+import java.nio.ByteBuffer;
+import org.usb4java.DeviceHandle;
+import org.usb4java.LibUsb;
+
+/**
+ * A handle to a device opened with libusb.
+ *
+ * @author Jesse Caulfield
+ */
+final class LibUsbDeviceHandle implements IUsbDeviceHandle {
+
+  /**
+   * The libusb native device handle.
+   */
+  private final DeviceHandle handle;
+
+  /**
+   * Construct a new libusb device handle.
+   *
+   * @param handle The libusb native device handle.
+   */
+  LibUsbDeviceHandle(final DeviceHandle handle) {
+    this.handle = handle;
+  }
+
+  /**
+   * @return The libusb native device handle.
+   */
+  DeviceHandle getHandle() {
+    return this.handle;
+  }
+
+  @Override
+  public void close() {
+    LibUsb.close(this.handle);
+  }
+
+  @Override
+  public int claimInterface(final int number) {
+    return LibUsb.claimInterface(this.handle, number);
+  }
+
+  @Override
+  public int releaseInterface(final int number) {
+    return LibUsb.releaseInterface(this.handle, number);
+  }
+
+  @Override
+  public int kernelDriverActive(final int number) {
+    return LibUsb.kernelDriverActive(this.handle, number);
+  }
+
+  @Override
+  public int detachKernelDriver(final int number) {
+    return LibUsb.detachKernelDriver(this.handle, number);
+  }
+
+  @Override
+  public int attachKernelDriver(final int number) {
+    return LibUsb.attachKernelDriver(this.handle, number);
+  }
+
+  @Override
+  public int setConfiguration(final int configuration) {
+    return LibUsb.setConfiguration(this.handle, configuration);
+  }
+
+  @Override
+  public int setInterfaceAltSetting(final int number, final int alternateSetting) {
+    return LibUsb.setInterfaceAltSetting(this.handle, number, alternateSetting);
+  }
+
+  @Override
+  public int controlTransfer(final byte bmRequestType, final byte bRequest, final short wValue, final short wIndex, final ByteBuffer data, final long timeout) {
+    return LibUsb.controlTransfer(this.handle, bmRequestType, bRequest, wValue, wIndex, data, timeout);
+  }
+}
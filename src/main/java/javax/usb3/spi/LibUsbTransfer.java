@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.spi;
+
+import java.nio.ByteBuffer;
+import javax.usb3.enumerated.EDataFlowtype;
+import javax.usb3.utility.ITransferCallback;
+import org.usb4java.DeviceHandle;
+import org.usb4java.IsoPacketDescriptor;
+import org.usb4java.LibUsb;
+import org.usb4java.Transfer;
+
+/**
+ * A libusb transfer.
+ * <p>
+ * The native transfer carries this wrapper as its user data and always
+ * completes into a single shared libusb callback, which dispatches to the
+ * callback of the wrapper.
+ *
+ * @author Jesse Caulfield
+ */
+final class LibUsbTransfer implements IUsbTransfer {
+
+  /**
+   * The libusb callback of all transfers. This is invoked on the libusb event
+   * thread.
+   */
+  private static final ITransferCallback DISPATCH = new ITransferCallback() {
+    @Override
+    public void processTransfer(final Transfer transfer) {
+      final LibUsbTransfer usbTransfer = (LibUsbTransfer) transfer.userData();
+      if (usbTransfer.callback != null) {
+        usbTransfer.callback.processTransfer(usbTransfer);
+      }
+    }
+  };
+
+  /**
+   * The libusb native transfer.
+   */
+  private final Transfer transfer;
+  /**
+   * The completion callback.
+   */
+  private IUsbTransferCallback callback;
+  /**
+   * The user data.
+   */
+  private Object userData;
+  /**
+   * The isochronous packet descriptors. Read once: the descriptors point into
+   * the native transfer and are valid for its lifetime.
+   */
+  private IsoPacketDescriptor[] isoPackets;
+
+  /**
+   * Construct a new libusb transfer.
+   *
+   * @param transfer The libusb native transfer.
+   */
+  LibUsbTransfer(final Transfer transfer) {
+    this.transfer = transfer;
+  }
+
+  /**
+   * @return The libusb native transfer.
+   */
+  Transfer getTransfer() {
+    return this.transfer;
+  }
+
+  @Override
+  public void fill(final IUsbDeviceHandle handle,
+                   final EDataFlowtype type,
+                   final byte endpoint,
+                   final ByteBuffer buffer,
+                   final IUsbTransferCallback callback,
+                   final Object userData,
+                   final long timeout) {
+    final DeviceHandle deviceHandle = ((LibUsbDeviceHandle) handle).getHandle();
+    switch (type) {
+      case CONTROL:
+        LibUsb.fillControlTransfer(this.transfer, deviceHandle, buffer, DISPATCH, this, timeout);
+        break;
+      case BULK:
+        LibUsb.fillBulkTransfer(this.transfer, deviceHandle, endpoint, buffer, DISPATCH, this, timeout);
+        break;
+      case INTERRUPT:
+        LibUsb.fillInterruptTransfer(this.transfer, deviceHandle, endpoint, buffer, DISPATCH, this, timeout);
+        break;
+      case ISOCHRONOUS:
+        LibUsb.fillIsoTransfer(this.transfer, deviceHandle, endpoint, buffer, this.transfer.numIsoPackets(), DISPATCH, this, timeout);
+        break;
+      default:
+        throw new AssertionError(type.name());
+    }
+    this.callback = callback;
+    this.userData = userData;
+  }
+
+  @Override
+  public byte endpoint() {
+    return this.transfer.endpoint();
+  }
+
+  @Override
+  public int status() {
+    return this.transfer.status();
+  }
+
+  @Override
+  public int length() {
+    return this.transfer.length();
+  }
+
+  @Override
+  public void setLength(final int length) {
+    this.transfer.setLength(length);
+  }
+
+  @Override
+  public int actualLength() {
+    return this.transfer.actualLength();
+  }
+
+  @Override
+  public ByteBuffer buffer() {
+    return this.transfer.buffer();
+  }
+
+  @Override
+  public void setBuffer(final ByteBuffer buffer) {
+    this.transfer.setBuffer(buffer);
+  }
+
+  @Override
+  public long timeout() {
+    return this.transfer.timeout();
+  }
+
+  @Override
+  public void setTimeout(final long timeout) {
+    this.transfer.setTimeout(timeout);
+  }
+
+  @Override
+  public IUsbTransferCallback callback() {
+    return this.callback;
+  }
+
+  @Override
+  public void setCallback(final IUsbTransferCallback callback) {
+    this.callback = callback;
+  }
+
+  @Override
+  public Object userData() {
+    return this.userData;
+  }
+
+  @Override
+  public void setUserData(final Object userData) {
+    this.userData = userData;
+  }
+
+  @Override
+  public int numIsoPackets() {
+    return this.transfer.numIsoPackets();
+  }
+
+  @Override
+  public int isoPacketLength(final int packet) {
+    return isoPacket(packet).length();
+  }
+
+  @Override
+  public void setIsoPacketLength(final int packet, final int length) {
+    isoPacket(packet).setLength(length);
+  }
+
+  @Override
+  public int isoPacketActualLength(final int packet) {
+    return isoPacket(packet).actualLength();
+  }
+
+  @Override
+  public int isoPacketStatus(final int packet) {
+    return isoPacket(packet).status();
+  }
+
+  /**
+   * Get an isochronous packet descriptor.
+   *
+   * @param packet The packet index.
+   * @return The packet descriptor.
+   */
+  private IsoPacketDescriptor isoPacket(final int packet) {
+    if (this.isoPackets == null) {
+      this.isoPackets = this.transfer.isoPacketDesc();
+    }
+    return this.isoPackets[packet];
+  }
+
+  @Override
+  public int cancel() {
+    return LibUsb.cancelTransfer(this.transfer);
+  }
+
+  @Override
+  public void free() {
+    LibUsb.freeTransfer(this.transfer);
+  }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.spi;
+
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.usb4java.LibUsb;
+
+/**
+ * A handle to an open {@link SimulatedUsbDevice simulated device}.
+ *
+ * @author Jesse Caulfield
+ */
+final class SimulatedDeviceHandle implements IUsbDeviceHandle {
+
+  /**
+   * The device.
+   */
+  private final SimulatedUsbDevice device;
+  /**
+   * The interfaces claimed through this handle. Guarded by this.
+   */
+  private final Set<Integer> claimed = new HashSet<>();
+  /**
+   * Indicator that the handle is open.
+   */
+  private volatile boolean open = true;
+
+  /**
+   * Construct a new handle.
+   *
+   * @param device The device.
+   */
+  SimulatedDeviceHandle(final SimulatedUsbDevice device) {
+    this.device = device;
+  }
+
+  /**
+   * @return The device.
+   */
+  SimulatedUsbDevice getDevice() {
+    return this.device;
+  }
+
+  /**
+   * @return TRUE if the handle is open.
+   */
+  boolean isOpen() {
+    return this.open;
+  }
+
+  @Override
+  public synchronized void close() {
+    if (this.open) {
+      this.device.handleClosed();
+    }
+    this.open = false;
+    for (Integer number : this.claimed) {
+      this.device.release(number, this);
+    }
+    this.claimed.clear();
+  }
+
+  @Override
+  public synchronized int claimInterface(final int number) {
+    if (!this.open || !this.device.isConnected()) {
+      return LibUsb.ERROR_NO_DEVICE;
+    }
+    final int result = this.device.claim(number, this);
+    if (result == LibUsb.SUCCESS) {
+      this.claimed.add(number);
+    }
+    return result;
+  }
+
+  @Override
+  public synchronized int releaseInterface(final int number) {
+    if (!this.claimed.remove(number)) {
+      return LibUsb.ERROR_NOT_FOUND;
+    }
+    this.device.release(number, this);
+    return this.device.isConnected() ? LibUsb.SUCCESS : LibUsb.ERROR_NO_DEVICE;
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Simulated devices have no kernel driver.
+   */
+  @Override
+  public int kernelDriverActive(final int number) {
+    return this.device.isConnected() ? 0 : LibUsb.ERROR_NO_DEVICE;
+  }
+
+  @Override
+  public int detachKernelDriver(final int number) {
+    return LibUsb.ERROR_NOT_FOUND;
+  }
+
+  @Override
+  public int attachKernelDriver(final int number) {
+    return LibUsb.ERROR_NOT_FOUND;
+  }
+
+  @Override
+  public int setConfiguration(final int configuration) {
+    if (!this.open || !this.device.isConnected()) {
+      return LibUsb.ERROR_NO_DEVICE;
+    }
+    return this.device.setConfiguration(configuration);
+  }
+
+  @Override
+  public int setInterfaceAltSetting(final int number, final int alternateSetting) {
+    if (!this.open || !this.device.isConnected()) {
+      return LibUsb.ERROR_NO_DEVICE;
+    }
+    return this.device.setInterfaceAltSetting(number, alternateSetting);
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The calling thread is blocked for the time the simulated device needs to
+   * answer the request.
+   */
+  @Override
+  public int controlTransfer(final byte bmRequestType, final byte bRequest, final short wValue, final short wIndex, final ByteBuffer data, final long timeout) {
+    if (!this.open || !this.device.isConnected()) {
+      return LibUsb.ERROR_NO_DEVICE;
+    }
+    final long due = this.device.reserve(data.remaining());
+    if (timeout > 0 && due > System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout)) {
+      LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(timeout));
+      return LibUsb.ERROR_TIMEOUT;
+    }
+    final int result = this.device.controlRequest(bmRequestType, bRequest, wValue, wIndex, data.slice());
+    for (long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime()) {
+      LockSupport.parkNanos(wait);
+    }
+    return result;
+  }
+}
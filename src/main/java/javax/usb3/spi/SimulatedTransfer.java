@@ -0,0 +1,516 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.spi;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import javax.usb3.enumerated.EDataFlowtype;
+import javax.usb3.utility.BufferUtility;
+import javax.usb3.utility.ControlSetup;
+import org.usb4java.LibUsb;
+
+/**
+ * A transfer of the {@link SimulatedUsbBackend simulated backend}.
+ * <p>
+ * The data of a transfer is moved when the transfer is submitted (or, for an
+ * IN transfer waiting for data, when the data arrives). The transfer then
+ * completes after the time the simulated device needs to move the data, which
+ * is scheduled with the backend and reported on the event thread like a
+ * native completion.
+ *
+ * @author Jesse Caulfield
+ */
+final class SimulatedTransfer implements IUsbTransfer {
+
+  /**
+   * The transfer is not submitted.
+   */
+  private static final int IDLE = 0;
+  /**
+   * The transfer is submitted and waiting for IN data.
+   */
+  private static final int WAITING = 1;
+  /**
+   * The transfer result is determined and its completion is scheduled.
+   */
+  private static final int SCHEDULED = 2;
+
+  /**
+   * The backend which allocated this transfer.
+   */
+  private final SimulatedUsbBackend backend;
+  /**
+   * The isochronous packet lengths.
+   */
+  private final int[] isoPacketLengths;
+  /**
+   * The isochronous packet actual lengths.
+   */
+  private final int[] isoPacketActualLengths;
+  /**
+   * The isochronous packet status.
+   */
+  private final int[] isoPacketStatus;
+
+  /**
+   * The device handle.
+   */
+  private SimulatedDeviceHandle handle;
+  /**
+   * The transfer type.
+   */
+  private EDataFlowtype type;
+  /**
+   * The endpoint address.
+   */
+  private byte endpoint;
+  /**
+   * The data buffer.
+   */
+  private ByteBuffer buffer;
+  /**
+   * The number of bytes to transfer.
+   */
+  private int length;
+  /**
+   * The timeout in milliseconds.
+   */
+  private long timeout;
+  /**
+   * The completion callback.
+   */
+  private volatile IUsbTransferCallback callback;
+  /**
+   * The user data.
+   */
+  private volatile Object userData;
+  /**
+   * The status of the last completion.
+   */
+  private volatile int status;
+  /**
+   * The actual length of the last completion.
+   */
+  private volatile int actualLength;
+
+  /**
+   * The transfer state. Guarded by this.
+   */
+  private int state = IDLE;
+  /**
+   * The submission count. Scheduled events of an earlier submission (or of a
+   * cancelled completion) are ignored. Guarded by this.
+   */
+  private int generation;
+  /**
+   * Indicator that the transfer has been cancelled. Guarded by this.
+   */
+  private boolean cancelled;
+  /**
+   * The status reported on completion. Guarded by this.
+   */
+  private int resultStatus;
+  /**
+   * The actual length reported on completion. Guarded by this.
+   */
+  private int resultLength;
+  /**
+   * The endpoint on which the transfer is waiting for data. Guarded by this.
+   */
+  private SimulatedUsbEndpoint waitingOn;
+  /**
+   * The endpoint transferred. Null for a control transfer.
+   */
+  private SimulatedUsbEndpoint target;
+
+  /**
+   * Construct a new simulated transfer.
+   *
+   * @param backend    The backend allocating the transfer.
+   * @param isoPackets The number of isochronous packets.
+   */
+  SimulatedTransfer(final SimulatedUsbBackend backend, final int isoPackets) {
+    this.backend = backend;
+    this.isoPacketLengths = new int[isoPackets];
+    this.isoPacketActualLengths = new int[isoPackets];
+    this.isoPacketStatus = new int[isoPackets];
+  }
+
+  @Override
+  public void fill(final IUsbDeviceHandle handle,
+                   final EDataFlowtype type,
+                   final byte endpoint,
+                   final ByteBuffer buffer,
+                   final IUsbTransferCallback callback,
+                   final Object userData,
+                   final long timeout) {
+    this.handle = (SimulatedDeviceHandle) handle;
+    this.type = type;
+    this.endpoint = EDataFlowtype.CONTROL.equals(type) ? 0 : endpoint;
+    this.timeout = timeout;
+    setBuffer(buffer);
+    if (EDataFlowtype.CONTROL.equals(type)) {
+      this.length = LibUsb.CONTROL_SETUP_SIZE + (new ControlSetup(buffer).wLength() & 0xffff);
+    }
+    this.callback = callback;
+    this.userData = userData;
+  }
+
+  /**
+   * Submit the transfer: move its data and schedule its completion.
+   *
+   * @return Zero on success or a libusb error code.
+   */
+  int submit() {
+    if (this.handle == null || this.type == null) {
+      return LibUsb.ERROR_INVALID_PARAM;
+    }
+    final SimulatedUsbDevice device = this.handle.getDevice();
+    synchronized (this) {
+      if (this.state != IDLE) {
+        return LibUsb.ERROR_BUSY;
+      }
+      /**
+       * Register before checking the connection: a concurrent disconnect
+       * either sees the transfer or the submission sees the disconnect.
+       */
+      device.addTransfer(this);
+      if (!this.handle.isOpen() || !device.isConnected()) {
+        device.removeTransfer(this);
+        return LibUsb.ERROR_NO_DEVICE;
+      }
+      this.generation++;
+      this.cancelled = false;
+      this.state = WAITING;
+      this.status = LibUsb.TRANSFER_ERROR;
+      this.actualLength = 0;
+      final long deadline = this.timeout > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.timeout) : Long.MAX_VALUE;
+      switch (this.type) {
+        case CONTROL:
+          submitControl(device, deadline);
+          break;
+        case ISOCHRONOUS:
+          submitIsochronous(device, deadline);
+          break;
+        default:
+          submitData(device, deadline);
+          break;
+      }
+    }
+    return LibUsb.SUCCESS;
+  }
+
+  /**
+   * Execute a control request on the simulated device.
+   *
+   * @param device   The device.
+   * @param deadline The time (nanoseconds) the transfer times out.
+   */
+  private void submitControl(final SimulatedUsbDevice device, final long deadline) {
+    this.target = null;
+    final ControlSetup setup = new ControlSetup(this.buffer);
+    final int wLength = setup.wLength() & 0xffff;
+    final long due = device.reserve(wLength);
+    if (due > deadline) {
+      schedule(LibUsb.TRANSFER_TIMED_OUT, 0, deadline);
+      return;
+    }
+    final int result = device.controlRequest(setup.bmRequestType(), setup.bRequest(), setup.wValue(), setup.wIndex(),
+                                             BufferUtility.slice(this.buffer, LibUsb.CONTROL_SETUP_SIZE, wLength));
+    schedule(result >= 0 ? LibUsb.TRANSFER_COMPLETED : toStatus(result), Math.max(0, result), due);
+  }
+
+  /**
+   * Transfer the data of a bulk or interrupt transfer.
+   *
+   * @param device   The device.
+   * @param deadline The time (nanoseconds) the transfer times out.
+   */
+  private void submitData(final SimulatedUsbDevice device, final long deadline) {
+    this.target = device.getEndpoint(this.endpoint);
+    if (this.target == null || this.target.isStalled()) {
+      schedule(LibUsb.TRANSFER_STALL, 0, device.reserve(0));
+      return;
+    }
+    if (!this.target.isDeviceToHost()) {
+      final long due = device.reserve(this.length);
+      if (due > deadline) {
+        schedule(LibUsb.TRANSFER_TIMED_OUT, 0, deadline);
+        return;
+      }
+      this.target.write(BufferUtility.slice(this.buffer, 0, this.length), this.length);
+      schedule(LibUsb.TRANSFER_COMPLETED, this.length, due);
+      return;
+    }
+    /**
+     * An IN transfer times out only while waiting for data. Data once taken is
+     * never dropped: the transfer completes, late if the device is saturated.
+     */
+    final int count = this.target.take(this, BufferUtility.slice(this.buffer, 0, this.length), this.length);
+    if (count < 0) {
+      this.waitingOn = this.target;
+      if (deadline != Long.MAX_VALUE) {
+        this.backend.schedule(this, this.generation, deadline, true);
+      }
+      return;
+    }
+    schedule(LibUsb.TRANSFER_COMPLETED, count, device.reserve(count));
+  }
+
+  /**
+   * Transfer all packets of an isochronous transfer. Isochronous endpoints
+   * always produce and accept full packets.
+   *
+   * @param device   The device.
+   * @param deadline The time (nanoseconds) the transfer times out.
+   */
+  private void submitIsochronous(final SimulatedUsbDevice device, final long deadline) {
+    this.target = device.getEndpoint(this.endpoint);
+    if (this.target == null) {
+      schedule(LibUsb.TRANSFER_STALL, 0, device.reserve(0));
+      return;
+    }
+    int total = 0;
+    for (int i = 0; i < this.isoPacketLengths.length; i++) {
+      this.isoPacketActualLengths[i] = this.isoPacketLengths[i];
+      this.isoPacketStatus[i] = LibUsb.TRANSFER_COMPLETED;
+      total += this.isoPacketLengths[i];
+    }
+    final long due = device.reserve(total);
+    schedule(due > deadline ? LibUsb.TRANSFER_TIMED_OUT : LibUsb.TRANSFER_COMPLETED, due > deadline ? 0 : total, Math.min(due, deadline));
+  }
+
+  /**
+   * Deliver data to a transfer waiting on an IN endpoint. Nothing is taken if
+   * the transfer is no longer waiting.
+   *
+   * @param data The data. Advanced by the number of bytes taken.
+   */
+  void deliver(final ByteBuffer data) {
+    synchronized (this) {
+      if (this.state != WAITING || this.waitingOn == null) {
+        return;
+      }
+      this.waitingOn = null;
+      final int count = Math.min(this.length, data.remaining());
+      final int limit = data.limit();
+      data.limit(data.position() + count);
+      BufferUtility.slice(this.buffer, 0, count).put(data);
+      data.limit(limit);
+      schedule(LibUsb.TRANSFER_COMPLETED, count, this.handle.getDevice().reserve(count));
+    }
+  }
+
+  /**
+   * Schedule the completion of the transfer. Must be called while holding the
+   * lock on this transfer.
+   *
+   * @param result The transfer status.
+   * @param count  The actual length.
+   * @param due    The time (nanoseconds) the transfer completes.
+   */
+  private void schedule(final int result, final int count, final long due) {
+    this.state = SCHEDULED;
+    this.resultStatus = result;
+    this.resultLength = count;
+    this.backend.schedule(this, this.generation, due, false);
+  }
+
+  /**
+   * Terminate the transfer with the indicated status.
+   *
+   * @param result The transfer status. e.g. TRANSFER_CANCELLED
+   * @return Zero on success or ERROR_NOT_FOUND if the transfer is not in
+   *         progress.
+   */
+  int terminate(final int result) {
+    synchronized (this) {
+      if (this.state == IDLE || this.cancelled) {
+        return LibUsb.ERROR_NOT_FOUND;
+      }
+      if (this.waitingOn != null) {
+        this.waitingOn.cancel(this);
+        this.waitingOn = null;
+      }
+      this.cancelled = true;
+      this.generation++;
+      schedule(result, 0, System.nanoTime());
+    }
+    return LibUsb.SUCCESS;
+  }
+
+  /**
+   * Handle a scheduled event. Called on the event thread.
+   *
+   * @param eventGeneration The submission the event belongs to.
+   * @param timedOut        TRUE for the timeout of a transfer waiting for
+   *                        data; FALSE for a completion.
+   */
+  void fire(final int eventGeneration, final boolean timedOut) {
+    synchronized (this) {
+      if (eventGeneration != this.generation || this.state != (timedOut ? WAITING : SCHEDULED)) {
+        return;
+      }
+      if (timedOut) {
+        this.waitingOn.cancel(this);
+        this.waitingOn = null;
+        this.status = LibUsb.TRANSFER_TIMED_OUT;
+        this.actualLength = 0;
+      } else {
+        this.status = this.resultStatus;
+        this.actualLength = this.resultLength;
+      }
+      this.state = IDLE;
+    }
+    this.handle.getDevice().removeTransfer(this);
+    if (this.target != null && this.status == LibUsb.TRANSFER_COMPLETED) {
+      this.target.record(this.actualLength);
+    }
+    final IUsbTransferCallback transferCallback = this.callback;
+    if (transferCallback != null) {
+      transferCallback.processTransfer(this);
+    }
+  }
+
+  /**
+   * Translate a libusb error code into the equivalent transfer status.
+   *
+   * @param errorCode The libusb error code.
+   * @return The transfer status.
+   */
+  private static int toStatus(final int errorCode) {
+    switch (errorCode) {
+      case LibUsb.ERROR_PIPE:
+        return LibUsb.TRANSFER_STALL;
+      case LibUsb.ERROR_NO_DEVICE:
+        return LibUsb.TRANSFER_NO_DEVICE;
+      case LibUsb.ERROR_TIMEOUT:
+        return LibUsb.TRANSFER_TIMED_OUT;
+      case LibUsb.ERROR_OVERFLOW:
+        return LibUsb.TRANSFER_OVERFLOW;
+      default:
+        return LibUsb.TRANSFER_ERROR;
+    }
+  }
+
+  @Override
+  public byte endpoint() {
+    return this.endpoint;
+  }
+
+  @Override
+  public int status() {
+    return this.status;
+  }
+
+  @Override
+  public int length() {
+    return this.length;
+  }
+
+  @Override
+  public void setLength(final int length) {
+    if (length != 0 && (this.buffer == null || this.buffer.capacity() < length)) {
+      throw new IllegalArgumentException("buffer too small for requested length");
+    }
+    this.length = length;
+  }
+
+  @Override
+  public int actualLength() {
+    return this.actualLength;
+  }
+
+  @Override
+  public ByteBuffer buffer() {
+    return this.buffer;
+  }
+
+  @Override
+  public void setBuffer(final ByteBuffer buffer) {
+    this.buffer = buffer;
+    this.length = buffer == null ? 0 : buffer.capacity();
+  }
+
+  @Override
+  public long timeout() {
+    return this.timeout;
+  }
+
+  @Override
+  public void setTimeout(final long timeout) {
+    this.timeout = timeout;
+  }
+
+  @Override
+  public IUsbTransferCallback callback() {
+    return this.callback;
+  }
+
+  @Override
+  public void setCallback(final IUsbTransferCallback callback) {
+    this.callback = callback;
+  }
+
+  @Override
+  public Object userData() {
+    return this.userData;
+  }
+
+  @Override
+  public void setUserData(final Object userData) {
+    this.userData = userData;
+  }
+
+  @Override
+  public int numIsoPackets() {
+    return this.isoPacketLengths.length;
+  }
+
+  @Override
+  public int isoPacketLength(final int packet) {
+    return this.isoPacketLengths[packet];
+  }
+
+  @Override
+  public void setIsoPacketLength(final int packet, final int length) {
+    this.isoPacketLengths[packet] = length;
+  }
+
+  @Override
+  public int isoPacketActualLength(final int packet) {
+    return this.isoPacketActualLengths[packet];
+  }
+
+  @Override
+  public int isoPacketStatus(final int packet) {
+    return this.isoPacketStatus[packet];
+  }
+
+  @Override
+  public int cancel() {
+    return terminate(LibUsb.TRANSFER_CANCELLED);
+  }
+
+  @Override
+  public void free() {
+    this.handle = null;
+    this.buffer = null;
+    this.callback = null;
+    this.userData = null;
+  }
+}
@@ -0,0 +1,431 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.spi;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import javax.usb3.IUsbEndpointDescriptor;
+import javax.usb3.IUsbInterfaceDescriptor;
+import javax.usb3.descriptor.UsbConfigurationDescriptor;
+import javax.usb3.descriptor.UsbDeviceDescriptor;
+import javax.usb3.descriptor.UsbEndpointDescriptor;
+import javax.usb3.descriptor.UsbInterfaceDescriptor;
+import javax.usb3.enumerated.EUSBClassCode;
+import javax.usb3.request.BEndpointAddress;
+import javax.usb3.request.BMConfigurationAttributes;
+import org.usb4java.LibUsb;
+
+/**
+ * An in-memory USB host.
+ * <p>
+ * The simulated backend needs no native library and no hardware. Devices and
+ * hubs are {@link #addDevice(SimulatedUsbDevice) attached} and
+ * {@link #removeDevice(SimulatedUsbDevice) removed} at runtime; the device
+ * manager discovers them on its next scan like real devices. Transfers move
+ * their data immediately and report their completion on the event thread
+ * once the device has spent the time the transfer needs given its latency and
+ * bandwidth.
+ * <p>
+ * Like a real host each bus holds at most 127 devices. Add further root hubs
+ * with {@link #addHub(SimulatedUsbDevice) addHub(null)} to simulate larger
+ * topologies: every root hub opens a new bus.
+ *
+ * @author Jesse Caulfield
+ */
+public final class SimulatedUsbBackend implements IUsbBackend {
+
+  /**
+   * The default latency in microseconds: one high speed micro-frame.
+   */
+  public static final long DEFAULT_LATENCY = 125;
+  /**
+   * The default bandwidth in bytes per second: the practical bulk throughput
+   * of a high speed link.
+   */
+  public static final long DEFAULT_BANDWIDTH = 40_000_000;
+  /**
+   * The highest device address on a bus.
+   */
+  private static final int MAX_ADDRESS = 127;
+
+  /**
+   * The scheduled transfer completions and timeouts.
+   */
+  private final DelayQueue<Event> events = new DelayQueue<>();
+  /**
+   * The attached devices.
+   */
+  private final List<SimulatedUsbDevice> devices = new CopyOnWriteArrayList<>();
+  /**
+   * The registered hotplug listeners.
+   */
+  private final List<IUsbHotplugListener> hotplugListeners = new CopyOnWriteArrayList<>();
+  /**
+   * The default latency of the devices in microseconds.
+   */
+  private volatile long latency = DEFAULT_LATENCY;
+  /**
+   * The default bandwidth of the devices in bytes per second. Zero for
+   * unlimited.
+   */
+  private volatile long bandwidth = DEFAULT_BANDWIDTH;
+  /**
+   * The number of the last bus opened. Guarded by this.
+   */
+  private int lastBusNumber;
+
+  @Override
+  public void init() {
+    /**
+     * Nothing to initialize.
+     */
+  }
+
+  @Override
+  public void exit() {
+    for (SimulatedUsbDevice device : this.devices) {
+      device.detach();
+    }
+    this.devices.clear();
+    this.events.clear();
+    this.hotplugListeners.clear();
+  }
+
+  @Override
+  public List<IUsbBackendDevice> getDeviceList() {
+    return new ArrayList<IUsbBackendDevice>(this.devices);
+  }
+
+  @Override
+  public void freeDeviceList(final List<IUsbBackendDevice> deviceList) {
+    /**
+     * Simulated devices are not reference counted.
+     */
+  }
+
+  @Override
+  public IUsbTransfer allocTransfer(final int isoPackets) {
+    return new SimulatedTransfer(this, isoPackets);
+  }
+
+  @Override
+  public int submitTransfer(final IUsbTransfer transfer) {
+    return ((SimulatedTransfer) transfer).submit();
+  }
+
+  @Override
+  public int handleEvents(final long timeout) {
+    try {
+      Event event = this.events.poll(timeout, TimeUnit.MICROSECONDS);
+      while (event != null) {
+        if (event.transfer != null) {
+          event.transfer.fire(event.generation, event.timeout);
+        }
+        event = this.events.poll();
+      }
+      return LibUsb.SUCCESS;
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      return LibUsb.ERROR_INTERRUPTED;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The simulated backend schedules an event without transfer, which is due
+   * immediately.
+   */
+  @Override
+  public boolean interruptEvents() {
+    this.events.add(new Event(null, 0, System.nanoTime(), false));
+    return true;
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The simulated backend always supports hotplug notification. Listeners are
+   * invoked on the thread attaching or removing the device.
+   */
+  @Override
+  public boolean registerHotplugListener(final IUsbHotplugListener listener) {
+    this.hotplugListeners.add(listener);
+    return true;
+  }
+
+  @Override
+  public void deregisterHotplugListener(final IUsbHotplugListener listener) {
+    this.hotplugListeners.remove(listener);
+  }
+
+  /**
+   * Schedule a transfer event.
+   *
+   * @param transfer   The transfer.
+   * @param generation The transfer generation the event belongs to. Events of
+   *                   an earlier generation are ignored when fired.
+   * @param due        The time (nanoseconds) the event is due.
+   * @param timeout    TRUE for a timeout, FALSE for a completion.
+   */
+  void schedule(final SimulatedTransfer transfer, final int generation, final long due, final boolean timeout) {
+    this.events.add(new Event(transfer, generation, due, timeout));
+  }
+
+  /**
+   * @return The default latency of the devices in microseconds.
+   */
+  public long getLatency() {
+    return this.latency;
+  }
+
+  /**
+   * @param latency The default latency of the devices in microseconds.
+   */
+  public void setLatency(final long latency) {
+    this.latency = latency;
+  }
+
+  /**
+   * @return The default bandwidth of the devices in bytes per second. Zero
+   *         for unlimited.
+   */
+  public long getBandwidth() {
+    return this.bandwidth;
+  }
+
+  /**
+   * @param bandwidth The default bandwidth of the devices in bytes per second.
+   *                  Zero for unlimited.
+   */
+  public void setBandwidth(final long bandwidth) {
+    this.bandwidth = bandwidth;
+  }
+
+  /**
+   * @return The attached devices.
+   */
+  public List<SimulatedUsbDevice> getDevices() {
+    return new ArrayList<>(this.devices);
+  }
+
+  /**
+   * Attach a device built by the caller. The bus number, address and port
+   * must be unique; use {@link #addDevice(SimulatedUsbDevice, short, short)}
+   * or {@link #addHub(SimulatedUsbDevice)} to have them assigned.
+   *
+   * @param device The device.
+   * @return The device.
+   */
+  public synchronized SimulatedUsbDevice addDevice(final SimulatedUsbDevice device) {
+    this.lastBusNumber = Math.max(this.lastBusNumber, device.getBusNumber());
+    device.attach(this);
+    this.devices.add(device);
+    for (IUsbHotplugListener listener : this.hotplugListeners) {
+      listener.deviceArrived(device);
+    }
+    return device;
+  }
+
+  /**
+   * Attach a hub with four downstream ports. A hub without a parent is a
+   * root hub on a new bus.
+   *
+   * @param parent The parent hub. Null for a new bus.
+   * @return The new hub.
+   */
+  public synchronized SimulatedUsbDevice addHub(final SimulatedUsbDevice parent) {
+    final SimulatedUsbDevice hub;
+    if (parent == null) {
+      hub = new SimulatedUsbDevice(null, ++this.lastBusNumber, 1, 0, 3, deviceDescriptor(EUSBClassCode.HUB, (short) 0x1d6b, (short) 0x0002));
+    } else {
+      hub = new SimulatedUsbDevice(parent, parent.getBusNumber(), nextAddress(parent.getBusNumber()), nextPort(parent), parent.getSpeed(),
+                                   deviceDescriptor(EUSBClassCode.HUB, (short) 0x05e3, (short) 0x0608));
+    }
+    final IUsbEndpointDescriptor status = new UsbEndpointDescriptor(BEndpointAddress.getInstance((byte) 0x81), (byte) 0x03, (short) 1, (byte) 12);
+    hub.addConfiguration(configurationDescriptor(),
+                         new UsbInterfaceDescriptor((byte) 0, (byte) 0, (byte) 1, EUSBClassCode.HUB, (byte) 0, (byte) 0, (byte) 0,
+                                                    new IUsbEndpointDescriptor[]{status}));
+    hub.getEndpoint((byte) 0x81).setSource(false);
+    return addDevice(hub);
+  }
+
+  /**
+   * Attach a vendor specific device. The device has one interface with a
+   * bulk IN endpoint 0x81, a bulk OUT endpoint 0x02 looped back to 0x81 and
+   * an interrupt IN endpoint 0x83, and reports a manufacturer, product and
+   * serial number string.
+   *
+   * @param parent    The parent hub.
+   * @param idVendor  The vendor ID.
+   * @param idProduct The product ID.
+   * @return The new device.
+   */
+  public synchronized SimulatedUsbDevice addDevice(final SimulatedUsbDevice parent, final short idVendor, final short idProduct) {
+    if (parent == null || !parent.isHub()) {
+      throw new IllegalArgumentException("A device must be attached to a hub.");
+    }
+    final int address = nextAddress(parent.getBusNumber());
+    final SimulatedUsbDevice device = new SimulatedUsbDevice(parent, parent.getBusNumber(), address, nextPort(parent), parent.getSpeed(),
+                                                             deviceDescriptor(EUSBClassCode.VENDOR_SPECIFIC, idVendor, idProduct));
+    final IUsbEndpointDescriptor[] endpoints = new IUsbEndpointDescriptor[]{
+      new UsbEndpointDescriptor(BEndpointAddress.getInstance((byte) 0x81), (byte) 0x02, (short) 512, (byte) 0),
+      new UsbEndpointDescriptor(BEndpointAddress.getInstance((byte) 0x02), (byte) 0x02, (short) 512, (byte) 0),
+      new UsbEndpointDescriptor(BEndpointAddress.getInstance((byte) 0x83), (byte) 0x03, (short) 64, (byte) 4)};
+    device.addConfiguration(configurationDescriptor(),
+                            new UsbInterfaceDescriptor((byte) 0, (byte) 0, (byte) endpoints.length, EUSBClassCode.VENDOR_SPECIFIC,
+                                                       (byte) 0, (byte) 0, (byte) 0, endpoints));
+    device.getEndpoint((byte) 0x02).setLoopback(device.getEndpoint((byte) 0x81));
+    device.setString(1, "javax.usb3");
+    device.setString(2, "Simulated Device");
+    device.setString(3, String.format("SIM%03d%03d", parent.getBusNumber(), address));
+    return addDevice(device);
+  }
+
+  /**
+   * Remove a device and everything attached to it. Transfers in progress fail
+   * with TRANSFER_NO_DEVICE.
+   *
+   * @param device The device.
+   */
+  public synchronized void removeDevice(final SimulatedUsbDevice device) {
+    for (SimulatedUsbDevice child : this.devices) {
+      if (child.getParent() == device) {
+        removeDevice(child);
+      }
+    }
+    if (this.devices.remove(device)) {
+      device.detach();
+      for (IUsbHotplugListener listener : this.hotplugListeners) {
+        listener.deviceLeft(device);
+      }
+    }
+  }
+
+  /**
+   * Get the next free address on a bus.
+   *
+   * @param busNumber The bus number.
+   * @return The lowest address not in use.
+   */
+  private int nextAddress(final int busNumber) {
+    int address = 1;
+    for (SimulatedUsbDevice device : this.devices) {
+      if (device.getBusNumber() == busNumber) {
+        address = Math.max(address, device.getDeviceAddress() + 1);
+      }
+    }
+    if (address > MAX_ADDRESS) {
+      throw new IllegalStateException("Bus " + busNumber + " is full. Add a root hub to open a new bus.");
+    }
+    return address;
+  }
+
+  /**
+   * Get the next free port on a hub.
+   *
+   * @param hub The hub.
+   * @return The lowest port number not in use.
+   */
+  private int nextPort(final SimulatedUsbDevice hub) {
+    int port = 1;
+    for (SimulatedUsbDevice device : this.devices) {
+      if (device.getParent() == hub) {
+        port = Math.max(port, device.getPortNumber() + 1);
+      }
+    }
+    return port;
+  }
+
+  /**
+   * Build a device descriptor with one configuration and strings 1 to 3.
+   *
+   * @param deviceClass The device class.
+   * @param idVendor    The vendor ID.
+   * @param idProduct   The product ID.
+   * @return The device descriptor.
+   */
+  private static UsbDeviceDescriptor deviceDescriptor(final EUSBClassCode deviceClass, final short idVendor, final short idProduct) {
+    return new UsbDeviceDescriptor((short) 0x0200, deviceClass, (byte) 0, (byte) 0, (byte) 64,
+                                   idVendor, idProduct, (short) 0x0100,
+                                   (byte) 1, (byte) 2, (byte) 3, (byte) 1);
+  }
+
+  /**
+   * Build the descriptor of a self powered configuration 1.
+   *
+   * @return The configuration descriptor. The total length is computed when
+   *         the descriptor is read from the device.
+   */
+  private static UsbConfigurationDescriptor configurationDescriptor() {
+    return new UsbConfigurationDescriptor((short) 0, (byte) 1, (byte) 1, (byte) 0,
+                                          BMConfigurationAttributes.getInstance((byte) 0xc0), (byte) 0);
+  }
+
+  /**
+   * A scheduled transfer completion or timeout.
+   */
+  private static final class Event implements Delayed {
+
+    /**
+     * The transfer. Null for an event that only wakes the event handling
+     * thread.
+     */
+    private final SimulatedTransfer transfer;
+    /**
+     * The transfer generation.
+     */
+    private final int generation;
+    /**
+     * The time (nanoseconds) the event is due.
+     */
+    private final long due;
+    /**
+     * TRUE for a timeout, FALSE for a completion.
+     */
+    private final boolean timeout;
+
+    /**
+     * Construct a new event.
+     *
+     * @param transfer   The transfer.
+     * @param generation The transfer generation.
+     * @param due        The time (nanoseconds) the event is due.
+     * @param timeout    TRUE for a timeout, FALSE for a completion.
+     */
+    Event(final SimulatedTransfer transfer, final int generation, final long due, final boolean timeout) {
+      this.transfer = transfer;
+      this.generation = generation;
+      this.due = due;
+      this.timeout = timeout;
+    }
+
+    @Override
+    public long getDelay(final TimeUnit unit) {
+      return unit.convert(this.due - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public int compareTo(final Delayed other) {
+      return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+    }
+  }
+}
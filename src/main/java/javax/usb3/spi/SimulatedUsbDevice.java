@@ -0,0 +1,683 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.spi;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.usb3.IUsbConfigurationDescriptor;
+import javax.usb3.IUsbDeviceDescriptor;
+import javax.usb3.IUsbEndpointDescriptor;
+import javax.usb3.IUsbInterfaceDescriptor;
+import javax.usb3.descriptor.UsbConfigurationDescriptorView;
+import javax.usb3.enumerated.EDescriptorType;
+import javax.usb3.enumerated.EDeviceRequest;
+import javax.usb3.enumerated.EUSBClassCode;
+import javax.usb3.exception.UsbPlatformException;
+import javax.usb3.utility.UsbExceptionFactory;
+import org.usb4java.LibUsb;
+
+/**
+ * A device of the {@link SimulatedUsbBackend simulated USB host}.
+ * <p>
+ * A simulated device is built from its descriptors: the device descriptor,
+ * the {@link #addConfiguration configurations} and the
+ * {@link #setString(int, String) strings}. An {@link SimulatedUsbEndpoint
+ * endpoint} is created for every endpoint descriptor. The device answers the
+ * standard requests on its Default Control Pipe (descriptors, status,
+ * configuration, interface and endpoint halt); class and vendor requests are
+ * passed to its {@link ISimulatedControlHandler control handler}.
+ * <p>
+ * Every transfer occupies the device for its data length divided by the
+ * device bandwidth, so concurrent transfers are serialized as on a real link,
+ * and then completes after the device latency.
+ *
+ * @author Jesse Caulfield
+ */
+public final class SimulatedUsbDevice implements IUsbBackendDevice {
+
+  /**
+   * The language ID reported by all simulated devices: English (United
+   * States).
+   */
+  private static final short LANGUAGE_ID = 0x0409;
+
+  /**
+   * The parent hub. Null if connected to a root port.
+   */
+  private final SimulatedUsbDevice parent;
+  /**
+   * The bus number.
+   */
+  private final int busNumber;
+  /**
+   * The device address.
+   */
+  private final int deviceAddress;
+  /**
+   * The parent port number.
+   */
+  private final int portNumber;
+  /**
+   * The libusb speed code.
+   */
+  private final int speed;
+  /**
+   * The device descriptor.
+   */
+  private final IUsbDeviceDescriptor deviceDescriptor;
+  /**
+   * The configurations.
+   */
+  private final List<UsbBackendConfiguration> configurations = new CopyOnWriteArrayList<>();
+  /**
+   * The string descriptors, by index.
+   */
+  private final Map<Integer, String> strings = new ConcurrentHashMap<>();
+  /**
+   * The endpoints, by address.
+   */
+  private final Map<Byte, SimulatedUsbEndpoint> endpoints = new ConcurrentHashMap<>();
+  /**
+   * The active alternate setting of each interface. Guarded by this.
+   */
+  private final Map<Integer, Integer> alternateSettings = new HashMap<>();
+  /**
+   * The handle that claimed each interface. Guarded by this.
+   */
+  private final Map<Integer, SimulatedDeviceHandle> claims = new HashMap<>();
+  /**
+   * The transfers in progress.
+   */
+  private final Set<SimulatedTransfer> transfers = Collections.newSetFromMap(new ConcurrentHashMap<SimulatedTransfer, Boolean>());
+  /**
+   * The number of open device handles.
+   */
+  private final AtomicInteger openHandles = new AtomicInteger();
+  /**
+   * The value of the active configuration. Zero if not configured.
+   */
+  private volatile byte activeConfiguration;
+  /**
+   * The latency in microseconds. Negative for the backend default.
+   */
+  private volatile long latency = -1;
+  /**
+   * The bandwidth in bytes per second. Negative for the backend default, zero
+   * for unlimited.
+   */
+  private volatile long bandwidth = -1;
+  /**
+   * The handler of class and vendor requests. May be null.
+   */
+  private volatile ISimulatedControlHandler controlHandler;
+  /**
+   * The backend the device is attached to. Null if not attached.
+   */
+  private volatile SimulatedUsbBackend backend;
+  /**
+   * The time (nanoseconds) until which the device is busy transferring data.
+   * Guarded by this.
+   */
+  private long busyUntil;
+
+  /**
+   * Construct a new simulated device. The device is not configured until a
+   * configuration is added.
+   *
+   * @param parent           The parent hub. Null if connected to a root port.
+   * @param busNumber        The bus number.
+   * @param deviceAddress    The device address on the bus.
+   * @param portNumber       The parent port number.
+   * @param speed            The libusb speed code: 1 (low), 2 (full), 3
+   *                         (high) or 4 (super speed).
+   * @param deviceDescriptor The device descriptor.
+   */
+  public SimulatedUsbDevice(final SimulatedUsbDevice parent,
+                            final int busNumber,
+                            final int deviceAddress,
+                            final int portNumber,
+                            final int speed,
+                            final IUsbDeviceDescriptor deviceDescriptor) {
+    if (deviceDescriptor == null) {
+      throw new IllegalArgumentException("Device descriptor is required.");
+    }
+    this.parent = parent;
+    this.busNumber = busNumber;
+    this.deviceAddress = deviceAddress;
+    this.portNumber = portNumber;
+    this.speed = speed;
+    this.deviceDescriptor = deviceDescriptor;
+  }
+
+  /**
+   * Add a configuration. The first configuration added becomes the active
+   * configuration. An endpoint is created for every endpoint descriptor not
+   * yet known.
+   *
+   * @param configurationDescriptor The configuration descriptor.
+   * @param interfaceDescriptors    The descriptors of all interface alternate
+   *                                settings.
+   */
+  public void addConfiguration(final IUsbConfigurationDescriptor configurationDescriptor,
+                               final IUsbInterfaceDescriptor... interfaceDescriptors) {
+    addConfiguration(new UsbBackendConfiguration(configurationDescriptor, Arrays.asList(interfaceDescriptors)));
+  }
+
+  /**
+   * Add a configuration from a complete configuration descriptor, e.g. one
+   * captured from a real device. The descriptor is served to GET_DESCRIPTOR
+   * requests as is, including any class-specific descriptors.
+   *
+   * @param configurationDescriptor The configuration descriptor, wTotalLength
+   *                                bytes.
+   * @throws IllegalArgumentException if the data does not hold a complete
+   *                                  configuration descriptor
+   */
+  public void addConfiguration(final byte[] configurationDescriptor) {
+    addConfiguration(UsbBackendConfiguration.parse(ByteBuffer.wrap(configurationDescriptor.clone())));
+  }
+
+  /**
+   * Add a configuration and create its endpoints.
+   *
+   * @param configuration The configuration.
+   */
+  private void addConfiguration(final UsbBackendConfiguration configuration) {
+    this.configurations.add(configuration);
+    for (IUsbInterfaceDescriptor interfaceDescriptor : configuration.getInterfaceDescriptors()) {
+      for (IUsbEndpointDescriptor endpointDescriptor : interfaceDescriptor.endpoint()) {
+        if (!this.endpoints.containsKey(endpointDescriptor.bEndpointAddress())) {
+          this.endpoints.put(endpointDescriptor.bEndpointAddress(), new SimulatedUsbEndpoint(endpointDescriptor));
+        }
+      }
+    }
+    if (this.activeConfiguration == 0) {
+      this.activeConfiguration = configuration.getConfigurationDescriptor().bConfigurationValue();
+    }
+  }
+
+  /**
+   * Set a string descriptor.
+   *
+   * @param index  The string index (1 to 255).
+   * @param string The string. Null to remove the string.
+   */
+  public void setString(final int index, final String string) {
+    if (string == null) {
+      this.strings.remove(index);
+    } else {
+      this.strings.put(index, string);
+    }
+  }
+
+  /**
+   * Get an endpoint.
+   *
+   * @param address The endpoint address, e.g. 0x81 for endpoint 1 IN.
+   * @return The endpoint, or null if the device has no such endpoint.
+   */
+  public SimulatedUsbEndpoint getEndpoint(final byte address) {
+    return this.endpoints.get(address);
+  }
+
+  /**
+   * @return All endpoints of the device.
+   */
+  public Collection<SimulatedUsbEndpoint> getEndpoints() {
+    return Collections.unmodifiableCollection(this.endpoints.values());
+  }
+
+  /**
+   * @param latency The time in microseconds from the end of a data transfer to
+   *                its completion being reported. Negative for the backend
+   *                default.
+   */
+  public void setLatency(final long latency) {
+    this.latency = latency;
+  }
+
+  /**
+   * @param bandwidth The data rate in bytes per second. Negative for the
+   *                  backend default, zero for unlimited.
+   */
+  public void setBandwidth(final long bandwidth) {
+    this.bandwidth = bandwidth;
+  }
+
+  /**
+   * @param controlHandler The handler of class and vendor specific control
+   *                       requests. Null (the default) to stall them.
+   */
+  public void setControlHandler(final ISimulatedControlHandler controlHandler) {
+    this.controlHandler = controlHandler;
+  }
+
+  /**
+   * @return TRUE if the device is attached to a backend.
+   */
+  public boolean isConnected() {
+    return this.backend != null;
+  }
+
+  /**
+   * @return The number of transfers in progress on the device.
+   */
+  public int getTransfersInProgress() {
+    return this.transfers.size();
+  }
+
+  /**
+   * @return The number of device handles which are open.
+   */
+  public int getOpenHandles() {
+    return this.openHandles.get();
+  }
+
+  /**
+   * Called when a device handle is closed.
+   */
+  void handleClosed() {
+    this.openHandles.decrementAndGet();
+  }
+
+  /**
+   * Attach the device to a backend.
+   *
+   * @param attachTo The backend.
+   */
+  void attach(final SimulatedUsbBackend attachTo) {
+    this.backend = attachTo;
+  }
+
+  /**
+   * Detach the device from its backend. All transfers in progress fail with
+   * TRANSFER_NO_DEVICE.
+   */
+  void detach() {
+    this.backend = null;
+    for (SimulatedTransfer transfer : this.transfers) {
+      transfer.terminate(LibUsb.TRANSFER_NO_DEVICE);
+    }
+  }
+
+  /**
+   * Register a transfer in progress.
+   *
+   * @param transfer The transfer.
+   */
+  void addTransfer(final SimulatedTransfer transfer) {
+    this.transfers.add(transfer);
+  }
+
+  /**
+   * Remove a finished transfer.
+   *
+   * @param transfer The transfer.
+   */
+  void removeTransfer(final SimulatedTransfer transfer) {
+    this.transfers.remove(transfer);
+  }
+
+  /**
+   * Reserve the device for a data transfer. The transfer starts when the
+   * device has finished all earlier transfers and takes the data length
+   * divided by the bandwidth.
+   *
+   * @param bytes The number of bytes transferred.
+   * @return The time (nanoseconds) the transfer completes, including the
+   *         latency.
+   */
+  long reserve(final int bytes) {
+    final SimulatedUsbBackend attachedTo = this.backend;
+    final long rate = this.bandwidth < 0 && attachedTo != null ? attachedTo.getBandwidth() : Math.max(0, this.bandwidth);
+    final long delay = this.latency < 0 && attachedTo != null ? attachedTo.getLatency() : Math.max(0, this.latency);
+    final long now = System.nanoTime();
+    final long end;
+    synchronized (this) {
+      final long start = Math.max(now, this.busyUntil);
+      end = rate > 0 ? start + bytes * TimeUnit.SECONDS.toNanos(1) / rate : start;
+      this.busyUntil = end;
+    }
+    return end + TimeUnit.MICROSECONDS.toNanos(delay);
+  }
+
+  /**
+   * Claim an interface for a handle.
+   *
+   * @param number The interface number.
+   * @param handle The handle.
+   * @return Zero on success or a libusb error code.
+   */
+  synchronized int claim(final int number, final SimulatedDeviceHandle handle) {
+    if (findInterface(this.activeConfiguration, number, -1) == null) {
+      return LibUsb.ERROR_NOT_FOUND;
+    }
+    final SimulatedDeviceHandle owner = this.claims.get(number);
+    if (owner != null && owner != handle) {
+      return LibUsb.ERROR_BUSY;
+    }
+    this.claims.put(number, handle);
+    return LibUsb.SUCCESS;
+  }
+
+  /**
+   * Release an interface claimed by a handle.
+   *
+   * @param number The interface number.
+   * @param handle The handle.
+   */
+  synchronized void release(final int number, final SimulatedDeviceHandle handle) {
+    if (this.claims.get(number) == handle) {
+      this.claims.remove(number);
+    }
+  }
+
+  /**
+   * Activate a configuration.
+   *
+   * @param value The configuration value. Zero to unconfigure the device.
+   * @return Zero on success or a libusb error code.
+   */
+  synchronized int setConfiguration(final int value) {
+    if (value != 0 && findConfiguration(value) == null) {
+      return LibUsb.ERROR_NOT_FOUND;
+    }
+    if (!this.claims.isEmpty()) {
+      return LibUsb.ERROR_BUSY;
+    }
+    this.activeConfiguration = (byte) value;
+    this.alternateSettings.clear();
+    return LibUsb.SUCCESS;
+  }
+
+  /**
+   * Activate an alternate setting of an interface.
+   *
+   * @param number           The interface number.
+   * @param alternateSetting The alternate setting.
+   * @return Zero on success or a libusb error code.
+   */
+  synchronized int setInterfaceAltSetting(final int number, final int alternateSetting) {
+    if (findInterface(this.activeConfiguration, number, alternateSetting) == null) {
+      return LibUsb.ERROR_NOT_FOUND;
+    }
+    this.alternateSettings.put(number, alternateSetting);
+    return LibUsb.SUCCESS;
+  }
+
+  /**
+   * Answer a request on the Default Control Pipe.
+   *
+   * @param bmRequestType The request type.
+   * @param bRequest      The request.
+   * @param wValue        The request value.
+   * @param wIndex        The request index.
+   * @param data          The data stage, positioned at zero.
+   * @return The number of bytes transferred or a libusb error code.
+   */
+  int controlRequest(final byte bmRequestType, final byte bRequest, final short wValue, final short wIndex, final ByteBuffer data) {
+    if ((bmRequestType & 0x60) != 0) {
+      final ISimulatedControlHandler handler = this.controlHandler;
+      return handler == null ? LibUsb.ERROR_PIPE : handler.controlTransfer(this, bmRequestType, bRequest, wValue, wIndex, data);
+    }
+    final EDeviceRequest request = EDeviceRequest.fromByteCode(bRequest);
+    if (request == null) {
+      return LibUsb.ERROR_PIPE;
+    }
+    final boolean endpointRecipient = (bmRequestType & 0x1f) == 0x02;
+    switch (request) {
+      case GET_STATUS:
+        if (endpointRecipient) {
+          final SimulatedUsbEndpoint endpoint = this.endpoints.get((byte) wIndex);
+          return endpoint == null ? LibUsb.ERROR_PIPE : respond(data, new byte[]{(byte) (endpoint.isStalled() ? 1 : 0), 0});
+        }
+        return respond(data, new byte[]{0, 0});
+      case CLEAR_FEATURE:
+      case SET_FEATURE:
+        if (endpointRecipient && wValue == 0) {
+          final SimulatedUsbEndpoint endpoint = this.endpoints.get((byte) wIndex);
+          if (endpoint == null) {
+            return LibUsb.ERROR_PIPE;
+          }
+          endpoint.setStalled(EDeviceRequest.SET_FEATURE.equals(request));
+        }
+        return 0;
+      case GET_DESCRIPTOR:
+        final byte[] descriptor = getDescriptor((wValue >> 8) & 0xff, wValue & 0xff);
+        return descriptor == null ? LibUsb.ERROR_PIPE : respond(data, descriptor);
+      case GET_CONFIGURATION:
+        return respond(data, new byte[]{this.activeConfiguration});
+      case SET_CONFIGURATION:
+        return setConfiguration(wValue & 0xff);
+      case GET_INTERFACE:
+        synchronized (this) {
+          final Integer setting = this.alternateSettings.get(wIndex & 0xff);
+          return respond(data, new byte[]{(byte) (setting == null ? 0 : setting)});
+        }
+      case SET_INTERFACE:
+        return setInterfaceAltSetting(wIndex & 0xff, wValue & 0xff);
+      default:
+        return LibUsb.ERROR_PIPE;
+    }
+  }
+
+  /**
+   * Copy a response into the data stage.
+   *
+   * @param data     The data stage buffer.
+   * @param response The response.
+   * @return The number of bytes copied.
+   */
+  private static int respond(final ByteBuffer data, final byte[] response) {
+    final int count = Math.min(data.remaining(), response.length);
+    data.put(response, 0, count);
+    return count;
+  }
+
+  /**
+   * Serialize a descriptor as returned by a GET_DESCRIPTOR request.
+   *
+   * @param type  The descriptor type.
+   * @param index The descriptor index.
+   * @return The descriptor, or null if the device has no such descriptor.
+   */
+  private byte[] getDescriptor(final int type, final int index) {
+    if (type == EDescriptorType.DEVICE.getByteCode()) {
+      final IUsbDeviceDescriptor d = this.deviceDescriptor;
+      return new byte[]{18, EDescriptorType.DEVICE.getByteCode(),
+                        (byte) d.bcdUSB(), (byte) (d.bcdUSB() >> 8),
+                        d.bDeviceClass(), d.bDeviceSubClass(), d.bDeviceProtocol(), d.bMaxPacketSize0(),
+                        (byte) d.idVendor(), (byte) (d.idVendor() >> 8),
+                        (byte) d.idProduct(), (byte) (d.idProduct() >> 8),
+                        (byte) d.bcdDevice(), (byte) (d.bcdDevice() >> 8),
+                        d.iManufacturer(), d.iProduct(), d.iSerialNumber(), (byte) this.configurations.size()};
+    }
+    if (type == EDescriptorType.CONFIGURATION.getByteCode()) {
+      return index < this.configurations.size() ? getConfigurationDescriptor(this.configurations.get(index)) : null;
+    }
+    if (type == EDescriptorType.STRING.getByteCode()) {
+      if (index == 0) {
+        return new byte[]{4, EDescriptorType.STRING.getByteCode(), (byte) LANGUAGE_ID, (byte) (LANGUAGE_ID >> 8)};
+      }
+      final String string = this.strings.get(index);
+      if (string == null) {
+        return null;
+      }
+      final byte[] encoded = string.getBytes(StandardCharsets.UTF_16LE);
+      final byte[] descriptor = new byte[Math.min(255, 2 + encoded.length)];
+      descriptor[0] = (byte) descriptor.length;
+      descriptor[1] = EDescriptorType.STRING.getByteCode();
+      System.arraycopy(encoded, 0, descriptor, 2, descriptor.length - 2);
+      return descriptor;
+    }
+    return null;
+  }
+
+  /**
+   * Serialize a configuration descriptor together with its interface and
+   * endpoint descriptors.
+   *
+   * @param configuration The configuration.
+   * @return The configuration descriptor set.
+   */
+  private static byte[] getConfigurationDescriptor(final UsbBackendConfiguration configuration) {
+    if (configuration.getConfigurationDescriptor() instanceof UsbConfigurationDescriptorView) {
+      final ByteBuffer data = ((UsbConfigurationDescriptorView) configuration.getConfigurationDescriptor()).getData();
+      final byte[] descriptor = new byte[data.remaining()];
+      data.get(descriptor);
+      return descriptor;
+    }
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final IUsbConfigurationDescriptor c = configuration.getConfigurationDescriptor();
+    out.write(new byte[]{9, EDescriptorType.CONFIGURATION.getByteCode(), 0, 0,
+                         c.bNumInterfaces(), c.bConfigurationValue(), c.iConfiguration(), c.bmAttributes(), c.bMaxPower()}, 0, 9);
+    for (IUsbInterfaceDescriptor i : configuration.getInterfaceDescriptors()) {
+      out.write(new byte[]{9, EDescriptorType.INTERFACE.getByteCode(),
+                           i.bInterfaceNumber(), i.bAlternateSetting(), (byte) i.endpoint().length,
+                           i.bInterfaceClass(), i.bInterfaceSubClass(), i.bInterfaceProtocol(), i.iInterface()}, 0, 9);
+      for (IUsbEndpointDescriptor e : i.endpoint()) {
+        out.write(new byte[]{7, EDescriptorType.ENDPOINT.getByteCode(),
+                             e.bEndpointAddress(), e.bmAttributes(),
+                             (byte) e.wMaxPacketSize(), (byte) (e.wMaxPacketSize() >> 8), e.bInterval()}, 0, 7);
+      }
+    }
+    final byte[] descriptor = out.toByteArray();
+    descriptor[2] = (byte) descriptor.length;
+    descriptor[3] = (byte) (descriptor.length >> 8);
+    return descriptor;
+  }
+
+  /**
+   * Find a configuration.
+   *
+   * @param value The configuration value.
+   * @return The configuration, or null if not found.
+   */
+  private UsbBackendConfiguration findConfiguration(final int value) {
+    for (UsbBackendConfiguration configuration : this.configurations) {
+      if ((configuration.getConfigurationDescriptor().bConfigurationValue() & 0xff) == value) {
+        return configuration;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Find an interface of a configuration.
+   *
+   * @param configuration    The configuration value.
+   * @param number           The interface number.
+   * @param alternateSetting The alternate setting. Negative for any.
+   * @return The interface descriptor, or null if not found.
+   */
+  private IUsbInterfaceDescriptor findInterface(final int configuration, final int number, final int alternateSetting) {
+    final UsbBackendConfiguration found = findConfiguration(configuration & 0xff);
+    if (found != null) {
+      for (IUsbInterfaceDescriptor descriptor : found.getInterfaceDescriptors()) {
+        if ((descriptor.bInterfaceNumber() & 0xff) == number
+            && (alternateSetting < 0 || (descriptor.bAlternateSetting() & 0xff) == alternateSetting)) {
+          return descriptor;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return TRUE if this device is a hub.
+   */
+  public boolean isHub() {
+    return EUSBClassCode.HUB.equals(this.deviceDescriptor.deviceClass());
+  }
+
+  @Override
+  public int getBusNumber() {
+    return this.busNumber;
+  }
+
+  @Override
+  public int getDeviceAddress() {
+    return this.deviceAddress;
+  }
+
+  @Override
+  public int getPortNumber() {
+    return this.portNumber;
+  }
+
+  @Override
+  public int getSpeed() {
+    return this.speed;
+  }
+
+  @Override
+  public IUsbBackendDevice getParent() {
+    return this.parent;
+  }
+
+  @Override
+  public IUsbDeviceDescriptor getDeviceDescriptor() {
+    return this.deviceDescriptor;
+  }
+
+  @Override
+  public List<UsbBackendConfiguration> getConfigurations() {
+    return new ArrayList<>(this.configurations);
+  }
+
+  @Override
+  public byte getActiveConfigurationNumber() {
+    return this.activeConfiguration;
+  }
+
+  @Override
+  public IUsbDeviceHandle open() throws UsbPlatformException {
+    if (!isConnected()) {
+      throw UsbExceptionFactory.createPlatformException("Can't open device " + this, LibUsb.ERROR_NO_DEVICE);
+    }
+    this.openHandles.incrementAndGet();
+    return new SimulatedDeviceHandle(this);
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Simulated devices are not reference counted and remain valid until they
+   * are garbage collected.
+   */
+  @Override
+  public IUsbBackendDevice ref() {
+    return this;
+  }
+
+  @Override
+  public void unref() {
+  }
+
+  @Override
+  public String toString() {
+    return String.format("Simulated device %03d/%03d %04x:%04x",
+                         this.busNumber, this.deviceAddress,
+                         this.deviceDescriptor.idVendor() & 0xffff, this.deviceDescriptor.idProduct() & 0xffff);
+  }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.spi;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.usb3.IUsbEndpointDescriptor;
+import javax.usb3.enumerated.EDataFlowtype;
+
+/**
+ * A bulk, interrupt or isochronous endpoint of a
+ * {@link SimulatedUsbDevice simulated device}.
+ * <p>
+ * An IN endpoint returns the data {@link #offer(byte[]) offered} by the test,
+ * in order. Each IN transfer takes up to its length from the queued data. When
+ * no data is queued a {@link #isSource() source} endpoint completes every IN
+ * transfer with its full length (the buffer content is left unchanged);
+ * otherwise the transfer waits for data until it times out.
+ * <p>
+ * An OUT endpoint accepts all data. If a {@link #setLoopback loopback}
+ * endpoint is set the data written is offered to it, which simulates an echo
+ * device.
+ *
+ * @author Jesse Caulfield
+ */
+public final class SimulatedUsbEndpoint {
+
+  /**
+   * The endpoint descriptor.
+   */
+  private final IUsbEndpointDescriptor descriptor;
+  /**
+   * The data queued for IN transfers. Guarded by this.
+   */
+  private final Queue<ByteBuffer> data = new ArrayDeque<>();
+  /**
+   * The IN transfers waiting for data. Guarded by this.
+   */
+  private final Queue<SimulatedTransfer> waiting = new ArrayDeque<>();
+  /**
+   * Indicator that IN transfers complete in full when no data is queued.
+   */
+  private volatile boolean source = true;
+  /**
+   * Indicator that the endpoint is halted.
+   */
+  private volatile boolean stalled;
+  /**
+   * The IN endpoint OUT data is looped back to. May be null.
+   */
+  private volatile SimulatedUsbEndpoint loopback;
+  /**
+   * The number of transfers completed.
+   */
+  private final AtomicLong transferCount = new AtomicLong();
+  /**
+   * The number of bytes transferred.
+   */
+  private final AtomicLong byteCount = new AtomicLong();
+
+  /**
+   * Construct a new simulated endpoint.
+   *
+   * @param descriptor The endpoint descriptor.
+   */
+  SimulatedUsbEndpoint(final IUsbEndpointDescriptor descriptor) {
+    this.descriptor = descriptor;
+  }
+
+  /**
+   * @return The endpoint descriptor.
+   */
+  public IUsbEndpointDescriptor getDescriptor() {
+    return this.descriptor;
+  }
+
+  /**
+   * @return The endpoint address.
+   */
+  public byte getAddress() {
+    return this.descriptor.bEndpointAddress();
+  }
+
+  /**
+   * @return The endpoint transfer type.
+   */
+  public EDataFlowtype getType() {
+    return EDataFlowtype.fromByte(this.descriptor.bmAttributes());
+  }
+
+  /**
+   * @return TRUE if this is an IN (device to host) endpoint.
+   */
+  public boolean isDeviceToHost() {
+    return (this.descriptor.bEndpointAddress() & 0x80) != 0;
+  }
+
+  /**
+   * Queue data to be read from this IN endpoint. A transfer waiting for data
+   * is completed immediately.
+   *
+   * @param bytes The data.
+   */
+  public void offer(final byte[] bytes) {
+    ByteBuffer buffer = ByteBuffer.wrap(bytes.clone());
+    while (buffer.hasRemaining()) {
+      final SimulatedTransfer transfer;
+      synchronized (this) {
+        transfer = this.waiting.poll();
+        if (transfer == null) {
+          this.data.add(buffer);
+          return;
+        }
+      }
+      /**
+       * The transfer may have been cancelled or timed out meanwhile, in which
+       * case the data goes to the next waiting transfer.
+       */
+      transfer.deliver(buffer);
+    }
+  }
+
+  /**
+   * Take up to the indicated number of bytes of queued data into a transfer
+   * buffer, or register the transfer as waiting for data.
+   *
+   * @param transfer The IN transfer.
+   * @param target   The transfer buffer, positioned at zero.
+   * @param length   The maximum number of bytes.
+   * @return The number of bytes taken, or -1 if the transfer is waiting.
+   */
+  synchronized int take(final SimulatedTransfer transfer, final ByteBuffer target, final int length) {
+    final ByteBuffer head = this.data.peek();
+    if (head == null) {
+      if (this.source) {
+        return length;
+      }
+      this.waiting.add(transfer);
+      return -1;
+    }
+    final int count = Math.min(length, head.remaining());
+    final int limit = head.limit();
+    head.limit(head.position() + count);
+    target.put(head);
+    head.limit(limit);
+    if (!head.hasRemaining()) {
+      this.data.poll();
+    }
+    return count;
+  }
+
+  /**
+   * Remove a transfer from the transfers waiting for data.
+   *
+   * @param transfer The transfer.
+   */
+  synchronized void cancel(final SimulatedTransfer transfer) {
+    this.waiting.remove(transfer);
+  }
+
+  /**
+   * Accept the data of an OUT transfer.
+   *
+   * @param source The transfer data, positioned at zero.
+   * @param length The number of bytes.
+   */
+  void write(final ByteBuffer source, final int length) {
+    final SimulatedUsbEndpoint target = this.loopback;
+    if (target != null && length > 0) {
+      final byte[] bytes = new byte[length];
+      source.get(bytes);
+      target.offer(bytes);
+    }
+  }
+
+  /**
+   * Record a completed transfer.
+   *
+   * @param length The number of bytes transferred.
+   */
+  void record(final int length) {
+    this.transferCount.incrementAndGet();
+    this.byteCount.addAndGet(length);
+  }
+
+  /**
+   * @return The number of bytes queued for IN transfers.
+   */
+  public synchronized int getQueuedBytes() {
+    int count = 0;
+    for (ByteBuffer buffer : this.data) {
+      count += buffer.remaining();
+    }
+    return count;
+  }
+
+  /**
+   * @return TRUE if IN transfers complete in full when no data is queued.
+   */
+  public boolean isSource() {
+    return this.source;
+  }
+
+  /**
+   * @param source TRUE (the default) to complete IN transfers in full when no
+   *               data is queued; FALSE to let them wait for data.
+   */
+  public void setSource(final boolean source) {
+    this.source = source;
+  }
+
+  /**
+   * @return TRUE if the endpoint is halted.
+   */
+  public boolean isStalled() {
+    return this.stalled;
+  }
+
+  /**
+   * Halt the endpoint. Transfers on a halted endpoint fail with a STALL until
+   * the halt is cleared, either here or by a CLEAR_FEATURE(ENDPOINT_HALT)
+   * request.
+   *
+   * @param stalled TRUE to halt the endpoint.
+   */
+  public void setStalled(final boolean stalled) {
+    this.stalled = stalled;
+  }
+
+  /**
+   * @param loopback The IN endpoint to which OUT data is offered. Null for
+   *                 none.
+   */
+  public void setLoopback(final SimulatedUsbEndpoint loopback) {
+    this.loopback = loopback;
+  }
+
+  /**
+   * @return The number of transfers completed on this endpoint.
+   */
+  public long getTransferCount() {
+    return this.transferCount.get();
+  }
+
+  /**
+   * @return The number of bytes transferred on this endpoint.
+   */
+  public long getByteCount() {
+    return this.byteCount.get();
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.spi;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.usb3.IUsbConfigurationDescriptor;
+import javax.usb3.IUsbInterfaceDescriptor;
+import javax.usb3.descriptor.UsbConfigurationDescriptorView;
+
+/**
+ * A device configuration read by a {@link IUsbBackend backend}: the
+ * configuration descriptor together with the descriptors of all interface
+ * alternate settings (and their endpoints).
+ *
+ * @author Jesse Caulfield
+ */
+public final class UsbBackendConfiguration {
+
+  /**
+   * The configuration descriptor.
+   */
+  private final IUsbConfigurationDescriptor configurationDescriptor;
+  /**
+   * The descriptors of all interface alternate settings.
+   */
+  private final List<IUsbInterfaceDescriptor> interfaceDescriptors;
+
+  /**
+   * Construct a new backend configuration.
+   *
+   * @param configurationDescriptor The configuration descriptor.
+   * @param interfaceDescriptors    The descriptors of all interface alternate
+   *                                settings.
+   */
+  public UsbBackendConfiguration(final IUsbConfigurationDescriptor configurationDescriptor,
+                                 final List<IUsbInterfaceDescriptor> interfaceDescriptors) {
+    this.configurationDescriptor = configurationDescriptor;
+    this.interfaceDescriptors = Collections.unmodifiableList(interfaceDescriptors);
+  }
+
+  /**
+   * Parse a backend configuration from a complete configuration descriptor as
+   * returned by a GET_DESCRIPTOR(CONFIGURATION) request. The descriptors are
+   * flyweight views over the data; nothing is copied.
+   *
+   * @param data The configuration descriptor, wTotalLength bytes from the
+   *             buffer position. Must not be modified afterwards.
+   * @return The backend configuration.
+   * @throws IllegalArgumentException if the data does not hold a complete
+   *                                  configuration descriptor
+   */
+  public static UsbBackendConfiguration parse(final ByteBuffer data) {
+    final UsbConfigurationDescriptorView view = new UsbConfigurationDescriptorView(data);
+    return new UsbBackendConfiguration(view, new ArrayList<IUsbInterfaceDescriptor>(view.getInterfaceDescriptors()));
+  }
+
+  /**
+   * @return The configuration descriptor.
+   */
+  public IUsbConfigurationDescriptor getConfigurationDescriptor() {
+    return this.configurationDescriptor;
+  }
+
+  /**
+   * @return The descriptors of all interface alternate settings.
+   */
+  public List<IUsbInterfaceDescriptor> getInterfaceDescriptors() {
+    return this.interfaceDescriptors;
+  }
+}
@@ -42,6 +42,11 @@ public final class BufferUtility {
    */
   private static final int LONG_SIZE = Long.SIZE / Byte.SIZE;
 
+  /**
+   * The shared direct buffer pool used for native transfers.
+   */
+  private static final DirectBufferPool BUFFER_POOL = new DirectBufferPool();
+
   /**
    * Private constructor to prevent instantiation.
    */
@@ -60,6 +65,44 @@ public final class BufferUtility {
     return ByteBuffer.allocateDirect(bytes);
   }
 
+  /**
+   * Acquires a direct {@link ByteBuffer} from the shared buffer pool. The
+   * returned buffer has room for at least the specified number of bytes; its
+   * limit is set to the specified size.
+   * <p>
+   * The buffer capacity may be larger than requested. Use
+   * {@link #slice(ByteBuffer, int, int)} to obtain an exact-size view for
+   * libusb calls. Return the buffer with {@link #releaseByteBuffer(ByteBuffer)}
+   * once it is no longer used.
+   *
+   * @param bytes The required size of the byte buffer.
+   * @return A pooled direct byte buffer.
+   */
+  public static ByteBuffer acquireByteBuffer(final int bytes) {
+    return BUFFER_POOL.acquire(bytes);
+  }
+
+  /**
+   * Returns a direct {@link ByteBuffer} obtained from
+   * {@link #acquireByteBuffer(int)} to the shared buffer pool. The buffer (and
+   * any slice of it) must not be used afterwards.
+   *
+   * @param buffer The byte buffer to release. Ignored if null.
+   */
+  public static void releaseByteBuffer(final ByteBuffer buffer) {
+    BUFFER_POOL.release(buffer);
+  }
+
+  /**
+   * Returns the shared direct buffer pool. Use this to configure the pool
+   * capacity and to read the pool statistics.
+   *
+   * @return The shared direct buffer pool.
+   */
+  public static DirectBufferPool getBufferPool() {
+    return BUFFER_POOL;
+  }
+
   /**
    * Allocates a new {@link IntBuffer} with space for exactly one integer value.
    *
@@ -88,17 +131,14 @@ public final class BufferUtility {
    * @return The new byte buffer with the sliced part.
    */
   public static ByteBuffer slice(final ByteBuffer buffer, final int offset, final int length) {
-    final int oldPosition = buffer.position();
-    final int oldLimit = buffer.limit();
-
-    buffer.position(offset);
-    buffer.limit(offset + length);
-
-    final ByteBuffer slice = buffer.slice();
-
-    buffer.position(oldPosition);
-    buffer.limit(oldLimit);
-
-    return slice;
+    /**
+     * Slice a duplicate so that the position and limit of the specified
+     * buffer are never modified (not even temporarily).
+     */
+    final ByteBuffer duplicate = buffer.duplicate();
+    duplicate.clear();
+    duplicate.position(offset);
+    duplicate.limit(offset + length);
+    return duplicate.slice();
   }
 }
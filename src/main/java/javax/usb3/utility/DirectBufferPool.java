@@ -0,0 +1,415 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.utility;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A size-classed pool of direct {@link ByteBuffer} instances.
+ * <p>
+ * Direct buffers are expensive to allocate (the memory is zeroed) and are only
+ * reclaimed by the garbage collector. This pool recycles direct buffers used
+ * for native (JNI) transfers instead. Buffers are grouped in power-of-two size
+ * classes from {@value #MIN_CLASS_SIZE} bytes to {@value #MAX_CLASS_SIZE}
+ * bytes. Each thread keeps a small cache of buffers per size class in front of
+ * a shared (global) free list.
+ * <p>
+ * The total number of bytes held by the global free lists and the thread
+ * caches together is limited by the {@link #setCapacity(long) capacity}.
+ * Buffers released while the pool is full and buffers larger than the largest
+ * size class are not pooled and are left to the garbage collector. When the
+ * pool is full the caches of threads which have exited are moved to the
+ * global free lists, so that their bytes remain available to other threads.
+ * <p>
+ * Developer note: An acquired buffer may have a larger capacity than
+ * requested. Its limit is set to the requested size. The libusb JNI layer uses
+ * the buffer <em>capacity</em> as the data length, so callers must pass an
+ * exact-size {@link BufferUtility#slice(ByteBuffer, int, int) slice} to
+ * blocking libusb calls.
+ *
+ * @author Jesse Caulfield
+ */
+public final class DirectBufferPool {
+
+  /**
+   * 64 bytes. The smallest pooled buffer size.
+   */
+  private static final int MIN_CLASS_SIZE = 64;
+
+  /**
+   * 1 MiB. The largest pooled buffer size.
+   */
+  private static final int MAX_CLASS_SIZE = 1024 * 1024;
+
+  /**
+   * The number of size classes.
+   */
+  private static final int CLASS_COUNT = Integer.numberOfTrailingZeros(MAX_CLASS_SIZE) - Integer.numberOfTrailingZeros(MIN_CLASS_SIZE) + 1;
+
+  /**
+   * The maximum number of buffers cached per thread and size class.
+   */
+  private static final int THREAD_CACHE_SIZE = 4;
+
+  /**
+   * 16 MiB. The default pool capacity.
+   */
+  public static final long DEFAULT_CAPACITY = 16L * 1024 * 1024;
+
+  /**
+   * The global free lists, one per size class.
+   */
+  private final Queue<ByteBuffer>[] freeLists;
+
+  /**
+   * The caches of all threads which have used the pool. Caches of exited
+   * threads are removed when they are reclaimed.
+   */
+  private final Queue<ThreadCache> threadCaches = new ConcurrentLinkedQueue<>();
+
+  /**
+   * The per-thread buffer caches.
+   */
+  private final ThreadLocal<ThreadCache> threadCache = new ThreadLocal<ThreadCache>() {
+    @Override
+    protected ThreadCache initialValue() {
+      /**
+       * Reclaim the caches of exited threads as new threads arrive, so that
+       * the registry does not grow with thread turnover.
+       */
+      reclaimThreadCaches();
+      final ThreadCache cache = new ThreadCache(Thread.currentThread());
+      threadCaches.add(cache);
+      return cache;
+    }
+  };
+
+  /**
+   * The maximum number of bytes held by the pool.
+   */
+  private volatile long capacity = DEFAULT_CAPACITY;
+
+  /**
+   * The number of bytes currently held by the global free lists and the
+   * thread caches. This is limited by the capacity.
+   */
+  private final AtomicLong heldBytes = new AtomicLong();
+
+  /**
+   * The number of bytes currently held by the global free lists.
+   */
+  private final AtomicLong pooledBytes = new AtomicLong();
+
+  /**
+   * The number of bytes currently held by the thread caches.
+   */
+  private final AtomicLong cachedBytes = new AtomicLong();
+
+  /**
+   * The number of bytes currently acquired and not yet released.
+   */
+  private final AtomicLong outstandingBytes = new AtomicLong();
+
+  /**
+   * The number of acquisitions served from the pool.
+   */
+  private final AtomicLong hits = new AtomicLong();
+
+  /**
+   * The number of acquisitions requiring a new direct allocation.
+   */
+  private final AtomicLong misses = new AtomicLong();
+
+  /**
+   * Construct a new, empty direct buffer pool.
+   */
+  @SuppressWarnings("unchecked")
+  public DirectBufferPool() {
+    this.freeLists = new Queue[CLASS_COUNT];
+    for (int i = 0; i < CLASS_COUNT; i++) {
+      this.freeLists[i] = new ConcurrentLinkedQueue<>();
+    }
+  }
+
+  /**
+   * Acquire a direct buffer having room for at least the indicated number of
+   * bytes. The returned buffer position is zero and its limit is the requested
+   * size. The buffer content is undefined.
+   * <p>
+   * Return the buffer to the pool with {@link #release(ByteBuffer)} when it is
+   * no longer used.
+   *
+   * @param bytes The number of bytes required.
+   * @return A direct byte buffer.
+   */
+  public ByteBuffer acquire(final int bytes) {
+    if (bytes < 0) {
+      throw new IllegalArgumentException("Buffer size must not be negative");
+    }
+    final int sizeClass = sizeClass(bytes);
+    ByteBuffer buffer = null;
+    if (sizeClass >= 0) {
+      buffer = poll(sizeClass);
+    }
+    if (buffer == null) {
+      this.misses.incrementAndGet();
+      buffer = ByteBuffer.allocateDirect(sizeClass >= 0 ? classSize(sizeClass) : bytes);
+    } else {
+      this.hits.incrementAndGet();
+    }
+    this.outstandingBytes.addAndGet(buffer.capacity());
+    buffer.clear();
+    buffer.limit(bytes);
+    return buffer;
+  }
+
+  /**
+   * Return a buffer previously obtained from {@link #acquire(int)} to the
+   * pool. The buffer must not be used after it is released.
+   *
+   * @param buffer The buffer to release. Ignored if null.
+   */
+  public void release(final ByteBuffer buffer) {
+    if (buffer == null) {
+      return;
+    }
+    final int size = buffer.capacity();
+    this.outstandingBytes.addAndGet(-size);
+    final int sizeClass = sizeClass(size);
+    if (sizeClass < 0 || classSize(sizeClass) != size || !buffer.isDirect()) {
+      return;
+    }
+    if (this.capacity == 0) {
+      return;
+    }
+    if (!reserve(size) && !(reclaimThreadCaches() && reserve(size))) {
+      return;
+    }
+    /**
+     * Prefer the thread cache. Fall back to the global free list.
+     */
+    final ByteBuffer[] cache = this.threadCache.get().buffers[sizeClass];
+    for (int i = 0; i < cache.length; i++) {
+      if (cache[i] == null) {
+        cache[i] = buffer;
+        this.cachedBytes.addAndGet(size);
+        return;
+      }
+    }
+    this.pooledBytes.addAndGet(size);
+    this.freeLists[sizeClass].add(buffer);
+  }
+
+  /**
+   * Reserve room for a free buffer within the pool capacity.
+   *
+   * @param size The buffer size.
+   * @return TRUE if the buffer may be pooled.
+   */
+  private boolean reserve(final int size) {
+    if (this.heldBytes.addAndGet(size) > this.capacity) {
+      this.heldBytes.addAndGet(-size);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Move the cached buffers of threads which have exited to the global free
+   * lists and forget their caches.
+   *
+   * @return TRUE if the cache of an exited thread was found.
+   */
+  private synchronized boolean reclaimThreadCaches() {
+    boolean reclaimed = false;
+    for (Iterator<ThreadCache> iterator = this.threadCaches.iterator(); iterator.hasNext();) {
+      final ThreadCache cache = iterator.next();
+      /**
+       * Developer note: A thread which is no longer alive has finished all
+       * its actions, so its cache can be read safely.
+       */
+      if (cache.owner.isAlive()) {
+        continue;
+      }
+      iterator.remove();
+      reclaimed = true;
+      for (int sizeClass = 0; sizeClass < CLASS_COUNT; sizeClass++) {
+        for (ByteBuffer buffer : cache.buffers[sizeClass]) {
+          if (buffer != null) {
+            this.cachedBytes.addAndGet(-buffer.capacity());
+            this.pooledBytes.addAndGet(buffer.capacity());
+            this.freeLists[sizeClass].add(buffer);
+          }
+        }
+      }
+    }
+    return reclaimed;
+  }
+
+  /**
+   * Set the maximum number of bytes held by the global free lists and the
+   * thread caches. Excess free buffers are not discarded immediately but are
+   * not replaced once acquired.
+   *
+   * @param capacity The pool capacity in bytes. Zero disables pooling,
+   *                 including the thread caches.
+   */
+  public void setCapacity(final long capacity) {
+    if (capacity < 0) {
+      throw new IllegalArgumentException("Buffer pool capacity must not be negative");
+    }
+    this.capacity = capacity;
+  }
+
+  /**
+   * Get the maximum number of bytes held by the global free lists and the
+   * thread caches.
+   *
+   * @return The pool capacity in bytes.
+   */
+  public long getCapacity() {
+    return this.capacity;
+  }
+
+  /**
+   * Get the number of acquisitions served from the pool.
+   *
+   * @return The number of pool hits.
+   */
+  public long getHits() {
+    return this.hits.get();
+  }
+
+  /**
+   * Get the number of acquisitions that required a new direct allocation.
+   *
+   * @return The number of pool misses.
+   */
+  public long getMisses() {
+    return this.misses.get();
+  }
+
+  /**
+   * Get the number of bytes currently acquired and not yet released.
+   *
+   * @return The outstanding bytes.
+   */
+  public long getOutstandingBytes() {
+    return this.outstandingBytes.get();
+  }
+
+  /**
+   * Get the number of bytes currently held (free) by the global free lists.
+   * Buffers in thread caches are not included.
+   *
+   * @return The pooled bytes.
+   */
+  public long getPooledBytes() {
+    return this.pooledBytes.get();
+  }
+
+  /**
+   * Get the number of bytes currently held (free) by the thread caches,
+   * including the caches of exited threads which have not been reclaimed yet.
+   *
+   * @return The cached bytes.
+   */
+  public long getCachedBytes() {
+    return this.cachedBytes.get();
+  }
+
+  /**
+   * Take a free buffer of the indicated size class from the thread cache or
+   * the global free list.
+   *
+   * @param sizeClass The size class index.
+   * @return A free buffer, null if none is available.
+   */
+  private ByteBuffer poll(final int sizeClass) {
+    final ByteBuffer[] cache = this.threadCache.get().buffers[sizeClass];
+    for (int i = cache.length - 1; i >= 0; i--) {
+      final ByteBuffer buffer = cache[i];
+      if (buffer != null) {
+        cache[i] = null;
+        this.cachedBytes.addAndGet(-buffer.capacity());
+        this.heldBytes.addAndGet(-buffer.capacity());
+        return buffer;
+      }
+    }
+    final ByteBuffer buffer = this.freeLists[sizeClass].poll();
+    if (buffer != null) {
+      this.pooledBytes.addAndGet(-buffer.capacity());
+      this.heldBytes.addAndGet(-buffer.capacity());
+    }
+    return buffer;
+  }
+
+  /**
+   * Get the size class index for a buffer of the indicated size.
+   *
+   * @param bytes The buffer size.
+   * @return The size class index, -1 if the size is too large to be pooled.
+   */
+  private static int sizeClass(final int bytes) {
+    if (bytes > MAX_CLASS_SIZE) {
+      return -1;
+    }
+    if (bytes <= MIN_CLASS_SIZE) {
+      return 0;
+    }
+    return 32 - Integer.numberOfLeadingZeros(bytes - 1) - Integer.numberOfTrailingZeros(MIN_CLASS_SIZE);
+  }
+
+  /**
+   * Get the buffer size of the indicated size class.
+   *
+   * @param sizeClass The size class index.
+   * @return The buffer size in bytes.
+   */
+  private static int classSize(final int sizeClass) {
+    return MIN_CLASS_SIZE << sizeClass;
+  }
+
+  /**
+   * The buffer cache of one thread.
+   */
+  private static final class ThreadCache {
+
+    /**
+     * The thread owning the cache.
+     */
+    private final Thread owner;
+    /**
+     * The cached buffers, one array per size class. Only accessed by the
+     * owner thread while it is alive.
+     */
+    private final ByteBuffer[][] buffers = new ByteBuffer[CLASS_COUNT][THREAD_CACHE_SIZE];
+
+    /**
+     * Construct a new thread cache.
+     *
+     * @param owner The thread owning the cache.
+     */
+    ThreadCache(final Thread owner) {
+      this.owner = owner;
+    }
+  }
+}
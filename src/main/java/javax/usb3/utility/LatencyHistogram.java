@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.utility;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A concurrent, log-bucketed histogram of durations in nanoseconds.
+ * <p>
+ * Recorded values are counted in power-of-two buckets: bucket {@code i} holds
+ * the values from 2^(i-1) (inclusive) to 2^i (exclusive), bucket 0 holds zero.
+ * Recording a value is a few atomic increments and never allocates, so the
+ * histogram may be updated on the transfer hot path. Percentiles are resolved
+ * to the upper bound of their bucket, i.e. they are exact to within a factor
+ * of two, which is sufficient to spot latency degradation.
+ *
+ * @author Jesse Caulfield
+ */
+public final class LatencyHistogram {
+
+  /**
+   * The number of buckets. Covers every non-negative long value.
+   */
+  private static final int BUCKET_COUNT = 64;
+
+  /**
+   * The number of values recorded in each bucket.
+   */
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+  /**
+   * The number of recorded values.
+   */
+  private final AtomicLong count = new AtomicLong();
+
+  /**
+   * The sum of the recorded values.
+   */
+  private final AtomicLong sum = new AtomicLong();
+
+  /**
+   * The largest recorded value.
+   */
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * Record a duration. Negative values (e.g. from a clock adjustment) are
+   * recorded as zero.
+   *
+   * @param nanos The duration in nanoseconds.
+   */
+  public void record(final long nanos) {
+    final long value = Math.max(0, nanos);
+    this.buckets.incrementAndGet(BUCKET_COUNT - Long.numberOfLeadingZeros(value));
+    this.count.incrementAndGet();
+    this.sum.addAndGet(value);
+    long current = this.max.get();
+    while (value > current && !this.max.compareAndSet(current, value)) {
+      current = this.max.get();
+    }
+  }
+
+  /**
+   * Get the number of recorded values.
+   *
+   * @return The number of recorded values.
+   */
+  public long getCount() {
+    return this.count.get();
+  }
+
+  /**
+   * Get the mean of the recorded values.
+   *
+   * @return The mean in nanoseconds. Zero if no value has been recorded.
+   */
+  public long getMean() {
+    final long n = this.count.get();
+    return n == 0 ? 0 : this.sum.get() / n;
+  }
+
+  /**
+   * Get the largest recorded value.
+   *
+   * @return The maximum in nanoseconds. Zero if no value has been recorded.
+   */
+  public long getMax() {
+    return this.max.get();
+  }
+
+  /**
+   * Get the indicated percentile of the recorded values. The result is the
+   * upper bound of the bucket holding the percentile, capped at the maximum
+   * recorded value.
+   *
+   * @param percentile The percentile, from 0 to 100 (e.g. 99.9).
+   * @return The percentile in nanoseconds. Zero if no value has been recorded.
+   */
+  public long getPercentile(final double percentile) {
+    if (percentile < 0 || percentile > 100) {
+      throw new IllegalArgumentException("Percentile must be between 0 and 100.");
+    }
+    long total = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      total += this.buckets.get(i);
+    }
+    if (total == 0) {
+      return 0;
+    }
+    final long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+    long seen = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      seen += this.buckets.get(i);
+      if (seen >= rank) {
+        final long upper = i == 0 ? 0 : i == BUCKET_COUNT - 1 ? Long.MAX_VALUE : (1L << i) - 1;
+        return Math.min(upper, this.max.get());
+      }
+    }
+    return this.max.get();
+  }
+
+  /**
+   * Clear all recorded values. Values recorded concurrently may be partially
+   * cleared.
+   */
+  public void reset() {
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      this.buckets.set(i, 0);
+    }
+    this.count.set(0);
+    this.sum.set(0);
+    this.max.set(0);
+  }
+}
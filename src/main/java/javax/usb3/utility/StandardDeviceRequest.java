@@ -21,8 +21,11 @@
  */
 package javax.usb3.utility;
 
+import java.nio.ByteBuffer;
 import javax.usb3.IUsbControlIrp;
+import javax.usb3.IUsbDescriptorCache;
 import javax.usb3.IUsbDevice;
+import javax.usb3.descriptor.UsbConfigurationDescriptorView;
 import javax.usb3.enumerated.EDescriptorType;
 import javax.usb3.enumerated.EDeviceRequest;
 import javax.usb3.enumerated.EEndpointDirection;
@@ -173,7 +176,9 @@ public class StandardDeviceRequest {
    * If the type is string, the langid indicates what language to use. For other
    * types it should be 0 (but this is not enforced).
    * <p>
-   * The data is filled with the actual descriptor.
+   * The data is filled with the actual descriptor. For a reference
+   * device which caches its descriptors the descriptor is served from, and added
+   * to, the {@link IUsbDevice#getDescriptorCache() descriptor cache}.
    *
    * @param usbDevice The IUsbDevice.
    * @param type      The Descriptor Type.
@@ -184,15 +189,58 @@ public class StandardDeviceRequest {
    * @exception UsbException If unsuccessful.
    */
   public static int getDescriptor(IUsbDevice usbDevice, EDescriptorType type, byte index, short langid, byte[] data) throws UsbException {
+    IUsbDescriptorCache cache = usbDevice.getDescriptorCache();
+    if (cache != null) {
+      int length = cache.getDescriptor(type.getByteCode(), index, langid, data);
+      if (length >= 0) {
+        return length;
+      }
+    }
     IUsbControlIrp usbControlIrp = usbDevice.createUsbControlIrp(BMRequestType.getInstanceStandardRead(),
                                                                  BRequest.getInstance(EDeviceRequest.GET_DESCRIPTOR),
                                                                  type.getWValue(index), //     wValue,
                                                                  langid);
     usbControlIrp.setData(data);
     usbDevice.syncSubmit(usbControlIrp);
+    if (cache != null) {
+      cache.putDescriptor(type.getByteCode(), index, langid, data, data.length, usbControlIrp.getActualLength());
+    }
     return usbControlIrp.getActualLength();
   }
 
+  /**
+   * 9.4.3 Get Descriptor (CONFIGURATION)
+   * <p>
+   * Read a complete configuration descriptor, with all its interface, endpoint
+   * and class-specific descriptors, in two requests: the configuration
+   * descriptor header for wTotalLength, then the complete descriptor. Both are
+   * served from the device descriptor cache when possible.
+   *
+   * @param usbDevice The IUsbDevice.
+   * @param index     The configuration index (not the configuration value).
+   * @return A flyweight view over the configuration descriptor.
+   * @exception UsbException If unsuccessful or the device returns a malformed
+   *                         descriptor.
+   */
+  public static UsbConfigurationDescriptorView getConfigurationDescriptor(IUsbDevice usbDevice, byte index) throws UsbException {
+    byte[] header = new byte[EDescriptorType.CONFIGURATION.getLength()];
+    int length = getDescriptor(usbDevice, EDescriptorType.CONFIGURATION, index, (short) 0, header);
+    int totalLength = UsbConfigurationDescriptorView.getTotalLength(ByteBuffer.wrap(header, 0, length));
+    if (totalLength < header.length) {
+      throw new UsbException("Invalid configuration descriptor " + index);
+    }
+    byte[] data = header;
+    if (totalLength > header.length) {
+      data = new byte[totalLength];
+      length = getDescriptor(usbDevice, EDescriptorType.CONFIGURATION, index, (short) 0, data);
+    }
+    try {
+      return new UsbConfigurationDescriptorView(ByteBuffer.wrap(data, 0, length));
+    } catch (IllegalArgumentException exception) {
+      throw new UsbException("Invalid configuration descriptor " + index + ": " + exception.getMessage());
+    }
+  }
+
   /**
    * 9.4.4 Get Interface
    * <p>
@@ -47,7 +47,52 @@ public final class UsbExceptionFactory {
     return new UsbPlatformException(String.format("USB error %d: %s: %s",
                                                   -errorCode,
                                                   message,
-                                                  LibUsb.strError(errorCode)),
+                                                  getErrorMessage(errorCode)),
                                     errorCode);
   }
+
+  /**
+   * Get the description of a libusb error code.
+   * <p>
+   * This is the message table of libusb {@code libusb_strerror} in Java, so
+   * errors may be described without the native library being loaded (e.g. by
+   * a backend other than libusb).
+   *
+   * @param errorCode The libusb error code. e.g. {@link LibUsb#ERROR_PIPE}
+   * @return The English description of the error.
+   */
+  public static String getErrorMessage(final int errorCode) {
+    switch (errorCode) {
+      case LibUsb.SUCCESS:
+        return "Success";
+      case LibUsb.ERROR_IO:
+        return "Input/Output Error";
+      case LibUsb.ERROR_INVALID_PARAM:
+        return "Invalid parameter";
+      case LibUsb.ERROR_ACCESS:
+        return "Access denied (insufficient permissions)";
+      case LibUsb.ERROR_NO_DEVICE:
+        return "No such device (it may have been disconnected)";
+      case LibUsb.ERROR_NOT_FOUND:
+        return "Entity not found";
+      case LibUsb.ERROR_BUSY:
+        return "Resource busy";
+      case LibUsb.ERROR_TIMEOUT:
+        return "Operation timed out";
+      case LibUsb.ERROR_OVERFLOW:
+        return "Overflow";
+      case LibUsb.ERROR_PIPE:
+        return "Pipe error";
+      case LibUsb.ERROR_INTERRUPTED:
+        return "System call interrupted (perhaps due to signal)";
+      case LibUsb.ERROR_NO_MEM:
+        return "Insufficient memory";
+      case LibUsb.ERROR_NOT_SUPPORTED:
+        return "Operation not supported or unimplemented on this platform";
+      case LibUsb.ERROR_OTHER:
+        return "Other error";
+      default:
+        return "Unknown error";
+    }
+  }
 }
@@ -16,8 +16,15 @@
  */
 package ch.keybridge.lib.usb;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import javax.usb3.database.UsbDeviceDescription;
+import javax.usb3.database.UsbIdIndex;
 import javax.usb3.database.UsbRepositoryDatabase;
+import javax.usb3.enumerated.EUsbIdSection;
 import org.junit.Test;
 
 /**
@@ -41,4 +48,63 @@ public class UsbIdUtilityTest {
     System.out.println("usb: " + logitech);
   }
 
+  @Test
+  public void testLookupExactMatch() throws Exception {
+    System.out.println("Test USB database exact match");
+    UsbDeviceDescription hub = UsbRepositoryDatabase.lookup((short) 0x1d6b, (short) 0x0002);
+    assert "Linux Foundation".equals(hub.getVendorName());
+    assert "2.0 root hub".equals(hub.getDeviceName());
+    /**
+     * 0005 is not a Linux Foundation product but is a product of later
+     * vendors, which must not match.
+     */
+    try {
+      UsbRepositoryDatabase.lookup("1d6b", "0005");
+      assert false : "Product of another vendor matched";
+    } catch (Exception ex) {
+      System.out.println("not found: " + ex.getMessage());
+    }
+    System.out.println("USB database index: " + UsbRepositoryDatabase.getMemoryFootprint() + " bytes");
+  }
+
+  @Test
+  public void testSections() throws Exception {
+    System.out.println("Test USB database sections");
+    assert "Human Interface Device".equals(UsbRepositoryDatabase.getName(EUsbIdSection.CLASS, 0x03));
+    assert "Mouse".equals(UsbRepositoryDatabase.getName(EUsbIdSection.CLASS, 0x03, 0x01, 0x02));
+    assert "English".equals(UsbRepositoryDatabase.getName(EUsbIdSection.LANGUAGE, 0x0009));
+    assert "US".equals(UsbRepositoryDatabase.getName(EUsbIdSection.LANGUAGE, 0x0009, 0x01));
+    assert UsbRepositoryDatabase.getName(EUsbIdSection.VENDOR, 0x000c) == null;
+  }
+
+  @Test
+  public void testReload() throws Exception {
+    System.out.println("Test USB database reload");
+    File file = File.createTempFile("usb", ".ids");
+    file.deleteOnExit();
+    try (OutputStream stream = new FileOutputStream(file)) {
+      stream.write("# test\nfffe  Test Vendor\n\tfffd  Test Product\n".getBytes(StandardCharsets.UTF_8));
+    }
+    try {
+      UsbRepositoryDatabase.reload(file);
+      assert "Test Product".equals(UsbRepositoryDatabase.lookup("fffe:fffd").getDeviceName());
+    } finally {
+      /**
+       * Restore the bundled database, memory mapped from the build output.
+       */
+      UsbRepositoryDatabase.reload(new File(getClass().getResource("/META-INF/database/usb.ids.idx").toURI()));
+    }
+    assert UsbRepositoryDatabase.lookup("0403", "6001") != null;
+  }
+
+  @Test
+  public void testExtract() throws Exception {
+    System.out.println("Test USB database index extraction");
+    try (InputStream stream = getClass().getResourceAsStream("/META-INF/database/usb.ids.idx")) {
+      UsbIdIndex index = UsbIdIndex.extract(stream);
+      assert index.isMapped() : "Bundled index not memory mapped";
+      assert "Linux Foundation".equals(index.getVendorName(0x1d6b));
+    }
+  }
+
 }
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.ri;
+
+import javax.usb3.IUsbHub;
+import javax.usb3.spi.SimulatedUsbBackend;
+import javax.usb3.spi.SimulatedUsbDevice;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Exercise the per-device descriptor cache.
+ *
+ * @author Jesse Caulfield
+ */
+public class UsbDescriptorCacheTest {
+
+  @Test
+  public void testCompleteReplacesTruncated() {
+    UsbDescriptorCache cache = new UsbDescriptorCache();
+    byte[] data = new byte[]{9, 2, 32, 0};
+    /**
+     * A read filling the whole buffer may be truncated; a longer request is
+     * not served from the cache.
+     */
+    cache.putDescriptor((byte) 2, (byte) 0, (short) 0, data, 4, 4);
+    assertEquals(-1, cache.getDescriptor((byte) 2, (byte) 0, (short) 0, new byte[8]));
+    /**
+     * The same length read with a larger request is complete and replaces the
+     * truncated entry.
+     */
+    cache.putDescriptor((byte) 2, (byte) 0, (short) 0, data, 8, 4);
+    assertEquals(4, cache.getDescriptor((byte) 2, (byte) 0, (short) 0, new byte[8]));
+    /**
+     * A shorter read never replaces a complete descriptor.
+     */
+    cache.putDescriptor((byte) 2, (byte) 0, (short) 0, data, 2, 2);
+    assertEquals(4, cache.getDescriptor((byte) 2, (byte) 0, (short) 0, new byte[8]));
+  }
+
+  @Test
+  public void testPrefetchStringsClosesDevice() throws Exception {
+    SimulatedUsbBackend backend = new SimulatedUsbBackend();
+    SimulatedUsbDevice simulated = backend.addDevice(backend.addHub(null), (short) 0x1234, (short) 0x5678);
+    UsbRootHub rootHub = new UsbRootHub();
+    UsbDeviceManager deviceManager = new UsbDeviceManager(rootHub, 0, backend);
+    try {
+      deviceManager.setPrefetchStrings(true);
+      deviceManager.scan();
+      IUsbHub usbHub = (IUsbHub) rootHub.getAttachedUsbDevices().get(0);
+      AUsbDevice device = (AUsbDevice) usbHub.getAttachedUsbDevices().iterator().next();
+      /**
+       * The strings are cached in the background; the handle opened to read
+       * them is closed again.
+       */
+      long deadline = System.currentTimeMillis() + 5000;
+      while ((device.getDescriptorCache().getLanguages() == null || simulated.getOpenHandles() > 0) && System.currentTimeMillis() < deadline) {
+        Thread.sleep(1);
+      }
+      assertNotNull(device.getDescriptorCache().getLanguages());
+      assertEquals(0, simulated.getOpenHandles());
+      assertEquals("Simulated Device", device.getProductString());
+    } finally {
+      deviceManager.dispose();
+    }
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.ri;
+
+import javax.usb3.exception.UsbException;
+import javax.usb3.exception.UsbStallException;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Jesse Caulfield
+ */
+public class UsbIrpBatchTest {
+
+  @Test
+  public void testFirstFailureWins() throws Exception {
+    UsbIrpBatch batch = new UsbIrpBatch(3);
+    UsbIrp ok = new UsbIrp(new byte[8]);
+    UsbIrp stall = new UsbIrp(new byte[8]);
+    stall.setUsbException(new UsbStallException());
+    UsbIrp other = new UsbIrp(new byte[8]);
+    other.setUsbException(new UsbException("later"));
+
+    batch.finished(ok);
+    assertFalse(batch.isFailed());
+    batch.finished(stall);
+    assertTrue(batch.isFailed());
+    assertFalse(batch.getFuture().isDone());
+    batch.finished(other);
+    try {
+      UsbIrpBatch.await(batch.getFuture());
+      fail("Batch should have failed");
+    } catch (UsbStallException ex) {
+      assertSame(stall.getUsbException(), ex);
+    }
+  }
+
+  @Test
+  public void testSuccess() throws Exception {
+    UsbIrpBatch batch = new UsbIrpBatch(1);
+    batch.finished(new UsbIrp(new byte[8]));
+    UsbIrpBatch.await(batch.getFuture());
+  }
+}
@@ -0,0 +1,599 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.ri;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.usb3.IUsbControlIrp;
+import javax.usb3.IUsbDevice;
+import javax.usb3.IUsbEndpointDescriptor;
+import javax.usb3.IUsbHub;
+import javax.usb3.IUsbInterface;
+import javax.usb3.IUsbIrp;
+import javax.usb3.IUsbPipe;
+import javax.usb3.descriptor.UsbConfigurationDescriptor;
+import javax.usb3.descriptor.UsbDeviceDescriptor;
+import javax.usb3.descriptor.UsbEndpointDescriptor;
+import javax.usb3.descriptor.UsbInterfaceDescriptor;
+import javax.usb3.enumerated.EIrpOverflowPolicy;
+import javax.usb3.enumerated.EIrpPriority;
+import javax.usb3.enumerated.EIrpScheduling;
+import javax.usb3.enumerated.EUSBClassCode;
+import javax.usb3.event.IUsbPipeIrpListener;
+import javax.usb3.exception.UsbAbortException;
+import javax.usb3.exception.UsbException;
+import javax.usb3.exception.UsbQueueFullException;
+import javax.usb3.exception.UsbTimeoutException;
+import javax.usb3.request.BEndpointAddress;
+import javax.usb3.request.BMConfigurationAttributes;
+import javax.usb3.spi.SimulatedUsbBackend;
+import javax.usb3.spi.SimulatedUsbDevice;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Exercise the IRP queue of a pipe on the simulated USB host.
+ *
+ * @author Jesse Caulfield
+ */
+public class UsbIrpQueueTest {
+
+  private SimulatedUsbBackend backend;
+  private SimulatedUsbDevice hub;
+  private UsbRootHub rootHub;
+  private UsbDeviceManager deviceManager;
+  private SimulatedUsbDevice simulated;
+  private IUsbInterface usbInterface;
+  private UsbPipe out;
+
+  @Before
+  public void setUp() throws Exception {
+    backend = new SimulatedUsbBackend();
+    hub = backend.addHub(null);
+    simulated = backend.addDevice(hub, (short) 0x1234, (short) 0x5678);
+    rootHub = new UsbRootHub();
+    deviceManager = new UsbDeviceManager(rootHub, 0, backend);
+    deviceManager.scan();
+    IUsbHub usbHub = (IUsbHub) rootHub.getAttachedUsbDevices().get(0);
+    IUsbDevice device = usbHub.getAttachedUsbDevices().iterator().next();
+    usbInterface = device.getActiveUsbConfiguration().getUsbInterface((byte) 0);
+    usbInterface.claim();
+    out = (UsbPipe) usbInterface.getUsbEndpoint((byte) 0x02).getUsbPipe();
+    out.open();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    try {
+      out.close();
+      usbInterface.release();
+    } finally {
+      deviceManager.dispose();
+    }
+  }
+
+  /**
+   * Wait for an IRP and check that it has completed.
+   *
+   * @param irp The IRP.
+   */
+  static void assertCompletes(IUsbIrp irp) {
+    irp.waitUntilComplete(5000);
+    assertTrue("IRP did not complete", irp.isComplete());
+  }
+
+  /**
+   * Wait until the indicated number of IRPs has been recorded. IRPs are
+   * complete before their listeners are called.
+   *
+   * @param finished The recorded IRPs.
+   * @param count    The number of IRPs expected.
+   */
+  static void awaitFinished(List<IUsbIrp> finished, int count) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (finished.size() < count && System.currentTimeMillis() < deadline) {
+      Thread.sleep(1);
+    }
+    assertEquals(count, finished.size());
+  }
+
+  @Test
+  public void testSubmitEmptyList() throws Exception {
+    /**
+     * An empty list is a no-op, on the pipes and on the Default Control Pipe.
+     */
+    out.syncSubmit(Collections.<IUsbIrp>emptyList());
+    out.asyncSubmit(Collections.<IUsbIrp>emptyList());
+    assertTrue(out.submit(Collections.<IUsbIrp>emptyList()).isDone());
+    IUsbDevice device = usbInterface.getUsbConfiguration().getUsbDevice();
+    device.syncSubmit(Collections.<IUsbControlIrp>emptyList());
+    device.asyncSubmit(Collections.<IUsbControlIrp>emptyList());
+    assertFalse(out.getIrpQueue().isBusy());
+  }
+
+  @Test
+  public void testSubmitAfterCancel() throws Exception {
+    /**
+     * The listener runs on the queue processor after the last IRP was taken
+     * and before the processor releases the queue. The IRP it submits is
+     * cancelled concurrently, after a varying delay, so that the cancellation
+     * eventually hits the processor rechecking the queue: the queue must keep
+     * dispatching.
+     */
+    final AtomicReference<IUsbIrp> submitted = new AtomicReference<>();
+    final AtomicBoolean trigger = new AtomicBoolean();
+    out.addUsbPipeIrpListener(new IUsbPipeIrpListener() {
+      @Override
+      public void irpCompleted(IUsbPipe pipe, IUsbIrp irp) {
+        if (trigger.getAndSet(false)) {
+          try {
+            submitted.set(pipe.asyncSubmit(new byte[8]));
+          } catch (UsbException ex) {
+            throw new IllegalStateException(ex);
+          }
+        }
+      }
+    });
+    final AtomicBoolean running = new AtomicBoolean(true);
+    Thread canceller = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        int delay = 0;
+        while (running.get()) {
+          IUsbIrp irp = submitted.getAndSet(null);
+          if (irp != null) {
+            for (int i = 0; i < delay; i++) {
+              Thread.yield();
+            }
+            irp.cancel();
+            delay = (delay + 1) % 8;
+          }
+        }
+      }
+    });
+    canceller.setDaemon(true);
+    canceller.start();
+    try {
+      for (int i = 0; i < 2000; i++) {
+        trigger.set(true);
+        assertCompletes(out.asyncSubmit(new byte[8]));
+        assertCompletes(out.asyncSubmit(new byte[8]));
+      }
+    } finally {
+      running.set(false);
+    }
+  }
+
+  @Test
+  public void testAbortOrder() throws Exception {
+    /**
+     * Aborted IRPs complete after the IRP in flight, in submission order. The
+     * IN endpoint has no data, so no read completes before the abort, and
+     * abort returns only after all listeners have run.
+     */
+    simulated.getEndpoint((byte) 0x81).setSource(false);
+    IUsbPipe in = usbInterface.getUsbEndpoint((byte) 0x81).getUsbPipe();
+    in.open();
+    try {
+      final List<IUsbIrp> finished = Collections.synchronizedList(new ArrayList<IUsbIrp>());
+      in.addUsbPipeIrpListener(new IUsbPipeIrpListener() {
+        @Override
+        public void irpCompleted(IUsbPipe pipe, IUsbIrp irp) {
+          /**
+           * A slow listener: abort must wait for it.
+           */
+          try {
+            Thread.sleep(10);
+          } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+          }
+          finished.add(irp);
+        }
+      });
+      List<IUsbIrp> submitted = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        submitted.add(in.asyncSubmit(new byte[8]));
+      }
+      in.abortAllSubmissions();
+      for (IUsbIrp irp : submitted) {
+        assertTrue(irp.isComplete());
+        assertTrue(irp.getUsbException() instanceof UsbAbortException);
+      }
+      assertEquals(submitted, finished);
+    } finally {
+      in.close();
+    }
+  }
+
+  @Test
+  public void testAbortPriorityOrder() throws Exception {
+    /**
+     * Queued IRPs of different priorities complete in submission order after
+     * the IRP in flight.
+     */
+    out.getIrpQueue().setScheduling(EIrpScheduling.STRICT);
+    List<IUsbIrp> finished = recordCompletions();
+    IUsbIrp busy = occupy(200_000);
+    IUsbIrp low = submit(EIrpPriority.LOW);
+    IUsbIrp high = submit(EIrpPriority.HIGH);
+    IUsbIrp normal = submit(EIrpPriority.NORMAL);
+    out.abortAllSubmissions();
+    assertEquals(Arrays.asList(busy, low, high, normal), finished);
+    for (IUsbIrp irp : Arrays.asList(low, high, normal)) {
+      assertTrue(irp.getUsbException() instanceof UsbAbortException);
+    }
+  }
+
+  /**
+   * Record the IRPs of the OUT pipe in completion order.
+   *
+   * @return The completed IRPs.
+   */
+  private List<IUsbIrp> recordCompletions() {
+    final List<IUsbIrp> finished = Collections.synchronizedList(new ArrayList<IUsbIrp>());
+    out.addUsbPipeIrpListener(new IUsbPipeIrpListener() {
+      @Override
+      public void irpCompleted(IUsbPipe pipe, IUsbIrp irp) {
+        finished.add(irp);
+      }
+    });
+    return finished;
+  }
+
+  /**
+   * Submit an IRP which occupies the queue processor, so that the following
+   * IRPs are queued. The device latency is set to the indicated value.
+   *
+   * @param latency The device latency in microseconds.
+   * @return The IRP in progress.
+   */
+  private IUsbIrp occupy(long latency) throws Exception {
+    simulated.setLatency(latency);
+    IUsbIrp irp = out.asyncSubmit(new byte[8]);
+    long deadline = System.currentTimeMillis() + 5000;
+    while (out.getIrpQueue().getQueueDepth() > 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(1);
+    }
+    return irp;
+  }
+
+  /**
+   * Submit an IRP of the indicated priority.
+   *
+   * @param priority The IRP priority.
+   * @return The IRP.
+   */
+  private IUsbIrp submit(EIrpPriority priority) throws Exception {
+    IUsbIrp irp = out.createUsbIrp();
+    irp.setData(new byte[8]);
+    irp.setPriority(priority);
+    out.asyncSubmit(irp);
+    return irp;
+  }
+
+  @Test
+  public void testStrictScheduling() throws Exception {
+    out.getIrpQueue().setScheduling(EIrpScheduling.STRICT);
+    out.getIrpQueue().setAgingTimeout(0);
+    List<IUsbIrp> finished = recordCompletions();
+    IUsbIrp busy = occupy(20_000);
+    IUsbIrp low1 = submit(EIrpPriority.LOW);
+    IUsbIrp normal1 = submit(EIrpPriority.NORMAL);
+    IUsbIrp high1 = submit(EIrpPriority.HIGH);
+    IUsbIrp low2 = submit(EIrpPriority.LOW);
+    IUsbIrp normal2 = submit(EIrpPriority.NORMAL);
+    IUsbIrp high2 = submit(EIrpPriority.HIGH);
+    awaitFinished(finished, 7);
+    /**
+     * Highest priority first, FIFO within each lane.
+     */
+    assertEquals(Arrays.asList(busy, high1, high2, normal1, normal2, low1, low2), finished);
+  }
+
+  @Test
+  public void testWeightedScheduling() throws Exception {
+    out.getIrpQueue().setScheduling(EIrpScheduling.WEIGHTED);
+    out.getIrpQueue().setAgingTimeout(0);
+    List<IUsbIrp> finished = recordCompletions();
+    IUsbIrp busy = occupy(10_000);
+    IUsbIrp low = submit(EIrpPriority.LOW);
+    List<IUsbIrp> high = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      high.add(submit(EIrpPriority.HIGH));
+    }
+    awaitFinished(finished, 22);
+    /**
+     * The LOW lane is served once per round, after the HIGH lane has used
+     * its weight.
+     */
+    assertEquals(busy, finished.get(0));
+    assertEquals(high.subList(0, EIrpPriority.HIGH.getWeight()), finished.subList(1, 1 + EIrpPriority.HIGH.getWeight()));
+    assertEquals(low, finished.get(1 + EIrpPriority.HIGH.getWeight()));
+    assertEquals(high.subList(EIrpPriority.HIGH.getWeight(), 20), finished.subList(2 + EIrpPriority.HIGH.getWeight(), 22));
+  }
+
+  @Test
+  public void testAging() throws Exception {
+    out.getIrpQueue().setScheduling(EIrpScheduling.STRICT);
+    out.getIrpQueue().setAgingTimeout(30);
+    List<IUsbIrp> finished = recordCompletions();
+    occupy(20_000);
+    IUsbIrp low = submit(EIrpPriority.LOW);
+    List<IUsbIrp> high = new ArrayList<>();
+    for (int i = 0; i < 6; i++) {
+      high.add(submit(EIrpPriority.HIGH));
+    }
+    awaitFinished(finished, 8);
+    /**
+     * The starving LOW IRP is promoted before the HIGH lane is empty; the
+     * HIGH IRPs stay in FIFO order.
+     */
+    assertTrue(finished.indexOf(low) < finished.size() - 1);
+    List<IUsbIrp> highFinished = new ArrayList<>(finished);
+    highFinished.retainAll(high);
+    assertEquals(high, highFinished);
+    assertTrue(out.getIrpQueue().getMaxQueueWait(EIrpPriority.LOW) >= TimeUnit.MILLISECONDS.toNanos(30));
+  }
+
+  @Test
+  public void testOverflowBlock() throws Exception {
+    occupy(200_000);
+    out.getIrpQueue().setCapacity(2, EIrpOverflowPolicy.BLOCK);
+    IUsbIrp first = out.asyncSubmit(new byte[8]);
+    IUsbIrp second = out.asyncSubmit(new byte[8]);
+    final AtomicReference<IUsbIrp> blocked = new AtomicReference<>();
+    Thread producer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          blocked.set(out.asyncSubmit(new byte[8]));
+        } catch (UsbException ex) {
+          throw new IllegalStateException(ex);
+        }
+      }
+    });
+    producer.start();
+    /**
+     * The producer waits while the processor is busy and the queue is full.
+     */
+    producer.join(50);
+    assertTrue(producer.isAlive());
+    producer.join(5000);
+    assertFalse(producer.isAlive());
+    for (IUsbIrp irp : Arrays.asList(first, second, blocked.get())) {
+      assertCompletes(irp);
+      assertFalse(irp.isUsbException());
+    }
+    assertEquals(0, out.getIrpQueue().getOverflowCount());
+  }
+
+  @Test
+  public void testOverflowFail() throws Exception {
+    occupy(50_000);
+    out.getIrpQueue().setCapacity(2, EIrpOverflowPolicy.FAIL);
+    IUsbIrp first = out.asyncSubmit(new byte[8]);
+    IUsbIrp second = out.asyncSubmit(new byte[8]);
+    try {
+      out.asyncSubmit(new byte[8]);
+      fail("Submission to a full queue must fail");
+    } catch (UsbQueueFullException ex) {
+      /**
+       * Expected: the IRP is not queued.
+       */
+    }
+    assertCompletes(first);
+    assertCompletes(second);
+    assertFalse(first.isUsbException());
+    assertFalse(second.isUsbException());
+    assertEquals(1, out.getIrpQueue().getOverflowCount());
+  }
+
+  @Test
+  public void testOverflowDropOldest() throws Exception {
+    occupy(50_000);
+    out.getIrpQueue().setCapacity(2, EIrpOverflowPolicy.DROP_OLDEST);
+    IUsbIrp first = out.asyncSubmit(new byte[8]);
+    IUsbIrp second = out.asyncSubmit(new byte[8]);
+    IUsbIrp third = out.asyncSubmit(new byte[8]);
+    assertCompletes(first);
+    assertTrue(first.getUsbException() instanceof UsbQueueFullException);
+    assertCompletes(second);
+    assertCompletes(third);
+    assertFalse(second.isUsbException());
+    assertFalse(third.isUsbException());
+    assertEquals(1, out.getIrpQueue().getOverflowCount());
+  }
+
+  @Test
+  public void testOverflowDropNewest() throws Exception {
+    occupy(50_000);
+    out.getIrpQueue().setCapacity(2, EIrpOverflowPolicy.DROP_NEWEST);
+    IUsbIrp first = out.asyncSubmit(new byte[8]);
+    IUsbIrp second = out.asyncSubmit(new byte[8]);
+    IUsbIrp third = out.asyncSubmit(new byte[8]);
+    assertCompletes(third);
+    assertTrue(third.getUsbException() instanceof UsbQueueFullException);
+    assertCompletes(first);
+    assertCompletes(second);
+    assertFalse(first.isUsbException());
+    assertFalse(second.isUsbException());
+    assertEquals(1, out.getIrpQueue().getOverflowCount());
+  }
+
+  @Test
+  public void testTimeout() throws Exception {
+    /**
+     * A transfer which outlasts the queue timeout fails.
+     */
+    simulated.setLatency(200_000);
+    out.getIrpQueue().setTimeout(20);
+    IUsbIrp irp = out.asyncSubmit(new byte[8]);
+    assertCompletes(irp);
+    assertTrue(irp.getUsbException() instanceof UsbTimeoutException);
+  }
+
+  @Test
+  public void testDeadline() throws Exception {
+    /**
+     * The transfer timeout is shortened to the IRP deadline.
+     */
+    simulated.setLatency(200_000);
+    IUsbIrp irp = out.createUsbIrp();
+    irp.setData(new byte[8]);
+    long start = System.nanoTime();
+    irp.setDeadline(start + TimeUnit.MILLISECONDS.toNanos(20));
+    out.asyncSubmit(irp);
+    assertCompletes(irp);
+    assertTrue(irp.getUsbException() instanceof UsbTimeoutException);
+    assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(200));
+  }
+
+  @Test
+  public void testDeadlineExpiredWhileQueued() throws Exception {
+    IUsbIrp busy = occupy(100_000);
+    IUsbIrp irp = out.createUsbIrp();
+    irp.setData(new byte[8]);
+    irp.setDeadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(10));
+    out.asyncSubmit(irp);
+    assertCompletes(busy);
+    assertFalse(busy.isUsbException());
+    assertCompletes(irp);
+    /**
+     * The IRP expired behind the busy IRP and never reached the device.
+     */
+    assertTrue(irp.getUsbException() instanceof UsbTimeoutException);
+    assertEquals(0, irp.getActualLength());
+  }
+
+  @Test
+  public void testIsochronousDeadline() throws Exception {
+    /**
+     * Attach a device with an isochronous OUT endpoint 0x04 of 64 byte
+     * packets.
+     */
+    SimulatedUsbDevice isochronous = new SimulatedUsbDevice(hub, hub.getBusNumber(), 100, 100, hub.getSpeed(),
+                                                            new UsbDeviceDescriptor((short) 0x0200, EUSBClassCode.VENDOR_SPECIFIC, (byte) 0,
+                                                                                    (byte) 0, (byte) 64, (short) 0x1234, (short) 0x5679,
+                                                                                    (short) 0x0100, (byte) 0, (byte) 0, (byte) 0, (byte) 1));
+    isochronous.addConfiguration(new UsbConfigurationDescriptor((short) 0, (byte) 1, (byte) 1, (byte) 0,
+                                                                BMConfigurationAttributes.getInstance((byte) 0xc0), (byte) 0),
+                                 new UsbInterfaceDescriptor((byte) 0, (byte) 0, (byte) 1, EUSBClassCode.VENDOR_SPECIFIC, (byte) 0, (byte) 0,
+                                                            (byte) 0, new IUsbEndpointDescriptor[]{
+                                                              new UsbEndpointDescriptor(BEndpointAddress.getInstance((byte) 0x04), (byte) 0x01,
+                                                                                        (short) 64, (byte) 1)}));
+    backend.addDevice(isochronous);
+    deviceManager.scan();
+    IUsbDevice device = null;
+    for (IUsbDevice attached : ((IUsbHub) rootHub.getAttachedUsbDevices().get(0)).getAttachedUsbDevices()) {
+      if (attached.getUsbDeviceDescriptor().idProduct() == (short) 0x5679) {
+        device = attached;
+      }
+    }
+    assertNotNull(device);
+    IUsbInterface isoInterface = device.getActiveUsbConfiguration().getUsbInterface((byte) 0);
+    isoInterface.claim();
+    IUsbPipe pipe = isoInterface.getUsbEndpoint((byte) 0x04).getUsbPipe();
+    pipe.open();
+    try {
+      isochronous.setLatency(200_000);
+      IUsbIrp irp = pipe.createUsbIrp();
+      irp.setData(new byte[256]);
+      long start = System.nanoTime();
+      irp.setDeadline(start + TimeUnit.MILLISECONDS.toNanos(20));
+      pipe.asyncSubmit(irp);
+      assertCompletes(irp);
+      assertTrue(irp.getUsbException() instanceof UsbTimeoutException);
+      assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(200));
+    } finally {
+      pipe.close();
+      isoInterface.release();
+    }
+  }
+
+  @Test
+  public void testTransfersInFlightOrder() throws Exception {
+    /**
+     * The parts of a large OUT IRP reach the device before the next IRP, which
+     * the loopback IN endpoint shows, and the IRPs complete in FIFO order.
+     */
+    simulated.setLatency(1_000);
+    out.setTransfersInFlight(4);
+    out.setMaxTransferSize(512);
+    List<IUsbIrp> finished = recordCompletions();
+    byte[] large = new byte[1536];
+    Arrays.fill(large, (byte) 1);
+    byte[] small = new byte[512];
+    Arrays.fill(small, (byte) 2);
+    IUsbIrp first = out.asyncSubmit(large);
+    IUsbIrp second = out.asyncSubmit(small);
+    assertCompletes(first);
+    assertCompletes(second);
+    awaitFinished(finished, 2);
+    assertEquals(Arrays.asList(first, second), finished);
+    UsbPipe in = (UsbPipe) usbInterface.getUsbEndpoint((byte) 0x81).getUsbPipe();
+    in.setMaxTransferSize(512);
+    in.open();
+    try {
+      byte[] data = new byte[2048];
+      assertEquals(data.length, in.syncSubmit(data));
+      byte[] expected = new byte[2048];
+      System.arraycopy(large, 0, expected, 0, large.length);
+      System.arraycopy(small, 0, expected, large.length, small.length);
+      assertArrayEquals(expected, data);
+    } finally {
+      in.close();
+    }
+  }
+
+  @Test
+  public void testInTimeoutOrder() throws Exception {
+    /**
+     * Reads in flight wait for data beyond the default transfer timeout and
+     * receive it in submission order.
+     */
+    simulated.getEndpoint((byte) 0x81).setSource(false);
+    UsbPipe in = (UsbPipe) usbInterface.getUsbEndpoint((byte) 0x81).getUsbPipe();
+    in.setTransfersInFlight(2);
+    in.open();
+    try {
+      IUsbIrp first = in.asyncSubmit(new byte[8]);
+      Thread.sleep(UsbServiceInstanceConfiguration.TIMEOUT / 2);
+      IUsbIrp second = in.asyncSubmit(new byte[8]);
+      /**
+       * Offer the data after the first read, but not the second, exceeded the
+       * default timeout.
+       */
+      Thread.sleep(UsbServiceInstanceConfiguration.TIMEOUT / 2 + 500);
+      assertFalse(first.isComplete());
+      simulated.getEndpoint((byte) 0x81).offer(new byte[]{1, 1, 1, 1, 1, 1, 1, 1});
+      simulated.getEndpoint((byte) 0x81).offer(new byte[]{2, 2, 2, 2, 2, 2, 2, 2});
+      assertCompletes(first);
+      assertCompletes(second);
+      assertEquals(1, first.getData()[0]);
+      assertEquals(2, second.getData()[0]);
+    } finally {
+      in.close();
+    }
+  }
+}
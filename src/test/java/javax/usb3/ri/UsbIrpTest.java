@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.ri;
+
+import java.util.concurrent.CompletableFuture;
+import javax.usb3.IUsbIrp;
+import javax.usb3.exception.UsbShortPacketException;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Jesse Caulfield
+ */
+public class UsbIrpTest {
+
+  @Test
+  public void testCompletableFuture() throws Exception {
+    UsbIrp irp = new UsbIrp(new byte[8]);
+    CompletableFuture<IUsbIrp> future = irp.toCompletableFuture();
+    assertFalse(future.isDone());
+    irp.setActualLength(8);
+    irp.complete();
+    irp.waitUntilComplete();
+    assertSame(irp, future.get());
+    /**
+     * Reset for reuse.
+     */
+    irp.setComplete(false);
+    assertNotSame(future, irp.toCompletableFuture());
+    irp.setAcceptShortPacket(false);
+    irp.setActualLength(4);
+    irp.complete();
+    irp.waitUntilComplete(100);
+    assertTrue(irp.toCompletableFuture().isCompletedExceptionally());
+    assertTrue(irp.getUsbException() instanceof UsbShortPacketException);
+  }
+
+  @Test
+  public void testCancelNotSubmitted() {
+    UsbIrp irp = new UsbIrp(new byte[8]);
+    assertFalse(irp.cancel());
+    irp.complete();
+    assertFalse(irp.cancel());
+  }
+}
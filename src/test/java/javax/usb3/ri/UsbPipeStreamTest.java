@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.ri;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import javax.usb3.IUsbDevice;
+import javax.usb3.IUsbHub;
+import javax.usb3.IUsbInterface;
+import javax.usb3.IUsbPipe;
+import javax.usb3.event.IUsbPipeStreamConsumer;
+import javax.usb3.exception.UsbException;
+import javax.usb3.spi.SimulatedUsbBackend;
+import javax.usb3.spi.SimulatedUsbDevice;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Exercise pipe streaming on the simulated USB host.
+ *
+ * @author Jesse Caulfield
+ */
+public class UsbPipeStreamTest {
+
+  @Test
+  public void testStreamOrderAndLength() throws Exception {
+    SimulatedUsbBackend backend = new SimulatedUsbBackend();
+    SimulatedUsbDevice hub = backend.addHub(null);
+    SimulatedUsbDevice simulated = backend.addDevice(hub, (short) 0x1234, (short) 0x5678);
+    simulated.getEndpoint((byte) 0x81).setSource(false);
+    UsbRootHub rootHub = new UsbRootHub();
+    UsbDeviceManager deviceManager = new UsbDeviceManager(rootHub, 0, backend);
+    try {
+      deviceManager.scan();
+      IUsbHub usbHub = (IUsbHub) rootHub.getAttachedUsbDevices().get(0);
+      IUsbDevice device = usbHub.getAttachedUsbDevices().iterator().next();
+      IUsbInterface usbInterface = device.getActiveUsbConfiguration().getUsbInterface((byte) 0);
+      usbInterface.claim();
+      UsbPipe in = (UsbPipe) usbInterface.getUsbEndpoint((byte) 0x81).getUsbPipe();
+      in.open();
+      final List<Integer> lengths = new ArrayList<>();
+      final ByteArrayOutputStream received = new ByteArrayOutputStream();
+      /**
+       * 100 byte reads use 128 byte pooled buffers: every read must still
+       * request 100 bytes.
+       */
+      in.startStreaming(2, 100, new IUsbPipeStreamConsumer() {
+        @Override
+        public void dataReceived(IUsbPipe pipe, ByteBuffer buffer) {
+          synchronized (received) {
+            lengths.add(buffer.remaining());
+            while (buffer.hasRemaining()) {
+              received.write(buffer.get());
+            }
+            received.notifyAll();
+          }
+        }
+
+        @Override
+        public void errorOccurred(IUsbPipe pipe, UsbException exception) {
+        }
+      });
+      byte[] data = new byte[1000];
+      for (int i = 0; i < data.length; i++) {
+        data[i] = (byte) i;
+      }
+      simulated.getEndpoint((byte) 0x81).offer(data);
+      synchronized (received) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (received.size() < data.length && System.currentTimeMillis() < deadline) {
+          received.wait(100);
+        }
+      }
+      in.stopStreaming(false);
+      assertArrayEquals(data, received.toByteArray());
+      assertEquals(10, lengths.size());
+      for (int length : lengths) {
+        assertEquals(100, length);
+      }
+      in.close();
+      usbInterface.release();
+    } finally {
+      deviceManager.dispose();
+    }
+  }
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.spi;
+
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.usb3.IUsbDevice;
+import javax.usb3.IUsbHub;
+import javax.usb3.IUsbInterface;
+import javax.usb3.IUsbIrp;
+import javax.usb3.IUsbPipe;
+import javax.usb3.descriptor.UsbConfigurationDescriptorView;
+import javax.usb3.descriptor.UsbEndpointDescriptorView;
+import javax.usb3.descriptor.UsbInterfaceDescriptorView;
+import javax.usb3.event.IUsbPipeIrpListener;
+import javax.usb3.event.IUsbPipeStreamConsumer;
+import javax.usb3.exception.UsbDeviceNotFoundException;
+import javax.usb3.exception.UsbException;
+import javax.usb3.ri.UsbDeviceManager;
+import javax.usb3.ri.UsbPipe;
+import javax.usb3.ri.UsbRootHub;
+import javax.usb3.utility.StandardDeviceRequest;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Exercise the reference implementation on the simulated USB host.
+ *
+ * @author Jesse Caulfield
+ */
+public class SimulatedUsbBackendTest {
+
+  @Test
+  public void testScanAndLoopback() throws Exception {
+    SimulatedUsbBackend backend = new SimulatedUsbBackend();
+    SimulatedUsbDevice hub = backend.addHub(null);
+    SimulatedUsbDevice simulated = backend.addDevice(hub, (short) 0x1234, (short) 0x5678);
+    UsbRootHub rootHub = new UsbRootHub();
+    UsbDeviceManager deviceManager = new UsbDeviceManager(rootHub, 0, backend);
+    try {
+      deviceManager.scan();
+      assertEquals(1, rootHub.getAttachedUsbDevices().size());
+      IUsbHub usbHub = (IUsbHub) rootHub.getAttachedUsbDevices().get(0);
+      assertEquals(1, usbHub.getAttachedUsbDevices().size());
+      IUsbDevice device = usbHub.getAttachedUsbDevices().iterator().next();
+      assertEquals((short) 0x5678, device.getUsbDeviceDescriptor().idProduct());
+      assertEquals("Simulated Device", device.getString((byte) 2));
+      /**
+       * Strings are read from the device once and then served from the cache.
+       */
+      assertSame(device.getUsbStringDescriptor((byte) 2), device.getUsbStringDescriptor((byte) 2));
+      /**
+       * Data written to the OUT endpoint is read back from the IN endpoint.
+       */
+      IUsbInterface usbInterface = device.getActiveUsbConfiguration().getUsbInterface((byte) 0);
+      usbInterface.claim();
+      IUsbPipe out = usbInterface.getUsbEndpoint((byte) 0x02).getUsbPipe();
+      IUsbPipe in = usbInterface.getUsbEndpoint((byte) 0x81).getUsbPipe();
+      final AtomicInteger completed = new AtomicInteger();
+      in.addUsbPipeIrpListener(new IUsbPipeIrpListener() {
+        @Override
+        public void irpCompleted(IUsbPipe pipe, IUsbIrp irp) {
+          completed.addAndGet(irp.getActualLength());
+        }
+      });
+      out.open();
+      in.open();
+      assertEquals(4, out.syncSubmit(new byte[]{1, 2, 3, 4}));
+      byte[] data = new byte[64];
+      assertEquals(4, in.syncSubmit(data));
+      assertEquals(4, data[3]);
+      /**
+       * IRP listeners see the completed IRP without an event, shortly after
+       * the submission completes.
+       */
+      long deadline = System.currentTimeMillis() + 5000;
+      while (completed.get() == 0 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(1);
+      }
+      assertEquals(4, completed.get());
+      out.close();
+      in.close();
+      usbInterface.release();
+      /**
+       * Removed devices disappear on the next scan.
+       */
+      backend.removeDevice(simulated);
+      deviceManager.scan();
+      assertTrue(usbHub.getAttachedUsbDevices().isEmpty());
+    } finally {
+      deviceManager.dispose();
+    }
+  }
+
+  @Test
+  public void testHotplug() throws Exception {
+    SimulatedUsbBackend backend = new SimulatedUsbBackend();
+    UsbRootHub rootHub = new UsbRootHub();
+    UsbDeviceManager deviceManager = new UsbDeviceManager(rootHub, 0, backend);
+    try {
+      deviceManager.start();
+      /**
+       * The scanner runs on the hotplug event although polling is disabled.
+       */
+      backend.addHub(null);
+      long deadline = System.currentTimeMillis() + 5000;
+      while (rootHub.getAttachedUsbDevices().isEmpty() && System.currentTimeMillis() < deadline) {
+        Thread.sleep(1);
+      }
+      assertEquals(1, rootHub.getAttachedUsbDevices().size());
+    } finally {
+      deviceManager.dispose();
+    }
+  }
+
+  @Test
+  public void testConfigurationsOfRemovedDevice() throws Exception {
+    /**
+     * Configurations are read on first access. A device removed before that
+     * fails the access instead of reporting no configurations.
+     */
+    SimulatedUsbBackend backend = new SimulatedUsbBackend();
+    SimulatedUsbDevice simulated = backend.addDevice(backend.addHub(null), (short) 0x1234, (short) 0x5678);
+    UsbRootHub rootHub = new UsbRootHub();
+    UsbDeviceManager deviceManager = new UsbDeviceManager(rootHub, 0, backend);
+    try {
+      deviceManager.scan();
+      IUsbHub usbHub = (IUsbHub) rootHub.getAttachedUsbDevices().get(0);
+      IUsbDevice device = usbHub.getAttachedUsbDevices().iterator().next();
+      backend.removeDevice(simulated);
+      deviceManager.scan();
+      try {
+        device.getUsbConfigurations();
+        fail("Configurations of a removed device must not be empty");
+      } catch (UsbDeviceNotFoundException ex) {
+        /**
+         * The device is no longer known to the backend.
+         */
+      }
+    } finally {
+      deviceManager.dispose();
+    }
+  }
+
+  @Test
+  public void testConfigurationDescriptorView() throws Exception {
+    /**
+     * A CDC configuration with an interface association, a functional
+     * descriptor and an endpoint companion descriptor.
+     */
+    byte[] blob = {
+      9, 0x02, 67, 0, 2, 2, 0, (byte) 0x80, 50,
+      8, 0x0b, 0, 2, 0x02, 0x02, 0, 0,
+      9, 0x04, 0, 0, 1, 0x02, 0x02, 0, 0,
+      5, 0x24, 0x00, 0x10, 0x01,
+      7, 0x05, (byte) 0x83, 0x03, 8, 0, 16,
+      9, 0x04, 1, 0, 2, 0x0a, 0, 0, 0,
+      7, 0x05, (byte) 0x84, 0x02, 0, 4, 0,
+      7, 0x05, 0x04, 0x02, 0, 4, 0,
+      6, 0x30, 0, 0, 0, 0
+    };
+    SimulatedUsbBackend backend = new SimulatedUsbBackend();
+    SimulatedUsbDevice hub = backend.addHub(null);
+    backend.addDevice(hub, (short) 0x1234, (short) 0x5678).addConfiguration(blob);
+    UsbRootHub rootHub = new UsbRootHub();
+    UsbDeviceManager deviceManager = new UsbDeviceManager(rootHub, 0, backend);
+    try {
+      deviceManager.scan();
+      IUsbHub usbHub = (IUsbHub) rootHub.getAttachedUsbDevices().get(0);
+      IUsbDevice device = usbHub.getAttachedUsbDevices().iterator().next();
+      UsbConfigurationDescriptorView view = StandardDeviceRequest.getConfigurationDescriptor(device, (byte) 1);
+      assertEquals(67, view.wTotalLength());
+      assertEquals(2, view.bConfigurationValue());
+      assertEquals(8, view.extra().remaining());
+      assertEquals(2, view.getInterfaceDescriptors().size());
+      UsbInterfaceDescriptorView control = view.getInterfaceDescriptors().get(0);
+      assertEquals(5, control.extra().remaining());
+      assertEquals(1, control.endpoint().length);
+      assertEquals(8, control.endpoint()[0].wMaxPacketSize());
+      UsbInterfaceDescriptorView data = view.getInterfaceDescriptors().get(1);
+      assertEquals(0x0a, data.bInterfaceClass());
+      assertEquals(2, data.endpoint().length);
+      assertEquals(1024, data.endpoint()[1].wMaxPacketSize());
+      ByteBuffer companion = ((UsbEndpointDescriptorView) data.endpoint()[1]).extra();
+      assertEquals(6, companion.remaining());
+      assertEquals(0x30, companion.get(1));
+    } finally {
+      deviceManager.dispose();
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void testIdleEventThread() throws Exception {
+    SimulatedUsbBackend backend = new SimulatedUsbBackend();
+    SimulatedUsbDevice hub = backend.addHub(null);
+    backend.addDevice(hub, (short) 0x1234, (short) 0x5678);
+    UsbRootHub rootHub = new UsbRootHub();
+    UsbDeviceManager deviceManager = new UsbDeviceManager(rootHub, 0, backend);
+    Set<Thread> previous = getEventThreads();
+    try {
+      deviceManager.scan();
+      IUsbHub usbHub = (IUsbHub) rootHub.getAttachedUsbDevices().get(0);
+      IUsbDevice device = usbHub.getAttachedUsbDevices().iterator().next();
+      IUsbInterface usbInterface = device.getActiveUsbConfiguration().getUsbInterface((byte) 0);
+      usbInterface.claim();
+      IUsbPipe out = usbInterface.getUsbEndpoint((byte) 0x02).getUsbPipe();
+      out.open();
+      assertEquals(4, out.syncSubmit(new byte[]{1, 2, 3, 4}));
+      out.close();
+      usbInterface.release();
+      /**
+       * The event thread started by the transfer exits once it is idle.
+       */
+      Set<Thread> started = getEventThreads();
+      started.removeAll(previous);
+      for (Thread thread : started) {
+        thread.join(5000);
+        assertFalse("Idle event thread still running", thread.isAlive());
+      }
+      /**
+       * The event thread started for hotplug events blocks while idle and is
+       * woken when the device manager is disposed.
+       */
+      deviceManager.start();
+      long start = System.currentTimeMillis();
+      deviceManager.dispose();
+      assertTrue("Idle event thread not woken", System.currentTimeMillis() - start < 2000);
+    } finally {
+      deviceManager.dispose();
+    }
+  }
+
+  /**
+   * Get the running transfer engine event threads.
+   *
+   * @return The event threads.
+   */
+  private static Set<Thread> getEventThreads() {
+    Set<Thread> threads = new HashSet<>();
+    for (Thread thread : Thread.getAllStackTraces().keySet()) {
+      if ("javax-usb Event Handler".equals(thread.getName())) {
+        threads.add(thread);
+      }
+    }
+    return threads;
+  }
+
+  @Test(timeout = 30000)
+  public void testDisposeWithActiveTransfers() throws Exception {
+    /**
+     * Disposing the device manager cancels an IN transfer without timeout
+     * and a running stream instead of waiting for them.
+     */
+    SimulatedUsbBackend backend = new SimulatedUsbBackend();
+    SimulatedUsbDevice hub = backend.addHub(null);
+    SimulatedUsbDevice simulated = backend.addDevice(hub, (short) 0x1234, (short) 0x5678);
+    simulated.getEndpoint((byte) 0x81).setSource(false);
+    UsbRootHub rootHub = new UsbRootHub();
+    UsbDeviceManager deviceManager = new UsbDeviceManager(rootHub, 0, backend);
+    deviceManager.scan();
+    IUsbHub usbHub = (IUsbHub) rootHub.getAttachedUsbDevices().get(0);
+    IUsbDevice device = usbHub.getAttachedUsbDevices().iterator().next();
+    IUsbInterface usbInterface = device.getActiveUsbConfiguration().getUsbInterface((byte) 0);
+    usbInterface.claim();
+    UsbPipe in = (UsbPipe) usbInterface.getUsbEndpoint((byte) 0x81).getUsbPipe();
+    UsbPipe interrupt = (UsbPipe) usbInterface.getUsbEndpoint((byte) 0x83).getUsbPipe();
+    in.open();
+    interrupt.open();
+    in.setTransfersInFlight(1);
+    in.setTimeout(0);
+    IUsbIrp irp = in.asyncSubmit(new byte[64]);
+    interrupt.startStreaming(2, 8, new IUsbPipeStreamConsumer() {
+      @Override
+      public void dataReceived(IUsbPipe pipe, ByteBuffer buffer) {
+      }
+
+      @Override
+      public void errorOccurred(IUsbPipe pipe, UsbException exception) {
+      }
+    });
+    deviceManager.dispose();
+    irp.waitUntilComplete(5000);
+    assertTrue(irp.isComplete());
+    assertTrue(irp.isUsbException());
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2014 Jesse Caulfield
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package javax.usb3.utility;
+
+import java.nio.ByteBuffer;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Jesse Caulfield
+ */
+public class DirectBufferPoolTest {
+
+  @Test
+  public void testAcquireRelease() {
+    DirectBufferPool pool = new DirectBufferPool();
+    ByteBuffer buffer = pool.acquire(100);
+    assertTrue(buffer.isDirect());
+    assertEquals(128, buffer.capacity());
+    assertEquals(100, buffer.limit());
+    assertEquals(1, pool.getMisses());
+    assertEquals(128, pool.getOutstandingBytes());
+    pool.release(buffer);
+    assertEquals(0, pool.getOutstandingBytes());
+    assertSame(buffer, pool.acquire(65));
+    assertEquals(1, pool.getHits());
+  }
+
+  @Test
+  public void testCapacity() {
+    DirectBufferPool pool = new DirectBufferPool();
+    pool.setCapacity(0);
+    ByteBuffer buffer = pool.acquire(64);
+    pool.release(buffer);
+    assertEquals(0, pool.getPooledBytes());
+    assertNotSame(buffer, pool.acquire(64));
+    assertEquals(2, pool.getMisses());
+    ByteBuffer large = pool.acquire(2 * 1024 * 1024);
+    assertEquals(2 * 1024 * 1024, large.capacity());
+  }
+
+  @Test
+  public void testThreadExit() throws Exception {
+    /**
+     * Buffers released by a thread which then exits must not count against
+     * the pool capacity.
+     */
+    final DirectBufferPool pool = new DirectBufferPool();
+    pool.setCapacity(1024);
+    for (int i = 0; i < 16; i++) {
+      Thread thread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          ByteBuffer[] buffers = new ByteBuffer[8];
+          for (int j = 0; j < buffers.length; j++) {
+            buffers[j] = pool.acquire(64);
+          }
+          for (ByteBuffer buffer : buffers) {
+            pool.release(buffer);
+          }
+        }
+      });
+      thread.start();
+      thread.join();
+      assertTrue(pool.getPooledBytes() + pool.getCachedBytes() <= pool.getCapacity());
+    }
+    /**
+     * The global free lists still accept buffers.
+     */
+    ByteBuffer[] buffers = new ByteBuffer[8];
+    for (int j = 0; j < buffers.length; j++) {
+      buffers[j] = pool.acquire(64);
+    }
+    long pooled = pool.getPooledBytes();
+    for (ByteBuffer buffer : buffers) {
+      pool.release(buffer);
+    }
+    assertTrue(pool.getPooledBytes() > pooled);
+  }
+
+  @Test
+  public void testThreadCacheCapacity() throws Exception {
+    /**
+     * Thread-cached buffers count against the capacity, and the cache of an
+     * exited thread is reclaimed for the other threads when the pool is full.
+     */
+    final DirectBufferPool pool = new DirectBufferPool();
+    pool.setCapacity(320);
+    ByteBuffer kept = pool.acquire(64);
+    pool.release(pool.acquire(64));
+    assertEquals(64, pool.getCachedBytes());
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        ByteBuffer[] buffers = new ByteBuffer[8];
+        for (int j = 0; j < buffers.length; j++) {
+          buffers[j] = pool.acquire(64);
+        }
+        for (ByteBuffer buffer : buffers) {
+          pool.release(buffer);
+        }
+      }
+    });
+    thread.start();
+    thread.join();
+    assertEquals(320, pool.getCachedBytes());
+    assertEquals(0, pool.getPooledBytes());
+    /**
+     * The pool is full: the exited thread's cache moves to the global free
+     * lists and the released buffer is dropped.
+     */
+    pool.release(kept);
+    assertEquals(64, pool.getCachedBytes());
+    assertEquals(256, pool.getPooledBytes());
+    long hits = pool.getHits();
+    for (int j = 0; j < 5; j++) {
+      pool.acquire(64);
+    }
+    assertEquals(hits + 5, pool.getHits());
+  }
+}